@@ -0,0 +1,94 @@
+package com.mik.icc.benchmarks;
+
+import com.mik.icc.core.CachedTransform;
+import com.mik.icc.core.Clut;
+import com.mik.icc.core.ColorTransform;
+import com.mik.icc.core.ImageConverter;
+import com.mik.icc.core.LutTagData;
+import com.mik.icc.core.LutTransform;
+import com.mik.icc.core.ToneCurve;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// RGB to CMYK through a 33^3 mAB CLUT for a 1024x1024 image drawn from a palette, with and without the result
+// cache, on one thread. One operation is one pixel, so ops/us is megapixels per second; the hit rate is printed
+// after each trial.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CachedTransformBenchmark {
+
+    static final int SIZE = 1024;
+    static final int PIXELS = SIZE * SIZE;
+
+    // Distinct colors in the image
+    @Param({"256", "4096", "65536"})
+    public int colors;
+
+    @Param({"true", "false"})
+    public boolean cached;
+
+    private ImageConverter converter;
+    private CachedTransform cache;
+    private byte[] in;
+    private byte[] out;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Clut clut = Clut.allocate(new int[] {33, 33, 33}, 4, 2);
+        Random random = new Random(42);
+        for (int node = 0; node < clut.getNodeCount(); node++) {
+            for (int c = 0; c < 4; c++) {
+                clut.set(node, c, random.nextDouble());
+            }
+        }
+        ToneCurve[] a = new ToneCurve[3];
+        Arrays.fill(a, ToneCurve.gamma(2.2));
+        ToneCurve[] b = new ToneCurve[4];
+        Arrays.fill(b, ToneCurve.identity());
+        ColorTransform transform = LutTransform.of(LutTagData.lutAToB(a, clut, null, null, b));
+        cache = cached ? new CachedTransform(transform) : null;
+        converter = new ImageConverter(cached ? cache : transform, 256, 1);
+
+        byte[] palette = new byte[colors * 3];
+        random.nextBytes(palette);
+        in = new byte[PIXELS * 3];
+        out = new byte[PIXELS * 4];
+        for (int p = 0; p < PIXELS; p++) {
+            System.arraycopy(palette, random.nextInt(colors) * 3, in, p * 3, 3);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (cache != null) {
+            System.out.printf("hit rate %.4f%n", cache.getHitRate());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PIXELS)
+    public byte[] convert() {
+        converter.convert(in, out, SIZE, SIZE);
+        return out;
+    }
+}
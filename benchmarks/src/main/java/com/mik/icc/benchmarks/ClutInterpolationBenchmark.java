@@ -0,0 +1,77 @@
+package com.mik.icc.benchmarks;
+
+import com.mik.icc.core.Clut;
+import com.mik.icc.core.ClutInterpolator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Single-threaded CLUT interpolation; one operation is one pixel, so ops/us is megapixels per second per core
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector", "-Dicc.vector=true"})
+@State(Scope.Benchmark)
+public class ClutInterpolationBenchmark {
+
+    static final int PIXELS = 64 * 1024;
+
+    // 3 = RGB -> Lab with a 33^3 grid, 4 = CMYK -> Lab with a 17^4 grid
+    @Param({"3", "4"})
+    public int inputChannels;
+
+    @Param({"TRILINEAR", "TETRAHEDRAL"})
+    public ClutInterpolator.Method method;
+
+    // ClutInterpolator.of or ClutInterpolator.scalar; only tetrahedral has a vector kernel
+    @Param({"true", "false"})
+    public boolean vector;
+
+    private ClutInterpolator interpolator;
+    private float[] in;
+    private float[] out;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int[] grid = new int[inputChannels];
+        Arrays.fill(grid, inputChannels == 3 ? 33 : 17);
+        Clut clut = Clut.allocate(grid, 3, 2);
+        Random random = new Random(42);
+        for (int node = 0; node < clut.getNodeCount(); node++) {
+            for (int c = 0; c < 3; c++) {
+                clut.set(node, c, random.nextDouble());
+            }
+        }
+        interpolator = vector ? ClutInterpolator.of(clut, method) : ClutInterpolator.scalar(clut, method);
+        if (vector && method == ClutInterpolator.Method.TETRAHEDRAL && !interpolator.isVectorized()) {
+            throw new IllegalStateException("jdk.incubator.vector is not available or -Dicc.vector=true is not set");
+        }
+        in = new float[PIXELS * inputChannels];
+        out = new float[PIXELS * 3];
+        for (int i = 0; i < in.length; i++) {
+            in[i] = random.nextFloat();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PIXELS)
+    public float[] interpolate() {
+        interpolator.interpolate(in, 0, out, 0, PIXELS);
+        return out;
+    }
+}
@@ -0,0 +1,81 @@
+package com.mik.icc.benchmarks;
+
+import com.mik.icc.core.HexCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Compares HexCodec with the String.format / Character.digit code it replaced
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HexCodecBenchmark {
+
+    @Param({"1024", "204800"})
+    public int size;
+
+    private byte[] data;
+    private String hex;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = new byte[size];
+        new Random(42).nextBytes(data);
+        hex = HexCodec.encode(data);
+    }
+
+    @Benchmark
+    public String encodeStringFormat() {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : data) {
+            sb.append(String.format("%02X ", b));
+        }
+        return sb.toString().trim();
+    }
+
+    @Benchmark
+    public String encodeHexCodec() {
+        return HexCodec.encode(data);
+    }
+
+    @Benchmark
+    public Writer encodeHexCodecStreaming() throws IOException {
+        Writer out = Writer.nullWriter();
+        HexCodec.encode(ByteBuffer.wrap(data), out, 32, "    ");
+        return out;
+    }
+
+    @Benchmark
+    public byte[] decodeCharacterDigit() {
+        String hexString = hex.replaceAll("\\s+", "");
+        byte[] out = new byte[hexString.length() / 2];
+        for (int i = 0; i < hexString.length(); i += 2) {
+            out[i / 2] = (byte) ((Character.digit(hexString.charAt(i), 16) << 4)
+                    + Character.digit(hexString.charAt(i + 1), 16));
+        }
+        return out;
+    }
+
+    @Benchmark
+    public byte[] decodeHexCodec() {
+        return HexCodec.decode(hex);
+    }
+}
@@ -0,0 +1,76 @@
+package com.mik.icc.benchmarks;
+
+import com.mik.icc.core.ICCProfile;
+import com.mik.icc.core.ImageConverter;
+import com.mik.icc.core.MatrixTrcTransform;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Tiled conversion of a 2048x2048 8-bit RGB buffer on all cores; one operation is one pixel, so ops/us is
+// megapixels per second. The converter's working buffers and sampled peak heap are printed after each trial.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ImageConverterBenchmark {
+
+    static final int SIZE = 2048;
+    static final int PIXELS = SIZE * SIZE;
+
+    @Param({"16", "64", "256", "1024"})
+    public int tileSize;
+
+    private Path directory;
+    private Path file;
+    private ImageConverter converter;
+    private ImageConverter.Stats stats;
+    private byte[] in;
+    private byte[] out;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("icc-bench");
+        file = new SyntheticProfileGenerator().curvePoints(1024).writeTo(directory);
+        try (ICCProfile profile = ICCProfile.openReadOnly(file.toString())) {
+            converter = new ImageConverter(MatrixTrcTransform.between(profile, profile), tileSize,
+                    Runtime.getRuntime().availableProcessors());
+        }
+        in = new byte[PIXELS * 3];
+        out = new byte[PIXELS * 3];
+        new Random(42).nextBytes(in);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.out.println(stats);
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PIXELS)
+    public byte[] convertRaw() {
+        stats = converter.convert(in, out, SIZE, SIZE);
+        return out;
+    }
+}
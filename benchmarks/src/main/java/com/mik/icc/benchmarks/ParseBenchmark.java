@@ -0,0 +1,72 @@
+package com.mik.icc.benchmarks;
+
+import com.mik.icc.core.ICCHeader;
+import com.mik.icc.core.ICCProfile;
+import com.mik.icc.core.Tag;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int tagCount;
+
+    private ByteBuffer profileBytes;
+    private Path directory;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        SyntheticProfileGenerator generator = new SyntheticProfileGenerator().tagCount(tagCount).genericSize(64);
+        profileBytes = ByteBuffer.wrap(generator.generate());
+        directory = Files.createTempDirectory("icc-bench");
+        file = generator.writeTo(directory);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public ICCHeader parseHeader() {
+        return ICCProfile.parseHeader(profileBytes);
+    }
+
+    @Benchmark
+    public List<Tag> parseTagTable() {
+        return ICCProfile.parseTagTable(profileBytes);
+    }
+
+    @Benchmark
+    public int openProfile() throws IOException {
+        try (ICCProfile profile = ICCProfile.openReadOnly(file.toString())) {
+            return profile.getTags().size();
+        }
+    }
+}
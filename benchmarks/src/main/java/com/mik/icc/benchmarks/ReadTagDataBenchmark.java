@@ -0,0 +1,66 @@
+package com.mik.icc.benchmarks;
+
+import com.mik.icc.core.ICCProfile;
+import com.mik.icc.core.Tag;
+import com.mik.icc.core.TagData;
+import com.mik.icc.core.TagType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReadTagDataBenchmark {
+
+    @Param({"TEXT_TYPE", "XYZ_TYPE", "CURVE_TYPE", "MLUC_TYPE", "UNKNOWN"})
+    public TagType tagType;
+
+    @Param({"256", "4096"})
+    public int curvePoints;
+
+    private Path directory;
+    private Path file;
+    private ICCProfile profile;
+    private Tag tag;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("icc-bench");
+        file = new SyntheticProfileGenerator().curvePoints(curvePoints).writeTo(directory);
+        profile = ICCProfile.openReadOnly(file.toString());
+        // Measure decoding, not cache hits
+        profile.getTagDataCache().setMaxBytes(0);
+        tag = profile.getTagBySignature(SyntheticProfileGenerator.signatureFor(tagType));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        profile.close();
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public TagData readTagData() throws IOException {
+        return profile.readTagData(tag);
+    }
+}
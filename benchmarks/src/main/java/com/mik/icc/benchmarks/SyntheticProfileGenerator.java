@@ -0,0 +1,161 @@
+package com.mik.icc.benchmarks;
+
+import com.mik.icc.core.TagType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+// Generates display profiles with one tag per decoded type plus private filler tags
+public final class SyntheticProfileGenerator {
+
+    private int tagCount = 16;
+    private int curvePoints = 1024;
+    private int genericSize = 256;
+    private long seed = 42;
+
+    public SyntheticProfileGenerator tagCount(int tagCount) {
+        this.tagCount = tagCount;
+        return this;
+    }
+
+    public SyntheticProfileGenerator curvePoints(int curvePoints) {
+        this.curvePoints = curvePoints;
+        return this;
+    }
+
+    public SyntheticProfileGenerator genericSize(int genericSize) {
+        this.genericSize = genericSize;
+        return this;
+    }
+
+    public SyntheticProfileGenerator seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    // Tag signature used for the tag of the given element type
+    public static String signatureFor(TagType type) {
+        switch (type) {
+            case TEXT_TYPE:
+                return "cprt";
+            case XYZ_TYPE:
+                return "wtpt";
+            case CURVE_TYPE:
+                return "rTRC";
+            case MLUC_TYPE:
+                return "desc";
+            default:
+                return "p000";
+        }
+    }
+
+    public byte[] generate() {
+        Random random = new Random(seed);
+        int count = Math.max(tagCount, 10);
+        String[] signatures = new String[count];
+        byte[][] elements = new byte[count][];
+
+        signatures[0] = "desc";
+        elements[0] = mluc("Synthetic benchmark profile");
+        signatures[1] = "cprt";
+        elements[1] = text("Copyright (c) synthetic profile generator");
+        signatures[2] = "wtpt";
+        elements[2] = xyz(0.9642, 1.0, 0.8249);
+        signatures[3] = "rTRC";
+        signatures[4] = "gTRC";
+        signatures[5] = "bTRC";
+        for (int i = 3; i < 6; i++) {
+            elements[i] = curve(curvePoints, 2.2 + (i - 3) * 0.05);
+        }
+        // sRGB colorants adapted to D50, so the profile also works as a matrix/TRC source
+        signatures[6] = "rXYZ";
+        elements[6] = xyz(0.4361, 0.2225, 0.0139);
+        signatures[7] = "gXYZ";
+        elements[7] = xyz(0.3851, 0.7169, 0.0971);
+        signatures[8] = "bXYZ";
+        elements[8] = xyz(0.1431, 0.0606, 0.7141);
+        for (int i = 9; i < count; i++) {
+            signatures[i] = String.format("p%03d", (i - 9) % 1000);
+            byte[] element = new byte[genericSize];
+            random.nextBytes(element);
+            elements[i] = element;
+        }
+
+        int offset = 128 + 4 + 12 * count;
+        ByteBuffer table = ByteBuffer.allocate(4 + 12 * count).order(ByteOrder.BIG_ENDIAN);
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        table.putInt(count);
+        for (int i = 0; i < count; i++) {
+            table.put(signatures[i].getBytes(StandardCharsets.US_ASCII));
+            table.putInt(offset + data.size());
+            table.putInt(elements[i].length);
+            data.writeBytes(elements[i]);
+            while (data.size() % 4 != 0) {
+                data.write(0);
+            }
+        }
+
+        int size = offset + data.size();
+        ByteBuffer profile = ByteBuffer.allocate(size).order(ByteOrder.BIG_ENDIAN);
+        profile.putInt(0, size);
+        profile.put(4, "lcms".getBytes(StandardCharsets.US_ASCII));
+        profile.put(8, (byte) 4).put(9, (byte) 0x30);
+        profile.put(12, "mntr".getBytes(StandardCharsets.US_ASCII));
+        profile.put(16, "RGB ".getBytes(StandardCharsets.US_ASCII));
+        profile.put(20, "XYZ ".getBytes(StandardCharsets.US_ASCII));
+        profile.putShort(24, (short) 2024).putShort(26, (short) 1).putShort(28, (short) 1);
+        profile.put(36, "acsp".getBytes(StandardCharsets.US_ASCII));
+        profile.put(40, "APPL".getBytes(StandardCharsets.US_ASCII));
+        profile.put(48, "MIMK".getBytes(StandardCharsets.US_ASCII));
+        profile.put(52, "BNCH".getBytes(StandardCharsets.US_ASCII));
+        profile.putInt(68, 0xF6D6).putInt(72, 0x10000).putInt(76, 0xD32D);
+        profile.position(128);
+        profile.put(table.array()).put(data.toByteArray());
+        return profile.array();
+    }
+
+    public Path writeTo(Path directory) throws IOException {
+        Path file = Files.createTempFile(directory, "synthetic", ".icc");
+        return Files.write(file, generate());
+    }
+
+    private static byte[] text(String text) {
+        byte[] textBytes = text.getBytes(StandardCharsets.US_ASCII);
+        return element("text", textBytes.length + 1).put(textBytes).array();
+    }
+
+    private static byte[] xyz(double x, double y, double z) {
+        return element("XYZ ", 12).putInt(s15Fixed16(x)).putInt(s15Fixed16(y)).putInt(s15Fixed16(z)).array();
+    }
+
+    private static byte[] curve(int points, double gamma) {
+        ByteBuffer element = element("curv", 4 + 2 * points).putInt(points);
+        for (int i = 0; i < points; i++) {
+            double value = Math.pow(i / (double) Math.max(1, points - 1), gamma);
+            element.putShort((short) Math.round(value * 65535.0));
+        }
+        return element.array();
+    }
+
+    private static byte[] mluc(String text) {
+        byte[] textBytes = text.getBytes(StandardCharsets.UTF_16BE);
+        ByteBuffer element = element("mluc", 8 + 12 + textBytes.length).putInt(1).putInt(12);
+        element.put("enUS".getBytes(StandardCharsets.US_ASCII)).putInt(28).putInt(textBytes.length);
+        return element.put(textBytes).array();
+    }
+
+    private static ByteBuffer element(String type, int bodyLength) {
+        ByteBuffer element = ByteBuffer.allocate(8 + bodyLength).order(ByteOrder.BIG_ENDIAN);
+        return element.put(type.getBytes(StandardCharsets.US_ASCII)).putInt(0);
+    }
+
+    private static int s15Fixed16(double value) {
+        return (int) Math.round(value * 65536.0);
+    }
+}
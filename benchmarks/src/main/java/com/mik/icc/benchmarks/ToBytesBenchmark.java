@@ -0,0 +1,78 @@
+package com.mik.icc.benchmarks;
+
+import com.mik.icc.core.CurveTagData;
+import com.mik.icc.core.GenericTagData;
+import com.mik.icc.core.MultiLocalizedUnicodeTagData;
+import com.mik.icc.core.XYZTagData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ToBytesBenchmark {
+
+    @Param({"256", "4096"})
+    public int curvePoints;
+
+    @Param({"1024", "65536"})
+    public int genericSize;
+
+    private CurveTagData curve;
+    private XYZTagData xyz;
+    private MultiLocalizedUnicodeTagData mluc;
+    private GenericTagData generic;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        double[] points = new double[curvePoints];
+        for (int i = 0; i < curvePoints; i++) {
+            points[i] = Math.pow(i / (double) (curvePoints - 1), 2.2);
+        }
+        curve = new CurveTagData(points);
+        xyz = new XYZTagData(0.9642, 1.0, 0.8249);
+        mluc = new MultiLocalizedUnicodeTagData();
+        mluc.addLocalizedString("en", "US", "Synthetic benchmark profile");
+        mluc.addLocalizedString("de", "DE", "Synthetisches Benchmark-Profil");
+        mluc.addLocalizedString("ja", "JP", "合成ベンチマークプロファイル");
+        byte[] data = new byte[genericSize];
+        new Random(42).nextBytes(data);
+        generic = new GenericTagData(data);
+    }
+
+    @Benchmark
+    public byte[] curveToBytes() {
+        return curve.toBytes();
+    }
+
+    @Benchmark
+    public byte[] xyzToBytes() {
+        return xyz.toBytes();
+    }
+
+    @Benchmark
+    public byte[] mlucToBytes() {
+        return mluc.toBytes();
+    }
+
+    @Benchmark
+    public byte[] genericToBytes() {
+        return generic.toBytes();
+    }
+}
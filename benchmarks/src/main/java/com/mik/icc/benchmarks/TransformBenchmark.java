@@ -0,0 +1,94 @@
+package com.mik.icc.benchmarks;
+
+import com.mik.icc.core.ColorTransform;
+import com.mik.icc.core.ICCProfile;
+import com.mik.icc.core.MatrixTrcTransform;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// One operation is one pixel, so ops/us is megapixels per second
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransformBenchmark {
+
+    // A 1024x1024 image
+    static final int PIXELS = 1 << 20;
+
+    private Path directory;
+    private Path file;
+    private ColorTransform rgbToRgb;
+    private ColorTransform rgbToPcs;
+    private int[] packed;
+    private int[] packedOut;
+    private float[] floats;
+    private float[] floatsOut;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("icc-bench");
+        file = new SyntheticProfileGenerator().curvePoints(1024).writeTo(directory);
+        try (ICCProfile profile = ICCProfile.openReadOnly(file.toString())) {
+            rgbToRgb = MatrixTrcTransform.between(profile, profile);
+            rgbToPcs = MatrixTrcTransform.toPcs(profile);
+        }
+        Random random = new Random(42);
+        packed = new int[PIXELS];
+        packedOut = new int[PIXELS];
+        floats = new float[PIXELS * 3];
+        floatsOut = new float[PIXELS * 3];
+        for (int i = 0; i < PIXELS; i++) {
+            packed[i] = random.nextInt();
+        }
+        for (int i = 0; i < floats.length; i++) {
+            floats[i] = random.nextFloat();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PIXELS)
+    public int[] packedRgbToRgb() {
+        rgbToRgb.transform(packed, 0, packedOut, 0, PIXELS);
+        return packedOut;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PIXELS)
+    public float[] floatRgbToRgb() {
+        rgbToRgb.transform(floats, 0, floatsOut, 0, PIXELS);
+        return floatsOut;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PIXELS)
+    public float[] floatRgbToPcs() {
+        rgbToPcs.transform(floats, 0, floatsOut, 0, PIXELS);
+        return floatsOut;
+    }
+}
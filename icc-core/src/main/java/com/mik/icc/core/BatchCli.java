@@ -0,0 +1,515 @@
+package com.mik.icc.core;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+// Headless entry point for bulk profile operations, never touches JavaFX
+public final class BatchCli {
+
+    static final int EXIT_OK = 0;
+    static final int EXIT_FAILURES = 1;
+    static final int EXIT_USAGE = 2;
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: icc-batch <command> [options] <file-or-directory>...",
+            "",
+            "Commands:",
+            "  dump                                  Print the header and all tags of each profile",
+            "  validate                              Check the structure of each profile",
+            "  replace-media --search S --replace R  Replace a media name in desc/MMK1/MMK2 (UTF-8 and UTF-16);",
+            "        [--all-tags] [--relayout]       --all-tags searches every tag, --relayout allows a",
+            "                                        longer replacement instead of NUL-padding a shorter one",
+            "  copy-tags --template FILE             Copy matching tags from a template profile",
+            "  convert-cxf                           Write DevS/CIED tags from the embedded CxF measurement data",
+            "  verify-id                             Check the MD5 Profile ID of each profile",
+            "  update-id                             Write the Profile ID where it is missing or wrong (v4 only)",
+            "  diff OLD NEW                          Compare two profiles, or the profiles of two directory trees",
+            "  index --index FILE [--watch]          Add new and changed profiles to a library index;",
+            "                                        --watch keeps it current from file system events",
+            "  query --index FILE [filters]          List indexed profiles matching all filters:",
+            "        --class C --color-space S --manufacturer M --model M --tag SIG (repeatable)",
+            "  convert-image IN OUT                  Convert a PNG/TIFF image and report throughput and memory:",
+            "        --link FILE | --source-profile FILE --dest-profile FILE",
+            "        [--tile N[,N...]] [--cache N]   through the A2B0 of a device link or between two profiles,",
+            "                                        once per tile size (default: 256); --cache memoizes up",
+            "                                        to N colors of 8-bit images",
+            "  make-link OUT                         Sample two profiles into a device link profile:",
+            "        --source-profile FILE --dest-profile FILE [--grid N] [--intent N]",
+            "                                        N grid points per input (default: 33, 17 for CMYK),",
+            "                                        rendering intent 0..2 (default: 0)",
+            "  rebuild-b2a [--grid N]                Regenerate the B2A0..2 tables by inverting each A2B table,",
+            "                                        N grid points per PCS channel (default: 33); out-of-gamut",
+            "                                        colors keep lightness and hue",
+            "",
+            "Options:",
+            "  --threads N                           Worker threads (default: available processors)",
+            "  --debounce MS                         Quiet time before a watched batch is indexed (default: 500)",
+            "",
+            "Directories are searched recursively for *.icc and *.icm files.");
+
+    private final PrintStream out;
+    private final PrintStream err;
+
+    BatchCli(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+
+    public static void main(String[] args) {
+        System.exit(new BatchCli(System.out, System.err).run(args));
+    }
+
+    int run(String[] args) {
+        if (args.length == 0 || args[0].equals("--help") || args[0].equals("-h")) {
+            out.println(USAGE);
+            return args.length == 0 ? EXIT_USAGE : EXIT_OK;
+        }
+        String command = args[0];
+        int threads = Runtime.getRuntime().availableProcessors();
+        String search = null;
+        String replace = null;
+        String template = null;
+        String indexFile = null;
+        String link = null;
+        String sourceProfile = null;
+        String destinationProfile = null;
+        String tileSizes = "256";
+        int cacheSize = 0;
+        int gridPoints = 0;
+        int intent = ProfileTransforms.PERCEPTUAL;
+        boolean watch = false;
+        boolean allTags = false;
+        boolean relayout = false;
+        long debounceMillis = 500;
+        IndexQuery query = new IndexQuery();
+        List<Path> paths = new ArrayList<>();
+
+        try {
+            for (int i = 1; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--threads":
+                        threads = Integer.parseInt(optionValue(args, ++i, "--threads"));
+                        break;
+                    case "--search":
+                        search = optionValue(args, ++i, "--search");
+                        break;
+                    case "--replace":
+                        replace = optionValue(args, ++i, "--replace");
+                        break;
+                    case "--template":
+                        template = optionValue(args, ++i, "--template");
+                        break;
+                    case "--index":
+                        indexFile = optionValue(args, ++i, "--index");
+                        break;
+                    case "--link":
+                        link = optionValue(args, ++i, "--link");
+                        break;
+                    case "--source-profile":
+                        sourceProfile = optionValue(args, ++i, "--source-profile");
+                        break;
+                    case "--dest-profile":
+                        destinationProfile = optionValue(args, ++i, "--dest-profile");
+                        break;
+                    case "--tile":
+                        tileSizes = optionValue(args, ++i, "--tile");
+                        break;
+                    case "--cache":
+                        cacheSize = Integer.parseInt(optionValue(args, ++i, "--cache"));
+                        break;
+                    case "--grid":
+                        gridPoints = Integer.parseInt(optionValue(args, ++i, "--grid"));
+                        break;
+                    case "--intent":
+                        intent = Integer.parseInt(optionValue(args, ++i, "--intent"));
+                        break;
+                    case "--all-tags":
+                        allTags = true;
+                        break;
+                    case "--relayout":
+                        relayout = true;
+                        break;
+                    case "--watch":
+                        watch = true;
+                        break;
+                    case "--debounce":
+                        debounceMillis = Long.parseLong(optionValue(args, ++i, "--debounce"));
+                        break;
+                    case "--class":
+                        query.deviceClass(signatureValue(args, ++i, "--class"));
+                        break;
+                    case "--color-space":
+                        query.colorSpace(signatureValue(args, ++i, "--color-space"));
+                        break;
+                    case "--manufacturer":
+                        query.manufacturer(signatureValue(args, ++i, "--manufacturer"));
+                        break;
+                    case "--model":
+                        query.model(signatureValue(args, ++i, "--model"));
+                        break;
+                    case "--tag":
+                        query.withTag(signatureValue(args, ++i, "--tag"));
+                        break;
+                    default:
+                        if (args[i].startsWith("--")) {
+                            throw new IllegalArgumentException("Unknown option " + args[i]);
+                        }
+                        paths.add(Path.of(args[i]));
+                }
+            }
+            if (command.equals("diff") && paths.size() != 2) {
+                throw new IllegalArgumentException("diff needs two files or two directories");
+            }
+            if (command.equals("convert-image") && paths.size() != 2) {
+                throw new IllegalArgumentException("convert-image needs an input and an output image");
+            }
+            if (command.equals("make-link") && paths.size() != 1) {
+                throw new IllegalArgumentException("make-link needs one output file");
+            }
+            if (paths.isEmpty() && !command.equals("query")) {
+                throw new IllegalArgumentException("No input files or directories given");
+            }
+
+            switch (command) {
+                case "dump":
+                    return execute(threads, paths, BatchCli::dump);
+                case "validate":
+                    return execute(threads, paths, BatchCli::validate);
+                case "replace-media":
+                    if (search == null || search.isEmpty() || replace == null) {
+                        throw new IllegalArgumentException("replace-media needs --search and --replace");
+                    }
+                    // One automaton shared by all workers
+                    ByteReplacer replacer = new ByteReplacer(search, replace,
+                            relayout ? ByteReplacer.Mode.RELAYOUT : ByteReplacer.Mode.PAD);
+                    boolean everyTag = allTags;
+                    return execute(threads, paths, (profile, message) -> replaceMedia(profile, message, replacer, everyTag));
+                case "copy-tags":
+                    if (template == null) {
+                        throw new IllegalArgumentException("copy-tags needs --template");
+                    }
+                    try (ICCProfile templateProfile = ICCProfile.openReadOnly(template)) {
+                        return execute(threads, paths, (profile, message) -> copyTags(templateProfile, profile, message));
+                    }
+                case "convert-cxf":
+                    return execute(threads, paths, BatchCli::convertCxf);
+                case "verify-id":
+                    return execute(threads, paths, BatchCli::verifyId);
+                case "update-id":
+                    return execute(threads, paths, BatchCli::updateId);
+                case "diff":
+                    return diff(threads, paths.get(0), paths.get(1));
+                case "index":
+                    int exit = index(threads, requireIndex(indexFile, command), paths);
+                    return watch ? watch(threads, Path.of(indexFile), paths, debounceMillis) : exit;
+                case "query":
+                    return query(requireIndex(indexFile, command), query);
+                case "convert-image":
+                    return convertImage(threads, imageTransform(link, sourceProfile, destinationProfile),
+                            tileSizes, cacheSize, paths.get(0), paths.get(1));
+                case "make-link":
+                    return makeLink(threads, sourceProfile, destinationProfile, gridPoints, intent, paths.get(0));
+                case "rebuild-b2a":
+                    return rebuildBToA(threads, gridPoints, paths);
+                default:
+                    throw new IllegalArgumentException("Unknown command " + command);
+            }
+        } catch (IllegalArgumentException e) {
+            err.println("Error: " + e.getMessage());
+            err.println(USAGE);
+            return EXIT_USAGE;
+        } catch (IOException e) {
+            err.println("Error: " + e.getMessage());
+            return EXIT_FAILURES;
+        }
+    }
+
+    private int execute(int threads, List<Path> paths, BatchProcessor.ProfileTask task) throws IOException {
+        return execute(threads, threads, paths, task);
+    }
+
+    private int execute(int threads, int fileThreads, List<Path> paths, BatchProcessor.ProfileTask task)
+            throws IOException {
+        long start = System.nanoTime();
+        List<Path> files = BatchProcessor.collectProfiles(paths);
+        List<BatchResult> results = new BatchProcessor(fileThreads).process(files, task, out::println);
+
+        long changed = results.stream().filter(r -> r.getStatus() == BatchResult.Status.CHANGED).count();
+        long failed = results.stream().filter(BatchResult::isFailed).count();
+        out.printf("%d files, %d changed, %d failed in %.1f ms (%d threads)%n", results.size(), changed, failed,
+                (System.nanoTime() - start) / 1_000_000.0, threads);
+        return failed == 0 ? EXIT_OK : EXIT_FAILURES;
+    }
+
+    // Profiles of the two trees are paired by relative path; every pair is compared on the worker pool
+    private int diff(int threads, Path before, Path after) throws IOException {
+        if (Files.isRegularFile(before) && Files.isRegularFile(after)) {
+            return execute(threads, List.of(after), (profile, message) -> diffProfile(before, profile, message));
+        }
+        if (!Files.isDirectory(before) || !Files.isDirectory(after)) {
+            throw new IllegalArgumentException("diff needs two files or two directories");
+        }
+        Set<Path> relativePaths = new TreeSet<>();
+        for (Path file : BatchProcessor.collectProfiles(List.of(before))) {
+            relativePaths.add(before.relativize(file));
+        }
+        for (Path file : BatchProcessor.collectProfiles(List.of(after))) {
+            relativePaths.add(after.relativize(file));
+        }
+        // Each file is processed once: the new version if there is one, otherwise the removed old one
+        Map<Path, Path> previousVersions = new HashMap<>();
+        Set<Path> removed = new HashSet<>();
+        List<Path> files = new ArrayList<>();
+        for (Path relative : relativePaths) {
+            Path oldFile = before.resolve(relative);
+            Path newFile = after.resolve(relative);
+            if (Files.isRegularFile(newFile)) {
+                files.add(newFile);
+                if (Files.isRegularFile(oldFile)) {
+                    previousVersions.put(newFile, oldFile);
+                }
+            } else {
+                files.add(oldFile);
+                removed.add(oldFile);
+            }
+        }
+        return execute(threads, files, (profile, message) -> {
+            Path file = Path.of(profile.getFilePath());
+            if (removed.contains(file)) {
+                message.append("removed");
+                return BatchResult.Status.CHANGED;
+            }
+            Path oldFile = previousVersions.get(file);
+            if (oldFile == null) {
+                message.append("added");
+                return BatchResult.Status.CHANGED;
+            }
+            return diffProfile(oldFile, profile, message);
+        });
+    }
+
+    private static BatchResult.Status diffProfile(Path oldFile, ICCProfile profile, StringBuilder message)
+            throws IOException {
+        ProfileDiff diff;
+        try (ICCProfile oldProfile = ICCProfile.openReadOnly(oldFile.toString())) {
+            diff = ProfileDiff.compare(oldProfile, profile);
+        }
+        if (diff.isEmpty()) {
+            message.append("identical");
+            return BatchResult.Status.OK;
+        }
+        StringWriter buffer = new StringWriter();
+        try (PrintWriter writer = new PrintWriter(buffer)) {
+            diff.print(writer);
+        }
+        // Always below the summary line, even for a single difference
+        message.append("changed").append(System.lineSeparator()).append(buffer.toString().stripTrailing());
+        return BatchResult.Status.CHANGED;
+    }
+
+    private int index(int threads, Path indexFile, List<Path> paths) throws IOException {
+        long start = System.nanoTime();
+        ProfileIndex index = ProfileIndex.loadOrCreate(indexFile);
+        ProfileIndexer.Summary summary = new ProfileIndexer(threads).update(index, paths);
+        index.save(indexFile);
+        summary.getFailures().forEach(out::println);
+        out.printf("%d profiles indexed: %s in %.1f ms (%d threads)%n", index.size(), summary,
+                (System.nanoTime() - start) / 1_000_000.0, threads);
+        return summary.getFailures().isEmpty() ? EXIT_OK : EXIT_FAILURES;
+    }
+
+    // Runs until the process is stopped; the index file is rewritten after every batch
+    private int watch(int threads, Path indexFile, List<Path> paths, long debounceMillis) throws IOException {
+        ProfileIndex index = ProfileIndex.load(indexFile);
+        Consumer<ProfileIndexer.Summary> onBatch = summary -> {
+            summary.getFailures().forEach(out::println);
+            try {
+                index.save(indexFile);
+                out.printf("%d profiles indexed: %s%n", index.size(), summary);
+            } catch (IOException e) {
+                err.println("Error: could not save " + indexFile + ": " + e.getMessage());
+            }
+        };
+        try (ProfileIndexWatcher watcher = new ProfileIndexWatcher(index, new ProfileIndexer(threads), paths,
+                debounceMillis, onBatch)) {
+            out.println("Watching " + paths.size() + (paths.size() == 1 ? " directory" : " directories")
+                    + " for changes, press Ctrl+C to stop");
+            watcher.run();
+        }
+        return EXIT_OK;
+    }
+
+    private int query(Path indexFile, IndexQuery query) throws IOException {
+        for (IndexEntry entry : ProfileIndex.load(indexFile).query(query)) {
+            out.println(entry.getPath());
+        }
+        return EXIT_OK;
+    }
+
+    // Converts the image once per tile size, each run with an empty cache; each run overwrites the output
+    private int convertImage(int threads, ColorTransform transform, String tileSizes, int cacheSize, Path input,
+                             Path output) throws IOException {
+        for (String size : tileSizes.split(",")) {
+            CachedTransform cache = cacheSize > 0 ? new CachedTransform(transform, cacheSize) : null;
+            ImageConverter converter = new ImageConverter(cache != null ? cache : transform,
+                    Integer.parseInt(size.trim()), threads);
+            ImageConverter.Stats stats = converter.convert(input, output);
+            if (cache != null) {
+                out.printf(Locale.ROOT, "%s, cache hit rate %.1f%% (%d threads)%n", stats, cache.getHitRate() * 100,
+                        threads);
+            } else {
+                out.printf("%s (%d threads)%n", stats, threads);
+            }
+        }
+        return EXIT_OK;
+    }
+
+    private static ColorTransform imageTransform(String link, String sourceProfile, String destinationProfile)
+            throws IOException {
+        if (link != null) {
+            try (ICCProfile profile = ICCProfile.openReadOnly(link)) {
+                return LutTransform.of(profile, Signatures.A2B0);
+            }
+        }
+        if (sourceProfile == null || destinationProfile == null) {
+            throw new IllegalArgumentException("convert-image needs --link, or --source-profile and --dest-profile");
+        }
+        try (ICCProfile source = ICCProfile.openReadOnly(sourceProfile);
+             ICCProfile destination = ICCProfile.openReadOnly(destinationProfile)) {
+            return ProfileTransforms.between(source, destination, ProfileTransforms.PERCEPTUAL);
+        }
+    }
+
+    private int makeLink(int threads, String sourceProfile, String destinationProfile, int gridPoints, int intent,
+                         Path output) throws IOException {
+        if (sourceProfile == null || destinationProfile == null) {
+            throw new IllegalArgumentException("make-link needs --source-profile and --dest-profile");
+        }
+        DeviceLinkBuilder builder = new DeviceLinkBuilder(threads).intent(intent);
+        if (gridPoints != 0) {
+            builder.gridPoints(gridPoints);
+        }
+        try (ICCProfile source = ICCProfile.openReadOnly(sourceProfile);
+             ICCProfile destination = ICCProfile.openReadOnly(destinationProfile)) {
+            long start = System.nanoTime();
+            builder.write(source, destination, output);
+            out.printf(Locale.ROOT, "%s: %s to %s in %.1f ms (%d threads)%n", output, source.getHeader().getColorSpace(),
+                    destination.getHeader().getColorSpace(), (System.nanoTime() - start) / 1e6, threads);
+        }
+        return EXIT_OK;
+    }
+
+    // One profile at a time; the grid of each table is split across all workers
+    private int rebuildBToA(int threads, int gridPoints, List<Path> paths) throws IOException {
+        LutInverter inverter = new LutInverter(threads);
+        if (gridPoints != 0) {
+            inverter.gridPoints(gridPoints);
+        }
+        return execute(threads, 1, paths, (profile, message) -> {
+            List<LutInverter.Result> results = inverter.rebuild(profile);
+            message.append(results.stream().map(LutInverter.Result::toString).collect(Collectors.joining("; ")));
+            return BatchResult.Status.CHANGED;
+        });
+    }
+
+    private static Path requireIndex(String indexFile, String command) {
+        if (indexFile == null) {
+            throw new IllegalArgumentException(command + " needs --index");
+        }
+        return Path.of(indexFile);
+    }
+
+    private static BatchResult.Status dump(ICCProfile profile, StringBuilder message) throws IOException {
+        StringWriter buffer = new StringWriter();
+        try (PrintWriter writer = new PrintWriter(buffer)) {
+            ProfileOperations.dump(profile, writer);
+        }
+        message.append(buffer.toString().stripTrailing());
+        return BatchResult.Status.OK;
+    }
+
+    private static BatchResult.Status validate(ICCProfile profile, StringBuilder message) {
+        List<String> problems = ProfileValidator.validate(profile);
+        message.append(String.join("; ", problems));
+        return problems.isEmpty() ? BatchResult.Status.OK : BatchResult.Status.FAILED;
+    }
+
+    private static BatchResult.Status replaceMedia(ICCProfile profile, StringBuilder message, ByteReplacer replacer,
+                                                   boolean allTags) throws IOException {
+        int changed = ProfileOperations.replaceMediaName(profile, replacer, allTags);
+        message.append(changed).append(changed == 1 ? " tag changed" : " tags changed");
+        return changed > 0 ? BatchResult.Status.CHANGED : BatchResult.Status.OK;
+    }
+
+    private static BatchResult.Status copyTags(ICCProfile template, ICCProfile profile, StringBuilder message)
+            throws IOException {
+        int copied = ProfileOperations.copyTags(template, profile);
+        message.append(copied).append(copied == 1 ? " tag copied" : " tags copied");
+        return copied > 0 ? BatchResult.Status.CHANGED : BatchResult.Status.OK;
+    }
+
+    private static BatchResult.Status convertCxf(ICCProfile profile, StringBuilder message) throws IOException {
+        CxfConverter.Result result = ProfileOperations.convertCxf(profile);
+        if (result == null) {
+            message.append("no CxF tag");
+            return BatchResult.Status.OK;
+        }
+        message.append(result);
+        return BatchResult.Status.CHANGED;
+    }
+
+    private static BatchResult.Status verifyId(ICCProfile profile, StringBuilder message) throws IOException {
+        ProfileId.Status status = profile.verifyProfileId();
+        switch (status) {
+            case VALID:
+                message.append("Profile ID ").append(ProfileId.toHex(profile.getHeader().getProfileId()));
+                return BatchResult.Status.OK;
+            case MISSING:
+                message.append("no Profile ID");
+                return BatchResult.Status.OK;
+            default:
+                message.append("Profile ID mismatch: stored ").append(ProfileId.toHex(profile.getHeader().getProfileId()))
+                        .append(", computed ").append(ProfileId.toHex(profile.computeProfileId()));
+                return BatchResult.Status.FAILED;
+        }
+    }
+
+    private static BatchResult.Status updateId(ICCProfile profile, StringBuilder message) throws IOException {
+        if (profile.getHeader().getVersionMajor() < 4) {
+            message.append("version ").append(profile.getHeader().getVersion()).append(" profiles have no Profile ID");
+            return BatchResult.Status.OK;
+        }
+        boolean changed = ProfileOperations.updateProfileId(profile);
+        message.append("Profile ID ").append(ProfileId.toHex(profile.getHeader().getProfileId()));
+        return changed ? BatchResult.Status.CHANGED : BatchResult.Status.OK;
+    }
+
+    private static String signatureValue(String[] args, int index, String option) {
+        String value = optionValue(args, index, option);
+        if (value.length() > 4) {
+            throw new IllegalArgumentException(option + " takes a signature of at most 4 characters: " + value);
+        }
+        return value;
+    }
+
+    private static String optionValue(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+        return args[index];
+    }
+}
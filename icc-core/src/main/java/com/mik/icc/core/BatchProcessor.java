@@ -0,0 +1,115 @@
+package com.mik.icc.core;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Runs a profile task over every ICC profile below a set of paths on a fixed worker pool
+public class BatchProcessor {
+
+    @FunctionalInterface
+    public interface ProfileTask {
+        // Returns the outcome for the file; a thrown exception marks the file as failed
+        BatchResult.Status apply(ICCProfile profile, StringBuilder message) throws IOException;
+    }
+
+    private final int threads;
+
+    public BatchProcessor(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Worker count must be at least 1: " + threads);
+        }
+        this.threads = threads;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public static List<Path> collectProfiles(List<Path> roots) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (Path root : roots) {
+            if (Files.isDirectory(root)) {
+                try (Stream<Path> walk = Files.walk(root)) {
+                    files.addAll(walk.filter(Files::isRegularFile).filter(BatchProcessor::isProfileFile)
+                            .sorted().collect(Collectors.toList()));
+                }
+            } else if (Files.isRegularFile(root)) {
+                files.add(root);
+            } else {
+                throw new IOException("No such file or directory: " + root);
+            }
+        }
+        return files;
+    }
+
+    public static boolean isProfileFile(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".icc") || name.endsWith(".icm");
+    }
+
+    // Results are handed to the consumer in input order as soon as they are available
+    public List<BatchResult> process(List<Path> files, ProfileTask task, Consumer<BatchResult> onResult) {
+        AtomicInteger threadCounter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, files.size())), r -> {
+            Thread thread = new Thread(r, "icc-batch-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<BatchResult>> futures = new ArrayList<>(files.size());
+            for (Path file : files) {
+                futures.add(executor.submit(() -> processFile(file, task)));
+            }
+            List<BatchResult> results = new ArrayList<>(files.size());
+            for (int i = 0; i < futures.size(); i++) {
+                BatchResult result = await(files.get(i), futures.get(i));
+                results.add(result);
+                if (onResult != null) {
+                    onResult.accept(result);
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public List<BatchResult> process(List<Path> files, ProfileTask task) {
+        return process(files, task, null);
+    }
+
+    private static BatchResult processFile(Path file, ProfileTask task) {
+        long start = System.nanoTime();
+        StringBuilder message = new StringBuilder();
+        try (ICCProfile profile = new ICCProfile(file.toString())) {
+            BatchResult.Status status = task.apply(profile, message);
+            return new BatchResult(file, status, message.toString(), System.nanoTime() - start);
+        } catch (IOException | RuntimeException e) {
+            return new BatchResult(file, BatchResult.Status.FAILED, String.valueOf(e.getMessage()),
+                    System.nanoTime() - start);
+        }
+    }
+
+    private static BatchResult await(Path file, Future<BatchResult> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new BatchResult(file, BatchResult.Status.FAILED, "Interrupted", 0);
+        } catch (ExecutionException e) {
+            return new BatchResult(file, BatchResult.Status.FAILED, String.valueOf(e.getCause()), 0);
+        }
+    }
+}
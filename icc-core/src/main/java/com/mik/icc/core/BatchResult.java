@@ -0,0 +1,54 @@
+package com.mik.icc.core;
+
+import java.nio.file.Path;
+
+public class BatchResult {
+
+    public enum Status {
+        OK,
+        CHANGED,
+        FAILED
+    }
+
+    private final Path file;
+    private final Status status;
+    private final String message;
+    private final long elapsedNanos;
+
+    public BatchResult(Path file, Status status, String message, long elapsedNanos) {
+        this.file = file;
+        this.status = status;
+        this.message = message;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public boolean isFailed() {
+        return status == Status.FAILED;
+    }
+
+    @Override
+    public String toString() {
+        String summary = String.format("%-7s %s (%.1f ms)", status, file, elapsedNanos / 1_000_000.0);
+        if (message == null || message.isEmpty()) {
+            return summary;
+        }
+        // Multi-line messages such as dumps go below the summary line
+        return summary + (message.indexOf('\n') >= 0 ? System.lineSeparator() : ": ") + message;
+    }
+}
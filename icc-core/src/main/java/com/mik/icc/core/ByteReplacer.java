@@ -0,0 +1,211 @@
+package com.mik.icc.core;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Replaces a text in raw tag bytes without decoding them. The search text is encoded in UTF-8, UTF-16LE and
+// UTF-16BE and all encodings are found in one pass with an Aho-Corasick automaton; each match is replaced by the
+// replacement text in the same encoding. UTF-16 matches only count at even offsets from the start of the data, so a
+// pattern cannot start on the second byte of a code unit. Instances are immutable and can be shared by batch workers.
+public final class ByteReplacer {
+
+    public static final List<Charset> ENCODINGS =
+            List.of(StandardCharsets.UTF_8, StandardCharsets.UTF_16LE, StandardCharsets.UTF_16BE);
+
+    public enum Mode {
+        // Shorter replacements are padded with NUL code units, so every tag keeps its length
+        PAD,
+        // Replacements keep their own length; the profile is laid out again when saved
+        RELAYOUT
+    }
+
+    private final String search;
+    private final String replace;
+    private final Mode mode;
+    private final byte[][] patterns;
+    private final byte[][] replacements;
+    // UTF-16 patterns, which only match on code unit boundaries
+    private final boolean[] aligned;
+    // Dense transition table, state * 256 + byte -> next state, failure links already folded in
+    private final int[] transitions;
+    // Longest pattern ending in a state (-1 if none) and the next state on the suffix chain that ends a pattern
+    private final int[] output;
+    private final int[] outputLink;
+
+    public ByteReplacer(String search, String replace, Mode mode) {
+        if (search == null || search.isEmpty()) {
+            throw new IllegalArgumentException("Search text must not be empty");
+        }
+        this.search = search;
+        this.replace = replace;
+        this.mode = mode;
+
+        List<byte[]> patternList = new ArrayList<>();
+        List<byte[]> replacementList = new ArrayList<>();
+        List<Boolean> alignedList = new ArrayList<>();
+        for (Charset encoding : ENCODINGS) {
+            byte[] pattern = search.getBytes(encoding);
+            byte[] replacement = replace.getBytes(encoding);
+            if (patternList.stream().anyMatch(p -> Arrays.equals(p, pattern))) {
+                continue;
+            }
+            if (replacement.length != pattern.length && mode == Mode.PAD) {
+                if (replacement.length > pattern.length) {
+                    throw new IllegalArgumentException("Replacement is longer than the search text in " + encoding
+                            + " (" + replacement.length + " > " + pattern.length + " bytes), padding is not possible");
+                }
+                replacement = Arrays.copyOf(replacement, pattern.length);
+            }
+            patternList.add(pattern);
+            replacementList.add(replacement);
+            alignedList.add(encoding != StandardCharsets.UTF_8);
+        }
+        this.patterns = patternList.toArray(new byte[0][]);
+        this.replacements = replacementList.toArray(new byte[0][]);
+        this.aligned = new boolean[alignedList.size()];
+        for (int p = 0; p < aligned.length; p++) {
+            aligned[p] = alignedList.get(p);
+        }
+
+        int maxStates = 1;
+        for (byte[] pattern : patterns) {
+            maxStates += pattern.length;
+        }
+        transitions = new int[maxStates * 256];
+        Arrays.fill(transitions, -1);
+        output = new int[maxStates];
+        Arrays.fill(output, -1);
+        outputLink = new int[maxStates];
+        int states = 1;
+        for (int p = 0; p < patterns.length; p++) {
+            int state = 0;
+            for (byte b : patterns[p]) {
+                int index = state * 256 + (b & 0xFF);
+                if (transitions[index] < 0) {
+                    transitions[index] = states++;
+                }
+                state = transitions[index];
+            }
+            if (output[state] < 0 || patterns[output[state]].length < patterns[p].length) {
+                output[state] = p;
+            }
+        }
+
+        // Breadth-first: failure links of shallower states are final before deeper ones need them
+        int[] failure = new int[states];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int b = 0; b < 256; b++) {
+            int next = transitions[b];
+            if (next < 0) {
+                transitions[b] = 0;
+            } else {
+                failure[next] = 0;
+                outputLink[next] = -1;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int b = 0; b < 256; b++) {
+                int index = state * 256 + b;
+                int next = transitions[index];
+                int fallback = transitions[failure[state] * 256 + b];
+                if (next < 0) {
+                    transitions[index] = fallback;
+                } else {
+                    failure[next] = fallback;
+                    outputLink[next] = output[fallback] >= 0 ? fallback : outputLink[fallback];
+                    queue.add(next);
+                }
+            }
+        }
+    }
+
+    public String getSearch() {
+        return search;
+    }
+
+    public String getReplace() {
+        return replace;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    // Replaced copy of the remaining bytes, or null when the search text does not occur in any encoding
+    public byte[] replace(ByteBuffer data) {
+        long[] matches = findMatches(data);
+        if (matches.length == 0) {
+            return null;
+        }
+        int start = data.position();
+        int end = data.limit();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(end - start);
+        int copied = start;
+        for (long match : matches) {
+            int matchStart = start + (int) (match >>> 32);
+            int pattern = (int) match;
+            writeRange(out, data, copied, matchStart);
+            out.writeBytes(replacements[pattern]);
+            copied = matchStart + patterns[pattern].length;
+        }
+        writeRange(out, data, copied, end);
+        return out.toByteArray();
+    }
+
+    public byte[] replace(byte[] data) {
+        return replace(ByteBuffer.wrap(data));
+    }
+
+    public int countMatches(ByteBuffer data) {
+        return findMatches(data).length;
+    }
+
+    // Non-overlapping matches as (offset << 32 | pattern), leftmost first and the longest of those starting together
+    private long[] findMatches(ByteBuffer data) {
+        int start = data.position();
+        int end = data.limit();
+        List<long[]> found = new ArrayList<>();
+        int state = 0;
+        for (int i = start; i < end; i++) {
+            state = transitions[state * 256 + (data.get(i) & 0xFF)];
+            for (int s = output[state] >= 0 ? state : outputLink[state]; s > 0; s = outputLink[s]) {
+                int pattern = output[s];
+                int offset = i - start - patterns[pattern].length + 1;
+                if (!aligned[pattern] || offset % 2 == 0) {
+                    found.add(new long[] {offset, pattern});
+                }
+            }
+        }
+        if (found.isEmpty()) {
+            return new long[0];
+        }
+        found.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0])
+                : Integer.compare(patterns[(int) b[1]].length, patterns[(int) a[1]].length));
+        long[] matches = new long[found.size()];
+        int count = 0;
+        long nextFree = 0;
+        for (long[] match : found) {
+            if (match[0] >= nextFree) {
+                matches[count++] = (match[0] << 32) | match[1];
+                nextFree = match[0] + patterns[(int) match[1]].length;
+            }
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    private static void writeRange(ByteArrayOutputStream out, ByteBuffer data, int from, int to) {
+        if (to > from) {
+            byte[] chunk = new byte[to - from];
+            data.get(from, chunk);
+            out.writeBytes(chunk);
+        }
+    }
+}
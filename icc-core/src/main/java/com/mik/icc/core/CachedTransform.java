@@ -0,0 +1,242 @@
+package com.mik.icc.core;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Memoizes a ColorTransform for 8-bit pixels, for images with few distinct colors such as flat vector art. Up to
+// four input channels are packed into an int key and up to four 8-bit results into an int value; both share one
+// long slot of an open-addressing table, so entries are published atomically and no locks are needed. The table
+// never grows: when the probe window of a key is full its home slot is overwritten. Misses are collected and
+// converted by the delegate in batches. Float pixels go straight to the delegate.
+public final class CachedTransform implements ColorTransform {
+
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    // Slots probed after the home slot before it is replaced
+    static final int PROBES = 8;
+    static final int BATCH = 256;
+    // Marks empty slots; the one entry with this bit pattern is simply never cached
+    private static final long EMPTY = -1L;
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private final ColorTransform delegate;
+    private final int inputChannels;
+    private final int outputChannels;
+    private final boolean packed;
+    private final AtomicLongArray slots;
+    private final int mask;
+    private final int shift;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public CachedTransform(ColorTransform delegate) {
+        this(delegate, DEFAULT_CAPACITY);
+    }
+
+    // The capacity is rounded up to a power of two, at least 2
+    public CachedTransform(ColorTransform delegate, int capacity) {
+        if (delegate.getInputChannels() > 4 || delegate.getOutputChannels() > 4) {
+            throw new IllegalArgumentException("Only transforms with up to 4 input and output channels can be cached");
+        }
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Cache capacity out of range: " + capacity);
+        }
+        this.delegate = delegate;
+        this.inputChannels = delegate.getInputChannels();
+        this.outputChannels = delegate.getOutputChannels();
+        this.packed = delegate.supportsPackedRgb();
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slots.set(i, EMPTY);
+        }
+        this.mask = size - 1;
+        this.shift = 32 - Integer.numberOfTrailingZeros(size);
+    }
+
+    public ColorTransform getDelegate() {
+        return delegate;
+    }
+
+    public int getCapacity() {
+        return slots.length();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    // Share of cached pixel lookups that were hits, 0 before the first lookup
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    public void resetStatistics() {
+        hits.reset();
+        misses.reset();
+    }
+
+    @Override
+    public int getInputChannels() {
+        return inputChannels;
+    }
+
+    @Override
+    public int getOutputChannels() {
+        return outputChannels;
+    }
+
+    @Override
+    public boolean supportsPackedRgb() {
+        return packed;
+    }
+
+    @Override
+    public void transform(float[] in, int inOffset, float[] out, int outOffset, int pixelCount) {
+        delegate.transform(in, inOffset, out, outOffset, pixelCount);
+    }
+
+    @Override
+    public void transform(int[] in, int inOffset, int[] out, int outOffset, int pixelCount) {
+        if (!packed) {
+            ColorTransform.super.transform(in, inOffset, out, outOffset, pixelCount);
+            return;
+        }
+        Scratch scratch = SCRATCH.get();
+        long hitCount = 0;
+        for (int done = 0; done < pixelCount; done += BATCH) {
+            int count = Math.min(BATCH, pixelCount - done);
+            int missCount = 0;
+            for (int p = 0; p < count; p++) {
+                int key = in[inOffset + done + p] & 0xFFFFFF;
+                long slot = find(key);
+                if (slot != EMPTY) {
+                    out[outOffset + done + p] = (in[inOffset + done + p] & 0xFF000000) | (int) slot;
+                } else {
+                    scratch.keys[missCount] = key;
+                    scratch.positions[missCount++] = p;
+                }
+            }
+            hitCount += count - missCount;
+            if (missCount > 0) {
+                delegate.transform(scratch.keys, 0, scratch.packed, 0, missCount);
+                for (int m = 0; m < missCount; m++) {
+                    int value = scratch.packed[m] & 0xFFFFFF;
+                    store(scratch.keys[m], value);
+                    int i = done + scratch.positions[m];
+                    out[outOffset + i] = (in[inOffset + i] & 0xFF000000) | value;
+                }
+            }
+        }
+        count(hitCount, pixelCount);
+    }
+
+    // Interleaved 8-bit pixels in the delegate's channel counts; out may be in when the counts match
+    public void transform(byte[] in, int inOffset, byte[] out, int outOffset, int pixelCount) {
+        Scratch scratch = SCRATCH.get();
+        long hitCount = 0;
+        for (int done = 0; done < pixelCount; done += BATCH) {
+            int count = Math.min(BATCH, pixelCount - done);
+            int missCount = 0;
+            for (int p = 0; p < count; p++) {
+                int i = inOffset + (done + p) * inputChannels;
+                int key = 0;
+                for (int c = 0; c < inputChannels; c++) {
+                    key = key << 8 | in[i + c] & 0xFF;
+                }
+                long slot = find(key);
+                if (slot != EMPTY) {
+                    unpack((int) slot, out, outOffset + (done + p) * outputChannels);
+                } else {
+                    scratch.keys[missCount] = key;
+                    scratch.positions[missCount] = p;
+                    for (int c = 0; c < inputChannels; c++) {
+                        scratch.in[missCount * inputChannels + c] = (in[i + c] & 0xFF) / 255f;
+                    }
+                    missCount++;
+                }
+            }
+            hitCount += count - missCount;
+            if (missCount > 0) {
+                delegate.transform(scratch.in, 0, scratch.out, 0, missCount);
+                for (int m = 0; m < missCount; m++) {
+                    int value = 0;
+                    for (int c = 0; c < outputChannels; c++) {
+                        value = value << 8 | MatrixTrcTransform.to8Bit(clamp(scratch.out[m * outputChannels + c]));
+                    }
+                    store(scratch.keys[m], value);
+                    unpack(value, out, outOffset + (done + scratch.positions[m]) * outputChannels);
+                }
+            }
+        }
+        count(hitCount, pixelCount);
+    }
+
+    private void count(long hitCount, int pixelCount) {
+        hits.add(hitCount);
+        misses.add(pixelCount - hitCount);
+    }
+
+    private void unpack(int value, byte[] out, int o) {
+        for (int c = outputChannels - 1; c >= 0; c--) {
+            out[o + c] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private int home(int key) {
+        return (key * 0x9E3779B9) >>> shift;
+    }
+
+    // The slot holding key, or EMPTY on a miss
+    private long find(int key) {
+        int index = home(key);
+        for (int probe = 0; probe <= PROBES; probe++) {
+            long slot = slots.getAcquire((index + probe) & mask);
+            if (slot == EMPTY) {
+                return EMPTY;
+            }
+            if ((int) (slot >>> 32) == key) {
+                return slot;
+            }
+        }
+        return EMPTY;
+    }
+
+    // Racing stores of the same key write the same value, so a duplicate entry is harmless
+    private void store(int key, int value) {
+        long entry = (long) key << 32 | value & 0xFFFFFFFFL;
+        if (entry == EMPTY) {
+            return;
+        }
+        int index = home(key);
+        for (int probe = 0; probe <= PROBES; probe++) {
+            int i = (index + probe) & mask;
+            long slot = slots.getAcquire(i);
+            if (slot == EMPTY || (int) (slot >>> 32) == key) {
+                slots.setRelease(i, entry);
+                return;
+            }
+        }
+        slots.setRelease(index, entry);
+    }
+
+    private static float clamp(float value) {
+        return value > 0f ? (value < 1f ? value : 1f) : 0f;
+    }
+
+    private static final class Scratch {
+        final int[] keys = new int[BATCH];
+        final int[] positions = new int[BATCH];
+        final int[] packed = new int[BATCH];
+        final float[] in = new float[BATCH * 4];
+        final float[] out = new float[BATCH * 4];
+    }
+}
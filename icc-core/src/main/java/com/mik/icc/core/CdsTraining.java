@@ -0,0 +1,89 @@
+package com.mik.icc.core;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+// Training run for the AppCDS archive (mvn -Pcds package): exercises the parse, decode and batch paths once
+public final class CdsTraining {
+
+    private CdsTraining() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Files.createTempDirectory("icc-cds");
+        Path file = directory.resolve("training.icc");
+        try {
+            Files.write(file, trainingProfile());
+            try (PrintWriter out = new PrintWriter(Writer.nullWriter())) {
+                try (ICCProfile profile = ICCProfile.openReadOnly(file.toString())) {
+                    ProfileOperations.dump(profile, out);
+                    ProfileValidator.validate(profile);
+                }
+                List<BatchResult> results = new BatchProcessor(2).process(List.of(file, file),
+                        (profile, message) -> ProfileValidator.validate(profile).isEmpty()
+                                ? BatchResult.Status.OK : BatchResult.Status.FAILED);
+                results.forEach(out::println);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    // A small display profile with one tag of each decoded type
+    private static byte[] trainingProfile() {
+        String[] signatures = {"desc", "wtpt", "rTRC", "cprt", "MMK1"};
+        byte[][] elements = {
+                element("mluc", ByteBuffer.allocate(20).putInt(1).putInt(12).put("enUS".getBytes(StandardCharsets.US_ASCII))
+                        .putInt(28).putInt(4).array(), "Tr".getBytes(StandardCharsets.UTF_16BE)),
+                element("XYZ ", ByteBuffer.allocate(12).putInt(0xF6D6).putInt(0x10000).putInt(0xD32D).array()),
+                element("curv", ByteBuffer.allocate(4 + 2 * 256).putInt(256).array()),
+                element("text", "Training".getBytes(StandardCharsets.US_ASCII)),
+                "MEDIA".getBytes(StandardCharsets.US_ASCII)
+        };
+
+        int offset = 128 + 4 + 12 * signatures.length;
+        int size = offset;
+        for (byte[] element : elements) {
+            size += (element.length + 3) & ~3;
+        }
+        ByteBuffer profile = ByteBuffer.allocate(size).order(ByteOrder.BIG_ENDIAN);
+        profile.putInt(0, size);
+        profile.put(8, (byte) 4);
+        profile.put(12, "mntr".getBytes(StandardCharsets.US_ASCII));
+        profile.put(16, "RGB ".getBytes(StandardCharsets.US_ASCII));
+        profile.put(20, "XYZ ".getBytes(StandardCharsets.US_ASCII));
+        profile.putShort(24, (short) 2024).putShort(26, (short) 1).putShort(28, (short) 1);
+        profile.put(36, "acsp".getBytes(StandardCharsets.US_ASCII));
+        profile.putInt(128, signatures.length);
+        for (int i = 0; i < signatures.length; i++) {
+            int entry = 132 + 12 * i;
+            profile.put(entry, signatures[i].getBytes(StandardCharsets.US_ASCII));
+            profile.putInt(entry + 4, offset);
+            profile.putInt(entry + 8, elements[i].length);
+            profile.put(offset, elements[i]);
+            offset += (elements[i].length + 3) & ~3;
+        }
+        return profile.array();
+    }
+
+    private static byte[] element(String type, byte[]... parts) {
+        int length = 8;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+        ByteBuffer element = ByteBuffer.allocate(length);
+        element.put(type.getBytes(StandardCharsets.US_ASCII)).putInt(0);
+        for (byte[] part : parts) {
+            element.put(part);
+        }
+        return element.array();
+    }
+}
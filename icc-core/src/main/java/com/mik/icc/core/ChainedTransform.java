@@ -0,0 +1,80 @@
+package com.mik.icc.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Runs transforms one after another, e.g. device to PCS of one profile and PCS to device of another. Spans are
+// passed through the stages in batches that alternate between two per-thread scratch buffers.
+public final class ChainedTransform implements ColorTransform {
+
+    static final int BATCH = 256;
+
+    private static final ThreadLocal<float[][]> SCRATCH =
+            ThreadLocal.withInitial(() -> new float[][] {new float[BATCH * Clut.MAX_CHANNELS],
+                    new float[BATCH * Clut.MAX_CHANNELS]});
+
+    private final ColorTransform[] stages;
+
+    private ChainedTransform(ColorTransform[] stages) {
+        this.stages = stages;
+    }
+
+    // Nested chains are flattened, they would otherwise share the scratch buffers
+    public static ColorTransform of(ColorTransform... transforms) {
+        if (transforms.length == 0) {
+            throw new IllegalArgumentException("A chain needs at least one transform");
+        }
+        List<ColorTransform> flattened = new ArrayList<>();
+        for (ColorTransform transform : transforms) {
+            if (transform instanceof ChainedTransform) {
+                flattened.addAll(((ChainedTransform) transform).getStages());
+            } else {
+                flattened.add(transform);
+            }
+        }
+        ColorTransform[] stages = flattened.toArray(new ColorTransform[0]);
+        for (int i = 0; i < stages.length; i++) {
+            if (stages[i].getOutputChannels() > Clut.MAX_CHANNELS) {
+                throw new IllegalArgumentException("Too many channels: " + stages[i].getOutputChannels());
+            }
+            if (i > 0 && stages[i - 1].getOutputChannels() != stages[i].getInputChannels()) {
+                throw new IllegalArgumentException("Stage " + i + " expects " + stages[i].getInputChannels()
+                        + " channels, the previous stage produces " + stages[i - 1].getOutputChannels());
+            }
+        }
+        return stages.length == 1 ? stages[0] : new ChainedTransform(stages);
+    }
+
+    public List<ColorTransform> getStages() {
+        return List.of(stages);
+    }
+
+    @Override
+    public int getInputChannels() {
+        return stages[0].getInputChannels();
+    }
+
+    @Override
+    public int getOutputChannels() {
+        return stages[stages.length - 1].getOutputChannels();
+    }
+
+    @Override
+    public void transform(float[] in, int inOffset, float[] out, int outOffset, int pixelCount) {
+        float[][] scratch = SCRATCH.get();
+        int inputChannels = getInputChannels();
+        int outputChannels = getOutputChannels();
+        int last = stages.length - 1;
+        for (int done = 0; done < pixelCount; done += BATCH) {
+            int count = Math.min(BATCH, pixelCount - done);
+            // The first stage reads the caller's input, the last one writes the caller's output
+            stages[0].transform(in, inOffset + done * inputChannels, scratch[0], 0, count);
+            int current = 0;
+            for (int s = 1; s < last; s++) {
+                stages[s].transform(scratch[current], 0, scratch[1 - current], 0, count);
+                current = 1 - current;
+            }
+            stages[last].transform(scratch[current], 0, out, outOffset + done * outputChannels, count);
+        }
+    }
+}
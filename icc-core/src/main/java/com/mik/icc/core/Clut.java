@@ -0,0 +1,180 @@
+package com.mik.icc.core;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+// Multidimensional color lookup table kept as flat 8- or 16-bit values in a ByteBuffer, never as an object per
+// node. Decoded tables are views of the profile buffer, which is off-heap when the profile is memory-mapped; new
+// tables are allocated off-heap. Nodes are ordered with the first input channel varying slowest, as in the ICC
+// layouts, and each node holds one value per output channel.
+public final class Clut {
+
+    public static final int MAX_CHANNELS = 15;
+
+    private final int[] gridPoints;
+    private final int outputChannels;
+    private final int precision;
+    private final ByteBuffer data;
+    // Distance in values between neighbouring nodes along each input channel
+    private final int[] strides;
+    private final int nodeCount;
+
+    private Clut(int[] gridPoints, int outputChannels, int precision, ByteBuffer data) {
+        this.gridPoints = gridPoints;
+        this.outputChannels = outputChannels;
+        this.precision = precision;
+        this.data = data;
+        this.strides = new int[gridPoints.length];
+        int stride = outputChannels;
+        for (int i = gridPoints.length - 1; i >= 0; i--) {
+            strides[i] = stride;
+            stride *= gridPoints[i];
+        }
+        this.nodeCount = stride / outputChannels;
+    }
+
+    // Zero-filled table in direct memory
+    public static Clut allocate(int[] gridPoints, int outputChannels, int precision) {
+        long size = byteSize(gridPoints, outputChannels, precision);
+        ByteBuffer data = ByteBuffer.allocateDirect((int) size).order(ByteOrder.BIG_ENDIAN);
+        return new Clut(gridPoints.clone(), outputChannels, precision, data);
+    }
+
+    // View of size bytes at offset; the values are read from the buffer on each access
+    static Clut wrap(ByteBuffer buffer, int offset, int[] gridPoints, int outputChannels, int precision) {
+        long size = byteSize(gridPoints, outputChannels, precision);
+        if (offset < 0 || offset + size > buffer.limit()) {
+            throw new IllegalArgumentException("CLUT of " + size + " bytes at " + offset + " extends beyond the element");
+        }
+        ByteBuffer view = buffer.slice(offset, (int) size).asReadOnlyBuffer().order(ByteOrder.BIG_ENDIAN);
+        return new Clut(gridPoints.clone(), outputChannels, precision, view);
+    }
+
+    static long byteSize(int[] gridPoints, int outputChannels, int precision) {
+        if (gridPoints.length < 1 || gridPoints.length > MAX_CHANNELS) {
+            throw new IllegalArgumentException("CLUT needs 1 to " + MAX_CHANNELS + " input channels: " + gridPoints.length);
+        }
+        if (outputChannels < 1 || outputChannels > MAX_CHANNELS) {
+            throw new IllegalArgumentException("CLUT needs 1 to " + MAX_CHANNELS + " output channels: " + outputChannels);
+        }
+        if (precision != 1 && precision != 2) {
+            throw new IllegalArgumentException("CLUT precision must be 1 or 2 bytes: " + precision);
+        }
+        long size = (long) outputChannels * precision;
+        for (int points : gridPoints) {
+            if (points < 2 || points > 255) {
+                throw new IllegalArgumentException("CLUT needs 2 to 255 grid points per channel: " + points);
+            }
+            size *= points;
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("CLUT is too large: " + Arrays.toString(gridPoints));
+            }
+        }
+        return size;
+    }
+
+    public int getInputChannels() {
+        return gridPoints.length;
+    }
+
+    public int getOutputChannels() {
+        return outputChannels;
+    }
+
+    public int getGridPoints(int inputChannel) {
+        return gridPoints[inputChannel];
+    }
+
+    public int[] getGridPoints() {
+        return gridPoints.clone();
+    }
+
+    // Bytes per value, 1 or 2
+    public int getPrecision() {
+        return precision;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getStride(int inputChannel) {
+        return strides[inputChannel];
+    }
+
+    public int getByteSize() {
+        return data.capacity();
+    }
+
+    public boolean isDirect() {
+        return data.isDirect();
+    }
+
+    // Node index of the given grid coordinates, one per input channel
+    public int nodeIndex(int... coordinates) {
+        int index = 0;
+        for (int i = 0; i < gridPoints.length; i++) {
+            index += coordinates[i] * (strides[i] / outputChannels);
+        }
+        return index;
+    }
+
+    // Value at a flat index (node * outputChannels + channel) as stored, 0..255 or 0..65535
+    public int getRaw(int index) {
+        return precision == 1 ? data.get(index) & 0xFF : data.getShort(index * 2) & 0xFFFF;
+    }
+
+    public float get(int node, int channel) {
+        int raw = getRaw(node * outputChannels + channel);
+        return precision == 1 ? raw / 255f : raw / 65535f;
+    }
+
+    // Stores value clamped to 0..1 at the table's precision; decoded tables are read-only
+    public void set(int node, int channel, double value) {
+        double clamped = value < 0 ? 0 : value > 1 ? 1 : value;
+        int index = node * outputChannels + channel;
+        if (precision == 1) {
+            data.put(index, (byte) Math.round(clamped * 255));
+        } else {
+            data.putShort(index * 2, (short) Math.round(clamped * 65535));
+        }
+    }
+
+    // All values as floats in 0..1, in node order
+    public float[] toFloatArray() {
+        float[] values = new float[nodeCount * outputChannels];
+        float scale = precision == 1 ? 1 / 255f : 1 / 65535f;
+        for (int i = 0; i < values.length; i++) {
+            values[i] = getRaw(i) * scale;
+        }
+        return values;
+    }
+
+    // Copy at another precision, for encodings that fix it (mft1 is 8-bit, mft2 16-bit)
+    public Clut withPrecision(int precision) {
+        if (precision == this.precision) {
+            return this;
+        }
+        Clut copy = allocate(gridPoints, outputChannels, precision);
+        for (int node = 0; node < nodeCount; node++) {
+            for (int channel = 0; channel < outputChannels; channel++) {
+                copy.set(node, channel, get(node, channel));
+            }
+        }
+        return copy;
+    }
+
+    void writeTo(ByteBuffer out) {
+        out.put(data.duplicate().clear());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder grid = new StringBuilder();
+        for (int points : gridPoints) {
+            grid.append(grid.length() == 0 ? "" : "x").append(points);
+        }
+        return "Clut{" + grid + " -> " + outputChannels + ", " + (precision * 8) + "-bit}";
+    }
+}
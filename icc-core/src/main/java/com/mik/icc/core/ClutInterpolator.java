@@ -0,0 +1,205 @@
+package com.mik.icc.core;
+
+// Interpolates a CLUT for spans of interleaved pixels with values in 0..1. The table is copied once into a float
+// array so the inner loops read primitives only. Three inputs use trilinear or tetrahedral interpolation, four
+// inputs interpolate the last three channels in the two slabs around the first one and blend them linearly, and
+// other channel counts fall back to multilinear interpolation.
+//
+// Tetrahedral interpolation with three or four inputs can go through the JDK Vector API. The incubator module is
+// still experimental on JDK 17, so this is opt-in: start the JVM with --add-modules jdk.incubator.vector and
+// -Dicc.vector=true. Otherwise the scalar loops run.
+public final class ClutInterpolator {
+
+    public enum Method {
+        TRILINEAR,
+        TETRAHEDRAL
+    }
+
+    static final boolean VECTOR_ENABLED = Boolean.parseBoolean(System.getProperty("icc.vector", "false"))
+            && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    final float[] table;
+    final int inputChannels;
+    final int outputChannels;
+    final int[] gridPoints;
+    // Distance in floats between neighbouring nodes along each input channel
+    final int[] strides;
+    final Method method;
+    private final VectorClutKernel vectorKernel;
+
+    private ClutInterpolator(Clut clut, Method method, boolean vectorize) {
+        this.table = clut.toFloatArray();
+        this.inputChannels = clut.getInputChannels();
+        this.outputChannels = clut.getOutputChannels();
+        this.gridPoints = clut.getGridPoints();
+        this.strides = new int[inputChannels];
+        for (int i = 0; i < inputChannels; i++) {
+            strides[i] = clut.getStride(i);
+        }
+        this.method = method;
+        boolean vectorizable = method == Method.TETRAHEDRAL && (inputChannels == 3 || inputChannels == 4);
+        this.vectorKernel = vectorize && vectorizable && VECTOR_ENABLED ? new VectorClutKernel(this) : null;
+    }
+
+    public static ClutInterpolator of(Clut clut, Method method) {
+        return new ClutInterpolator(clut, method, true);
+    }
+
+    // Always uses the scalar loops, e.g. to compare both paths
+    public static ClutInterpolator scalar(Clut clut, Method method) {
+        return new ClutInterpolator(clut, method, false);
+    }
+
+    public static boolean isVectorAvailable() {
+        return VECTOR_ENABLED;
+    }
+
+    public boolean isVectorized() {
+        return vectorKernel != null;
+    }
+
+    public int getInputChannels() {
+        return inputChannels;
+    }
+
+    public int getOutputChannels() {
+        return outputChannels;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public void interpolate(float[] in, int inOffset, float[] out, int outOffset, int pixelCount) {
+        int done = 0;
+        if (vectorKernel != null) {
+            done = vectorKernel.interpolate(in, inOffset, out, outOffset, pixelCount);
+        }
+        int i = inOffset + done * inputChannels;
+        int o = outOffset + done * outputChannels;
+        boolean grid3d = inputChannels == 3 || inputChannels == 4;
+        for (int p = done; p < pixelCount; p++) {
+            if (grid3d) {
+                interpolate3d(in, i, out, o);
+            } else {
+                interpolateMultilinear(in, i, out, o);
+            }
+            i += inputChannels;
+            o += outputChannels;
+        }
+    }
+
+    // The last three channels are interpolated in 3D; a fourth (first) channel blends two such results
+    private void interpolate3d(float[] in, int i, float[] out, int o) {
+        int first = inputChannels - 3;
+        int node = 0;
+        int outer = 0;
+        float fo = 0f;
+        if (first == 1) {
+            float p = position(in[i], gridPoints[0]);
+            int k = cell(p, gridPoints[0]);
+            fo = p - k;
+            outer = strides[0];
+            node = k * outer;
+        }
+        int sx = strides[first];
+        int sy = strides[first + 1];
+        int sz = strides[first + 2];
+        float px = position(in[i + first], gridPoints[first]);
+        float py = position(in[i + first + 1], gridPoints[first + 1]);
+        float pz = position(in[i + first + 2], gridPoints[first + 2]);
+        int x = cell(px, gridPoints[first]);
+        int y = cell(py, gridPoints[first + 1]);
+        int z = cell(pz, gridPoints[first + 2]);
+        float fx = px - x;
+        float fy = py - y;
+        float fz = pz - z;
+        node += x * sx + y * sy + z * sz;
+
+        if (method == Method.TRILINEAR) {
+            for (int c = 0; c < outputChannels; c++) {
+                float value = trilinear(node + c, sx, sy, sz, fx, fy, fz);
+                if (outer != 0) {
+                    value = lerp(value, trilinear(node + outer + c, sx, sy, sz, fx, fy, fz), fo);
+                }
+                out[o + c] = value;
+            }
+            return;
+        }
+
+        // Walk from the base node to the far corner along the axes in order of decreasing fraction; ties go to
+        // x before y before z, the same order the vector kernel uses
+        boolean xy = fx >= fy;
+        boolean yz = fy >= fz;
+        boolean xz = fx >= fz;
+        int a = xy && xz ? sx : !xy && yz ? sy : sz;
+        int smallest = xz && yz ? sz : xy && !yz ? sy : sx;
+        int far = sx + sy + sz;
+        int b = far - smallest;
+        float max = Math.max(fx, Math.max(fy, fz));
+        float min = Math.min(fx, Math.min(fy, fz));
+        float mid = fx + fy + fz - max - min;
+        float w0 = 1f - max;
+        float w1 = max - mid;
+        float w2 = mid - min;
+        for (int c = 0; c < outputChannels; c++) {
+            int n = node + c;
+            float value = w0 * table[n] + w1 * table[n + a] + w2 * table[n + b] + min * table[n + far];
+            if (outer != 0) {
+                n += outer;
+                float upper = w0 * table[n] + w1 * table[n + a] + w2 * table[n + b] + min * table[n + far];
+                value = lerp(value, upper, fo);
+            }
+            out[o + c] = value;
+        }
+    }
+
+    private float trilinear(int n, int sx, int sy, int sz, float fx, float fy, float fz) {
+        float c00 = lerp(table[n], table[n + sz], fz);
+        float c01 = lerp(table[n + sy], table[n + sy + sz], fz);
+        float c10 = lerp(table[n + sx], table[n + sx + sz], fz);
+        float c11 = lerp(table[n + sx + sy], table[n + sx + sy + sz], fz);
+        return lerp(lerp(c00, c01, fy), lerp(c10, c11, fy), fx);
+    }
+
+    // Weighted sum over all 2^n corners of the cell; cell positions are recomputed per corner to avoid scratch arrays
+    private void interpolateMultilinear(float[] in, int i, float[] out, int o) {
+        for (int c = 0; c < outputChannels; c++) {
+            out[o + c] = 0f;
+        }
+        for (int corner = 0; corner < 1 << inputChannels; corner++) {
+            float weight = 1f;
+            int node = 0;
+            for (int d = 0; d < inputChannels; d++) {
+                float p = position(in[i + d], gridPoints[d]);
+                int k = cell(p, gridPoints[d]);
+                float f = p - k;
+                if ((corner >> d & 1) != 0) {
+                    weight *= f;
+                    node += (k + 1) * strides[d];
+                } else {
+                    weight *= 1f - f;
+                    node += k * strides[d];
+                }
+            }
+            if (weight != 0f) {
+                for (int c = 0; c < outputChannels; c++) {
+                    out[o + c] += weight * table[node + c];
+                }
+            }
+        }
+    }
+
+    static float position(float value, int points) {
+        float clamped = value > 0f ? (value < 1f ? value : 1f) : 0f;
+        return clamped * (points - 1);
+    }
+
+    static int cell(float position, int points) {
+        return Math.min((int) position, points - 2);
+    }
+
+    static float lerp(float a, float b, float f) {
+        return a + (b - a) * f;
+    }
+}
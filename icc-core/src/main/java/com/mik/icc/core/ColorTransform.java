@@ -0,0 +1,23 @@
+package com.mik.icc.core;
+
+// Converts pixels between two color encodings. Implementations are immutable once built, so one instance can be
+// shared by any number of threads, and the transform methods do not allocate.
+public interface ColorTransform {
+
+    int getInputChannels();
+
+    int getOutputChannels();
+
+    // Interleaved float values: device values in 0..1, PCS XYZ relative to a D50 white with Y = 1.
+    // in and out may be the same array when the channel counts match.
+    void transform(float[] in, int inOffset, float[] out, int outOffset, int pixelCount);
+
+    // Packed 0xAARRGGBB pixels with 8-bit channels; alpha is copied unchanged
+    default void transform(int[] in, int inOffset, int[] out, int outOffset, int pixelCount) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not convert packed RGB pixels");
+    }
+
+    default boolean supportsPackedRgb() {
+        return false;
+    }
+}
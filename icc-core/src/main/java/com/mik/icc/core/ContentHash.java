@@ -0,0 +1,29 @@
+package com.mik.icc.core;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+
+// 64-bit content hash built from two independent CRCs, both of which are hardware accelerated
+public final class ContentHash {
+
+    private ContentHash() {
+    }
+
+    // Hashes the remaining bytes of the buffer without changing its position
+    public static long of(ByteBuffer data) {
+        CRC32C crc32c = new CRC32C();
+        crc32c.update(data.duplicate());
+        CRC32 crc32 = new CRC32();
+        crc32.update(data.duplicate());
+        return (crc32c.getValue() << 32) | crc32.getValue();
+    }
+
+    public static long of(byte[] data) {
+        return of(ByteBuffer.wrap(data));
+    }
+
+    public static String toHex(long hash) {
+        return String.format("%016x", hash);
+    }
+}
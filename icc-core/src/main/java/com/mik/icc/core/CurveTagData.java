@@ -1,4 +1,4 @@
-package com.mik.icc.icceditor;
+package com.mik.icc.core;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
@@ -26,6 +26,16 @@ public class CurveTagData implements TagData {
         return buffer.array();
     }
 
+    @Override
+    public byte[] toElementBytes() {
+        byte[] body = toBytes();
+        ByteBuffer buffer = ByteBuffer.allocate(8 + body.length).order(ByteOrder.BIG_ENDIAN);
+        buffer.putInt(Signatures.CURVE_TYPE);
+        buffer.putInt(0); // Reserved
+        buffer.put(body);
+        return buffer.array();
+    }
+
     @Override
     public String toString() {
         return "Curve Points: " + Arrays.toString(curvePoints);
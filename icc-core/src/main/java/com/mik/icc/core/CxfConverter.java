@@ -0,0 +1,477 @@
+package com.mik.icc.core;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+// Converts the CxF3 XML of a 'CxF ' tag into binary 'DevS' and 'CIED' tag elements. The XML is read with StAX
+// straight from the tag buffer and every patch is written out as soon as its Object element ends, so only one
+// patch is held in memory however many the measurement set has.
+//
+// Both elements are big-endian like the rest of the profile. Values missing for a patch are NaN.
+//
+// 'DevS' (device values)
+//   0  'DevS'                   type signature
+//   4  0                        reserved
+//   8  uint32 N                 patch count
+//   12 uint32 C                 channel count
+//   16 uint32 color space       'CMYK', 'RGB ' or 'nCLR' (2CLR..FCLR) by channel count
+//   20 float32[N][C]            device values as given in the CxF (percent for CMYK, 0-255 for RGB)
+//
+// 'CIED' (CIE data)
+//   0  'CIED'                   type signature
+//   4  0                        reserved
+//   8  uint32 N                 patch count
+//   12 uint32 flags             bit 0: Lab present, bit 1: spectral data present
+//   16 uint16 start wavelength  nm, 0 without spectral data
+//   18 uint16 increment         nm, 0 without spectral data
+//   20 uint16 S                 spectral band count
+//   22 uint16 0                 reserved
+//   24 float32[N][3]            CIE L*, a*, b*
+//   .. float32[N][S]            reflectance per band (0-1)
+public final class CxfConverter {
+
+    public static final int DEVS_HEADER_SIZE = 20;
+    public static final int CIED_HEADER_SIZE = 24;
+    public static final int FLAG_LAB = 1;
+    public static final int FLAG_SPECTRAL = 2;
+
+    // CxF3 does not state the increment next to each spectrum, 10 nm is by far the most common
+    private static final int DEFAULT_INCREMENT = 10;
+
+    public static final class Result {
+        private final int patchCount;
+        private final int channelCount;
+        private final int spectralBands;
+        private final byte[] deviceValues;
+        private final byte[] cieData;
+
+        Result(int patchCount, int channelCount, int spectralBands, byte[] deviceValues, byte[] cieData) {
+            this.patchCount = patchCount;
+            this.channelCount = channelCount;
+            this.spectralBands = spectralBands;
+            this.deviceValues = deviceValues;
+            this.cieData = cieData;
+        }
+
+        public int getPatchCount() {
+            return patchCount;
+        }
+
+        public int getChannelCount() {
+            return channelCount;
+        }
+
+        public int getSpectralBands() {
+            return spectralBands;
+        }
+
+        // Complete 'DevS' element
+        public byte[] getDeviceValues() {
+            return deviceValues;
+        }
+
+        // Complete 'CIED' element
+        public byte[] getCieData() {
+            return cieData;
+        }
+
+        @Override
+        public String toString() {
+            return patchCount + " patches, " + channelCount + " channels, " + spectralBands + " spectral bands";
+        }
+    }
+
+    private CxfConverter() {
+    }
+
+    // The element is either the bare XML or the XML behind an 8-byte type header ('text', 'utf8', ...)
+    public static Result convert(ByteBuffer cxfElement) throws IOException {
+        ByteBuffer xml = cxfElement.slice();
+        if (xml.remaining() >= 8 && !startsLikeXml(xml)) {
+            xml = xml.slice(8, xml.remaining() - 8);
+        }
+        // Text tags end with a NUL and padding; UTF-8 XML has no zero bytes, so stop at the first one
+        for (int i = 0; i < xml.remaining(); i++) {
+            if (xml.get(i) == 0) {
+                xml = xml.slice(0, i);
+                break;
+            }
+        }
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        // Measurement data never needs a DTD, and external entities must not be resolved
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        try {
+            XMLStreamReader reader = factory.createXMLStreamReader(new BufferInputStream(xml));
+            try {
+                return new Parser(reader).parse();
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Invalid CxF data: " + e.getMessage(), e);
+        }
+    }
+
+    private static boolean startsLikeXml(ByteBuffer data) {
+        int first = data.get(0) & 0xFF;
+        // '<', whitespace or a UTF-8 byte order mark
+        return first == '<' || first == ' ' || first == '\t' || first == '\r' || first == '\n' || first == 0xEF;
+    }
+
+    // Walks the events once; a patch is flushed to the output streams at the end of its Object element
+    private static final class Parser {
+        private final XMLStreamReader reader;
+        private final FloatStream deviceValues = new FloatStream();
+        private final FloatStream lab = new FloatStream();
+        private final FloatStream spectra = new FloatStream();
+        private final StringBuilder text = new StringBuilder();
+
+        private int patchCount;
+        private int channelCount = -1;
+        private String deviceColorType;
+        private int spectralBands = -1;
+        private int startWavelength;
+        private int increment;
+        private boolean anyLab;
+        // Patches written before the channel or band count was known, their NaN values are added afterwards
+        private int patchesWithoutDevice;
+        private int patchesWithoutSpectrum;
+
+        // Current patch
+        private boolean inObject;
+        private float[] patchDevice = new float[16];
+        private int patchChannels;
+        private final float[] patchLab = new float[3];
+        private boolean patchHasLab;
+        private float[] patchSpectrum;
+        private boolean patchHasSpectrum;
+
+        // Element context inside the current patch
+        private int depth;
+        private int deviceDepth = -1;
+        private boolean deviceColorSeen;
+        private int labDepth = -1;
+        private boolean leaf;
+
+        Parser(XMLStreamReader reader) {
+            this.reader = reader;
+        }
+
+        Result parse() throws XMLStreamException {
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        depth++;
+                        leaf = true;
+                        text.setLength(0);
+                        startElement(reader.getLocalName());
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                        if (leaf) {
+                            text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                        }
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        endElement(reader.getLocalName());
+                        leaf = false;
+                        depth--;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return finish();
+        }
+
+        private void startElement(String name) throws XMLStreamException {
+            switch (name) {
+                case "Object":
+                    inObject = true;
+                    patchChannels = 0;
+                    patchHasLab = false;
+                    patchHasSpectrum = false;
+                    deviceColorSeen = false;
+                    Arrays.fill(patchLab, Float.NaN);
+                    break;
+                case "DeviceColorValues":
+                    if (inObject) {
+                        deviceDepth = depth;
+                    }
+                    break;
+                case "ColorCIELab":
+                    if (inObject && !patchHasLab) {
+                        labDepth = depth;
+                    }
+                    break;
+                case "WavelengthRange":
+                    // Part of a ColorSpecification, shared by all spectra that refer to it
+                    if (increment == 0) {
+                        increment = intAttribute("Increment", 0);
+                    }
+                    if (startWavelength == 0) {
+                        startWavelength = intAttribute("StartWL", 0);
+                    }
+                    break;
+                case "ReflectanceSpectrum":
+                    if (inObject && !patchHasSpectrum) {
+                        int start = intAttribute("StartWL", 0);
+                        if (start != 0) {
+                            if (startWavelength != 0 && start != startWavelength) {
+                                throw new XMLStreamException("Spectra start at " + startWavelength + " and " + start
+                                        + " nm", reader.getLocation());
+                            }
+                            startWavelength = start;
+                        }
+                    }
+                    break;
+                default:
+                    if (deviceDepth >= 0 && depth == deviceDepth + 1) {
+                        // The first color below DeviceColorValues (ColorCMYK, ColorRGB, ...) holds the channels
+                        if (deviceColorSeen) {
+                            deviceDepth = -1;
+                        } else {
+                            deviceColorSeen = true;
+                            if (deviceColorType == null) {
+                                deviceColorType = name;
+                            }
+                        }
+                    }
+                    break;
+            }
+        }
+
+        private void endElement(String name) throws XMLStreamException {
+            if (!inObject) {
+                return;
+            }
+            if (name.equals("Object")) {
+                writePatch();
+                inObject = false;
+                deviceDepth = -1;
+                labDepth = -1;
+            } else if (name.equals("DeviceColorValues")) {
+                deviceDepth = -1;
+            } else if (name.equals("ColorCIELab") && depth == labDepth) {
+                labDepth = -1;
+            } else if (name.equals("ReflectanceSpectrum") && leaf && !patchHasSpectrum) {
+                readSpectrum();
+            } else if (leaf && labDepth >= 0 && depth == labDepth + 1) {
+                int component = name.equals("L") ? 0 : name.equals("A") ? 1 : name.equals("B") ? 2 : -1;
+                if (component >= 0) {
+                    patchLab[component] = parseFloat(text);
+                    patchHasLab = true;
+                }
+            } else if (leaf && deviceDepth >= 0 && depth == deviceDepth + 2) {
+                if (patchChannels == patchDevice.length) {
+                    patchDevice = Arrays.copyOf(patchDevice, patchChannels * 2);
+                }
+                patchDevice[patchChannels++] = parseFloat(text);
+            }
+        }
+
+        private void readSpectrum() throws XMLStreamException {
+            int count = 0;
+            float[] values = patchSpectrum != null ? patchSpectrum : new float[64];
+            int i = 0;
+            int length = text.length();
+            while (i < length) {
+                while (i < length && Character.isWhitespace(text.charAt(i))) {
+                    i++;
+                }
+                int start = i;
+                while (i < length && !Character.isWhitespace(text.charAt(i))) {
+                    i++;
+                }
+                if (i > start) {
+                    if (count == values.length) {
+                        if (spectralBands >= 0) {
+                            throw spectralMismatch(count + 1);
+                        }
+                        values = Arrays.copyOf(values, count * 2);
+                    }
+                    values[count++] = parseFloat(text.subSequence(start, i));
+                }
+            }
+            if (spectralBands < 0) {
+                spectralBands = count;
+                patchSpectrum = Arrays.copyOf(values, count);
+                spectra.fill(Float.NaN, (long) patchesWithoutSpectrum * count);
+            } else if (count != spectralBands) {
+                throw spectralMismatch(count);
+            }
+            patchHasSpectrum = true;
+        }
+
+        private XMLStreamException spectralMismatch(int count) {
+            return new XMLStreamException("Spectra have " + spectralBands + " and " + count + " bands",
+                    reader.getLocation());
+        }
+
+        private void writePatch() throws XMLStreamException {
+            patchCount++;
+            if (patchChannels > 0) {
+                if (channelCount < 0) {
+                    channelCount = patchChannels;
+                    deviceValues.fill(Float.NaN, (long) patchesWithoutDevice * channelCount);
+                } else if (patchChannels != channelCount) {
+                    throw new XMLStreamException("Patches have " + channelCount + " and " + patchChannels
+                            + " device channels", reader.getLocation());
+                }
+                deviceValues.write(patchDevice, patchChannels);
+            } else if (channelCount < 0) {
+                patchesWithoutDevice++;
+            } else {
+                deviceValues.fill(Float.NaN, channelCount);
+            }
+
+            anyLab |= patchHasLab;
+            lab.write(patchLab, 3);
+
+            if (patchHasSpectrum) {
+                spectra.write(patchSpectrum, spectralBands);
+            } else if (spectralBands < 0) {
+                patchesWithoutSpectrum++;
+            } else {
+                spectra.fill(Float.NaN, spectralBands);
+            }
+        }
+
+        private Result finish() throws XMLStreamException {
+            if (patchCount == 0) {
+                throw new XMLStreamException("CxF data contains no Object elements");
+            }
+            int channels = Math.max(channelCount, 0);
+            int bands = Math.max(spectralBands, 0);
+
+            ByteBuffer devsHeader = ByteBuffer.allocate(DEVS_HEADER_SIZE).order(ByteOrder.BIG_ENDIAN);
+            devsHeader.putInt(Signatures.DEVS).putInt(0).putInt(patchCount).putInt(channels)
+                    .putInt(colorSpace(deviceColorType, channels));
+            byte[] devs = concat(devsHeader.array(), deviceValues);
+
+            int flags = (anyLab ? FLAG_LAB : 0) | (bands > 0 ? FLAG_SPECTRAL : 0);
+            ByteBuffer ciedHeader = ByteBuffer.allocate(CIED_HEADER_SIZE).order(ByteOrder.BIG_ENDIAN);
+            ciedHeader.putInt(Signatures.CIED).putInt(0).putInt(patchCount).putInt(flags);
+            ciedHeader.putShort((short) (bands > 0 ? startWavelength : 0));
+            ciedHeader.putShort((short) (bands > 0 ? (increment > 0 ? increment : DEFAULT_INCREMENT) : 0));
+            ciedHeader.putShort((short) bands).putShort((short) 0);
+            byte[] cied = concat(ciedHeader.array(), lab, spectra);
+            return new Result(patchCount, channels, bands, devs, cied);
+        }
+
+        private int intAttribute(String name, int defaultValue) throws XMLStreamException {
+            String value = reader.getAttributeValue(null, name);
+            if (value == null) {
+                return defaultValue;
+            }
+            try {
+                return (int) Math.round(Double.parseDouble(value.trim()));
+            } catch (NumberFormatException e) {
+                throw new XMLStreamException("Invalid " + name + " '" + value + "'", reader.getLocation());
+            }
+        }
+
+        private float parseFloat(CharSequence value) throws XMLStreamException {
+            try {
+                return Float.parseFloat(value.toString().trim());
+            } catch (NumberFormatException e) {
+                throw new XMLStreamException("Invalid number '" + value + "'", reader.getLocation());
+            }
+        }
+    }
+
+    static int colorSpace(String deviceColorType, int channels) {
+        if ("ColorCMYK".equals(deviceColorType) && channels == 4) {
+            return Signatures.of("CMYK");
+        }
+        if ("ColorRGB".equals(deviceColorType) && channels == 3) {
+            return Signatures.of("RGB");
+        }
+        if (channels >= 2 && channels <= 15) {
+            return Signatures.of(Character.toUpperCase(Character.forDigit(channels, 16)) + "CLR");
+        }
+        return 0;
+    }
+
+    private static byte[] concat(byte[] header, FloatStream... blocks) {
+        int size = header.length;
+        for (FloatStream block : blocks) {
+            size += block.size();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size);
+        out.writeBytes(header);
+        for (FloatStream block : blocks) {
+            block.writeTo(out);
+        }
+        return out.toByteArray();
+    }
+
+    // Big-endian float32 output
+    private static final class FloatStream extends ByteArrayOutputStream {
+        void write(float[] values, int count) {
+            for (int i = 0; i < count; i++) {
+                writeFloat(values[i]);
+            }
+        }
+
+        void fill(float value, long count) {
+            for (long i = 0; i < count; i++) {
+                writeFloat(value);
+            }
+        }
+
+        private void writeFloat(float value) {
+            int bits = Float.floatToIntBits(value);
+            write(bits >>> 24);
+            write(bits >>> 16);
+            write(bits >>> 8);
+            write(bits);
+        }
+
+        void writeTo(ByteArrayOutputStream out) {
+            out.write(buf, 0, count);
+        }
+    }
+
+    // Reads a buffer slice without copying it; mapped profiles are streamed straight from the file
+    private static final class BufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer.duplicate();
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(target, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
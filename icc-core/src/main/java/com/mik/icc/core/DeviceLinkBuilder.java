@@ -0,0 +1,217 @@
+package com.mik.icc.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Folds a source and a destination profile into a DeviceLink: the combined transform is sampled at every node of a
+// CLUT grid on a fork-join pool and written as the A2B0 (mAB, 16-bit CLUT, identity curves) of a version 4 'link'
+// profile. Nodes are converted in fixed chunks that do not depend on the thread count, so every node takes the same
+// code path and the link is identical byte for byte whatever the number of workers.
+public final class DeviceLinkBuilder {
+
+    // Grid nodes converted by one task
+    static final int CHUNK = 1024;
+
+    private final int threads;
+    private int gridPoints;
+    private int intent = ProfileTransforms.PERCEPTUAL;
+    private String description;
+    private String copyright = "No copyright, use freely";
+    private LocalDateTime creationDateTime;
+
+    public DeviceLinkBuilder(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Worker count must be at least 1: " + threads);
+        }
+        this.threads = threads;
+    }
+
+    // Points per input channel; by default 33 for up to three inputs, 17 for four and 9 above
+    public DeviceLinkBuilder gridPoints(int gridPoints) {
+        if (gridPoints < 2 || gridPoints > 255) {
+            throw new IllegalArgumentException("Grid points must be 2..255: " + gridPoints);
+        }
+        this.gridPoints = gridPoints;
+        return this;
+    }
+
+    public DeviceLinkBuilder intent(int intent) {
+        if (intent < 0 || intent > 2) {
+            throw new IllegalArgumentException("Rendering intent must be 0, 1 or 2: " + intent);
+        }
+        this.intent = intent;
+        return this;
+    }
+
+    // Profile description; "<source> to <destination>" from the file names by default
+    public DeviceLinkBuilder description(String description) {
+        this.description = description;
+        return this;
+    }
+
+    // Text of the 'cprt' tag every v4 link carries
+    public DeviceLinkBuilder copyright(String copyright) {
+        if (copyright == null) {
+            throw new IllegalArgumentException("Copyright text is required");
+        }
+        this.copyright = copyright;
+        return this;
+    }
+
+    // Header creation date; the current time by default
+    public DeviceLinkBuilder creationDateTime(LocalDateTime creationDateTime) {
+        this.creationDateTime = creationDateTime;
+        return this;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    // Samples source device -> destination device at every grid node
+    public Clut sample(ICCProfile source, ICCProfile destination) throws IOException {
+        ColorTransform transform = ProfileTransforms.between(source, destination, intent);
+        return sample(transform);
+    }
+
+    Clut sample(ColorTransform transform) {
+        int inputChannels = transform.getInputChannels();
+        int outputChannels = transform.getOutputChannels();
+        int points = gridPoints != 0 ? gridPoints : inputChannels <= 3 ? 33 : inputChannels == 4 ? 17 : 9;
+        int[] grid = new int[inputChannels];
+        Arrays.fill(grid, points);
+        Clut clut = Clut.allocate(grid, outputChannels, 2);
+        int nodes = clut.getNodeCount();
+        int chunks = (nodes + CHUNK - 1) / CHUNK;
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(new ChunkTask(transform, clut, 0, chunks));
+        } finally {
+            pool.shutdown();
+        }
+        return clut;
+    }
+
+    public LutTagData build(ICCProfile source, ICCProfile destination) throws IOException {
+        Clut clut = sample(source, destination);
+        return LutTagData.lutAToB(identities(clut.getInputChannels()), clut, null, null,
+                identities(clut.getOutputChannels()));
+    }
+
+    // The complete link profile
+    public ByteBuffer serialize(ICCProfile source, ICCProfile destination) throws IOException {
+        LutTagData a2b0 = build(source, destination);
+        ICCHeader header = new ICCHeader();
+        header.setVersion(4, 3, 0);
+        header.setDeviceClass("link");
+        header.setColorSpaceCode(source.getHeader().getColorSpaceCode());
+        // A link's PCS field holds the destination color space
+        header.setPcsCode(destination.getHeader().getColorSpaceCode());
+        LocalDateTime time = creationDateTime != null ? creationDateTime : LocalDateTime.now();
+        header.setCreationDateTime(time.getYear(), time.getMonthValue(), time.getDayOfMonth(), time.getHour(),
+                time.getMinute(), time.getSecond());
+        header.setSignatureCode(Signatures.ACSP);
+        header.setRenderingIntent(intent);
+        header.setIlluminant(PcsConversion.WHITE_X, PcsConversion.WHITE_Y, PcsConversion.WHITE_Z);
+
+        MultiLocalizedUnicodeTagData desc = new MultiLocalizedUnicodeTagData();
+        desc.addLocalizedString("en", "US", description != null ? description
+                : name(source) + " to " + name(destination));
+        MultiLocalizedUnicodeTagData cprt = new MultiLocalizedUnicodeTagData();
+        cprt.addLocalizedString("en", "US", copyright);
+        ProfileWriter writer = new ProfileWriter(header.asByteBuffer())
+                .addTag(Signatures.DESC, desc.toBytes())
+                .addTag(Signatures.CPRT, cprt.toBytes())
+                .addTag(Signatures.A2B0, a2b0.toElementBytes())
+                .addTag(Signatures.PSEQ, profileSequence(source, destination));
+        ByteBuffer serialized = writer.serialize();
+        ProfileId.write(serialized);
+        return serialized;
+    }
+
+    public void write(ICCProfile source, ICCProfile destination, Path target) throws IOException {
+        ProfileWriter.writeAtomically(target, serialize(source, destination));
+    }
+
+    private static ToneCurve[] identities(int channels) {
+        ToneCurve[] curves = new ToneCurve[channels];
+        Arrays.fill(curves, ToneCurve.identity());
+        return curves;
+    }
+
+    private static String name(ICCProfile profile) {
+        String name = Path.of(profile.getFilePath()).getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    // profileSequenceDescType with the two profiles' header fields and empty descriptions
+    private static byte[] profileSequence(ICCProfile... profiles) {
+        int emptyMluc = 16;
+        ByteBuffer element = ByteBuffer.allocate(12 + profiles.length * (20 + 2 * emptyMluc))
+                .order(ByteOrder.BIG_ENDIAN);
+        element.putInt(Signatures.PSEQ_TYPE).putInt(0).putInt(profiles.length);
+        for (ICCProfile profile : profiles) {
+            ICCHeader header = profile.getHeader();
+            element.putInt(header.getManufacturerCode()).putInt(header.getModelCode()).putLong(header.getAttributes());
+            // Technology signature, not known here
+            element.putInt(0);
+            for (int i = 0; i < 2; i++) {
+                element.putInt(Signatures.MLUC_TYPE).putInt(0).putInt(0).putInt(12);
+            }
+        }
+        return element.array();
+    }
+
+    // Splits the chunks in halves; each chunk converts its nodes with one transform call
+    private static final class ChunkTask extends RecursiveAction {
+        private final ColorTransform transform;
+        private final Clut clut;
+        private final int first;
+        private final int end;
+
+        ChunkTask(ColorTransform transform, Clut clut, int first, int end) {
+            this.transform = transform;
+            this.clut = clut;
+            this.first = first;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - first > 1) {
+                int middle = (first + end) >>> 1;
+                invokeAll(new ChunkTask(transform, clut, first, middle), new ChunkTask(transform, clut, middle, end));
+                return;
+            }
+            int inputChannels = clut.getInputChannels();
+            int outputChannels = clut.getOutputChannels();
+            int firstNode = first * CHUNK;
+            int count = Math.min(CHUNK, clut.getNodeCount() - firstNode);
+            float[] in = new float[count * inputChannels];
+            float[] out = new float[count * outputChannels];
+            for (int n = 0; n < count; n++) {
+                // The last input channel varies fastest, as in the CLUT's node order
+                int node = firstNode + n;
+                for (int c = inputChannels - 1; c >= 0; c--) {
+                    int points = clut.getGridPoints(c);
+                    in[n * inputChannels + c] = (node % points) / (float) (points - 1);
+                    node /= points;
+                }
+            }
+            transform.transform(in, 0, out, 0, count);
+            // Distinct nodes are distinct bytes of the table, so chunks write without coordination
+            for (int n = 0; n < count; n++) {
+                for (int c = 0; c < outputChannels; c++) {
+                    clut.set(firstNode + n, c, out[n * outputChannels + c]);
+                }
+            }
+        }
+    }
+}
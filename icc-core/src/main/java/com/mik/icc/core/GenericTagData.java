@@ -1,4 +1,4 @@
-package com.mik.icc.icceditor;
+package com.mik.icc.core;
 
 public class GenericTagData implements TagData {
     private final byte[] data;
@@ -15,10 +15,6 @@ public class GenericTagData implements TagData {
     @Override
     public String toString() {
         // For display purposes, convert bytes to hex string
-        StringBuilder sb = new StringBuilder();
-        for (byte b : data) {
-            sb.append(String.format("%02X ", b));
-        }
-        return sb.toString().trim();
+        return HexCodec.encode(data);
     }
 }
@@ -0,0 +1,113 @@
+package com.mik.icc.core;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// Table-driven hex encoding ("0A FF 10") and decoding for tag editors and dumps
+public final class HexCodec {
+
+    private static final char[] DIGITS = "0123456789ABCDEF".toCharArray();
+    // Two hex characters for every byte value
+    private static final char[] PAIRS = new char[512];
+    // Nibble value for every ASCII character, -1 for non-hex characters
+    private static final byte[] NIBBLES = new byte[128];
+    private static final int CHUNK_BYTES = 4096;
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            PAIRS[2 * i] = DIGITS[i >>> 4];
+            PAIRS[2 * i + 1] = DIGITS[i & 0x0F];
+        }
+        Arrays.fill(NIBBLES, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            NIBBLES['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            NIBBLES['A' + i] = (byte) (10 + i);
+            NIBBLES['a' + i] = (byte) (10 + i);
+        }
+    }
+
+    private HexCodec() {
+    }
+
+    public static String encode(byte[] data) {
+        return encode(data, 0, data.length);
+    }
+
+    public static String encode(byte[] data, int offset, int length) {
+        if (length == 0) {
+            return "";
+        }
+        char[] out = new char[length * 3 - 1];
+        int position = 0;
+        for (int i = offset; i < offset + length; i++) {
+            if (position > 0) {
+                out[position++] = ' ';
+            }
+            int pair = (data[i] & 0xFF) << 1;
+            out[position++] = PAIRS[pair];
+            out[position++] = PAIRS[pair + 1];
+        }
+        return new String(out);
+    }
+
+    // Streams the remaining bytes of the buffer as hex, bytesPerLine bytes per line (0 for a single line)
+    public static void encode(ByteBuffer data, Writer out, int bytesPerLine, String linePrefix) throws IOException {
+        ByteBuffer source = data.duplicate();
+        int remaining = source.remaining();
+        int lineLength = bytesPerLine > 0 ? bytesPerLine : Integer.MAX_VALUE;
+        char[] chunk = new char[CHUNK_BYTES * 3 + linePrefix.length() + 1];
+        int position = 0;
+        int column = 0;
+        for (int i = 0; i < remaining; i++) {
+            if (position > chunk.length - 4 - linePrefix.length()) {
+                out.write(chunk, 0, position);
+                position = 0;
+            }
+            if (column == 0) {
+                if (i > 0) {
+                    chunk[position++] = '\n';
+                }
+                linePrefix.getChars(0, linePrefix.length(), chunk, position);
+                position += linePrefix.length();
+            } else {
+                chunk[position++] = ' ';
+            }
+            int pair = (source.get() & 0xFF) << 1;
+            chunk[position++] = PAIRS[pair];
+            chunk[position++] = PAIRS[pair + 1];
+            column = column + 1 == lineLength ? 0 : column + 1;
+        }
+        out.write(chunk, 0, position);
+    }
+
+    // Decodes hex digits, ignoring any whitespace between them
+    public static byte[] decode(CharSequence hex) {
+        byte[] out = new byte[hex.length() / 2];
+        int count = 0;
+        int high = -1;
+        for (int i = 0; i < hex.length(); i++) {
+            char c = hex.charAt(i);
+            if (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                continue;
+            }
+            int nibble = c < 128 ? NIBBLES[c] : -1;
+            if (nibble < 0) {
+                throw new NumberFormatException("Invalid hex character '" + c + "' at position " + i);
+            }
+            if (high < 0) {
+                high = nibble;
+            } else {
+                out[count++] = (byte) ((high << 4) | nibble);
+                high = -1;
+            }
+        }
+        if (high >= 0) {
+            throw new NumberFormatException("Odd number of hex digits");
+        }
+        return count == out.length ? out : Arrays.copyOf(out, count);
+    }
+}
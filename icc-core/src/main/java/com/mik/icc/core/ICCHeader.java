@@ -0,0 +1,391 @@
+package com.mik.icc.core;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// The 128 header bytes as read from the file, with typed accessors at their ICC offsets.
+// String views are built on request for display and editing; saving copies the bytes as they are.
+public class ICCHeader {
+
+    public static final int SIZE = 128;
+
+    private static final int SIZE_OFFSET = 0;
+    private static final int CMM_TYPE_OFFSET = 4;
+    private static final int VERSION_OFFSET = 8;
+    private static final int DEVICE_CLASS_OFFSET = 12;
+    private static final int COLOR_SPACE_OFFSET = 16;
+    private static final int PCS_OFFSET = 20;
+    private static final int DATE_TIME_OFFSET = 24;
+    private static final int SIGNATURE_OFFSET = 36;
+    private static final int PRIMARY_PLATFORM_OFFSET = 40;
+    private static final int FLAGS_OFFSET = 44;
+    private static final int MANUFACTURER_OFFSET = 48;
+    private static final int MODEL_OFFSET = 52;
+    private static final int ATTRIBUTES_OFFSET = 56;
+    private static final int RENDERING_INTENT_OFFSET = 64;
+    private static final int ILLUMINANT_OFFSET = 68;
+    private static final int CREATOR_OFFSET = 80;
+
+    private final ByteBuffer data = ByteBuffer.allocate(SIZE).order(ByteOrder.BIG_ENDIAN);
+
+    // An all-zero header
+    public ICCHeader() {
+    }
+
+    // Copies the first 128 bytes of the buffer, independent of its position
+    public ICCHeader(ByteBuffer source) {
+        if (source.capacity() < SIZE) {
+            throw new IllegalArgumentException("Header needs " + SIZE + " bytes, got " + source.capacity());
+        }
+        data.put(0, source, 0, SIZE);
+    }
+
+    public ICCHeader copy() {
+        return new ICCHeader(data);
+    }
+
+    // Read-only view of the raw header bytes
+    public ByteBuffer asByteBuffer() {
+        return data.asReadOnlyBuffer().order(ByteOrder.BIG_ENDIAN);
+    }
+
+    public long getSize() {
+        return data.getInt(SIZE_OFFSET) & 0xFFFFFFFFL;
+    }
+
+    public void setSize(long size) {
+        data.putInt(SIZE_OFFSET, (int) size);
+    }
+
+    public int getCmmTypeCode() {
+        return data.getInt(CMM_TYPE_OFFSET);
+    }
+
+    public void setCmmTypeCode(int cmmType) {
+        data.putInt(CMM_TYPE_OFFSET, cmmType);
+    }
+
+    public String getCmmType() {
+        return signatureString(CMM_TYPE_OFFSET);
+    }
+
+    public void setCmmType(String cmmType) {
+        setSignatureString(CMM_TYPE_OFFSET, cmmType);
+    }
+
+    // Major version in the first byte, minor and bug fix in the two nibbles of the second
+    public int getVersionMajor() {
+        return data.get(VERSION_OFFSET) & 0xFF;
+    }
+
+    public int getVersionMinor() {
+        return (data.get(VERSION_OFFSET + 1) >> 4) & 0x0F;
+    }
+
+    public int getVersionBugfix() {
+        return data.get(VERSION_OFFSET + 1) & 0x0F;
+    }
+
+    public void setVersion(int major, int minor, int bugfix) {
+        data.put(VERSION_OFFSET, (byte) major);
+        data.put(VERSION_OFFSET + 1, (byte) ((minor << 4) | (bugfix & 0x0F)));
+        data.putShort(VERSION_OFFSET + 2, (short) 0);
+    }
+
+    public String getVersion() {
+        return getVersionMajor() + "." + getVersionMinor() + "." + getVersionBugfix();
+    }
+
+    public void setVersion(String version) {
+        String[] parts = version.split("\\.");
+        setVersion(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+    }
+
+    public int getDeviceClassCode() {
+        return data.getInt(DEVICE_CLASS_OFFSET);
+    }
+
+    public void setDeviceClassCode(int deviceClass) {
+        data.putInt(DEVICE_CLASS_OFFSET, deviceClass);
+    }
+
+    public String getDeviceClass() {
+        return signatureString(DEVICE_CLASS_OFFSET);
+    }
+
+    public void setDeviceClass(String deviceClass) {
+        setSignatureString(DEVICE_CLASS_OFFSET, deviceClass);
+    }
+
+    public int getColorSpaceCode() {
+        return data.getInt(COLOR_SPACE_OFFSET);
+    }
+
+    public void setColorSpaceCode(int colorSpace) {
+        data.putInt(COLOR_SPACE_OFFSET, colorSpace);
+    }
+
+    public String getColorSpace() {
+        return signatureString(COLOR_SPACE_OFFSET);
+    }
+
+    public void setColorSpace(String colorSpace) {
+        setSignatureString(COLOR_SPACE_OFFSET, colorSpace);
+    }
+
+    public int getPcsCode() {
+        return data.getInt(PCS_OFFSET);
+    }
+
+    public void setPcsCode(int pcs) {
+        data.putInt(PCS_OFFSET, pcs);
+    }
+
+    public String getPcs() {
+        return signatureString(PCS_OFFSET);
+    }
+
+    public void setPcs(String pcs) {
+        setSignatureString(PCS_OFFSET, pcs);
+    }
+
+    public int getCreationYear() {
+        return dateField(0);
+    }
+
+    public int getCreationMonth() {
+        return dateField(1);
+    }
+
+    public int getCreationDay() {
+        return dateField(2);
+    }
+
+    public int getCreationHour() {
+        return dateField(3);
+    }
+
+    public int getCreationMinute() {
+        return dateField(4);
+    }
+
+    public int getCreationSecond() {
+        return dateField(5);
+    }
+
+    public void setCreationDateTime(int year, int month, int day, int hour, int minute, int second) {
+        int[] fields = {year, month, day, hour, minute, second};
+        for (int i = 0; i < fields.length; i++) {
+            data.putShort(DATE_TIME_OFFSET + 2 * i, (short) fields[i]);
+        }
+    }
+
+    // "yyyy-MM-dd HH:mm:ss"
+    public String getCreationDateTime() {
+        char[] text = "0000-00-00 00:00:00".toCharArray();
+        putDigits(text, 0, 4, getCreationYear());
+        putDigits(text, 5, 2, getCreationMonth());
+        putDigits(text, 8, 2, getCreationDay());
+        putDigits(text, 11, 2, getCreationHour());
+        putDigits(text, 14, 2, getCreationMinute());
+        putDigits(text, 17, 2, getCreationSecond());
+        return new String(text);
+    }
+
+    public void setCreationDateTime(String creationDateTime) {
+        String[] dateTimeParts = creationDateTime.split(" ");
+        String[] dateParts = dateTimeParts[0].split("-");
+        String[] timeParts = dateTimeParts[1].split(":");
+        setCreationDateTime(Integer.parseInt(dateParts[0]), Integer.parseInt(dateParts[1]), Integer.parseInt(dateParts[2]),
+                Integer.parseInt(timeParts[0]), Integer.parseInt(timeParts[1]), Integer.parseInt(timeParts[2]));
+    }
+
+    public int getSignatureCode() {
+        return data.getInt(SIGNATURE_OFFSET);
+    }
+
+    public void setSignatureCode(int signature) {
+        data.putInt(SIGNATURE_OFFSET, signature);
+    }
+
+    public String getSignature() {
+        return signatureString(SIGNATURE_OFFSET);
+    }
+
+    public void setSignature(String signature) {
+        setSignatureString(SIGNATURE_OFFSET, signature);
+    }
+
+    public int getPrimaryPlatformCode() {
+        return data.getInt(PRIMARY_PLATFORM_OFFSET);
+    }
+
+    public void setPrimaryPlatformCode(int primaryPlatform) {
+        data.putInt(PRIMARY_PLATFORM_OFFSET, primaryPlatform);
+    }
+
+    public String getPrimaryPlatform() {
+        return signatureString(PRIMARY_PLATFORM_OFFSET);
+    }
+
+    public void setPrimaryPlatform(String primaryPlatform) {
+        setSignatureString(PRIMARY_PLATFORM_OFFSET, primaryPlatform);
+    }
+
+    public long getFlags() {
+        return data.getInt(FLAGS_OFFSET) & 0xFFFFFFFFL;
+    }
+
+    public void setFlags(long flags) {
+        data.putInt(FLAGS_OFFSET, (int) flags);
+    }
+
+    public int getManufacturerCode() {
+        return data.getInt(MANUFACTURER_OFFSET);
+    }
+
+    public void setManufacturerCode(int manufacturer) {
+        data.putInt(MANUFACTURER_OFFSET, manufacturer);
+    }
+
+    public String getManufacturer() {
+        return signatureString(MANUFACTURER_OFFSET);
+    }
+
+    public void setManufacturer(String manufacturer) {
+        setSignatureString(MANUFACTURER_OFFSET, manufacturer);
+    }
+
+    public int getModelCode() {
+        return data.getInt(MODEL_OFFSET);
+    }
+
+    public void setModelCode(int model) {
+        data.putInt(MODEL_OFFSET, model);
+    }
+
+    public String getModel() {
+        return signatureString(MODEL_OFFSET);
+    }
+
+    public void setModel(String model) {
+        setSignatureString(MODEL_OFFSET, model);
+    }
+
+    public long getAttributes() {
+        return data.getLong(ATTRIBUTES_OFFSET);
+    }
+
+    public void setAttributes(long attributes) {
+        data.putLong(ATTRIBUTES_OFFSET, attributes);
+    }
+
+    public int getRenderingIntent() {
+        return data.getInt(RENDERING_INTENT_OFFSET);
+    }
+
+    public void setRenderingIntent(int renderingIntent) {
+        data.putInt(RENDERING_INTENT_OFFSET, renderingIntent);
+    }
+
+    // PCS illuminant as s15Fixed16 XYZ, normally D50
+    public double getIlluminantX() {
+        return XYZTagData.iccS15Fixed16ToFloat(data.getInt(ILLUMINANT_OFFSET));
+    }
+
+    public double getIlluminantY() {
+        return XYZTagData.iccS15Fixed16ToFloat(data.getInt(ILLUMINANT_OFFSET + 4));
+    }
+
+    public double getIlluminantZ() {
+        return XYZTagData.iccS15Fixed16ToFloat(data.getInt(ILLUMINANT_OFFSET + 8));
+    }
+
+    public void setIlluminant(double x, double y, double z) {
+        data.putInt(ILLUMINANT_OFFSET, XYZTagData.iccFloatToS15Fixed16(x));
+        data.putInt(ILLUMINANT_OFFSET + 4, XYZTagData.iccFloatToS15Fixed16(y));
+        data.putInt(ILLUMINANT_OFFSET + 8, XYZTagData.iccFloatToS15Fixed16(z));
+    }
+
+    public int getCreatorCode() {
+        return data.getInt(CREATOR_OFFSET);
+    }
+
+    public void setCreatorCode(int creator) {
+        data.putInt(CREATOR_OFFSET, creator);
+    }
+
+    public String getCreator() {
+        return signatureString(CREATOR_OFFSET);
+    }
+
+    public void setCreator(String creator) {
+        setSignatureString(CREATOR_OFFSET, creator);
+    }
+
+    // MD5 Profile ID, all zeros when none was computed
+    public byte[] getProfileId() {
+        byte[] id = new byte[ProfileId.LENGTH];
+        data.get(ProfileId.OFFSET, id);
+        return id;
+    }
+
+    public void setProfileId(byte[] id) {
+        if (id.length != ProfileId.LENGTH) {
+            throw new IllegalArgumentException("Profile ID must be " + ProfileId.LENGTH + " bytes: " + id.length);
+        }
+        data.put(ProfileId.OFFSET, id);
+    }
+
+    @Override
+    public String toString() {
+        return "ICCHeader{\n" +
+                "  size=" + getSize() + "\n" +
+                ", cmmType='" + getCmmType() + "'\n" +
+                ", version='" + getVersion() + "'\n" +
+                ", deviceClass='" + getDeviceClass() + "'\n" +
+                ", colorSpace='" + getColorSpace() + "'\n" +
+                ", pcs='" + getPcs() + "'\n" +
+                ", creationDateTime='" + getCreationDateTime() + "'\n" +
+                ", signature='" + getSignature() + "'\n" +
+                ", primaryPlatform='" + getPrimaryPlatform() + "'\n" +
+                ", flags=" + getFlags() + "\n" +
+                ", manufacturer='" + getManufacturer() + "'\n" +
+                ", model='" + getModel() + "'\n" +
+                ", attributes=" + getAttributes() + "\n" +
+                ", renderingIntent='" + getRenderingIntentString() + "'\n" +
+                ", creator='" + getCreator() + "'\n" +
+                ", profileId=" + ProfileId.toHex(getProfileId()) + "\n" +
+                '}';
+    }
+
+    public String getRenderingIntentString() {
+        return switch (getRenderingIntent()) {
+            case 0 -> "Perceptual";
+            case 1 -> "Relative Colorimetric";
+            case 2 -> "Saturation";
+            case 3 -> "Absolute Colorimetric";
+            default -> "Unknown";
+        };
+    }
+
+    private String signatureString(int offset) {
+        return Signatures.toString(data.getInt(offset));
+    }
+
+    // Empty clears the field, anything else is padded with spaces like the signatures in the tag table
+    private void setSignatureString(int offset, String value) {
+        data.putInt(offset, value.isEmpty() ? 0 : Signatures.of(value));
+    }
+
+    private int dateField(int index) {
+        return data.getShort(DATE_TIME_OFFSET + 2 * index) & 0xFFFF;
+    }
+
+    private static void putDigits(char[] text, int start, int width, int value) {
+        for (int i = start + width - 1; i >= start; i--) {
+            text[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
@@ -0,0 +1,404 @@
+package com.mik.icc.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class ICCProfile implements Closeable {
+
+    // Profiles opened read-only are memory-mapped above this size, everything else is read into a heap buffer.
+    // A mapping lives until every view of it is collected, and Windows will not replace a mapped file, so
+    // profiles that can be saved never map their file
+    static final long MAP_THRESHOLD = 256 * 1024;
+    static final long DEFAULT_CACHE_BYTES = 32L * 1024 * 1024;
+
+    private final String filePath;
+    private final boolean readOnly;
+    private FileChannel channel;
+    private boolean writable;
+    private ByteBuffer buffer;
+    private ICCHeader header;
+    private List<Tag> tags;
+    private TagIndex tagIndex;
+    private final TagDataCache tagDataCache = new TagDataCache(DEFAULT_CACHE_BYTES);
+    private final Map<Integer, TagData> pendingTags = new LinkedHashMap<>();
+    private final Set<Integer> removedTags = new HashSet<>();
+    private ICCHeader pendingHeader;
+
+    public ICCProfile(String filePath) throws IOException {
+        this(filePath, false);
+    }
+
+    private ICCProfile(String filePath, boolean readOnly) throws IOException {
+        this.filePath = filePath;
+        this.readOnly = readOnly;
+        open();
+    }
+
+    public static ICCProfile openReadOnly(String filePath) throws IOException {
+        return new ICCProfile(filePath, true);
+    }
+
+    public ICCHeader getHeader() {
+        return header;
+    }
+
+    public List<Tag> getTags() {
+        return tags;
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public long getFileSize() {
+        return buffer.capacity();
+    }
+
+    public boolean isMapped() {
+        return buffer.isDirect();
+    }
+
+    public TagDataCache getTagDataCache() {
+        return tagDataCache;
+    }
+
+    public ByteBuffer getTagBuffer(Tag tag) throws IOException {
+        ensureOpen();
+        long end = tag.getOffset() + tag.getSize();
+        if (tag.getOffset() < 0 || tag.getSize() < 0 || end > buffer.capacity()) {
+            throw new IOException("Tag '" + tag.getSignature() + "' extends beyond the end of the profile");
+        }
+        return buffer.slice((int) tag.getOffset(), (int) tag.getSize()).asReadOnlyBuffer().order(ByteOrder.BIG_ENDIAN);
+    }
+
+    public TagData readTagData(Tag tag) throws IOException {
+        TagData cached = tagDataCache.get(tag);
+        if (cached != null) {
+            return detach(cached);
+        }
+        TagData decoded = decodeTagData(getTagBuffer(tag));
+        tagDataCache.put(tag, decoded);
+        return detach(decoded);
+    }
+
+    // XYZ, mluc, curve and raw data can be changed in place (the last two through the arrays they hand out), so
+    // callers get their own copy; edits reach the profile only through setTagData and never the cached value
+    private static TagData detach(TagData data) {
+        if (data instanceof XYZTagData) {
+            XYZTagData xyz = (XYZTagData) data;
+            return new XYZTagData(xyz.getX(), xyz.getY(), xyz.getZ());
+        }
+        if (data instanceof MultiLocalizedUnicodeTagData) {
+            return new MultiLocalizedUnicodeTagData((MultiLocalizedUnicodeTagData) data);
+        }
+        if (data instanceof CurveTagData) {
+            return new CurveTagData(((CurveTagData) data).getCurvePoints().clone());
+        }
+        if (data instanceof GenericTagData) {
+            return new GenericTagData(data.toBytes().clone());
+        }
+        return data;
+    }
+
+    private static TagData decodeTagData(ByteBuffer data) {
+        int length = data.capacity();
+
+        // The element's own type signature decides the decoder, not the tag signature
+        int type = length >= 4 ? data.getInt(0) : 0;
+
+        switch (type) {
+            case Signatures.TEXT_TYPE:
+                if (length >= 8) {
+                    String text = new String(copyBytes(data, 8, length - 8), StandardCharsets.UTF_8).trim();
+                    return new TextTagData(text, StandardCharsets.UTF_8);
+                }
+                break;
+            case Signatures.XYZ_TYPE:
+                if (length >= 20) {
+                    double x = XYZTagData.iccS15Fixed16ToFloat(data.getInt(8));
+                    double y = XYZTagData.iccS15Fixed16ToFloat(data.getInt(12));
+                    double z = XYZTagData.iccS15Fixed16ToFloat(data.getInt(16));
+                    return new XYZTagData(x, y, z);
+                }
+                break;
+            case Signatures.CURVE_TYPE:
+                // Counts that run past the element leave it as raw bytes, like any other type that does not decode
+                if (length >= 12 && 12 + 2 * (data.getInt(8) & 0xFFFFFFFFL) <= length) {
+                    int count = data.getInt(8);
+                    double[] curvePoints = new double[count];
+                    for (int i = 0; i < count; i++) {
+                        curvePoints[i] = CurveTagData.iccUnsignedShortToFloat(data.getShort(12 + i * 2));
+                    }
+                    return new CurveTagData(curvePoints);
+                }
+                break;
+            case Signatures.MLUC_TYPE:
+                if (length >= 16 && data.getInt(12) >= 12
+                        && 16 + (data.getInt(8) & 0xFFFFFFFFL) * data.getInt(12) <= length) {
+                    int numRecords = data.getInt(8);
+                    int recordSize = data.getInt(12);
+
+                    MultiLocalizedUnicodeTagData mlucData = new MultiLocalizedUnicodeTagData();
+                    for (int i = 0; i < numRecords; i++) {
+                        int entryStart = 16 + (i * recordSize);
+                        String languageCode = new String(copyBytes(data, entryStart, 2), StandardCharsets.US_ASCII);
+                        String countryCode = new String(copyBytes(data, entryStart + 2, 2), StandardCharsets.US_ASCII);
+                        long offset = data.getInt(entryStart + 4) & 0xFFFFFFFFL;
+                        long stringLength = data.getInt(entryStart + 8) & 0xFFFFFFFFL;
+                        if (offset + stringLength > length) {
+                            return new GenericTagData(copyBytes(data, 0, length));
+                        }
+
+                        // String offsets are relative to the start of the tag element
+                        String text = new String(copyBytes(data, (int) offset, (int) stringLength),
+                                StandardCharsets.UTF_16BE);
+                        mlucData.addLocalizedString(languageCode, countryCode, text);
+                    }
+                    return mlucData;
+                }
+                break;
+            case Signatures.DESC_TYPE:
+                try {
+                    return TextDescriptionTagData.decode(data);
+                } catch (IllegalArgumentException e) {
+                    // Counts that do not fit the element leave it as raw bytes
+                }
+                break;
+            case Signatures.LUT8_TYPE:
+            case Signatures.LUT16_TYPE:
+            case Signatures.LUT_ATOB_TYPE:
+            case Signatures.LUT_BTOA_TYPE:
+                try {
+                    // A view of the profile buffer, the tables are not copied
+                    return LutTagData.decode(data);
+                } catch (IllegalArgumentException e) {
+                    // Malformed tables are kept as raw bytes, like any other type that does not decode
+                }
+                break;
+            default:
+                return new GenericTagData(copyBytes(data, 0, length));
+        }
+        return new GenericTagData(copyBytes(data, 0, length));
+    }
+
+    // Stages new data for a tag (or adds the tag); nothing is written until save()
+    public void setTagData(int signature, TagData tagData) {
+        removedTags.remove(signature);
+        pendingTags.put(signature, tagData);
+    }
+
+    public void setTagData(String signature, TagData tagData) {
+        setTagData(Signatures.of(signature), tagData);
+    }
+
+    public void setTagData(Tag tag, TagData tagData) {
+        setTagData(tag.getSignatureCode(), tagData);
+    }
+
+    public void removeTag(int signature) {
+        pendingTags.remove(signature);
+        removedTags.add(signature);
+    }
+
+    public void removeTag(String signature) {
+        removeTag(Signatures.of(signature));
+    }
+
+    public void setHeader(ICCHeader header) {
+        this.pendingHeader = header;
+    }
+
+    public boolean hasPendingChanges() {
+        return pendingHeader != null || !pendingTags.isEmpty() || !removedTags.isEmpty();
+    }
+
+    public void discardChanges() {
+        pendingHeader = null;
+        pendingTags.clear();
+        removedTags.clear();
+    }
+
+    public void writeTagData(Tag tag, TagData tagData) throws IOException {
+        setTagData(tag, tagData);
+        save();
+    }
+
+    public void writeHeader(ICCHeader header) throws IOException {
+        setHeader(header);
+        save();
+    }
+
+    // Rebuilds the whole profile with the staged changes and replaces the file with a single atomic write
+    public void save() throws IOException {
+        ensureOpen();
+        if (!writable) {
+            throw new IOException("Profile is read-only: " + filePath);
+        }
+        ByteBuffer headerBytes = pendingHeader != null ? pendingHeader.asByteBuffer() : buffer.slice(0, ICCHeader.SIZE);
+        ProfileWriter writer = new ProfileWriter(headerBytes);
+        List<Tag> keptTags = new ArrayList<>();
+        for (Tag tag : tags) {
+            int signature = tag.getSignatureCode();
+            if (removedTags.contains(signature)) {
+                continue;
+            }
+            TagData pending = pendingTags.get(signature);
+            if (pending != null) {
+                writer.addTag(signature, pending.toElementBytes());
+            } else {
+                writer.addTag(signature, getTagBuffer(tag));
+                keptTags.add(tag);
+            }
+        }
+        for (Map.Entry<Integer, TagData> entry : pendingTags.entrySet()) {
+            if (getTagBySignature(entry.getKey()) == null) {
+                writer.addTag(entry.getKey(), entry.getValue().toElementBytes());
+            }
+        }
+        ByteBuffer serialized = writer.serialize();
+        // Version 2 headers reserve the ID bytes, version 4 profiles get a fresh ID for the new content
+        if (serialized.get(8) >= 4) {
+            ProfileId.write(serialized);
+        }
+
+        releaseFile();
+        try {
+            ProfileWriter.writeAtomically(Path.of(filePath), serialized);
+        } catch (IOException | RuntimeException e) {
+            // The write error is what the caller needs to see, a failing reopen only comes along with it
+            try {
+                open();
+            } catch (IOException reopen) {
+                e.addSuppressed(reopen);
+            }
+            throw e;
+        }
+        discardChanges();
+        open();
+
+        // Decoded data of untouched tags stays valid at its new location
+        Map<Long, Tag> relocated = new HashMap<>();
+        for (Tag tag : keptTags) {
+            Tag moved = getTagBySignature(tag.getSignatureCode());
+            if (moved != null) {
+                relocated.put(TagDataCache.key(tag), moved);
+            }
+        }
+        tagDataCache.relocate(relocated);
+    }
+
+    // Digest of the file as it is on disk, staged changes are not included
+    public byte[] computeProfileId() throws IOException {
+        ensureOpen();
+        return ProfileId.compute(buffer.duplicate());
+    }
+
+    public ProfileId.Status verifyProfileId() throws IOException {
+        ensureOpen();
+        return ProfileId.verify(buffer.duplicate());
+    }
+
+    public Tag getTagBySignature(int signature) {
+        int position = tagIndex.positionOf(signature);
+        return position < 0 ? null : tags.get(position);
+    }
+
+    public Tag getTagBySignature(String signature) {
+        return signature.length() <= 4 ? getTagBySignature(Signatures.of(signature)) : null;
+    }
+
+    // Drops the current view of the file and maps it again, picking up changes made on disk
+    public void refresh() throws IOException {
+        close();
+        open();
+    }
+
+    @Override
+    public void close() throws IOException {
+        tagDataCache.clear();
+        releaseFile();
+    }
+
+    private void releaseFile() throws IOException {
+        buffer = null;
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void open() throws IOException {
+        Path path = Path.of(filePath);
+        writable = !readOnly && Files.isWritable(path);
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Profile is too large: " + size + " bytes");
+            }
+            if (readOnly && size > MAP_THRESHOLD) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } else {
+                ByteBuffer heap = ByteBuffer.allocate((int) size);
+                while (heap.hasRemaining() && channel.read(heap, heap.position()) >= 0) {
+                    // keep reading until the buffer is full
+                }
+                buffer = heap.flip();
+            }
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            this.header = parseHeader(buffer);
+            this.tags = parseTagTable(buffer);
+            this.tagIndex = new TagIndex(tags);
+        } catch (IOException e) {
+            close();
+            throw e;
+        } catch (RuntimeException e) {
+            close();
+            throw new IOException("Malformed ICC profile: " + filePath, e);
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (buffer == null) {
+            throw new IOException("Profile is closed: " + filePath);
+        }
+    }
+
+    public static ICCHeader parseHeader(ByteBuffer buf) {
+        return new ICCHeader(buf);
+    }
+
+    public static List<Tag> parseTagTable(ByteBuffer buf) {
+        int tagCount = buf.getInt(128);
+        List<Tag> tags = new ArrayList<>(Math.max(0, Math.min(tagCount, 1024)));
+        int position = 132;
+        for (int i = 0; i < tagCount; i++) {
+            int signature = buf.getInt(position);
+            long offset = buf.getInt(position + 4) & 0xFFFFFFFFL;
+            long size = buf.getInt(position + 8) & 0xFFFFFFFFL;
+            tags.add(new Tag(signature, offset, size));
+            position += 12;
+        }
+        return tags;
+    }
+
+    private static byte[] copyBytes(ByteBuffer buf, int index, int length) {
+        byte[] bytes = new byte[length];
+        buf.get(index, bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,727 @@
+package com.mik.icc.core;
+
+import javax.imageio.ImageIO;
+import java.awt.Image;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+// Applies a ColorTransform to a whole raster. The image is cut into square tiles that are converted on a fork-join
+// pool, each worker with its own scratch buffers. Raw interleaved buffers are converted tile by tile straight into
+// the destination (in place when the channel counts match). Image files are decoded once; the converted image is
+// never materialized: the writer pulls it band by band (one row of tiles), and each band is converted in parallel
+// into a single reused band raster. When the transform is a CachedTransform, 8-bit pixels are looked up in its table.
+public final class ImageConverter {
+
+    // Keeps the samples of a tile (pixels times channels) inside int range
+    public static final int MAX_TILE_SIZE = 8192;
+
+    public static final class Stats {
+        private final int tileSize;
+        private final int tiles;
+        private final long pixels;
+        private final long conversionNanos;
+        private final long totalNanos;
+        private final long workingBytes;
+        private final long peakHeapBytes;
+
+        Stats(int tileSize, int tiles, long pixels, long conversionNanos, long totalNanos, long workingBytes,
+              long peakHeapBytes) {
+            this.tileSize = tileSize;
+            this.tiles = tiles;
+            this.pixels = pixels;
+            this.conversionNanos = conversionNanos;
+            this.totalNanos = totalNanos;
+            this.workingBytes = workingBytes;
+            this.peakHeapBytes = peakHeapBytes;
+        }
+
+        public int getTileSize() {
+            return tileSize;
+        }
+
+        public int getTiles() {
+            return tiles;
+        }
+
+        public long getPixels() {
+            return pixels;
+        }
+
+        // Time spent converting tiles, without decoding and encoding image files
+        public long getConversionNanos() {
+            return conversionNanos;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public double getMegapixelsPerSecond() {
+            return conversionNanos == 0 ? 0 : pixels * 1000.0 / conversionNanos;
+        }
+
+        // Scratch buffers of the workers plus the band raster of an image conversion
+        public long getWorkingBytes() {
+            return workingBytes;
+        }
+
+        // Highest used heap sampled after each tile, including the decoded source image
+        public long getPeakHeapBytes() {
+            return peakHeapBytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "tile %d: %d tiles, %.1f MP in %.1f ms (%.1f MP/s), %.1f ms total, "
+                            + "%d KB working buffers, peak heap %.1f MB", tileSize, tiles, pixels / 1e6,
+                    conversionNanos / 1e6, getMegapixelsPerSecond(), totalNanos / 1e6, workingBytes / 1024,
+                    peakHeapBytes / (1024.0 * 1024.0));
+        }
+    }
+
+    private final ColorTransform transform;
+    private final int tileSize;
+    private final int threads;
+
+    public ImageConverter(ColorTransform transform, int tileSize, int threads) {
+        if (tileSize < 1 || tileSize > MAX_TILE_SIZE) {
+            throw new IllegalArgumentException("Tile size must be 1.." + MAX_TILE_SIZE + ": " + tileSize);
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("Worker count must be at least 1: " + threads);
+        }
+        this.transform = transform;
+        this.tileSize = tileSize;
+        this.threads = threads;
+    }
+
+    public ColorTransform getTransform() {
+        return transform;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    // Interleaved float pixels in the transform's channel counts; out may be in when the counts match
+    public Stats convert(float[] in, float[] out, int width, int height) {
+        int inChannels = transform.getInputChannels();
+        int outChannels = transform.getOutputChannels();
+        checkBuffers(in.length, out.length, in == out, width, height);
+        Run run = new Run();
+        TileGrid grid = new TileGrid(width, height, tileSize);
+        run.convert(grid.count(), tile -> {
+            int x = grid.x(tile);
+            int w = grid.width(tile);
+            for (int y = grid.y(tile); y < grid.y(tile) + grid.height(tile); y++) {
+                int pixel = y * width + x;
+                transform.transform(in, pixel * inChannels, out, pixel * outChannels, w);
+            }
+            run.sampleHeap();
+        });
+        return run.stats(grid.count(), (long) width * height, 0);
+    }
+
+    // Interleaved 8-bit pixels in the transform's channel counts; out may be in when the counts match. A
+    // CachedTransform converts the rows of a tile directly; otherwise packed RGB conversion is used when the
+    // transform supports it.
+    public Stats convert(byte[] in, byte[] out, int width, int height) {
+        int inChannels = transform.getInputChannels();
+        int outChannels = transform.getOutputChannels();
+        checkBuffers(in.length, out.length, in == out, width, height);
+        boolean packed = transform.supportsPackedRgb();
+        CachedTransform cache = transform instanceof CachedTransform ? (CachedTransform) transform : null;
+        Run run = new Run();
+        TileGrid grid = new TileGrid(width, height, tileSize);
+        // Tiles are never larger than the image
+        int tilePixels = Math.min(tileSize, width) * Math.min(tileSize, height);
+        run.convert(grid.count(), tile -> {
+            if (cache != null) {
+                for (int y = grid.y(tile); y < grid.y(tile) + grid.height(tile); y++) {
+                    int pixel = y * width + grid.x(tile);
+                    cache.transform(in, pixel * inChannels, out, pixel * outChannels, grid.width(tile));
+                }
+                run.sampleHeap();
+                return;
+            }
+            Scratch scratch = run.scratch(tilePixels, Math.max(inChannels, outChannels), packed);
+            int x = grid.x(tile);
+            int w = grid.width(tile);
+            int h = grid.height(tile);
+            int count = w * h;
+            for (int row = 0; row < h; row++) {
+                int start = ((grid.y(tile) + row) * width + x) * inChannels;
+                if (packed) {
+                    for (int p = 0; p < w; p++) {
+                        int i = start + p * 3;
+                        scratch.packed[row * w + p] = (in[i] & 0xFF) << 16 | (in[i + 1] & 0xFF) << 8 | in[i + 2] & 0xFF;
+                    }
+                } else {
+                    int s = row * w * inChannels;
+                    for (int i = 0; i < w * inChannels; i++) {
+                        scratch.in[s + i] = (in[start + i] & 0xFF) / 255f;
+                    }
+                }
+            }
+            if (packed) {
+                transform.transform(scratch.packed, 0, scratch.packed, 0, count);
+            } else {
+                transform.transform(scratch.in, 0, scratch.out, 0, count);
+            }
+            for (int row = 0; row < h; row++) {
+                int start = ((grid.y(tile) + row) * width + x) * outChannels;
+                if (packed) {
+                    for (int p = 0; p < w; p++) {
+                        int rgb = scratch.packed[row * w + p];
+                        int o = start + p * 3;
+                        out[o] = (byte) (rgb >> 16);
+                        out[o + 1] = (byte) (rgb >> 8);
+                        out[o + 2] = (byte) rgb;
+                    }
+                } else {
+                    int s = row * w * outChannels;
+                    for (int i = 0; i < w * outChannels; i++) {
+                        out[start + i] = (byte) quantize(scratch.out[s + i], 255);
+                    }
+                }
+            }
+            run.sampleHeap();
+        });
+        return run.stats(grid.count(), (long) width * height, 0);
+    }
+
+    // Reads an image with javax.imageio and writes the converted image in the format of the destination's
+    // extension (png, tif, tiff, ...). An alpha channel is copied unchanged; 8 and 16-bit samples keep their depth.
+    public Stats convert(Path source, Path destination) throws IOException {
+        Run run = new Run();
+        try {
+            String format = formatName(destination);
+            BufferedImage image = ImageIO.read(source.toFile());
+            if (image == null) {
+                throw new IOException("Unsupported image format: " + source);
+            }
+            if (image.getColorModel() instanceof IndexColorModel) {
+                throw new IOException("Palette images are not supported: " + source);
+            }
+            // Samples are scaled by their integer maximum, which float and 32-bit samples do not have
+            int dataType = image.getRaster().getDataBuffer().getDataType();
+            int[] sampleSizes = image.getSampleModel().getSampleSize();
+            if (dataType == DataBuffer.TYPE_FLOAT || dataType == DataBuffer.TYPE_DOUBLE
+                    || dataType == DataBuffer.TYPE_UNDEFINED
+                    || Arrays.stream(sampleSizes).anyMatch(bits -> bits < 1 || bits > 16)) {
+                throw new IOException("Only integer samples of 1 to 16 bits are supported: " + source);
+            }
+            boolean alpha = image.getColorModel().hasAlpha();
+            int colorBands = image.getRaster().getNumBands() - (alpha ? 1 : 0);
+            if (colorBands != transform.getInputChannels()) {
+                throw new IOException(source + " has " + colorBands + " color channels, the transform expects "
+                        + transform.getInputChannels());
+            }
+            ConvertedImage converted = new ConvertedImage(run, image.getRaster(), alpha);
+            if (!ImageIO.write(converted, format, destination.toFile())) {
+                throw new IOException("No " + format + " writer for " + transform.getOutputChannels()
+                        + "-channel images: " + destination);
+            }
+            return run.stats(converted.tiles, (long) image.getWidth() * image.getHeight(), converted.bandBytes());
+        } finally {
+            run.shutdown();
+        }
+    }
+
+    private void checkBuffers(int inLength, int outLength, boolean inPlace, int width, int height) {
+        long pixels = (long) width * height;
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("Empty image: " + width + " x " + height);
+        }
+        if (inLength < pixels * transform.getInputChannels() || outLength < pixels * transform.getOutputChannels()) {
+            throw new IllegalArgumentException("Buffers are too small for " + width + " x " + height + " pixels");
+        }
+        if (inPlace && transform.getInputChannels() != transform.getOutputChannels()) {
+            throw new IllegalArgumentException("In-place conversion needs equal input and output channel counts");
+        }
+    }
+
+    private static String formatName(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        if (dot < 0) {
+            throw new IOException("No image format extension: " + file);
+        }
+        return name.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    private static int quantize(float value, int max) {
+        float clamped = value > 0f ? (value < 1f ? value : 1f) : 0f;
+        return (int) (clamped * max + 0.5f);
+    }
+
+    // Tiles in row-major order; the last column and row may be smaller
+    private static final class TileGrid {
+        final int imageWidth;
+        final int imageHeight;
+        final int size;
+        final int columns;
+        final int rows;
+
+        TileGrid(int imageWidth, int imageHeight, int size) {
+            this.imageWidth = imageWidth;
+            this.imageHeight = imageHeight;
+            this.size = size;
+            this.columns = (imageWidth + size - 1) / size;
+            this.rows = (imageHeight + size - 1) / size;
+        }
+
+        int count() {
+            return columns * rows;
+        }
+
+        int x(int tile) {
+            return tile % columns * size;
+        }
+
+        int y(int tile) {
+            return tile / columns * size;
+        }
+
+        int width(int tile) {
+            return Math.min(size, imageWidth - x(tile));
+        }
+
+        int height(int tile) {
+            return Math.min(size, imageHeight - y(tile));
+        }
+    }
+
+    private static final class Scratch {
+        final float[] in;
+        final float[] out;
+        final int[] packed;
+        final int[] samples;
+        // 8-bit samples for a CachedTransform
+        final byte[] bytesIn;
+        final byte[] bytesOut;
+
+        Scratch(int pixels, int channels, boolean packed, boolean samples) {
+            this.in = packed ? null : new float[pixels * channels];
+            this.out = packed ? null : new float[pixels * channels];
+            this.packed = packed ? new int[pixels] : null;
+            // Raster samples, one more channel for alpha
+            this.samples = samples ? new int[pixels * (channels + 1)] : null;
+            this.bytesIn = samples ? new byte[pixels * channels] : null;
+            this.bytesOut = samples ? new byte[pixels * channels] : null;
+        }
+
+        long bytes() {
+            return 4L * ((in == null ? 0 : in.length) + (out == null ? 0 : out.length)
+                    + (packed == null ? 0 : packed.length) + (samples == null ? 0 : samples.length))
+                    + (bytesIn == null ? 0 : bytesIn.length + bytesOut.length);
+        }
+    }
+
+    // State of one conversion: the pool, the per-thread scratch buffers and the measurements
+    private final class Run {
+        private final ForkJoinPool pool = new ForkJoinPool(threads);
+        private final ThreadLocal<Scratch> scratch = new ThreadLocal<>();
+        private final AtomicLong workingBytes = new AtomicLong();
+        private final AtomicLong peakHeap = new AtomicLong();
+        private final long start = System.nanoTime();
+        private long conversionNanos;
+
+        Scratch scratch(int pixels, int channels, boolean packed) {
+            return scratch(pixels, channels, packed, false);
+        }
+
+        Scratch scratch(int pixels, int channels, boolean packed, boolean samples) {
+            Scratch buffers = scratch.get();
+            if (buffers == null) {
+                buffers = new Scratch(pixels, channels, packed, samples);
+                scratch.set(buffers);
+                workingBytes.addAndGet(buffers.bytes());
+            }
+            return buffers;
+        }
+
+        void sampleHeap() {
+            Runtime runtime = Runtime.getRuntime();
+            peakHeap.accumulateAndGet(runtime.totalMemory() - runtime.freeMemory(), Math::max);
+        }
+
+        // Raw buffers need no pool afterwards; image conversions call it once per band and shut down at the end
+        void convert(int tileCount, IntConsumer tileAction) {
+            try {
+                convertBand(tileCount, tileAction);
+            } finally {
+                shutdown();
+            }
+        }
+
+        void convertBand(int tileCount, IntConsumer tileAction) {
+            long start = System.nanoTime();
+            pool.invoke(new TileTask(tileAction, 0, tileCount));
+            conversionNanos += System.nanoTime() - start;
+        }
+
+        void shutdown() {
+            pool.shutdown();
+        }
+
+        Stats stats(int tiles, long pixels, long bufferBytes) {
+            sampleHeap();
+            return new Stats(tileSize, tiles, pixels, conversionNanos, System.nanoTime() - start,
+                    workingBytes.get() + bufferBytes, peakHeap.get());
+        }
+    }
+
+    // Splits a range of tiles in halves until single tiles remain
+    private static final class TileTask extends RecursiveAction {
+        private final IntConsumer tileAction;
+        private final int first;
+        private final int end;
+
+        TileTask(IntConsumer tileAction, int first, int end) {
+            this.tileAction = tileAction;
+            this.first = first;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - first == 1) {
+                tileAction.accept(first);
+                return;
+            }
+            int middle = (first + end) >>> 1;
+            invokeAll(new TileTask(tileAction, first, middle), new TileTask(tileAction, middle, end));
+        }
+    }
+
+    // The converted image as seen by an ImageWriter. Its tiles are the bands; a band is converted when the writer
+    // first asks for one of its rows, and getData copies out of it as RenderedImage requires.
+    private final class ConvertedImage implements RenderedImage {
+        private final Run run;
+        private final Raster source;
+        private final boolean alpha;
+        private final int width;
+        private final int height;
+        private final int[] sourceMax;
+        private final boolean eightBit;
+        private final int outputMax;
+        private final ColorModel colorModel;
+        private final SampleModel sampleModel;
+        private final WritableRaster band;
+        private final TileGrid grid;
+        private final CachedTransform cache;
+        private int bandIndex = -1;
+        int tiles;
+
+        ConvertedImage(Run run, Raster source, boolean alpha) throws IOException {
+            this.run = run;
+            this.source = source;
+            this.alpha = alpha;
+            this.width = source.getWidth();
+            this.height = source.getHeight();
+            // Bands may differ in depth (5-6-5 RGB), each is scaled by its own maximum
+            int[] sampleSizes = source.getSampleModel().getSampleSize();
+            this.sourceMax = new int[sampleSizes.length];
+            int bits = 0;
+            for (int b = 0; b < sampleSizes.length; b++) {
+                sourceMax[b] = (1 << sampleSizes[b]) - 1;
+                bits = Math.max(bits, sampleSizes[b]);
+            }
+            this.eightBit = Arrays.stream(sampleSizes).allMatch(size -> size == 8);
+            int dataType = bits > 8 ? DataBuffer.TYPE_USHORT : DataBuffer.TYPE_BYTE;
+            this.outputMax = bits > 8 ? 0xFFFF : 0xFF;
+            int outputBands = transform.getOutputChannels() + (alpha ? 1 : 0);
+            this.colorModel = new ComponentColorModel(colorSpace(transform.getOutputChannels()), alpha, false,
+                    alpha ? ColorModel.TRANSLUCENT : ColorModel.OPAQUE, dataType);
+            int[] offsets = new int[outputBands];
+            for (int b = 0; b < outputBands; b++) {
+                offsets[b] = b;
+            }
+            int bandHeight = Math.min(tileSize, height);
+            this.sampleModel = new PixelInterleavedSampleModel(dataType, width, bandHeight, outputBands,
+                    width * outputBands, offsets);
+            this.band = Raster.createWritableRaster(sampleModel, new Point(0, 0));
+            this.grid = new TileGrid(width, height, tileSize);
+            this.cache = transform instanceof CachedTransform ? (CachedTransform) transform : null;
+        }
+
+        long bandBytes() {
+            return (long) width * sampleModel.getHeight() * sampleModel.getNumBands()
+                    * DataBuffer.getDataTypeSize(sampleModel.getDataType()) / 8;
+        }
+
+        private ColorSpace colorSpace(int channels) throws IOException {
+            switch (channels) {
+                case 1:
+                    return ColorSpace.getInstance(ColorSpace.CS_GRAY);
+                case 3:
+                    return ColorSpace.getInstance(ColorSpace.CS_sRGB);
+                case 4:
+                    return DeviceCmyk.INSTANCE;
+                default:
+                    throw new IOException("No image color space for " + channels + " channels");
+            }
+        }
+
+        // Converts band index unless it is the current one; the band raster is positioned at the band's first row
+        private synchronized Raster band(int index) {
+            if (index != bandIndex) {
+                int first = index * grid.columns;
+                int inChannels = transform.getInputChannels();
+                int outChannels = transform.getOutputChannels();
+                int sourceBands = source.getNumBands();
+                int outputBands = sampleModel.getNumBands();
+                int bandTop = index * tileSize;
+                int tilePixels = Math.min(tileSize, width) * Math.min(tileSize, height);
+                run.convertBand(grid.columns, column -> {
+                    int tile = first + column;
+                    Scratch scratch = run.scratch(tilePixels, Math.max(inChannels, outChannels), false, true);
+                    int x = grid.x(tile);
+                    int y = grid.y(tile);
+                    int w = grid.width(tile);
+                    int h = grid.height(tile);
+                    int count = w * h;
+                    int[] samples = source.getPixels(source.getMinX() + x, source.getMinY() + y, w, h,
+                            scratch.samples);
+                    if (cache != null && eightBit) {
+                        convertCached(samples, scratch, count, sourceBands);
+                    } else {
+                        for (int p = 0; p < count; p++) {
+                            for (int c = 0; c < inChannels; c++) {
+                                scratch.in[p * inChannels + c] = samples[p * sourceBands + c] / (float) sourceMax[c];
+                            }
+                        }
+                        transform.transform(scratch.in, 0, scratch.out, 0, count);
+                    }
+                    // The samples are rewritten in place from source to output layout; walking backwards when the
+                    // output has more bands keeps every write behind the source pixels still to be read
+                    if (outputBands > sourceBands) {
+                        for (int p = count - 1; p >= 0; p--) {
+                            writePixel(samples, scratch.out, p, sourceBands, outputBands, outChannels);
+                        }
+                    } else {
+                        for (int p = 0; p < count; p++) {
+                            writePixel(samples, scratch.out, p, sourceBands, outputBands, outChannels);
+                        }
+                    }
+                    band.setPixels(x, y - bandTop, w, h, samples);
+                    run.sampleHeap();
+                });
+                tiles += grid.columns;
+                bandIndex = index;
+            }
+            return band.createTranslatedChild(0, index * tileSize);
+        }
+
+        // Results of the cache go through scratch.out like those of the transform; the 8-bit values survive the
+        // round trip through float exactly
+        private void convertCached(int[] samples, Scratch scratch, int count, int sourceBands) {
+            int inChannels = transform.getInputChannels();
+            int outChannels = transform.getOutputChannels();
+            for (int p = 0; p < count; p++) {
+                for (int c = 0; c < inChannels; c++) {
+                    scratch.bytesIn[p * inChannels + c] = (byte) samples[p * sourceBands + c];
+                }
+            }
+            cache.transform(scratch.bytesIn, 0, scratch.bytesOut, 0, count);
+            for (int i = 0; i < count * outChannels; i++) {
+                scratch.out[i] = (scratch.bytesOut[i] & 0xFF) / 255f;
+            }
+        }
+
+        private void writePixel(int[] samples, float[] values, int p, int sourceBands, int outputBands,
+                                int outChannels) {
+            int alphaValue = alpha ? samples[p * sourceBands + sourceBands - 1] : 0;
+            int alphaMax = sourceMax[sourceBands - 1];
+            for (int c = 0; c < outChannels; c++) {
+                samples[p * outputBands + c] = quantize(values[p * outChannels + c], outputMax);
+            }
+            if (alpha) {
+                samples[p * outputBands + outChannels] = alphaMax == outputMax ? alphaValue
+                        : Math.round(alphaValue * (float) outputMax / alphaMax);
+            }
+        }
+
+        @Override
+        public Vector<RenderedImage> getSources() {
+            return null;
+        }
+
+        @Override
+        public Object getProperty(String name) {
+            return Image.UndefinedProperty;
+        }
+
+        @Override
+        public String[] getPropertyNames() {
+            return null;
+        }
+
+        @Override
+        public ColorModel getColorModel() {
+            return colorModel;
+        }
+
+        @Override
+        public SampleModel getSampleModel() {
+            return sampleModel;
+        }
+
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        @Override
+        public int getHeight() {
+            return height;
+        }
+
+        @Override
+        public int getMinX() {
+            return 0;
+        }
+
+        @Override
+        public int getMinY() {
+            return 0;
+        }
+
+        @Override
+        public int getNumXTiles() {
+            return 1;
+        }
+
+        @Override
+        public int getNumYTiles() {
+            return grid.rows;
+        }
+
+        @Override
+        public int getMinTileX() {
+            return 0;
+        }
+
+        @Override
+        public int getMinTileY() {
+            return 0;
+        }
+
+        @Override
+        public int getTileWidth() {
+            return width;
+        }
+
+        @Override
+        public int getTileHeight() {
+            return sampleModel.getHeight();
+        }
+
+        @Override
+        public int getTileGridXOffset() {
+            return 0;
+        }
+
+        @Override
+        public int getTileGridYOffset() {
+            return 0;
+        }
+
+        // The last band is only partly inside the image; writers clip tiles to the image bounds
+        @Override
+        public Raster getTile(int tileX, int tileY) {
+            return band(tileY);
+        }
+
+        @Override
+        public Raster getData() {
+            return getData(new Rectangle(0, 0, width, height));
+        }
+
+        @Override
+        public Raster getData(Rectangle rect) {
+            WritableRaster copy = Raster.createWritableRaster(
+                    sampleModel.createCompatibleSampleModel(rect.width, rect.height), rect.getLocation());
+            return copyData(copy);
+        }
+
+        @Override
+        public WritableRaster copyData(WritableRaster raster) {
+            Rectangle bounds = raster == null ? new Rectangle(0, 0, width, height) : raster.getBounds();
+            WritableRaster target = raster != null ? raster : Raster.createWritableRaster(
+                    sampleModel.createCompatibleSampleModel(width, height), new Point(0, 0));
+            int top = Math.max(bounds.y, 0);
+            int bottom = Math.min(bounds.y + bounds.height, height);
+            for (int index = top / tileSize; index * tileSize < bottom; index++) {
+                Raster current = band(index);
+                Rectangle overlap = current.getBounds().intersection(bounds)
+                        .intersection(new Rectangle(0, 0, width, height));
+                if (!overlap.isEmpty()) {
+                    // setDataElements offsets by the child's origin, so the child starts at 0,0
+                    target.setDataElements(overlap.x, overlap.y,
+                            current.createChild(overlap.x, overlap.y, overlap.width, overlap.height, 0, 0, null));
+                }
+            }
+            return target;
+        }
+    }
+
+    // Uncalibrated CMYK so 4-channel results can be written as separated TIFF
+    private static final class DeviceCmyk extends ColorSpace {
+        static final DeviceCmyk INSTANCE = new DeviceCmyk();
+
+        private DeviceCmyk() {
+            super(ColorSpace.TYPE_CMYK, 4);
+        }
+
+        @Override
+        public float[] toRGB(float[] cmyk) {
+            float k = 1f - cmyk[3];
+            return new float[] {(1f - cmyk[0]) * k, (1f - cmyk[1]) * k, (1f - cmyk[2]) * k};
+        }
+
+        @Override
+        public float[] fromRGB(float[] rgb) {
+            float max = Math.max(rgb[0], Math.max(rgb[1], rgb[2]));
+            if (max == 0f) {
+                return new float[] {0f, 0f, 0f, 1f};
+            }
+            return new float[] {1f - rgb[0] / max, 1f - rgb[1] / max, 1f - rgb[2] / max, 1f - max};
+        }
+
+        @Override
+        public float[] toCIEXYZ(float[] cmyk) {
+            return ColorSpace.getInstance(ColorSpace.CS_sRGB).toCIEXYZ(toRGB(cmyk));
+        }
+
+        @Override
+        public float[] fromCIEXYZ(float[] xyz) {
+            return fromRGB(ColorSpace.getInstance(ColorSpace.CS_sRGB).fromCIEXYZ(xyz));
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.mik.icc.core;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+// What the library index knows about one profile: file stamp, raw header and per-tag signature, size and content hash
+public final class IndexEntry {
+
+    private final String path;
+    private final long lastModified;
+    private final long fileSize;
+    private final ICCHeader header;
+    private final int[] tagSignatures;
+    private final long[] tagSizes;
+    private final long[] tagHashes;
+
+    IndexEntry(String path, long lastModified, long fileSize, ICCHeader header,
+               int[] tagSignatures, long[] tagSizes, long[] tagHashes) {
+        this.path = path;
+        this.lastModified = lastModified;
+        this.fileSize = fileSize;
+        this.header = header;
+        this.tagSignatures = tagSignatures;
+        this.tagSizes = tagSizes;
+        this.tagHashes = tagHashes;
+    }
+
+    // Opens the profile once and hashes every tag element
+    static IndexEntry read(Path file, long lastModified, long fileSize) throws IOException {
+        try (ICCProfile profile = ICCProfile.openReadOnly(file.toString())) {
+            int count = profile.getTags().size();
+            int[] signatures = new int[count];
+            long[] sizes = new long[count];
+            long[] hashes = new long[count];
+            for (int i = 0; i < count; i++) {
+                Tag tag = profile.getTags().get(i);
+                signatures[i] = tag.getSignatureCode();
+                sizes[i] = tag.getSize();
+                hashes[i] = ContentHash.of(profile.getTagBuffer(tag));
+            }
+            return new IndexEntry(file.toString(), lastModified, fileSize, profile.getHeader(), signatures, sizes, hashes);
+        }
+    }
+
+    public Path getPath() {
+        return Path.of(path);
+    }
+
+    String getPathString() {
+        return path;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    boolean isCurrent(long lastModified, long fileSize) {
+        return this.lastModified == lastModified && this.fileSize == fileSize;
+    }
+
+    // A copy, so callers cannot change the indexed data
+    public ICCHeader getHeader() {
+        return header.copy();
+    }
+
+    ICCHeader header() {
+        return header;
+    }
+
+    public int getTagCount() {
+        return tagSignatures.length;
+    }
+
+    public int getTagSignature(int index) {
+        return tagSignatures[index];
+    }
+
+    public long getTagSize(int index) {
+        return tagSizes[index];
+    }
+
+    public long getTagHash(int index) {
+        return tagHashes[index];
+    }
+
+    public boolean hasTag(int signature) {
+        return indexOf(signature) >= 0;
+    }
+
+    // Position of the first tag with this signature, or -1
+    public int indexOf(int signature) {
+        for (int i = 0; i < tagSignatures.length; i++) {
+            if (tagSignatures[i] == signature) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        return path + " [" + header.getDeviceClass() + ", " + header.getColorSpace() + ", "
+                + header.getManufacturer() + "/" + header.getModel() + ", " + tagSignatures.length + " tags]";
+    }
+}
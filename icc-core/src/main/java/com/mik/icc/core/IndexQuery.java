@@ -0,0 +1,68 @@
+package com.mik.icc.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+// Filter over index entries; all conditions must hold. Works on the indexed data only, profiles are not reopened.
+public final class IndexQuery implements Predicate<IndexEntry> {
+
+    private final List<Predicate<IndexEntry>> conditions = new ArrayList<>();
+
+    public IndexQuery deviceClass(String deviceClass) {
+        int code = signature(deviceClass);
+        return where(entry -> entry.header().getDeviceClassCode() == code);
+    }
+
+    public IndexQuery colorSpace(String colorSpace) {
+        int code = signature(colorSpace);
+        return where(entry -> entry.header().getColorSpaceCode() == code);
+    }
+
+    public IndexQuery manufacturer(String manufacturer) {
+        int code = signature(manufacturer);
+        return where(entry -> entry.header().getManufacturerCode() == code);
+    }
+
+    public IndexQuery model(String model) {
+        int code = signature(model);
+        return where(entry -> entry.header().getModelCode() == code);
+    }
+
+    public IndexQuery withTag(String signature) {
+        int code = Signatures.of(signature);
+        return where(entry -> entry.hasTag(code));
+    }
+
+    // Profiles containing a tag element with exactly this content, e.g. to find copies of a shared 'desc'
+    public IndexQuery withTagHash(long hash) {
+        return where(entry -> {
+            for (int i = 0; i < entry.getTagCount(); i++) {
+                if (entry.getTagHash(i) == hash) {
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+
+    public IndexQuery where(Predicate<IndexEntry> condition) {
+        conditions.add(condition);
+        return this;
+    }
+
+    @Override
+    public boolean test(IndexEntry entry) {
+        for (Predicate<IndexEntry> condition : conditions) {
+            if (!condition.test(entry)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Header fields hold 0 when unused, like ICCHeader's string setters
+    private static int signature(String value) {
+        return value.isEmpty() ? 0 : Signatures.of(value);
+    }
+}
@@ -0,0 +1,643 @@
+package com.mik.icc.core;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Rebuilds PCS-to-device tables by inverting a device-to-PCS LUT. Every node of a PCS grid is solved for the device
+// values whose forward result is closest in CIELAB: damped Gauss-Newton (Levenberg-Marquardt) on the forward LUT,
+// with the box 0..1 enforced by clamping each step. Each L* slice of the grid is one fork-join task that walks its
+// nodes in snake order and starts every solve from the previous node's solution; the first node of a slice starts
+// from the nearest entry of a coarse forward table. Slices do not depend on each other, so the table is the same
+// for any thread count.
+//
+// Gamut mapping is part of the same solve: the error weighs chroma far less than L* and hue, so an out-of-gamut node
+// ends up on the gamut boundary at about its own L* and hue with the highest chroma reachable there. In-gamut nodes
+// are reached exactly either way. Nodes beyond the paper white or the darkest black get the closest reachable color.
+public final class LutInverter {
+
+    @FunctionalInterface
+    public interface ProgressListener {
+        // Called from worker threads as nodes complete
+        void progress(long done, long total);
+    }
+
+    // Forward error in delta E 1976 up to which a node counts as in gamut
+    static final double GAMUT_TOLERANCE = 0.5;
+
+    private static final int[] A2B = {Signatures.A2B0, Signatures.A2B1, Signatures.A2B2};
+    private static final int[] B2A = {Signatures.B2A0, Signatures.B2A1, Signatures.B2A2};
+    // Upper bound on the coarse forward table used for starting points
+    private static final int SEED_SAMPLES = 20_000;
+
+    private final int threads;
+    private int gridPoints = 33;
+    private ProgressListener listener;
+    private volatile boolean cancelled;
+
+    public LutInverter(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Worker count must be at least 1: " + threads);
+        }
+        this.threads = threads;
+    }
+
+    // Points per PCS channel of the generated tables (default: 33)
+    public LutInverter gridPoints(int gridPoints) {
+        if (gridPoints < 2 || gridPoints > 255) {
+            throw new IllegalArgumentException("Grid points must be 2..255: " + gridPoints);
+        }
+        this.gridPoints = gridPoints;
+        return this;
+    }
+
+    public LutInverter progressListener(ProgressListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    // Stops a running inversion, which then throws InterruptedIOException; interrupting the calling thread does the
+    // same. A cancelled inverter stays cancelled.
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public static final class Result {
+        private final int signature;
+        private final LutTagData table;
+        private final int points;
+        private final int outOfGamut;
+        private final double meanDeltaE;
+        private final double maxDeltaE;
+        private final long nanos;
+
+        Result(int signature, LutTagData table, int points, int outOfGamut, double meanDeltaE, double maxDeltaE,
+               long nanos) {
+            this.signature = signature;
+            this.table = table;
+            this.points = points;
+            this.outOfGamut = outOfGamut;
+            this.meanDeltaE = meanDeltaE;
+            this.maxDeltaE = maxDeltaE;
+            this.nanos = nanos;
+        }
+
+        // B2A tag the table was built for
+        public int getSignature() {
+            return signature;
+        }
+
+        public LutTagData getTable() {
+            return table;
+        }
+
+        public int getPoints() {
+            return points;
+        }
+
+        public int getOutOfGamut() {
+            return outOfGamut;
+        }
+
+        // Forward error of the in-gamut nodes
+        public double getMeanDeltaE() {
+            return meanDeltaE;
+        }
+
+        public double getMaxDeltaE() {
+            return maxDeltaE;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s: %d points, %d out of gamut, in-gamut dE mean %.3f max %.3f, "
+                    + "%.0f ms", Signatures.toString(signature), points, outOfGamut, meanDeltaE, maxDeltaE, nanos / 1e6);
+        }
+    }
+
+    // Replaces B2A0/1/2 of the profile by inversions of the A2B tag of the same intent and saves it; intents without
+    // their own A2B tag are left alone
+    public List<Result> rebuild(ICCProfile profile) throws IOException {
+        List<Integer> intents = new ArrayList<>();
+        List<LutTagData> forward = new ArrayList<>();
+        for (int intent = 0; intent < A2B.length; intent++) {
+            Tag tag = profile.getTagBySignature(A2B[intent]);
+            if (tag == null) {
+                continue;
+            }
+            TagData data = profile.readTagData(tag);
+            if (!(data instanceof LutTagData)) {
+                throw new IOException(tag.getSignature() + " is not a LUT tag: " + profile.getFilePath());
+            }
+            intents.add(intent);
+            forward.add((LutTagData) data);
+        }
+        if (intents.isEmpty()) {
+            throw new IOException("No A2B tag to invert: " + profile.getFilePath());
+        }
+        ICCHeader header = profile.getHeader();
+        Progress progress = new Progress((long) intents.size() * points());
+        List<Result> results = new ArrayList<>();
+        for (int i = 0; i < intents.size(); i++) {
+            results.add(invert(forward.get(i), header.getPcsCode(), header.getVersionMajor() >= 4,
+                    B2A[intents.get(i)], progress));
+        }
+        // Nothing is changed unless every table was built
+        for (Result result : results) {
+            profile.setTagData(result.getSignature(), result.getTable());
+        }
+        profile.save();
+        return results;
+    }
+
+    // Inverts a device-to-PCS LUT of a profile with the given header PCS; mBA for version 4 profiles, mft2 otherwise
+    public Result invert(LutTagData aToB, int pcs, boolean version4) throws IOException {
+        return invert(aToB, pcs, version4, Signatures.B2A0, new Progress(points()));
+    }
+
+    private int points() {
+        return gridPoints * gridPoints * gridPoints;
+    }
+
+    private Result invert(LutTagData aToB, int pcs, boolean version4, int signature, Progress progress)
+            throws IOException {
+        if (aToB.getOutputChannels() != 3) {
+            throw new IllegalArgumentException("A device-to-PCS LUT has 3 outputs, not " + aToB.getOutputChannels());
+        }
+        long start = System.nanoTime();
+        int deviceChannels = aToB.getInputChannels();
+        ColorTransform forward = ChainedTransform.of(LutTransform.of(aToB),
+                PcsConversion.toXyz(PcsConversion.encodingOf(aToB, pcs)));
+        PcsConversion.Encoding encoding = pcs == Signatures.of("XYZ") ? PcsConversion.Encoding.XYZ
+                : version4 ? PcsConversion.Encoding.LAB : PcsConversion.Encoding.LAB_LEGACY;
+        Seeds seeds = new Seeds(forward);
+        Clut clut = Clut.allocate(new int[] {gridPoints, gridPoints, gridPoints}, deviceChannels, 2);
+
+        Slice[] slices = new Slice[gridPoints];
+        for (int l = 0; l < gridPoints; l++) {
+            slices[l] = new Slice(l);
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(new SliceTask(new Run(forward, PcsConversion.toXyz(encoding), seeds, clut, progress), slices,
+                    0, slices.length));
+        } finally {
+            pool.shutdown();
+        }
+        if (progress.isCancelled()) {
+            throw new InterruptedIOException("Inversion of " + Signatures.toString(signature) + " was cancelled");
+        }
+
+        int outOfGamut = 0;
+        double errorSum = 0;
+        double maxError = 0;
+        for (Slice slice : slices) {
+            outOfGamut += slice.outOfGamut;
+            errorSum += slice.errorSum;
+            maxError = Math.max(maxError, slice.maxError);
+        }
+        int points = clut.getNodeCount();
+        int inGamut = points - outOfGamut;
+        LutTagData table = version4
+                ? LutTagData.lutBToA(identities(3), null, null, clut, identities(deviceChannels))
+                : LutTagData.lut16(null, identities(3), clut, identities(deviceChannels), 256, 256);
+        return new Result(signature, table, points, outOfGamut, inGamut > 0 ? errorSum / inGamut : 0, maxError,
+                System.nanoTime() - start);
+    }
+
+    private static ToneCurve[] identities(int channels) {
+        ToneCurve[] curves = new ToneCurve[channels];
+        Arrays.fill(curves, ToneCurve.identity());
+        return curves;
+    }
+
+    private final class Progress {
+        private final AtomicLong done = new AtomicLong();
+        private final long total;
+        private final Thread caller = Thread.currentThread();
+
+        Progress(long total) {
+            this.total = total;
+        }
+
+        void advance(long nodes) {
+            long now = done.addAndGet(nodes);
+            if (listener != null) {
+                listener.progress(now, total);
+            }
+        }
+
+        boolean isCancelled() {
+            return cancelled || caller.isInterrupted();
+        }
+    }
+
+    private static final class Run {
+        final ColorTransform forward;
+        final ColorTransform pcsToXyz;
+        final Seeds seeds;
+        final Clut clut;
+        final Progress progress;
+
+        Run(ColorTransform forward, ColorTransform pcsToXyz, Seeds seeds, Clut clut, Progress progress) {
+            this.forward = forward;
+            this.pcsToXyz = pcsToXyz;
+            this.seeds = seeds;
+            this.clut = clut;
+            this.progress = progress;
+        }
+    }
+
+    // Statistics of one L* slice, summed up in slice order once all are done
+    private static final class Slice {
+        final int index;
+        int outOfGamut;
+        double errorSum;
+        double maxError;
+
+        Slice(int index) {
+            this.index = index;
+        }
+    }
+
+    // Forward results on a coarse device grid, the starting points of each slice's first solve
+    private static final class Seeds {
+        final int channels;
+        final float[] device;
+        final double[] lab;
+
+        Seeds(ColorTransform forward) {
+            channels = forward.getInputChannels();
+            int samples = Math.max(2, (int) Math.pow(SEED_SAMPLES, 1.0 / channels));
+            if (channels == 1) {
+                samples = 256;
+            }
+            int count = 1;
+            for (int c = 0; c < channels; c++) {
+                count *= samples;
+            }
+            device = new float[count * channels];
+            for (int s = 0; s < count; s++) {
+                int index = s;
+                for (int c = channels - 1; c >= 0; c--) {
+                    device[s * channels + c] = (index % samples) / (float) (samples - 1);
+                    index /= samples;
+                }
+            }
+            float[] xyz = new float[count * 3];
+            forward.transform(device, 0, xyz, 0, count);
+            lab = new double[count * 3];
+            double[] result = new double[3];
+            for (int s = 0; s < count; s++) {
+                PcsConversion.xyzToLab(xyz[s * 3], xyz[s * 3 + 1], xyz[s * 3 + 2], result);
+                System.arraycopy(result, 0, lab, s * 3, 3);
+            }
+        }
+
+        void nearest(double[] target, double[] result) {
+            int best = 0;
+            double bestDistance = Double.MAX_VALUE;
+            for (int s = 0; s < lab.length / 3; s++) {
+                double dl = lab[s * 3] - target[0];
+                double da = lab[s * 3 + 1] - target[1];
+                double db = lab[s * 3 + 2] - target[2];
+                double distance = dl * dl + da * da + db * db;
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    best = s;
+                }
+            }
+            for (int c = 0; c < channels; c++) {
+                result[c] = device[best * channels + c];
+            }
+        }
+    }
+
+    // Splits the slices in halves; each slice is solved by one worker
+    private static final class SliceTask extends RecursiveAction {
+        private final Run run;
+        private final Slice[] slices;
+        private final int first;
+        private final int end;
+
+        SliceTask(Run run, Slice[] slices, int first, int end) {
+            this.run = run;
+            this.slices = slices;
+            this.first = first;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - first > 1) {
+                int middle = (first + end) >>> 1;
+                invokeAll(new SliceTask(run, slices, first, middle), new SliceTask(run, slices, middle, end));
+                return;
+            }
+            solveSlice(run, slices[first]);
+        }
+    }
+
+    private static void solveSlice(Run run, Slice slice) {
+        Clut clut = run.clut;
+        int points = clut.getGridPoints(0);
+        int channels = clut.getOutputChannels();
+        Solver solver = new Solver(run.forward);
+        // PCS targets of the slice in CIELAB
+        float[] encoded = new float[points * points * 3];
+        float[] xyz = new float[encoded.length];
+        for (int a = 0; a < points; a++) {
+            for (int b = 0; b < points; b++) {
+                int i = (a * points + b) * 3;
+                encoded[i] = slice.index / (float) (points - 1);
+                encoded[i + 1] = a / (float) (points - 1);
+                encoded[i + 2] = b / (float) (points - 1);
+            }
+        }
+        run.pcsToXyz.transform(encoded, 0, xyz, 0, points * points);
+
+        double[] target = new double[3];
+        double[] previous = new double[channels];
+        double[] solution = new double[channels];
+        double[] seed = new double[channels];
+        double[] fresh = new double[channels];
+        run.seeds.nearest(labOf(xyz, 0, target), previous);
+        for (int a = 0; a < points; a++) {
+            if (run.progress.isCancelled()) {
+                return;
+            }
+            // Snake order, so the previous node is always a grid neighbour
+            for (int step = 0; step < points; step++) {
+                int b = a % 2 == 0 ? step : points - 1 - step;
+                labOf(xyz, (a * points + b) * 3, target);
+                double error = solver.solve(previous, target, solution);
+                if (error > GAMUT_TOLERANCE && solver.isInterior(solution)) {
+                    // Stuck in a local minimum; a clamped solution means the node is out of gamut
+                    run.seeds.nearest(target, seed);
+                    double seeded = solver.solve(seed, target, fresh);
+                    if (seeded < error) {
+                        error = seeded;
+                        System.arraycopy(fresh, 0, solution, 0, channels);
+                    }
+                }
+                if (error <= GAMUT_TOLERANCE) {
+                    slice.errorSum += error;
+                    slice.maxError = Math.max(slice.maxError, error);
+                } else {
+                    slice.outOfGamut++;
+                }
+                int node = (slice.index * points + a) * points + b;
+                for (int c = 0; c < channels; c++) {
+                    clut.set(node, c, solution[c]);
+                }
+                System.arraycopy(solution, 0, previous, 0, channels);
+            }
+            run.progress.advance(points);
+        }
+    }
+
+    private static double[] labOf(float[] xyz, int offset, double[] lab) {
+        PcsConversion.xyzToLab(xyz[offset], xyz[offset + 1], xyz[offset + 2], lab);
+        return lab;
+    }
+
+    // Levenberg-Marquardt on the forward transform with a forward-difference Jacobian; one per slice. The a*b* error
+    // is split into a hue part and a chroma part along the target's hue, and the chroma part is scaled down. With
+    // more than three channels the same color has many solutions, and neighbouring nodes could pick different ones
+    // (more black here, more CMY there) that blend into wrong colors; a small penalty on the amount of each ink makes
+    // the solution unique and smooth across the table.
+    static final class Solver {
+        private static final int MAX_ITERATIONS = 30;
+        // Squared delta E at which a solve stops early
+        private static final double CONVERGED = 1e-4;
+        private static final double STEP = 1e-3;
+        private static final double CHROMA_WEIGHT = 0.05;
+        // Penalty in delta E per unit of ink
+        private static final double INK_WEIGHT = 0.01;
+
+        private final ColorTransform forward;
+        private final int n;
+        private final double inkWeight;
+        // Rows of the weighted error in L*a*b*: L*, hue and chroma
+        private final double[] rows = new double[9];
+        // Color part of the last error, unweighted
+        private double colorError;
+        private final float[] in;
+        private final float[] xyz;
+        private final double[] lab = new double[3];
+        private final double[] base = new double[3];
+        private final double[] jacobian;
+        private final double[] normal;
+        private final double[] system;
+        private final double[] gradient;
+        private final double[] delta;
+        private final double[] x;
+        private final double[] candidate;
+
+        Solver(ColorTransform forward) {
+            this.forward = forward;
+            n = forward.getInputChannels();
+            inkWeight = n > 3 ? INK_WEIGHT * INK_WEIGHT : 0;
+            in = new float[(n + 1) * n];
+            xyz = new float[(n + 1) * 3];
+            jacobian = new double[3 * n];
+            normal = new double[n * n];
+            system = new double[n * n];
+            gradient = new double[n];
+            delta = new double[n];
+            x = new double[n];
+            candidate = new double[n];
+        }
+
+        // Device values in result whose forward Lab is closest to target, starting from start; returns the delta E
+        double solve(double[] start, double[] target, double[] result) {
+            setRows(target);
+            System.arraycopy(start, 0, x, 0, n);
+            double error = error(x, target);
+            double color = colorError;
+            double damping = 1e-3;
+            for (int iteration = 0; iteration < MAX_ITERATIONS && (color > CONVERGED || inkWeight > 0); iteration++) {
+                buildNormalEquations(target);
+                boolean improved = false;
+                while (damping < 1e4) {
+                    for (int i = 0; i < n * n; i++) {
+                        system[i] = normal[i];
+                    }
+                    for (int i = 0; i < n; i++) {
+                        // Scaled damping, plus a small constant for channels without effect
+                        system[i * n + i] += inkWeight + damping * (normal[i * n + i] + 1);
+                        delta[i] = -gradient[i] - inkWeight * x[i];
+                    }
+                    solveLinear(system, delta, n);
+                    for (int i = 0; i < n; i++) {
+                        candidate[i] = Math.min(1, Math.max(0, x[i] + delta[i]));
+                    }
+                    double candidateError = error(candidate, target);
+                    if (candidateError < error) {
+                        // Progress below 0.1% means stuck against the gamut boundary
+                        improved = error - candidateError > 1e-3 * error;
+                        System.arraycopy(candidate, 0, x, 0, n);
+                        error = candidateError;
+                        color = colorError;
+                        damping = Math.max(damping / 3, 1e-9);
+                        break;
+                    }
+                    damping *= 4;
+                }
+                if (!improved) {
+                    break;
+                }
+            }
+            System.arraycopy(x, 0, result, 0, n);
+            return Math.sqrt(color);
+        }
+
+        boolean isInterior(double[] device) {
+            for (int c = 0; c < n; c++) {
+                if (device[c] <= 0 || device[c] >= 1) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Plain L*a*b* rows for near-neutral targets, which have no hue to keep
+        private void setRows(double[] target) {
+            double chroma = Math.hypot(target[1], target[2]);
+            Arrays.fill(rows, 0);
+            rows[0] = 1;
+            if (chroma < 1) {
+                rows[4] = 1;
+                rows[8] = 1;
+                return;
+            }
+            double cos = target[1] / chroma;
+            double sin = target[2] / chroma;
+            rows[4] = -sin;
+            rows[5] = cos;
+            rows[7] = CHROMA_WEIGHT * cos;
+            rows[8] = CHROMA_WEIGHT * sin;
+        }
+
+        // Weighted squared error between the forward result of device and target plus the ink penalty; the plain
+        // squared delta E goes to colorError
+        private double error(double[] device, double[] target) {
+            for (int c = 0; c < n; c++) {
+                in[c] = (float) device[c];
+            }
+            forward.transform(in, 0, xyz, 0, 1);
+            labOf(xyz, 0, lab);
+            for (int k = 0; k < 3; k++) {
+                lab[k] -= target[k];
+            }
+            colorError = lab[0] * lab[0] + lab[1] * lab[1] + lab[2] * lab[2];
+            double weighted = 0;
+            for (int k = 0; k < 3; k++) {
+                double r = rows[k * 3] * lab[0] + rows[k * 3 + 1] * lab[1] + rows[k * 3 + 2] * lab[2];
+                weighted += r * r;
+            }
+            double ink = 0;
+            for (int c = 0; c < n; c++) {
+                ink += device[c] * device[c];
+            }
+            return weighted + inkWeight * ink;
+        }
+
+        // J^T J and J^T r of the weighted rows at x, the point and its n offsets evaluated in one call
+        private void buildNormalEquations(double[] target) {
+            for (int p = 0; p <= n; p++) {
+                for (int c = 0; c < n; c++) {
+                    in[p * n + c] = (float) x[c];
+                }
+            }
+            for (int c = 0; c < n; c++) {
+                // Step inwards at the upper bound
+                in[(c + 1) * n + c] += (float) (x[c] + STEP <= 1 ? STEP : -STEP);
+            }
+            forward.transform(in, 0, xyz, 0, n + 1);
+            labOf(xyz, 0, base);
+            for (int c = 0; c < n; c++) {
+                double step = in[(c + 1) * n + c] - in[c];
+                labOf(xyz, (c + 1) * 3, lab);
+                for (int k = 0; k < 3; k++) {
+                    jacobian[k * n + c] = (rows[k * 3] * (lab[0] - base[0]) + rows[k * 3 + 1] * (lab[1] - base[1])
+                            + rows[k * 3 + 2] * (lab[2] - base[2])) / step;
+                }
+            }
+            // Weighted residual
+            for (int k = 0; k < 3; k++) {
+                lab[k] = rows[k * 3] * (base[0] - target[0]) + rows[k * 3 + 1] * (base[1] - target[1])
+                        + rows[k * 3 + 2] * (base[2] - target[2]);
+            }
+            for (int i = 0; i < n; i++) {
+                double g = 0;
+                for (int k = 0; k < 3; k++) {
+                    g += jacobian[k * n + i] * lab[k];
+                }
+                gradient[i] = g;
+                for (int j = 0; j < n; j++) {
+                    double sum = 0;
+                    for (int k = 0; k < 3; k++) {
+                        sum += jacobian[k * n + i] * jacobian[k * n + j];
+                    }
+                    normal[i * n + j] = sum;
+                }
+            }
+        }
+
+        // Gaussian elimination with partial pivoting; the solution replaces rhs
+        private static void solveLinear(double[] matrix, double[] rhs, int n) {
+            for (int col = 0; col < n; col++) {
+                int pivot = col;
+                for (int row = col + 1; row < n; row++) {
+                    if (Math.abs(matrix[row * n + col]) > Math.abs(matrix[pivot * n + col])) {
+                        pivot = row;
+                    }
+                }
+                if (pivot != col) {
+                    for (int k = 0; k < n; k++) {
+                        double swap = matrix[col * n + k];
+                        matrix[col * n + k] = matrix[pivot * n + k];
+                        matrix[pivot * n + k] = swap;
+                    }
+                    double swap = rhs[col];
+                    rhs[col] = rhs[pivot];
+                    rhs[pivot] = swap;
+                }
+                double diagonal = matrix[col * n + col];
+                for (int row = col + 1; row < n; row++) {
+                    double factor = matrix[row * n + col] / diagonal;
+                    for (int k = col; k < n; k++) {
+                        matrix[row * n + k] -= factor * matrix[col * n + k];
+                    }
+                    rhs[row] -= factor * rhs[col];
+                }
+            }
+            for (int row = n - 1; row >= 0; row--) {
+                double sum = rhs[row];
+                for (int k = row + 1; k < n; k++) {
+                    sum -= matrix[row * n + k] * rhs[k];
+                }
+                rhs[row] = sum / matrix[row * n + row];
+            }
+        }
+    }
+}
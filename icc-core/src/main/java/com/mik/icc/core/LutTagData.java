@@ -0,0 +1,470 @@
+package com.mik.icc.core;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+// lut8Type ('mft1'), lut16Type ('mft2'), lutAToBType ('mAB ') and lutBToAType ('mBA ') elements (ICC.1 10.10-10.13).
+// Decoding only checks the layout and keeps a view of the element; curves, matrix and CLUT are read when asked
+// for, and the CLUT is never copied. Processing order of the sub-elements:
+//   mft1/mft2: matrix (XYZ input only), input curves, CLUT, output curves
+//   mAB:       A curves (input), CLUT, M curves, matrix, B curves (output)
+//   mBA:       B curves (input), matrix, M curves, CLUT, A curves (output)
+public final class LutTagData implements TagData {
+
+    private static final int MFT1_HEADER_SIZE = 48;
+    private static final int MFT2_HEADER_SIZE = 52;
+    private static final int MAB_HEADER_SIZE = 32;
+    private static final int MFT1_TABLE_ENTRIES = 256;
+
+    private final int type;
+    private final ByteBuffer element;
+    private final int inputChannels;
+    private final int outputChannels;
+    // Offsets of the sub-elements within the element, 0 when absent
+    private final int inputCurvesOffset;
+    private final int matrixOffset;
+    private final int mCurvesOffset;
+    private final int clutOffset;
+    private final int outputCurvesOffset;
+
+    private LutTagData(ByteBuffer element, int inputCurvesOffset, int matrixOffset, int mCurvesOffset, int clutOffset,
+                       int outputCurvesOffset) {
+        this.element = element;
+        this.type = element.getInt(0);
+        this.inputChannels = element.get(8) & 0xFF;
+        this.outputChannels = element.get(9) & 0xFF;
+        this.inputCurvesOffset = inputCurvesOffset;
+        this.matrixOffset = matrixOffset;
+        this.mCurvesOffset = mCurvesOffset;
+        this.clutOffset = clutOffset;
+        this.outputCurvesOffset = outputCurvesOffset;
+    }
+
+    // Checks the layout of a complete element; throws IllegalArgumentException when it is malformed
+    public static LutTagData decode(ByteBuffer buffer) {
+        ByteBuffer element = buffer.slice(0, buffer.limit()).asReadOnlyBuffer().order(ByteOrder.BIG_ENDIAN);
+        if (element.limit() < 12) {
+            throw new IllegalArgumentException("LUT element is too short: " + element.limit() + " bytes");
+        }
+        int type = element.getInt(0);
+        int in = element.get(8) & 0xFF;
+        int out = element.get(9) & 0xFF;
+        if (in < 1 || in > Clut.MAX_CHANNELS || out < 1 || out > Clut.MAX_CHANNELS) {
+            throw new IllegalArgumentException("Unsupported channel counts: " + in + " -> " + out);
+        }
+        switch (type) {
+            case Signatures.LUT8_TYPE:
+            case Signatures.LUT16_TYPE:
+                return decodeMft(element, type == Signatures.LUT16_TYPE, in, out);
+            case Signatures.LUT_ATOB_TYPE:
+            case Signatures.LUT_BTOA_TYPE:
+                return decodeMab(element, type == Signatures.LUT_ATOB_TYPE, in, out);
+            default:
+                throw new IllegalArgumentException("Not a LUT element: '" + Signatures.toString(type) + "'");
+        }
+    }
+
+    private static LutTagData decodeMft(ByteBuffer element, boolean sixteenBit, int in, int out) {
+        int headerSize = sixteenBit ? MFT2_HEADER_SIZE : MFT1_HEADER_SIZE;
+        if (element.limit() < headerSize) {
+            throw new IllegalArgumentException("LUT element is too short: " + element.limit() + " bytes");
+        }
+        int precision = sixteenBit ? 2 : 1;
+        int inputEntries = sixteenBit ? element.getShort(48) & 0xFFFF : MFT1_TABLE_ENTRIES;
+        int outputEntries = sixteenBit ? element.getShort(50) & 0xFFFF : MFT1_TABLE_ENTRIES;
+        if (inputEntries < 2 || outputEntries < 2) {
+            throw new IllegalArgumentException("Curve tables need at least 2 entries: " + inputEntries + ", " + outputEntries);
+        }
+        long clutOffset = headerSize + (long) in * inputEntries * precision;
+        long outputOffset = clutOffset + Clut.byteSize(mftGrid(element, in), out, precision);
+        long end = outputOffset + (long) out * outputEntries * precision;
+        if (end > element.limit()) {
+            throw new IllegalArgumentException("LUT needs " + end + " bytes, the element has " + element.limit());
+        }
+        return new LutTagData(element, headerSize, 12, 0, (int) clutOffset, (int) outputOffset);
+    }
+
+    private static int[] mftGrid(ByteBuffer element, int in) {
+        int[] grid = new int[in];
+        Arrays.fill(grid, element.get(10) & 0xFF);
+        return grid;
+    }
+
+    private static LutTagData decodeMab(ByteBuffer element, boolean aToB, int in, int out) {
+        if (element.limit() < MAB_HEADER_SIZE) {
+            throw new IllegalArgumentException("LUT element is too short: " + element.limit() + " bytes");
+        }
+        int bOffset = element.getInt(12);
+        int matrixOffset = element.getInt(16);
+        int mOffset = element.getInt(20);
+        int clutOffset = element.getInt(24);
+        int aOffset = element.getInt(28);
+        if (bOffset == 0) {
+            throw new IllegalArgumentException("B curves are required");
+        }
+        // A2B runs A -> CLUT -> M -> matrix -> B, B2A the reverse, so the curve counts follow from the direction
+        int inputCurves = aToB ? aOffset : bOffset;
+        int outputCurves = aToB ? bOffset : aOffset;
+        int matrixSide = aToB ? out : in;
+        checkCurves(element, inputCurves, in);
+        checkCurves(element, outputCurves, out);
+        checkCurves(element, mOffset, matrixSide);
+        if ((matrixOffset != 0 || mOffset != 0) && matrixSide != 3) {
+            throw new IllegalArgumentException("Matrix and M curves need 3 channels on the PCS side: " + matrixSide);
+        }
+        if (matrixOffset != 0 && (matrixOffset < MAB_HEADER_SIZE || matrixOffset + 48L > element.limit())) {
+            throw new IllegalArgumentException("Matrix at " + matrixOffset + " extends beyond the element");
+        }
+        if (clutOffset != 0) {
+            mabClut(element, clutOffset, in, out);
+        } else if (in != out) {
+            throw new IllegalArgumentException("Without a CLUT the channel counts must match: " + in + " -> " + out);
+        }
+        return new LutTagData(element, inputCurves, matrixOffset, mOffset, clutOffset, outputCurves);
+    }
+
+    private static void checkCurves(ByteBuffer element, int offset, int count) {
+        if (offset == 0) {
+            return;
+        }
+        if (offset < MAB_HEADER_SIZE) {
+            throw new IllegalArgumentException("Curves at " + offset + " overlap the header");
+        }
+        int position = offset;
+        for (int i = 0; i < count; i++) {
+            position = align(position + ToneCurve.elementLength(element, position));
+        }
+    }
+
+    private static Clut mabClut(ByteBuffer element, int offset, int in, int out) {
+        if (offset < MAB_HEADER_SIZE || offset + 20L > element.limit()) {
+            throw new IllegalArgumentException("CLUT at " + offset + " extends beyond the element");
+        }
+        int[] grid = new int[in];
+        for (int i = 0; i < in; i++) {
+            grid[i] = element.get(offset + i) & 0xFF;
+        }
+        return Clut.wrap(element, offset + 20, grid, out, element.get(offset + 16) & 0xFF);
+    }
+
+    private static int align(int position) {
+        return (position + 3) & ~3;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public TagType getTagType() {
+        return TagType.fromCode(type);
+    }
+
+    public int getInputChannels() {
+        return inputChannels;
+    }
+
+    public int getOutputChannels() {
+        return outputChannels;
+    }
+
+    public boolean isLut8() {
+        return type == Signatures.LUT8_TYPE;
+    }
+
+    public boolean isLut16() {
+        return type == Signatures.LUT16_TYPE;
+    }
+
+    public boolean isAToB() {
+        return type == Signatures.LUT_ATOB_TYPE;
+    }
+
+    public boolean isBToA() {
+        return type == Signatures.LUT_BTOA_TYPE;
+    }
+
+    public boolean hasMatrix() {
+        return matrixOffset != 0;
+    }
+
+    public boolean hasMCurves() {
+        return mCurvesOffset != 0;
+    }
+
+    public boolean hasClut() {
+        return clutOffset != 0;
+    }
+
+    // Input tables of mft1/mft2, A curves of mAB, B curves of mBA; identities when absent
+    public ToneCurve[] getInputCurves() {
+        return curves(inputCurvesOffset, inputChannels, inputEntries());
+    }
+
+    public ToneCurve[] getOutputCurves() {
+        return curves(outputCurvesOffset, outputChannels, outputEntries());
+    }
+
+    // M curves of mAB/mBA, null when absent
+    public ToneCurve[] getMCurves() {
+        return mCurvesOffset == 0 ? null : curves(mCurvesOffset, 3, 0);
+    }
+
+    // Row-major 3x3 matrix followed by the three offsets (zero for mft1/mft2), null when absent
+    public double[] getMatrix() {
+        if (matrixOffset == 0) {
+            return null;
+        }
+        double[] matrix = new double[12];
+        int count = isLut8() || isLut16() ? 9 : 12;
+        for (int i = 0; i < count; i++) {
+            matrix[i] = XYZTagData.iccS15Fixed16ToFloat(element.getInt(matrixOffset + i * 4));
+        }
+        return matrix;
+    }
+
+    // View of the table data in the element, null when absent
+    public Clut getClut() {
+        if (clutOffset == 0) {
+            return null;
+        }
+        if (isLut8() || isLut16()) {
+            return Clut.wrap(element, clutOffset, mftGrid(element, inputChannels), outputChannels, isLut16() ? 2 : 1);
+        }
+        return mabClut(element, clutOffset, inputChannels, outputChannels);
+    }
+
+    // entries is the table size of mft1/mft2 curves, mAB/mBA curves are elements of their own
+    private ToneCurve[] curves(int offset, int count, int entries) {
+        ToneCurve[] curves = new ToneCurve[count];
+        if (offset == 0) {
+            Arrays.fill(curves, ToneCurve.identity());
+        } else if (isLut8() || isLut16()) {
+            for (int c = 0; c < count; c++) {
+                double[] samples = new double[entries];
+                for (int i = 0; i < entries; i++) {
+                    samples[i] = isLut16()
+                            ? (element.getShort(offset + (c * entries + i) * 2) & 0xFFFF) / 65535.0
+                            : (element.get(offset + c * entries + i) & 0xFF) / 255.0;
+                }
+                curves[c] = ToneCurve.sampled(samples);
+            }
+        } else {
+            int position = offset;
+            for (int c = 0; c < count; c++) {
+                curves[c] = ToneCurve.read(element, position);
+                position = align(position + ToneCurve.elementLength(element, position));
+            }
+        }
+        return curves;
+    }
+
+    private int inputEntries() {
+        return isLut16() ? element.getShort(48) & 0xFFFF : MFT1_TABLE_ENTRIES;
+    }
+
+    private int outputEntries() {
+        return isLut16() ? element.getShort(50) & 0xFFFF : MFT1_TABLE_ENTRIES;
+    }
+
+    // mft1 with 256-entry 8-bit tables; the matrix (row-major 3x3, null for identity) only applies to XYZ input
+    public static LutTagData lut8(double[] matrix, ToneCurve[] inputCurves, Clut clut, ToneCurve[] outputCurves) {
+        return mft(false, matrix, inputCurves, clut, outputCurves, MFT1_TABLE_ENTRIES, MFT1_TABLE_ENTRIES);
+    }
+
+    // mft2 with 16-bit tables of the given sizes
+    public static LutTagData lut16(double[] matrix, ToneCurve[] inputCurves, Clut clut, ToneCurve[] outputCurves,
+                                   int inputEntries, int outputEntries) {
+        if (inputEntries < 2 || inputEntries > 4096 || outputEntries < 2 || outputEntries > 4096) {
+            throw new IllegalArgumentException("Curve tables need 2 to 4096 entries: " + inputEntries + ", " + outputEntries);
+        }
+        return mft(true, matrix, inputCurves, clut, outputCurves, inputEntries, outputEntries);
+    }
+
+    private static LutTagData mft(boolean sixteenBit, double[] matrix, ToneCurve[] inputCurves, Clut clut,
+                                  ToneCurve[] outputCurves, int inputEntries, int outputEntries) {
+        int in = clut.getInputChannels();
+        int out = clut.getOutputChannels();
+        checkCount("input curves", inputCurves, in);
+        checkCount("output curves", outputCurves, out);
+        int grid = clut.getGridPoints(0);
+        for (int i = 1; i < in; i++) {
+            if (clut.getGridPoints(i) != grid) {
+                throw new IllegalArgumentException("mft1/mft2 need the same grid points for every channel: " + clut);
+            }
+        }
+        int precision = sixteenBit ? 2 : 1;
+        Clut table = clut.withPrecision(precision);
+        int headerSize = sixteenBit ? MFT2_HEADER_SIZE : MFT1_HEADER_SIZE;
+        long size = headerSize + (long) in * inputEntries * precision + table.getByteSize()
+                + (long) out * outputEntries * precision;
+        ByteBuffer buffer = allocate(size);
+        buffer.putInt(sixteenBit ? Signatures.LUT16_TYPE : Signatures.LUT8_TYPE).putInt(0);
+        buffer.put((byte) in).put((byte) out).put((byte) grid).put((byte) 0);
+        double[] m = matrix != null ? matrix : new double[] {1, 0, 0, 0, 1, 0, 0, 0, 1};
+        for (int i = 0; i < 9; i++) {
+            buffer.putInt(XYZTagData.iccFloatToS15Fixed16(m[i]));
+        }
+        if (sixteenBit) {
+            buffer.putShort((short) inputEntries).putShort((short) outputEntries);
+        }
+        putTables(buffer, inputCurves, inputEntries, sixteenBit);
+        table.writeTo(buffer);
+        putTables(buffer, outputCurves, outputEntries, sixteenBit);
+        return decode(buffer.flip());
+    }
+
+    private static void putTables(ByteBuffer buffer, ToneCurve[] curves, int entries, boolean sixteenBit) {
+        for (ToneCurve curve : curves) {
+            for (int i = 0; i < entries; i++) {
+                double value = curve.evaluate(i / (double) (entries - 1));
+                if (sixteenBit) {
+                    buffer.putShort((short) Math.round(value * 65535));
+                } else {
+                    buffer.put((byte) Math.round(value * 255));
+                }
+            }
+        }
+    }
+
+    // mAB; aCurves, clut, mCurves and matrix (row-major 3x3 plus 3 offsets) may be null, bCurves is required
+    public static LutTagData lutAToB(ToneCurve[] aCurves, Clut clut, ToneCurve[] mCurves, double[] matrix,
+                                     ToneCurve[] bCurves) {
+        int in = aCurves != null ? aCurves.length : clut != null ? clut.getInputChannels() : bCurves.length;
+        return mab(Signatures.LUT_ATOB_TYPE, in, bCurves.length, bCurves, matrix, mCurves, clut, aCurves);
+    }
+
+    // mBA; the B curves come first, the A curves (output) last
+    public static LutTagData lutBToA(ToneCurve[] bCurves, double[] matrix, ToneCurve[] mCurves, Clut clut,
+                                     ToneCurve[] aCurves) {
+        int out = aCurves != null ? aCurves.length : clut != null ? clut.getOutputChannels() : bCurves.length;
+        return mab(Signatures.LUT_BTOA_TYPE, bCurves.length, out, bCurves, matrix, mCurves, clut, aCurves);
+    }
+
+    // Sub-elements are written in the order of their offset fields: B, matrix, M, CLUT, A
+    private static LutTagData mab(int type, int in, int out, ToneCurve[] bCurves, double[] matrix, ToneCurve[] mCurves,
+                                  Clut clut, ToneCurve[] aCurves) {
+        boolean aToB = type == Signatures.LUT_ATOB_TYPE;
+        checkCount("B curves", bCurves, aToB ? out : in);
+        if (aCurves != null) {
+            checkCount("A curves", aCurves, aToB ? in : out);
+        }
+        if (mCurves != null) {
+            checkCount("M curves", mCurves, 3);
+        }
+        if (matrix != null && matrix.length != 9 && matrix.length != 12) {
+            throw new IllegalArgumentException("Matrix needs 9 or 12 values: " + matrix.length);
+        }
+        if (clut != null && (clut.getInputChannels() != in || clut.getOutputChannels() != out)) {
+            throw new IllegalArgumentException("CLUT " + clut + " does not match " + in + " -> " + out);
+        }
+        byte[] b = curveBytes(bCurves);
+        byte[] m = mCurves == null ? null : curveBytes(mCurves);
+        byte[] a = aCurves == null ? null : curveBytes(aCurves);
+        long size = MAB_HEADER_SIZE + b.length + (matrix == null ? 0 : 48) + (m == null ? 0 : m.length)
+                + (clut == null ? 0 : align(20 + clut.getByteSize())) + (a == null ? 0 : a.length);
+        ByteBuffer buffer = allocate(size);
+        buffer.putInt(type).putInt(0).put((byte) in).put((byte) out).putShort((short) 0);
+        buffer.position(MAB_HEADER_SIZE);
+        int[] offsets = new int[5];
+        offsets[0] = buffer.position();
+        buffer.put(b);
+        if (matrix != null) {
+            offsets[1] = buffer.position();
+            for (int i = 0; i < 12; i++) {
+                buffer.putInt(XYZTagData.iccFloatToS15Fixed16(i < matrix.length ? matrix[i] : 0));
+            }
+        }
+        if (m != null) {
+            offsets[2] = buffer.position();
+            buffer.put(m);
+        }
+        if (clut != null) {
+            offsets[3] = buffer.position();
+            for (int i = 0; i < 16; i++) {
+                buffer.put((byte) (i < in ? clut.getGridPoints(i) : 0));
+            }
+            buffer.put((byte) clut.getPrecision()).put((byte) 0).putShort((short) 0);
+            clut.writeTo(buffer);
+            buffer.position(align(buffer.position()));
+        }
+        if (a != null) {
+            offsets[4] = buffer.position();
+            buffer.put(a);
+        }
+        for (int i = 0; i < offsets.length; i++) {
+            buffer.putInt(12 + i * 4, offsets[i]);
+        }
+        return decode(buffer.flip());
+    }
+
+    // Curve elements, each padded to a 4-byte boundary
+    private static byte[] curveBytes(ToneCurve[] curves) {
+        byte[][] elements = new byte[curves.length][];
+        int size = 0;
+        for (int i = 0; i < curves.length; i++) {
+            elements[i] = curves[i].toElementBytes();
+            size += align(elements[i].length);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (byte[] element : elements) {
+            buffer.put(element).position(align(buffer.position()));
+        }
+        return buffer.array();
+    }
+
+    private static void checkCount(String name, ToneCurve[] curves, int expected) {
+        if (curves.length != expected) {
+            throw new IllegalArgumentException("Expected " + expected + " " + name + ": " + curves.length);
+        }
+    }
+
+    private static ByteBuffer allocate(long size) {
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("LUT element would be too large: " + size + " bytes");
+        }
+        return ByteBuffer.allocate((int) size).order(ByteOrder.BIG_ENDIAN);
+    }
+
+    public int getElementSize() {
+        return element.limit();
+    }
+
+    @Override
+    public byte[] toBytes() {
+        byte[] body = new byte[element.limit() - 8];
+        element.get(8, body);
+        return body;
+    }
+
+    @Override
+    public byte[] toElementBytes() {
+        byte[] bytes = new byte[element.limit()];
+        element.get(0, bytes);
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append(Signatures.toString(type)).append(' ').append(inputChannels).append(" -> ").append(outputChannels);
+        if (isLut8() || isLut16()) {
+            text.append(", input tables ").append(inputEntries()).append(", output tables ").append(outputEntries());
+        } else {
+            text.append(", ").append(isAToB() ? "A" : "B").append(" curves ").append(Arrays.toString(getInputCurves()));
+            if (hasMCurves()) {
+                text.append(", M curves ").append(Arrays.toString(getMCurves()));
+            }
+        }
+        if (hasMatrix()) {
+            text.append(", matrix ").append(Arrays.toString(getMatrix()));
+        }
+        if (hasClut()) {
+            text.append(", ").append(getClut());
+        }
+        if (!isLut8() && !isLut16()) {
+            text.append(", ").append(isAToB() ? "B" : "A").append(" curves ").append(Arrays.toString(getOutputCurves()));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,212 @@
+package com.mik.icc.core;
+
+import java.io.IOException;
+
+// Pixel transform through an mft1/mft2/mAB/mBA tag. Values on both sides are in the tag's own 0..1 encoding: device
+// values as they are, PCS values in the Lab or XYZ encoding of the LUT type. Curves are baked into tables, the
+// CLUT goes through a ClutInterpolator, and spans are converted in batches through per-thread scratch buffers.
+public final class LutTransform implements ColorTransform {
+
+    // Pixels per batch; the scratch buffers hold one batch of up to 15 channels
+    static final int BATCH = 256;
+    static final int CURVE_TABLE_SIZE = 4097;
+
+    private static final ThreadLocal<float[][]> SCRATCH =
+            ThreadLocal.withInitial(() -> new float[][] {new float[BATCH * Clut.MAX_CHANNELS],
+                    new float[BATCH * Clut.MAX_CHANNELS]});
+
+    private final int inputChannels;
+    private final int outputChannels;
+    // Null entries are identity curves
+    private final float[][] inputTables;
+    private final float[][] mTables;
+    private final float[][] outputTables;
+    // Row-major 3x3 plus offsets, null when absent or identity
+    private final float[] matrix;
+    // mft1/mft2 apply the matrix before the input curves, mBA after the B curves, mAB after the CLUT
+    private final boolean matrixFirst;
+    private final boolean matrixBeforeClut;
+    private final boolean matrixAfterClut;
+    private final ClutInterpolator clut;
+
+    private LutTransform(LutTagData lut, ClutInterpolator.Method method, boolean vectorize) {
+        this.inputChannels = lut.getInputChannels();
+        this.outputChannels = lut.getOutputChannels();
+        this.inputTables = bake(lut.getInputCurves());
+        this.outputTables = bake(lut.getOutputCurves());
+        this.mTables = lut.hasMCurves() ? bake(lut.getMCurves()) : null;
+        // The matrix of mft1/mft2 only applies to XYZ input and is the identity otherwise
+        boolean mft = lut.isLut8() || lut.isLut16();
+        this.matrix = lut.hasMatrix() && !(mft && inputChannels != 3) ? toFloats(lut.getMatrix()) : null;
+        this.matrixFirst = mft;
+        this.matrixBeforeClut = lut.isBToA();
+        this.matrixAfterClut = lut.isAToB();
+        Clut table = lut.getClut();
+        if (table == null) {
+            this.clut = null;
+        } else {
+            this.clut = vectorize ? ClutInterpolator.of(table, method) : ClutInterpolator.scalar(table, method);
+        }
+    }
+
+    public static LutTransform of(LutTagData lut) {
+        return of(lut, ClutInterpolator.Method.TETRAHEDRAL);
+    }
+
+    public static LutTransform of(LutTagData lut, ClutInterpolator.Method method) {
+        return new LutTransform(lut, method, true);
+    }
+
+    static LutTransform scalar(LutTagData lut, ClutInterpolator.Method method) {
+        return new LutTransform(lut, method, false);
+    }
+
+    // Transform of the LUT tag with the given signature, e.g. Signatures.A2B0
+    public static LutTransform of(ICCProfile profile, int signature) throws IOException {
+        Tag tag = profile.getTagBySignature(signature);
+        if (tag == null) {
+            throw new IOException(Signatures.toString(signature) + " is missing: " + profile.getFilePath());
+        }
+        TagData data = profile.readTagData(tag);
+        if (!(data instanceof LutTagData)) {
+            throw new IOException(Signatures.toString(signature) + " is not a LUT tag: " + profile.getFilePath());
+        }
+        return of((LutTagData) data);
+    }
+
+    private static float[][] bake(ToneCurve[] curves) {
+        float[][] tables = new float[curves.length][];
+        for (int i = 0; i < curves.length; i++) {
+            tables[i] = curves[i].isIdentity() ? null : curves[i].bake(CURVE_TABLE_SIZE);
+        }
+        return tables;
+    }
+
+    private static float[] toFloats(double[] values) {
+        boolean identity = true;
+        float[] floats = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            floats[i] = (float) values[i];
+            double expected = i < 9 && i % 4 == 0 ? 1 : 0;
+            identity &= values[i] == expected;
+        }
+        return identity ? null : floats;
+    }
+
+    @Override
+    public int getInputChannels() {
+        return inputChannels;
+    }
+
+    @Override
+    public int getOutputChannels() {
+        return outputChannels;
+    }
+
+    public boolean isVectorized() {
+        return clut != null && clut.isVectorized();
+    }
+
+    @Override
+    public boolean supportsPackedRgb() {
+        return inputChannels == 3 && outputChannels == 3;
+    }
+
+    @Override
+    public void transform(float[] in, int inOffset, float[] out, int outOffset, int pixelCount) {
+        float[][] scratch = SCRATCH.get();
+        for (int done = 0; done < pixelCount; done += BATCH) {
+            int count = Math.min(BATCH, pixelCount - done);
+            int i = inOffset + done * inputChannels;
+            int o = outOffset + done * outputChannels;
+            System.arraycopy(in, i, scratch[0], 0, count * inputChannels);
+            float[] result = convert(scratch, count);
+            System.arraycopy(result, 0, out, o, count * outputChannels);
+        }
+    }
+
+    @Override
+    public void transform(int[] in, int inOffset, int[] out, int outOffset, int pixelCount) {
+        if (!supportsPackedRgb()) {
+            ColorTransform.super.transform(in, inOffset, out, outOffset, pixelCount);
+            return;
+        }
+        float[][] scratch = SCRATCH.get();
+        for (int done = 0; done < pixelCount; done += BATCH) {
+            int count = Math.min(BATCH, pixelCount - done);
+            float[] buffer = scratch[0];
+            for (int p = 0; p < count; p++) {
+                int argb = in[inOffset + done + p];
+                buffer[p * 3] = ((argb >>> 16) & 0xFF) / 255f;
+                buffer[p * 3 + 1] = ((argb >>> 8) & 0xFF) / 255f;
+                buffer[p * 3 + 2] = (argb & 0xFF) / 255f;
+            }
+            float[] result = convert(scratch, count);
+            for (int p = 0; p < count; p++) {
+                int red = MatrixTrcTransform.to8Bit(clamp(result[p * 3]));
+                int green = MatrixTrcTransform.to8Bit(clamp(result[p * 3 + 1]));
+                int blue = MatrixTrcTransform.to8Bit(clamp(result[p * 3 + 2]));
+                int alpha = in[inOffset + done + p] & 0xFF000000;
+                out[outOffset + done + p] = alpha | (red << 16) | (green << 8) | blue;
+            }
+        }
+    }
+
+    // Runs the stages on one batch that starts in scratch[0]; returns the buffer holding the result
+    private float[] convert(float[][] scratch, int count) {
+        float[] buffer = scratch[0];
+        if (matrixFirst) {
+            applyMatrix(buffer, count);
+        }
+        applyCurves(buffer, count, inputChannels, inputTables);
+        if (matrixBeforeClut) {
+            applyMatrix(buffer, count);
+            if (mTables != null) {
+                applyCurves(buffer, count, 3, mTables);
+            }
+        }
+        if (clut != null) {
+            clut.interpolate(buffer, 0, scratch[1], 0, count);
+            buffer = scratch[1];
+        }
+        if (matrixAfterClut) {
+            if (mTables != null) {
+                applyCurves(buffer, count, 3, mTables);
+            }
+            applyMatrix(buffer, count);
+        }
+        applyCurves(buffer, count, outputChannels, outputTables);
+        return buffer;
+    }
+
+    private static void applyCurves(float[] buffer, int count, int channels, float[][] tables) {
+        for (int c = 0; c < channels; c++) {
+            float[] table = tables[c];
+            if (table == null) {
+                continue;
+            }
+            for (int i = c; i < count * channels; i += channels) {
+                buffer[i] = ToneCurve.lookup(table, buffer[i]);
+            }
+        }
+    }
+
+    private void applyMatrix(float[] buffer, int count) {
+        if (matrix == null) {
+            return;
+        }
+        float[] m = matrix;
+        for (int i = 0; i < count * 3; i += 3) {
+            float x = buffer[i];
+            float y = buffer[i + 1];
+            float z = buffer[i + 2];
+            buffer[i] = m[0] * x + m[1] * y + m[2] * z + m[9];
+            buffer[i + 1] = m[3] * x + m[4] * y + m[5] * z + m[10];
+            buffer[i + 2] = m[6] * x + m[7] * y + m[8] * z + m[11];
+        }
+    }
+
+    private static float clamp(float value) {
+        return value > 0f ? (value < 1f ? value : 1f) : 0f;
+    }
+}
@@ -0,0 +1,221 @@
+package com.mik.icc.core;
+
+import java.io.IOException;
+
+// Matrix/TRC transform of an RGB profile (ICC.1 F.3): per-channel curves, a 3x3 matrix, then per-channel output
+// curves. The curves are baked into float tables when the transform is built (the TRCs forward for the input,
+// inverted for the output) and pixels are converted by table lookups and nine multiply-adds per pixel.
+public final class MatrixTrcTransform implements ColorTransform {
+
+    // Entries of the baked tables; lookups interpolate linearly between neighbours
+    static final int INPUT_TABLE_SIZE = 4097;
+    // The inverse of a gamma curve is steep near black, so the output side gets a denser table
+    static final int OUTPUT_TABLE_SIZE = 16385;
+
+    private static final float[] LINEAR = {0f, 1f};
+
+    private final float[] inputR;
+    private final float[] inputG;
+    private final float[] inputB;
+    // Input curves sampled at the 256 levels of an 8-bit channel
+    private final float[] input8R;
+    private final float[] input8G;
+    private final float[] input8B;
+    private final float m00, m01, m02, m10, m11, m12, m20, m21, m22;
+    // Null when the output is PCS XYZ, which is neither curved nor clipped
+    private final float[] outputR;
+    private final float[] outputG;
+    private final float[] outputB;
+
+    private MatrixTrcTransform(ToneCurve[] inputCurves, double[] matrix, ToneCurve[] outputCurves) {
+        inputR = inputTable(inputCurves, 0);
+        inputG = inputTable(inputCurves, 1);
+        inputB = inputTable(inputCurves, 2);
+        input8R = inputTable8(inputCurves, 0);
+        input8G = inputTable8(inputCurves, 1);
+        input8B = inputTable8(inputCurves, 2);
+        m00 = (float) matrix[0];
+        m01 = (float) matrix[1];
+        m02 = (float) matrix[2];
+        m10 = (float) matrix[3];
+        m11 = (float) matrix[4];
+        m12 = (float) matrix[5];
+        m20 = (float) matrix[6];
+        m21 = (float) matrix[7];
+        m22 = (float) matrix[8];
+        outputR = outputCurves == null ? null : outputCurves[0].bakeInverse(OUTPUT_TABLE_SIZE);
+        outputG = outputCurves == null ? null : outputCurves[1].bakeInverse(OUTPUT_TABLE_SIZE);
+        outputB = outputCurves == null ? null : outputCurves[2].bakeInverse(OUTPUT_TABLE_SIZE);
+    }
+
+    // Device RGB to PCS XYZ
+    public static MatrixTrcTransform toPcs(ICCProfile profile) throws IOException {
+        return new MatrixTrcTransform(curves(profile), colorants(profile), null);
+    }
+
+    // PCS XYZ to device RGB, values outside the gamut are clipped
+    public static MatrixTrcTransform fromPcs(ICCProfile profile) throws IOException {
+        return new MatrixTrcTransform(null, invert(colorants(profile)), curves(profile));
+    }
+
+    // Device RGB of one profile to device RGB of another through the PCS, folded into a single matrix
+    public static MatrixTrcTransform between(ICCProfile source, ICCProfile destination) throws IOException {
+        double[] matrix = multiply(invert(colorants(destination)), colorants(source));
+        return new MatrixTrcTransform(curves(source), matrix, curves(destination));
+    }
+
+    // True when the profile has the three colorants and TRCs a matrix/TRC transform needs
+    public static boolean isMatrixTrc(ICCProfile profile) {
+        for (int signature : new int[] {Signatures.RXYZ, Signatures.GXYZ, Signatures.BXYZ,
+                Signatures.RTRC, Signatures.GTRC, Signatures.BTRC}) {
+            if (profile.getTagBySignature(signature) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int getInputChannels() {
+        return 3;
+    }
+
+    @Override
+    public int getOutputChannels() {
+        return 3;
+    }
+
+    @Override
+    public boolean supportsPackedRgb() {
+        return input8R != null && outputR != null;
+    }
+
+    @Override
+    public void transform(float[] in, int inOffset, float[] out, int outOffset, int pixelCount) {
+        int end = inOffset + pixelCount * 3;
+        int o = outOffset;
+        for (int i = inOffset; i < end; i += 3) {
+            float r = ToneCurve.lookup(inputR, in[i]);
+            float g = ToneCurve.lookup(inputG, in[i + 1]);
+            float b = ToneCurve.lookup(inputB, in[i + 2]);
+            float x = m00 * r + m01 * g + m02 * b;
+            float y = m10 * r + m11 * g + m12 * b;
+            float z = m20 * r + m21 * g + m22 * b;
+            if (outputR == null) {
+                out[o] = x;
+                out[o + 1] = y;
+                out[o + 2] = z;
+            } else {
+                out[o] = ToneCurve.lookup(outputR, x);
+                out[o + 1] = ToneCurve.lookup(outputG, y);
+                out[o + 2] = ToneCurve.lookup(outputB, z);
+            }
+            o += 3;
+        }
+    }
+
+    @Override
+    public void transform(int[] in, int inOffset, int[] out, int outOffset, int pixelCount) {
+        if (!supportsPackedRgb()) {
+            ColorTransform.super.transform(in, inOffset, out, outOffset, pixelCount);
+            return;
+        }
+        for (int i = 0; i < pixelCount; i++) {
+            int argb = in[inOffset + i];
+            float r = input8R[(argb >>> 16) & 0xFF];
+            float g = input8G[(argb >>> 8) & 0xFF];
+            float b = input8B[argb & 0xFF];
+            int red = to8Bit(ToneCurve.lookup(outputR, m00 * r + m01 * g + m02 * b));
+            int green = to8Bit(ToneCurve.lookup(outputG, m10 * r + m11 * g + m12 * b));
+            int blue = to8Bit(ToneCurve.lookup(outputB, m20 * r + m21 * g + m22 * b));
+            out[outOffset + i] = (argb & 0xFF000000) | (red << 16) | (green << 8) | blue;
+        }
+    }
+
+    static int to8Bit(float value) {
+        return (int) (value * 255f + 0.5f);
+    }
+
+    private static float[] inputTable(ToneCurve[] curves, int channel) {
+        // PCS input is only clamped to 0..1, which covers every color up to the D50 white
+        return curves == null || curves[channel].isIdentity() ? LINEAR : curves[channel].bake(INPUT_TABLE_SIZE);
+    }
+
+    private static float[] inputTable8(ToneCurve[] curves, int channel) {
+        if (curves == null) {
+            return null;
+        }
+        float[] table = new float[256];
+        for (int i = 0; i < 256; i++) {
+            table[i] = (float) curves[channel].evaluate(i / 255.0);
+        }
+        return table;
+    }
+
+    private static ToneCurve[] curves(ICCProfile profile) throws IOException {
+        return new ToneCurve[] {curve(profile, Signatures.RTRC), curve(profile, Signatures.GTRC),
+                curve(profile, Signatures.BTRC)};
+    }
+
+    private static ToneCurve curve(ICCProfile profile, int signature) throws IOException {
+        try {
+            return ToneCurve.of(profile.readTagData(requireTag(profile, signature)));
+        } catch (IllegalArgumentException e) {
+            throw new IOException(Signatures.toString(signature) + ": " + e.getMessage(), e);
+        }
+    }
+
+    // Row-major matrix whose columns are the red, green and blue colorants
+    private static double[] colorants(ICCProfile profile) throws IOException {
+        XYZTagData red = colorant(profile, Signatures.RXYZ);
+        XYZTagData green = colorant(profile, Signatures.GXYZ);
+        XYZTagData blue = colorant(profile, Signatures.BXYZ);
+        return new double[] {
+                red.getX(), green.getX(), blue.getX(),
+                red.getY(), green.getY(), blue.getY(),
+                red.getZ(), green.getZ(), blue.getZ()};
+    }
+
+    private static XYZTagData colorant(ICCProfile profile, int signature) throws IOException {
+        TagData data = profile.readTagData(requireTag(profile, signature));
+        if (!(data instanceof XYZTagData)) {
+            throw new IOException(Signatures.toString(signature) + " is not an XYZ tag");
+        }
+        return (XYZTagData) data;
+    }
+
+    private static Tag requireTag(ICCProfile profile, int signature) throws IOException {
+        Tag tag = profile.getTagBySignature(signature);
+        if (tag == null) {
+            throw new IOException("Not a matrix/TRC profile, " + Signatures.toString(signature) + " is missing: "
+                    + profile.getFilePath());
+        }
+        return tag;
+    }
+
+    static double[] invert(double[] m) throws IOException {
+        double c00 = m[4] * m[8] - m[5] * m[7];
+        double c01 = m[5] * m[6] - m[3] * m[8];
+        double c02 = m[3] * m[7] - m[4] * m[6];
+        double determinant = m[0] * c00 + m[1] * c01 + m[2] * c02;
+        if (Math.abs(determinant) < 1e-12) {
+            throw new IOException("Colorant matrix cannot be inverted");
+        }
+        double d = 1.0 / determinant;
+        return new double[] {
+                c00 * d, (m[2] * m[7] - m[1] * m[8]) * d, (m[1] * m[5] - m[2] * m[4]) * d,
+                c01 * d, (m[0] * m[8] - m[2] * m[6]) * d, (m[2] * m[3] - m[0] * m[5]) * d,
+                c02 * d, (m[1] * m[6] - m[0] * m[7]) * d, (m[0] * m[4] - m[1] * m[3]) * d};
+    }
+
+    static double[] multiply(double[] a, double[] b) {
+        double[] result = new double[9];
+        for (int row = 0; row < 3; row++) {
+            for (int column = 0; column < 3; column++) {
+                result[row * 3 + column] = a[row * 3] * b[column] + a[row * 3 + 1] * b[3 + column]
+                        + a[row * 3 + 2] * b[6 + column];
+            }
+        }
+        return result;
+    }
+}
@@ -1,4 +1,4 @@
-package com.mik.icc.icceditor;
+package com.mik.icc.core;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
@@ -13,6 +13,10 @@ public class MultiLocalizedUnicodeTagData implements TagData {
         this.localizedStrings = new LinkedHashMap<>();
     }
 
+    public MultiLocalizedUnicodeTagData(MultiLocalizedUnicodeTagData other) {
+        this.localizedStrings = new LinkedHashMap<>(other.localizedStrings);
+    }
+
     public void addLocalizedString(String languageCode, String countryCode, String text) {
         localizedStrings.put(languageCode + "-" + countryCode, text);
     }
@@ -36,7 +40,7 @@ public class MultiLocalizedUnicodeTagData implements TagData {
         ByteBuffer buffer = ByteBuffer.allocate(totalSize).order(ByteOrder.BIG_ENDIAN);
 
         // Header
-        buffer.put("mluc".getBytes(StandardCharsets.US_ASCII));
+        buffer.putInt(Signatures.MLUC_TYPE);
         buffer.putInt(0); // Reserved
         buffer.putInt(numRecords);
         buffer.putInt(recordSize);
@@ -0,0 +1,117 @@
+package com.mik.icc.core;
+
+// Converts between the 0..1 PCS values of a LUT tag and PCS XYZ as ColorTransform uses it (D50, Y = 1). LUT tags
+// encode the PCS in one of three ways (ICC.1 6.3.4): XYZ as u1Fixed15 (1.0 at 0x8000), Lab with L* 0..100 mapped to
+// the full range (mAB/mBA and 8-bit mft1), and the legacy 16-bit Lab of mft2 with L* = 100 at 0xFF00.
+public final class PcsConversion implements ColorTransform {
+
+    public enum Encoding {
+        XYZ,
+        LAB,
+        LAB_LEGACY
+    }
+
+    // D50 white point of the PCS
+    static final double WHITE_X = 0.9642;
+    static final double WHITE_Y = 1.0;
+    static final double WHITE_Z = 0.8249;
+
+    private static final double XYZ_SCALE = 65535.0 / 32768.0;
+    private static final double LEGACY_SCALE = 65535.0 / 65280.0;
+
+    private final Encoding encoding;
+    private final boolean toXyz;
+
+    private PcsConversion(Encoding encoding, boolean toXyz) {
+        this.encoding = encoding;
+        this.toXyz = toXyz;
+    }
+
+    // Tag values to PCS XYZ
+    public static PcsConversion toXyz(Encoding encoding) {
+        return new PcsConversion(encoding, true);
+    }
+
+    // PCS XYZ to tag values
+    public static PcsConversion fromXyz(Encoding encoding) {
+        return new PcsConversion(encoding, false);
+    }
+
+    // Encoding of the PCS side of a LUT tag in a profile with the given header PCS
+    public static Encoding encodingOf(LutTagData lut, int pcs) {
+        if (pcs == Signatures.of("XYZ")) {
+            return Encoding.XYZ;
+        }
+        return lut.isLut16() ? Encoding.LAB_LEGACY : Encoding.LAB;
+    }
+
+    public Encoding getEncoding() {
+        return encoding;
+    }
+
+    @Override
+    public int getInputChannels() {
+        return 3;
+    }
+
+    @Override
+    public int getOutputChannels() {
+        return 3;
+    }
+
+    @Override
+    public void transform(float[] in, int inOffset, float[] out, int outOffset, int pixelCount) {
+        double scale = encoding == Encoding.XYZ ? XYZ_SCALE : encoding == Encoding.LAB_LEGACY ? LEGACY_SCALE : 1;
+        for (int p = 0; p < pixelCount; p++) {
+            int i = inOffset + p * 3;
+            int o = outOffset + p * 3;
+            double v0 = in[i];
+            double v1 = in[i + 1];
+            double v2 = in[i + 2];
+            if (encoding == Encoding.XYZ) {
+                double factor = toXyz ? scale : 1 / scale;
+                out[o] = (float) (v0 * factor);
+                out[o + 1] = (float) (v1 * factor);
+                out[o + 2] = (float) (v2 * factor);
+            } else if (toXyz) {
+                double fy = (v0 * scale * 100 + 16) / 116;
+                out[o] = (float) (WHITE_X * labInverse(fy + (v1 * scale * 255 - 128) / 500));
+                out[o + 1] = (float) (WHITE_Y * labInverse(fy));
+                out[o + 2] = (float) (WHITE_Z * labInverse(fy - (v2 * scale * 255 - 128) / 200));
+            } else {
+                double fx = labF(v0 / WHITE_X);
+                double fy = labF(v1 / WHITE_Y);
+                double fz = labF(v2 / WHITE_Z);
+                out[o] = (float) ((116 * fy - 16) / 100 / scale);
+                out[o + 1] = (float) ((500 * (fx - fy) + 128) / 255 / scale);
+                out[o + 2] = (float) ((200 * (fy - fz) + 128) / 255 / scale);
+            }
+        }
+    }
+
+    // CIE L*a*b* of PCS XYZ relative to D50, into result
+    public static void xyzToLab(double x, double y, double z, double[] result) {
+        double fx = labF(x / WHITE_X);
+        double fy = labF(y / WHITE_Y);
+        double fz = labF(z / WHITE_Z);
+        result[0] = 116 * fy - 16;
+        result[1] = 500 * (fx - fy);
+        result[2] = 200 * (fy - fz);
+    }
+
+    // PCS XYZ relative to D50 of CIE L*a*b*, into result
+    public static void labToXyz(double l, double a, double b, double[] result) {
+        double fy = (l + 16) / 116;
+        result[0] = WHITE_X * labInverse(fy + a / 500);
+        result[1] = WHITE_Y * labInverse(fy);
+        result[2] = WHITE_Z * labInverse(fy - b / 200);
+    }
+
+    private static double labF(double t) {
+        return t > 216.0 / 24389 ? Math.cbrt(t) : (24389.0 / 27 * t + 16) / 116;
+    }
+
+    private static double labInverse(double f) {
+        return f > 6.0 / 29 ? f * f * f : (116 * f - 16) * 27 / 24389;
+    }
+}
@@ -0,0 +1,375 @@
+package com.mik.icc.core;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+// Structured comparison of two profiles. Header fields are compared one by one; tag payloads are compared by
+// content hash first, a matching hash is confirmed byte by byte, and only tags that differ are decoded and compared
+// value by value.
+public final class ProfileDiff {
+
+    static final int PRINTED_DIFFERENCES_PER_TAG = 10;
+    private static final int BYTES_SHOWN = 16;
+
+    private static final List<HeaderField> HEADER_FIELDS = List.of(
+            new HeaderField("size", h -> String.valueOf(h.getSize())),
+            new HeaderField("cmmType", ICCHeader::getCmmType),
+            new HeaderField("version", ICCHeader::getVersion),
+            new HeaderField("deviceClass", ICCHeader::getDeviceClass),
+            new HeaderField("colorSpace", ICCHeader::getColorSpace),
+            new HeaderField("pcs", ICCHeader::getPcs),
+            new HeaderField("creationDateTime", ICCHeader::getCreationDateTime),
+            new HeaderField("signature", ICCHeader::getSignature),
+            new HeaderField("primaryPlatform", ICCHeader::getPrimaryPlatform),
+            new HeaderField("flags", h -> String.valueOf(h.getFlags())),
+            new HeaderField("manufacturer", ICCHeader::getManufacturer),
+            new HeaderField("model", ICCHeader::getModel),
+            new HeaderField("attributes", h -> String.valueOf(h.getAttributes())),
+            new HeaderField("renderingIntent", ICCHeader::getRenderingIntentString),
+            new HeaderField("creator", ICCHeader::getCreator),
+            new HeaderField("profileId", h -> ProfileId.toHex(h.getProfileId())));
+
+    public enum Kind {
+        ADDED, REMOVED, CHANGED
+    }
+
+    // One changed value: a header field, a curve point, an XYZ component, a localized string, ...
+    public static final class Difference {
+        private final String field;
+        private final String before;
+        private final String after;
+        private final double delta;
+
+        Difference(String field, String before, String after, double delta) {
+            this.field = field;
+            this.before = before;
+            this.after = after;
+            this.delta = delta;
+        }
+
+        Difference(String field, String before, String after) {
+            this(field, before, after, Double.NaN);
+        }
+
+        public String getField() {
+            return field;
+        }
+
+        public String getBefore() {
+            return before;
+        }
+
+        public String getAfter() {
+            return after;
+        }
+
+        // after - before for numeric values, NaN otherwise
+        public double getDelta() {
+            return delta;
+        }
+
+        @Override
+        public String toString() {
+            String text = field + ": " + before + " -> " + after;
+            return Double.isNaN(delta) ? text : text + String.format(Locale.ROOT, " (%+.6f)", delta);
+        }
+    }
+
+    public static final class TagDiff {
+        private final int signature;
+        private final Kind kind;
+        private final long sizeBefore;
+        private final long sizeAfter;
+        private final List<Difference> differences;
+
+        TagDiff(int signature, Kind kind, long sizeBefore, long sizeAfter, List<Difference> differences) {
+            this.signature = signature;
+            this.kind = kind;
+            this.sizeBefore = sizeBefore;
+            this.sizeAfter = sizeAfter;
+            this.differences = Collections.unmodifiableList(differences);
+        }
+
+        public String getSignature() {
+            return Signatures.toString(signature);
+        }
+
+        public int getSignatureCode() {
+            return signature;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        // -1 for an added tag
+        public long getSizeBefore() {
+            return sizeBefore;
+        }
+
+        // -1 for a removed tag
+        public long getSizeAfter() {
+            return sizeAfter;
+        }
+
+        public List<Difference> getDifferences() {
+            return differences;
+        }
+
+        // Largest absolute numeric delta, NaN when no difference is numeric
+        public double getMaxDelta() {
+            double max = Double.NaN;
+            for (Difference difference : differences) {
+                double delta = Math.abs(difference.getDelta());
+                if (!Double.isNaN(delta) && !(delta <= max)) {
+                    max = delta;
+                }
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            switch (kind) {
+                case ADDED:
+                    return getSignature() + " added (" + sizeAfter + " bytes)";
+                case REMOVED:
+                    return getSignature() + " removed (" + sizeBefore + " bytes)";
+                default:
+                    String text = getSignature() + " changed (" + sizeBefore + " -> " + sizeAfter + " bytes, "
+                            + differences.size() + (differences.size() == 1 ? " difference" : " differences");
+                    double maxDelta = getMaxDelta();
+                    return Double.isNaN(maxDelta) ? text + ")"
+                            : text + String.format(Locale.ROOT, ", max delta %.6f)", maxDelta);
+            }
+        }
+    }
+
+    private final List<Difference> headerDifferences;
+    private final List<TagDiff> tagDiffs;
+
+    private ProfileDiff(List<Difference> headerDifferences, List<TagDiff> tagDiffs) {
+        this.headerDifferences = Collections.unmodifiableList(headerDifferences);
+        this.tagDiffs = Collections.unmodifiableList(tagDiffs);
+    }
+
+    public static ProfileDiff compare(ICCProfile before, ICCProfile after) throws IOException {
+        List<Difference> headerDifferences = compareHeaders(before.getHeader(), after.getHeader());
+
+        // Tags in the order of the old profile, then the ones only the new profile has
+        Set<Integer> signatures = new LinkedHashSet<>();
+        before.getTags().forEach(tag -> signatures.add(tag.getSignatureCode()));
+        after.getTags().forEach(tag -> signatures.add(tag.getSignatureCode()));
+
+        List<TagDiff> tagDiffs = new ArrayList<>();
+        for (int signature : signatures) {
+            Tag oldTag = before.getTagBySignature(signature);
+            Tag newTag = after.getTagBySignature(signature);
+            if (oldTag == null) {
+                tagDiffs.add(new TagDiff(signature, Kind.ADDED, -1, newTag.getSize(), List.of()));
+            } else if (newTag == null) {
+                tagDiffs.add(new TagDiff(signature, Kind.REMOVED, oldTag.getSize(), -1, List.of()));
+            } else {
+                ByteBuffer oldData = before.getTagBuffer(oldTag);
+                ByteBuffer newData = after.getTagBuffer(newTag);
+                // Equal hashes do not prove equal bytes, so the payloads themselves decide
+                if (oldData.remaining() == newData.remaining() && ContentHash.of(oldData) == ContentHash.of(newData)
+                        && oldData.equals(newData)) {
+                    continue;
+                }
+                List<Difference> differences = compareData(before.readTagData(oldTag), after.readTagData(newTag),
+                        oldData, newData);
+                tagDiffs.add(new TagDiff(signature, Kind.CHANGED, oldTag.getSize(), newTag.getSize(), differences));
+            }
+        }
+        return new ProfileDiff(headerDifferences, tagDiffs);
+    }
+
+    public boolean isEmpty() {
+        return headerDifferences.isEmpty() && tagDiffs.isEmpty();
+    }
+
+    public List<Difference> getHeaderDifferences() {
+        return headerDifferences;
+    }
+
+    public List<TagDiff> getTagDiffs() {
+        return tagDiffs;
+    }
+
+    public void print(PrintWriter out) {
+        if (isEmpty()) {
+            out.println("identical");
+            return;
+        }
+        for (Difference difference : headerDifferences) {
+            out.println("header " + difference);
+        }
+        for (TagDiff tagDiff : tagDiffs) {
+            out.println("tag " + tagDiff);
+            List<Difference> differences = tagDiff.getDifferences();
+            for (int i = 0; i < Math.min(differences.size(), PRINTED_DIFFERENCES_PER_TAG); i++) {
+                out.println("    " + differences.get(i));
+            }
+            if (differences.size() > PRINTED_DIFFERENCES_PER_TAG) {
+                out.println("    ... " + (differences.size() - PRINTED_DIFFERENCES_PER_TAG) + " more");
+            }
+        }
+    }
+
+    private static final class HeaderField {
+        final String name;
+        final Function<ICCHeader, String> value;
+
+        HeaderField(String name, Function<ICCHeader, String> value) {
+            this.name = name;
+            this.value = value;
+        }
+    }
+
+    private static List<Difference> compareHeaders(ICCHeader before, ICCHeader after) {
+        List<Difference> differences = new ArrayList<>();
+        for (HeaderField field : HEADER_FIELDS) {
+            String oldValue = field.value.apply(before);
+            String newValue = field.value.apply(after);
+            if (!oldValue.equals(newValue)) {
+                differences.add(new Difference(field.name, oldValue, newValue));
+            }
+        }
+        compareNumber(differences, "illuminantX", before.getIlluminantX(), after.getIlluminantX());
+        compareNumber(differences, "illuminantY", before.getIlluminantY(), after.getIlluminantY());
+        compareNumber(differences, "illuminantZ", before.getIlluminantZ(), after.getIlluminantZ());
+        return differences;
+    }
+
+    private static List<Difference> compareData(TagData before, TagData after, ByteBuffer oldData, ByteBuffer newData) {
+        List<Difference> differences = new ArrayList<>();
+        if (before.getClass() != after.getClass()) {
+            differences.add(new Difference("type", typeName(oldData), typeName(newData)));
+            compareBytes(differences, oldData, newData);
+        } else if (before instanceof CurveTagData) {
+            compareCurves(differences, ((CurveTagData) before).getCurvePoints(), ((CurveTagData) after).getCurvePoints());
+        } else if (before instanceof XYZTagData) {
+            XYZTagData oldXyz = (XYZTagData) before;
+            XYZTagData newXyz = (XYZTagData) after;
+            compareNumber(differences, "X", oldXyz.getX(), newXyz.getX());
+            compareNumber(differences, "Y", oldXyz.getY(), newXyz.getY());
+            compareNumber(differences, "Z", oldXyz.getZ(), newXyz.getZ());
+        } else if (before instanceof TextTagData) {
+            String oldText = ((TextTagData) before).getText();
+            String newText = ((TextTagData) after).getText();
+            if (!oldText.equals(newText)) {
+                differences.add(new Difference("text", oldText, newText));
+            }
+        } else if (before instanceof MultiLocalizedUnicodeTagData) {
+            compareLocalizedStrings(differences, ((MultiLocalizedUnicodeTagData) before).getLocalizedStrings(),
+                    ((MultiLocalizedUnicodeTagData) after).getLocalizedStrings());
+        } else {
+            compareBytes(differences, oldData, newData);
+        }
+        if (differences.isEmpty()) {
+            // Same decoded values, the encoding differs (padding, reserved bytes, record order, ...)
+            compareBytes(differences, oldData, newData);
+        }
+        return differences;
+    }
+
+    // Curves with different point counts are compared at the points of the denser one
+    private static void compareCurves(List<Difference> differences, double[] before, double[] after) {
+        if (before.length == after.length) {
+            for (int i = 0; i < before.length; i++) {
+                compareNumber(differences, "point " + i, before[i], after[i]);
+            }
+            return;
+        }
+        differences.add(new Difference("points", String.valueOf(before.length), String.valueOf(after.length)));
+        int count = Math.max(before.length, after.length);
+        if (count < 2 || before.length == 0 || after.length == 0) {
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            double position = i / (double) (count - 1);
+            compareNumber(differences, String.format(Locale.ROOT, "x=%.4f", position),
+                    sample(before, position), sample(after, position));
+        }
+    }
+
+    private static double sample(double[] curve, double position) {
+        if (curve.length == 1) {
+            return curve[0];
+        }
+        double index = position * (curve.length - 1);
+        int low = Math.min((int) index, curve.length - 2);
+        double fraction = index - low;
+        return curve[low] + (curve[low + 1] - curve[low]) * fraction;
+    }
+
+    private static void compareLocalizedStrings(List<Difference> differences, Map<String, String> before,
+                                                Map<String, String> after) {
+        Set<String> locales = new LinkedHashSet<>(before.keySet());
+        locales.addAll(after.keySet());
+        for (String locale : locales) {
+            String oldText = before.get(locale);
+            String newText = after.get(locale);
+            if (!Objects.equals(oldText, newText)) {
+                differences.add(new Difference(locale, oldText == null ? "(none)" : oldText,
+                        newText == null ? "(none)" : newText));
+            }
+        }
+    }
+
+    private static void compareNumber(List<Difference> differences, String field, double before, double after) {
+        if (before != after) {
+            differences.add(new Difference(field, format(before), format(after), after - before));
+        }
+    }
+
+    // Size change, then the bytes from the first difference on with the number of differing bytes
+    private static void compareBytes(List<Difference> differences, ByteBuffer before, ByteBuffer after) {
+        int oldLength = before.remaining();
+        int newLength = after.remaining();
+        if (oldLength != newLength) {
+            differences.add(new Difference("size", String.valueOf(oldLength), String.valueOf(newLength),
+                    newLength - oldLength));
+        }
+        int common = Math.min(oldLength, newLength);
+        int first = -1;
+        int count = 0;
+        for (int i = 0; i < common; i++) {
+            if (before.get(before.position() + i) != after.get(after.position() + i)) {
+                if (first < 0) {
+                    first = i;
+                }
+                count++;
+            }
+        }
+        if (first >= 0) {
+            differences.add(new Difference(String.format("bytes from 0x%08X (%d of %d differ)", first, count, common),
+                    hex(before, first), hex(after, first)));
+        }
+    }
+
+    private static String hex(ByteBuffer data, int offset) {
+        byte[] bytes = new byte[Math.min(BYTES_SHOWN, data.remaining() - offset)];
+        data.get(data.position() + offset, bytes);
+        return HexCodec.encode(bytes);
+    }
+
+    private static String typeName(ByteBuffer data) {
+        return data.remaining() >= 4 ? Signatures.toString(data.getInt(data.position())) : "(none)";
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.6f", value);
+    }
+}
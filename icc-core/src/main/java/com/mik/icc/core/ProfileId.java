@@ -0,0 +1,81 @@
+package com.mik.icc.core;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+// Profile ID (ICC.1 7.2.18): MD5 over the whole profile with the flags, rendering intent and ID fields taken as zero.
+// The digest reads slices of the profile buffer, so a mapped file is never copied as a whole.
+public final class ProfileId {
+
+    public static final int OFFSET = 84;
+    public static final int LENGTH = 16;
+
+    private static final int FLAGS_OFFSET = 44;
+    private static final int RENDERING_INTENT_OFFSET = 64;
+    private static final byte[] ZEROS = new byte[LENGTH];
+
+    public enum Status {
+        VALID, MISSING, MISMATCH
+    }
+
+    private ProfileId() {
+    }
+
+    // Profile bytes from index 0 to the buffer's limit
+    public static byte[] compute(ByteBuffer profile) {
+        int length = profile.limit();
+        if (length < ICCHeader.SIZE) {
+            throw new IllegalArgumentException("Profile is shorter than its header: " + length + " bytes");
+        }
+        MessageDigest md5 = md5();
+        md5.update(profile.slice(0, FLAGS_OFFSET));
+        md5.update(ZEROS, 0, 4);
+        md5.update(profile.slice(FLAGS_OFFSET + 4, RENDERING_INTENT_OFFSET - FLAGS_OFFSET - 4));
+        md5.update(ZEROS, 0, 4);
+        md5.update(profile.slice(RENDERING_INTENT_OFFSET + 4, OFFSET - RENDERING_INTENT_OFFSET - 4));
+        md5.update(ZEROS, 0, LENGTH);
+        md5.update(profile.slice(OFFSET + LENGTH, length - OFFSET - LENGTH));
+        return md5.digest();
+    }
+
+    public static byte[] read(ByteBuffer profile) {
+        byte[] id = new byte[LENGTH];
+        profile.get(OFFSET, id);
+        return id;
+    }
+
+    // Computes the ID and stores it in the header of the (writable) buffer
+    public static byte[] write(ByteBuffer profile) {
+        byte[] id = compute(profile);
+        profile.put(OFFSET, id);
+        return id;
+    }
+
+    // An all-zero ID means none was computed, which the spec allows
+    public static Status verify(ByteBuffer profile) {
+        byte[] stored = read(profile);
+        if (isMissing(stored)) {
+            return Status.MISSING;
+        }
+        return Arrays.equals(stored, compute(profile)) ? Status.VALID : Status.MISMATCH;
+    }
+
+    public static boolean isMissing(byte[] id) {
+        return Arrays.equals(id, ZEROS);
+    }
+
+    public static String toHex(byte[] id) {
+        return HexCodec.encode(id).replace(" ", "");
+    }
+
+    private static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to provide MD5
+            throw new IllegalStateException(e);
+        }
+    }
+}
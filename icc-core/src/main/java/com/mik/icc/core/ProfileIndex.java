@@ -0,0 +1,136 @@
+package com.mik.icc.core;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+// Persistent index of a profile library, keyed by absolute file path. Safe for concurrent updates and queries.
+//
+// File format (big-endian):
+//   int 'ICCX' magic, int format version, int entry count, then per entry:
+//   UTF path, long last-modified millis, long file size, 128 header bytes,
+//   int tag count, then per tag: int signature, int size, long content hash
+public class ProfileIndex {
+
+    static final int MAGIC = 0x49434358; // 'ICCX'
+    static final int FORMAT_VERSION = 1;
+
+    private final Map<String, IndexEntry> entries = new ConcurrentHashMap<>();
+
+    public static ProfileIndex load(Path file) throws IOException {
+        ProfileIndex index = new ProfileIndex();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a profile index: " + file);
+            }
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported profile index version " + version + ": " + file);
+            }
+            int count = in.readInt();
+            byte[] headerBytes = new byte[ICCHeader.SIZE];
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                long lastModified = in.readLong();
+                long fileSize = in.readLong();
+                in.readFully(headerBytes);
+                int tagCount = in.readInt();
+                int[] signatures = new int[tagCount];
+                long[] sizes = new long[tagCount];
+                long[] hashes = new long[tagCount];
+                for (int t = 0; t < tagCount; t++) {
+                    signatures[t] = in.readInt();
+                    sizes[t] = in.readInt() & 0xFFFFFFFFL;
+                    hashes[t] = in.readLong();
+                }
+                index.entries.put(path, new IndexEntry(path, lastModified, fileSize,
+                        new ICCHeader(ByteBuffer.wrap(headerBytes)), signatures, sizes, hashes));
+            }
+        }
+        return index;
+    }
+
+    // An empty index when the file does not exist yet
+    public static ProfileIndex loadOrCreate(Path file) throws IOException {
+        try {
+            return load(file);
+        } catch (NoSuchFileException e) {
+            return new ProfileIndex();
+        }
+    }
+
+    public void save(Path file) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            List<IndexEntry> sorted = entries();
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(sorted.size());
+            byte[] headerBytes = new byte[ICCHeader.SIZE];
+            for (IndexEntry entry : sorted) {
+                out.writeUTF(entry.getPathString());
+                out.writeLong(entry.getLastModified());
+                out.writeLong(entry.getFileSize());
+                entry.header().asByteBuffer().get(0, headerBytes);
+                out.write(headerBytes);
+                out.writeInt(entry.getTagCount());
+                for (int t = 0; t < entry.getTagCount(); t++) {
+                    out.writeInt(entry.getTagSignature(t));
+                    out.writeInt((int) entry.getTagSize(t));
+                    out.writeLong(entry.getTagHash(t));
+                }
+            }
+        }
+        ProfileWriter.writeAtomically(file, ByteBuffer.wrap(bytes.toByteArray()));
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public IndexEntry get(Path file) {
+        return entries.get(key(file));
+    }
+
+    void put(IndexEntry entry) {
+        entries.put(entry.getPathString(), entry);
+    }
+
+    boolean remove(String path) {
+        return entries.remove(path) != null;
+    }
+
+    Collection<String> paths() {
+        return entries.keySet();
+    }
+
+    // All entries, sorted by path
+    public List<IndexEntry> entries() {
+        return query(entry -> true);
+    }
+
+    public List<IndexEntry> query(Predicate<IndexEntry> query) {
+        return entries.values().stream()
+                .filter(query)
+                .sorted(Comparator.comparing(IndexEntry::getPathString))
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    static String key(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+}
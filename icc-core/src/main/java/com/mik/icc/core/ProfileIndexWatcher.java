@@ -0,0 +1,171 @@
+package com.mik.icc.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Keeps a ProfileIndex current from file system events instead of re-walking the library. Events are collected
+// until the tree has been quiet for the debounce interval (or maxDelay has passed), then the touched paths are
+// re-indexed as one batch. Queries keep reading the index while a batch is applied.
+public class ProfileIndexWatcher implements Closeable {
+
+    private final ProfileIndex index;
+    private final ProfileIndexer indexer;
+    private final List<Path> roots = new ArrayList<>();
+    private final long debounceMillis;
+    private final long maxDelayMillis;
+    private final Consumer<ProfileIndexer.Summary> onBatch;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    private Thread thread;
+
+    public ProfileIndexWatcher(ProfileIndex index, ProfileIndexer indexer, List<Path> roots, long debounceMillis,
+                               Consumer<ProfileIndexer.Summary> onBatch) throws IOException {
+        if (debounceMillis < 1) {
+            throw new IllegalArgumentException("Debounce interval must be positive: " + debounceMillis);
+        }
+        this.index = index;
+        this.indexer = indexer;
+        this.debounceMillis = debounceMillis;
+        // A steady trickle of events must not postpone indexing forever
+        this.maxDelayMillis = debounceMillis * 10;
+        this.onBatch = onBatch;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        try {
+            for (Path root : roots) {
+                Path directory = Path.of(ProfileIndex.key(root));
+                if (!Files.isDirectory(directory)) {
+                    throw new IOException("Not a directory: " + root);
+                }
+                this.roots.add(directory);
+                registerTree(directory);
+            }
+        } catch (IOException e) {
+            watchService.close();
+            throw e;
+        }
+    }
+
+    // Watches on a daemon thread until close()
+    public synchronized void start() {
+        if (thread != null) {
+            throw new IllegalStateException("Watcher already started");
+        }
+        thread = new Thread(this::run, "icc-index-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Watches on the calling thread until close() or interruption
+    public void run() {
+        try {
+            while (true) {
+                Batch batch = new Batch();
+                collect(watchService.take(), batch);
+                long deadline = System.currentTimeMillis() + maxDelayMillis;
+                while (true) {
+                    long wait = Math.min(debounceMillis, deadline - System.currentTimeMillis());
+                    WatchKey next = wait > 0 ? watchService.poll(wait, TimeUnit.MILLISECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    collect(next, batch);
+                }
+                ProfileIndexer.Summary summary = apply(batch);
+                if (summary != null && onBatch != null) {
+                    onBatch.accept(summary);
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // closed, stop watching
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    // Paths touched by the events of one batch; what happened to them is decided when the batch is applied
+    private static final class Batch {
+        final Set<Path> paths = new LinkedHashSet<>();
+        boolean overflow;
+    }
+
+    private void collect(WatchKey key, Batch batch) {
+        Path directory = directories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                batch.overflow = true;
+            } else if (directory != null) {
+                batch.paths.add(directory.resolve((Path) event.context()));
+            }
+        }
+        if (!key.reset()) {
+            // The directory itself is gone
+            directories.remove(key);
+        }
+    }
+
+    private ProfileIndexer.Summary apply(Batch batch) {
+        if (batch.overflow) {
+            // Events were lost, only a full pass over the roots is reliable
+            for (Path root : roots) {
+                registerQuietly(root);
+            }
+            return indexer.update(index, roots, false);
+        }
+        List<Path> changed = new ArrayList<>();
+        for (Path path : batch.paths) {
+            if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                // New or moved-in directory: watch it and index what is already inside
+                registerQuietly(path);
+                changed.add(path);
+            } else if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS) || BatchProcessor.isProfileFile(path)) {
+                changed.add(path);
+            }
+        }
+        return changed.isEmpty() ? null : indexer.update(index, changed, false);
+    }
+
+    private void registerQuietly(Path directory) {
+        try {
+            registerTree(directory);
+        } catch (IOException e) {
+            // Removed again before it could be watched; the next update drops its entries
+        }
+    }
+
+    private void registerTree(Path start) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) throws IOException {
+                WatchKey key = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                directories.put(key, directory);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,211 @@
+package com.mik.icc.core;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Brings a ProfileIndex up to date with a set of files and directory trees. Directories are listed and profiles
+// parsed in parallel; files whose modification time and size match the index are not opened again.
+public class ProfileIndexer {
+
+    public static final class Summary {
+        private final int added;
+        private final int updated;
+        private final int unchanged;
+        private final int removed;
+        private final List<BatchResult> failures;
+
+        Summary(int added, int updated, int unchanged, int removed, List<BatchResult> failures) {
+            this.added = added;
+            this.updated = updated;
+            this.unchanged = unchanged;
+            this.removed = removed;
+            this.failures = failures;
+        }
+
+        public int getAdded() {
+            return added;
+        }
+
+        public int getUpdated() {
+            return updated;
+        }
+
+        public int getUnchanged() {
+            return unchanged;
+        }
+
+        public int getRemoved() {
+            return removed;
+        }
+
+        public List<BatchResult> getFailures() {
+            return failures;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d added, %d updated, %d unchanged, %d removed, %d failed",
+                    added, updated, unchanged, removed, failures.size());
+        }
+    }
+
+    private final int threads;
+
+    public ProfileIndexer(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Worker count must be at least 1: " + threads);
+        }
+        this.threads = threads;
+    }
+
+    public Summary update(ProfileIndex index, List<Path> roots) throws IOException {
+        for (Path root : roots) {
+            if (!Files.exists(root)) {
+                throw new IOException("No such file or directory: " + root);
+            }
+        }
+        return update(index, roots, true);
+    }
+
+    // With mustExist false a missing path counts as deleted, so its entries (or those below it) are removed
+    Summary update(ProfileIndex index, List<Path> roots, boolean mustExist) {
+        List<Path> normalizedRoots = new ArrayList<>();
+        Run run = new Run(index);
+        List<RecursiveAction> tasks = new ArrayList<>();
+        for (Path root : roots) {
+            Path normalized = Path.of(ProfileIndex.key(root));
+            normalizedRoots.add(normalized);
+            if (Files.isDirectory(normalized)) {
+                tasks.add(new DirectoryTask(run, normalized));
+            } else if (mustExist || Files.exists(normalized)) {
+                tasks.add(new FileTask(run, normalized));
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+        } finally {
+            pool.shutdown();
+        }
+
+        // Entries below a scanned root whose file is gone; directories that could not be listed keep theirs
+        int removed = 0;
+        List<Path> unreadDirectories = new ArrayList<>(run.unreadDirectories);
+        for (String path : new ArrayList<>(index.paths())) {
+            Path file = Path.of(path);
+            if (!run.seen.contains(path) && isBelow(file, normalizedRoots) && !isBelow(file, unreadDirectories)
+                    && index.remove(path)) {
+                removed++;
+            }
+        }
+        List<BatchResult> failures = new ArrayList<>(run.failures);
+        failures.sort(Comparator.comparing(BatchResult::getFile));
+        return new Summary(run.added.get(), run.updated.get(), run.unchanged.get(), removed, failures);
+    }
+
+    private static boolean isBelow(Path file, List<Path> roots) {
+        for (Path root : roots) {
+            if (file.startsWith(root)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // State shared by the tasks of one update
+    private static final class Run {
+        final ProfileIndex index;
+        final Set<String> seen = ConcurrentHashMap.newKeySet();
+        final ConcurrentLinkedQueue<BatchResult> failures = new ConcurrentLinkedQueue<>();
+        final ConcurrentLinkedQueue<Path> unreadDirectories = new ConcurrentLinkedQueue<>();
+        final AtomicInteger added = new AtomicInteger();
+        final AtomicInteger updated = new AtomicInteger();
+        final AtomicInteger unchanged = new AtomicInteger();
+
+        Run(ProfileIndex index) {
+            this.index = index;
+        }
+
+        void fail(Path path, Exception e, long start) {
+            failures.add(new BatchResult(path, BatchResult.Status.FAILED, String.valueOf(e.getMessage()),
+                    System.nanoTime() - start));
+        }
+    }
+
+    private static final class DirectoryTask extends RecursiveAction {
+        private final Run run;
+        private final Path directory;
+
+        DirectoryTask(Run run, Path directory) {
+            this.run = run;
+            this.directory = directory;
+        }
+
+        @Override
+        protected void compute() {
+            long start = System.nanoTime();
+            List<RecursiveAction> children = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path child : stream) {
+                    // Links are not followed, like Files.walk in BatchProcessor, so cycles cannot occur
+                    if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                        children.add(new DirectoryTask(run, child));
+                    } else if (BatchProcessor.isProfileFile(child)) {
+                        children.add(new FileTask(run, child));
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                run.unreadDirectories.add(directory);
+                run.fail(directory, e, start);
+            }
+            invokeAll(children);
+        }
+    }
+
+    private static final class FileTask extends RecursiveAction {
+        private final Run run;
+        private final Path file;
+
+        FileTask(Run run, Path file) {
+            this.run = run;
+            this.file = file;
+        }
+
+        @Override
+        protected void compute() {
+            long start = System.nanoTime();
+            String key = file.toString();
+            run.seen.add(key);
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                long lastModified = attributes.lastModifiedTime().toMillis();
+                IndexEntry existing = run.index.get(file);
+                if (existing != null && existing.isCurrent(lastModified, attributes.size())) {
+                    run.unchanged.incrementAndGet();
+                    return;
+                }
+                run.index.put(IndexEntry.read(file, lastModified, attributes.size()));
+                (existing == null ? run.added : run.updated).incrementAndGet();
+            } catch (IOException | RuntimeException e) {
+                // Keep the old entry out of query results, it no longer describes the file
+                run.index.remove(key);
+                run.fail(file, e, start);
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.mik.icc.core;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+// Profile operations shared by the editor UI and the batch CLI
+public final class ProfileOperations {
+
+    public static final int[] MIMAKI_MEDIA_TAGS = {Signatures.MMK1, Signatures.MMK2};
+    static final int DUMP_BYTES_PER_LINE = 32;
+
+    private ProfileOperations() {
+    }
+
+    // Copies every tag of the source profile that also exists in the target profile, saved with one write
+    public static int copyTags(ICCProfile source, ICCProfile target) throws IOException {
+        int copied = 0;
+        for (Tag sourceTag : source.getTags()) {
+            Tag targetTag = target.getTagBySignature(sourceTag.getSignatureCode());
+            if (targetTag != null) {
+                target.setTagData(targetTag, source.readTagData(sourceTag));
+                copied++;
+            }
+        }
+        if (copied > 0) {
+            target.save();
+        }
+        return copied;
+    }
+
+    // Recomputes a missing or stale Profile ID by saving the profile; version 2 profiles have no ID field
+    public static boolean updateProfileId(ICCProfile profile) throws IOException {
+        if (profile.getHeader().getVersionMajor() < 4 || profile.verifyProfileId() == ProfileId.Status.VALID) {
+            return false;
+        }
+        profile.save();
+        return true;
+    }
+
+    // Replaces a media name in the 'desc' tag and the Mimaki private tags, or in every tag with allTags.
+    // Text and mluc tags are edited as strings and re-encoded by their type; curves and XYZ values hold no text;
+    // all other tags are rewritten byte by byte, finding the name in UTF-8, UTF-16LE and UTF-16BE.
+    public static int replaceMediaName(ICCProfile profile, ByteReplacer replacer, boolean allTags) throws IOException {
+        int changed = 0;
+        for (Tag tag : profile.getTags()) {
+            int signature = tag.getSignatureCode();
+            if (!allTags && signature != Signatures.DESC && !isMimakiMediaTag(signature)) {
+                continue;
+            }
+            ByteBuffer data = profile.getTagBuffer(tag);
+            int type = data.remaining() >= 4 ? data.getInt(0) : 0;
+            TagData replaced;
+            if (type == Signatures.TEXT_TYPE || type == Signatures.MLUC_TYPE || type == Signatures.DESC_TYPE) {
+                replaced = replaceText(profile.readTagData(tag), replacer.getSearch(), replacer.getReplace());
+            } else if (type == Signatures.CURVE_TYPE || type == Signatures.XYZ_TYPE) {
+                continue;
+            } else {
+                byte[] bytes = replacer.replace(data);
+                replaced = bytes == null ? null : new GenericTagData(bytes);
+            }
+            if (replaced != null) {
+                profile.setTagData(tag, replaced);
+                changed++;
+            }
+        }
+        if (changed > 0) {
+            profile.save();
+        }
+        return changed;
+    }
+
+    private static boolean isMimakiMediaTag(int signature) {
+        for (int mimakiTagSignature : MIMAKI_MEDIA_TAGS) {
+            if (signature == mimakiTagSignature) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Null when the text does not occur
+    private static TagData replaceText(TagData data, String searchText, String replaceText) {
+        if (data instanceof TextTagData) {
+            TextTagData textData = (TextTagData) data;
+            String originalText = textData.getText();
+            String newText = originalText.replace(searchText, replaceText);
+            return originalText.equals(newText) ? null : new TextTagData(newText, textData.getCharset());
+        }
+        if (data instanceof MultiLocalizedUnicodeTagData) {
+            MultiLocalizedUnicodeTagData replaced = new MultiLocalizedUnicodeTagData();
+            boolean modified = false;
+            for (Map.Entry<String, String> entry : ((MultiLocalizedUnicodeTagData) data).getLocalizedStrings().entrySet()) {
+                String newText = entry.getValue().replace(searchText, replaceText);
+                modified |= !newText.equals(entry.getValue());
+                String[] codes = entry.getKey().split("-");
+                replaced.addLocalizedString(codes[0], codes[1], newText);
+            }
+            return modified ? replaced : null;
+        }
+        if (data instanceof TextDescriptionTagData) {
+            // Every version of the description is rewritten, so the counts in front of them stay right
+            TextDescriptionTagData description = (TextDescriptionTagData) data;
+            String text = description.getText().replace(searchText, replaceText);
+            String unicodeText = description.getUnicodeText().replace(searchText, replaceText);
+            String scriptCodeText = description.getScriptCodeText().replace(searchText, replaceText);
+            if (text.equals(description.getText()) && unicodeText.equals(description.getUnicodeText())
+                    && scriptCodeText.equals(description.getScriptCodeText())) {
+                return null;
+            }
+            // A ScriptCode text that no longer fits its fixed field is dropped, the field is optional
+            int scriptCode = description.getScriptCode();
+            if (scriptCodeText.length() > TextDescriptionTagData.MAX_SCRIPT_CODE_LENGTH) {
+                scriptCode = 0;
+                scriptCodeText = "";
+            }
+            return new TextDescriptionTagData(text, description.getUnicodeLanguage(), unicodeText, scriptCode,
+                    scriptCodeText);
+        }
+        return null;
+    }
+
+    // Writes 'DevS' and 'CIED' tags converted from the profile's 'CxF ' tag; null when there is no CxF tag
+    public static CxfConverter.Result convertCxf(ICCProfile profile) throws IOException {
+        Tag cxfTag = profile.getTagBySignature(Signatures.CXF);
+        if (cxfTag == null) {
+            return null;
+        }
+        CxfConverter.Result result = CxfConverter.convert(profile.getTagBuffer(cxfTag));
+        profile.setTagData(Signatures.DEVS, new GenericTagData(result.getDeviceValues()));
+        profile.setTagData(Signatures.CIED, new GenericTagData(result.getCieData()));
+        profile.save();
+        return result;
+    }
+
+    public static void dump(ICCProfile profile, PrintWriter out) throws IOException {
+        out.println(profile.getHeader());
+        out.println("Tags: " + profile.getTags().size());
+        for (Tag tag : profile.getTags()) {
+            out.printf("  %-4s offset=%d size=%d%n", tag.getSignature(), tag.getOffset(), tag.getSize());
+            TagData data = profile.readTagData(tag);
+            if (data instanceof GenericTagData) {
+                // Stream raw tags straight from the profile buffer instead of building one large string
+                HexCodec.encode(profile.getTagBuffer(tag), out, DUMP_BYTES_PER_LINE, "    ");
+                out.println();
+            } else {
+                out.println("    " + data);
+            }
+        }
+    }
+}
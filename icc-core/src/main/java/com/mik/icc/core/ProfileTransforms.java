@@ -0,0 +1,109 @@
+package com.mik.icc.core;
+
+import java.io.IOException;
+
+// Builds the transforms of a profile for a rendering intent, with PCS XYZ on the PCS side whatever the profile's
+// own PCS is. A LUT tag of the intent is preferred, falling back to the perceptual one (ICC.1 8.2) and then to the
+// matrix/TRC model of RGB profiles.
+public final class ProfileTransforms {
+
+    public static final int PERCEPTUAL = 0;
+    public static final int RELATIVE_COLORIMETRIC = 1;
+    public static final int SATURATION = 2;
+
+    private static final int[] A2B = {Signatures.A2B0, Signatures.A2B1, Signatures.A2B2};
+    private static final int[] B2A = {Signatures.B2A0, Signatures.B2A1, Signatures.B2A2};
+
+    private ProfileTransforms() {
+    }
+
+    // Device values to PCS XYZ
+    public static ColorTransform toPcs(ICCProfile profile, int intent) throws IOException {
+        LutTagData lut = lut(profile, A2B, intent);
+        if (lut != null) {
+            checkChannels(profile, lut.getInputChannels());
+            PcsConversion.Encoding encoding = PcsConversion.encodingOf(lut, profile.getHeader().getPcsCode());
+            return ChainedTransform.of(LutTransform.of(lut), PcsConversion.toXyz(encoding));
+        }
+        if (MatrixTrcTransform.isMatrixTrc(profile)) {
+            return MatrixTrcTransform.toPcs(profile);
+        }
+        throw new IOException("No A2B tag or matrix/TRC model: " + profile.getFilePath());
+    }
+
+    // PCS XYZ to device values
+    public static ColorTransform fromPcs(ICCProfile profile, int intent) throws IOException {
+        LutTagData lut = lut(profile, B2A, intent);
+        if (lut != null) {
+            checkChannels(profile, lut.getOutputChannels());
+            PcsConversion.Encoding encoding = PcsConversion.encodingOf(lut, profile.getHeader().getPcsCode());
+            return ChainedTransform.of(PcsConversion.fromXyz(encoding), LutTransform.of(lut));
+        }
+        if (MatrixTrcTransform.isMatrixTrc(profile)) {
+            return MatrixTrcTransform.fromPcs(profile);
+        }
+        throw new IOException("No B2A tag or matrix/TRC model: " + profile.getFilePath());
+    }
+
+    // Device values of source to device values of destination through the PCS
+    public static ColorTransform between(ICCProfile source, ICCProfile destination, int intent) throws IOException {
+        if (lut(source, A2B, intent) == null && lut(destination, B2A, intent) == null
+                && MatrixTrcTransform.isMatrixTrc(source) && MatrixTrcTransform.isMatrixTrc(destination)) {
+            // The matrix/TRC model has no intents; both matrices fold into one
+            return MatrixTrcTransform.between(source, destination);
+        }
+        return ChainedTransform.of(toPcs(source, intent), fromPcs(destination, intent));
+    }
+
+    // Channels of a header color space signature, 0 for unknown ones
+    public static int channels(int colorSpace) {
+        String name = Signatures.toString(colorSpace);
+        switch (name) {
+            case "GRAY":
+                return 1;
+            case "XYZ":
+            case "Lab":
+            case "Luv":
+            case "YCbr":
+            case "Yxy":
+            case "RGB":
+            case "HSV":
+            case "HLS":
+            case "CMY":
+                return 3;
+            case "CMYK":
+                return 4;
+            default:
+                if (name.length() == 4 && name.endsWith("CLR")) {
+                    return Character.digit(name.charAt(0), 16);
+                }
+                return 0;
+        }
+    }
+
+    private static LutTagData lut(ICCProfile profile, int[] signatures, int intent) throws IOException {
+        if (intent < 0 || intent >= signatures.length) {
+            throw new IllegalArgumentException("Rendering intent must be 0, 1 or 2: " + intent);
+        }
+        Tag tag = profile.getTagBySignature(signatures[intent]);
+        if (tag == null) {
+            tag = profile.getTagBySignature(signatures[PERCEPTUAL]);
+        }
+        if (tag == null) {
+            return null;
+        }
+        TagData data = profile.readTagData(tag);
+        if (!(data instanceof LutTagData)) {
+            throw new IOException(tag.getSignature() + " is not a LUT tag: " + profile.getFilePath());
+        }
+        return (LutTagData) data;
+    }
+
+    private static void checkChannels(ICCProfile profile, int lutChannels) throws IOException {
+        int channels = channels(profile.getHeader().getColorSpaceCode());
+        if (channels != 0 && channels != lutChannels) {
+            throw new IOException("LUT has " + lutChannels + " device channels, the color space "
+                    + profile.getHeader().getColorSpace() + " has " + channels + ": " + profile.getFilePath());
+        }
+    }
+}
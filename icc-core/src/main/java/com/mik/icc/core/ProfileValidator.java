@@ -0,0 +1,61 @@
+package com.mik.icc.core;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Structural checks of a parsed profile, returns a list of problems (empty when the profile is valid)
+public final class ProfileValidator {
+
+    private ProfileValidator() {
+    }
+
+    public static List<String> validate(ICCProfile profile) {
+        List<String> problems = new ArrayList<>();
+        ICCHeader header = profile.getHeader();
+        long fileSize = profile.getFileSize();
+
+        if (header.getSignatureCode() != Signatures.ACSP) {
+            problems.add("Header signature is '" + header.getSignature() + "', expected 'acsp'");
+        }
+        if (header.getSize() != fileSize) {
+            problems.add("Header size " + header.getSize() + " does not match file size " + fileSize);
+        }
+        if (header.getVersionMajor() != 2 && header.getVersionMajor() != 4) {
+            problems.add("Unsupported profile version " + header.getVersion());
+        }
+        if (header.getRenderingIntent() < 0 || header.getRenderingIntent() > 3) {
+            problems.add("Invalid rendering intent " + header.getRenderingIntent());
+        }
+
+        long tagDataStart = 128 + 4 + 12L * profile.getTags().size();
+        Set<Integer> signatures = new HashSet<>();
+        for (Tag tag : profile.getTags()) {
+            if (!signatures.add(tag.getSignatureCode())) {
+                problems.add("Duplicate tag '" + tag.getSignature() + "'");
+            }
+            if (tag.getOffset() < tagDataStart || tag.getOffset() + tag.getSize() > fileSize) {
+                problems.add("Tag '" + tag.getSignature() + "' data (" + tag.getOffset() + "+" + tag.getSize()
+                        + ") lies outside the tag data area");
+            }
+            if (tag.getOffset() % 4 != 0) {
+                problems.add("Tag '" + tag.getSignature() + "' offset " + tag.getOffset() + " is not 4-byte aligned");
+            }
+        }
+
+        // Shared tags point at the same block, anything else must not overlap
+        List<Tag> sorted = new ArrayList<>(profile.getTags());
+        sorted.sort(Comparator.comparingLong(Tag::getOffset).thenComparingLong(Tag::getSize));
+        for (int i = 1; i < sorted.size(); i++) {
+            Tag previous = sorted.get(i - 1);
+            Tag current = sorted.get(i);
+            boolean shared = previous.getOffset() == current.getOffset() && previous.getSize() == current.getSize();
+            if (!shared && current.getOffset() < previous.getOffset() + previous.getSize()) {
+                problems.add("Tag '" + current.getSignature() + "' overlaps tag '" + previous.getSignature() + "'");
+            }
+        }
+        return problems;
+    }
+}
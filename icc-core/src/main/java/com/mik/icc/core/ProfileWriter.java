@@ -0,0 +1,178 @@
+package com.mik.icc.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.AclFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Lays out a complete profile in memory (header, tag table, 4-byte aligned tag data) and writes it in one go
+public class ProfileWriter {
+
+    static final int HEADER_SIZE = ICCHeader.SIZE;
+
+    private final ByteBuffer header;
+    private int[] signatures = new int[16];
+    private final List<ByteBuffer> elements = new ArrayList<>();
+    private boolean deduplicate = true;
+
+    public ProfileWriter(ByteBuffer header) {
+        if (header.remaining() < HEADER_SIZE) {
+            throw new IllegalArgumentException("Header must be " + HEADER_SIZE + " bytes, got " + header.remaining());
+        }
+        this.header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.BIG_ENDIAN);
+        this.header.put(0, header, header.position(), HEADER_SIZE);
+    }
+
+    public ProfileWriter addTag(int signature, ByteBuffer element) {
+        int index = elements.size();
+        if (index == signatures.length) {
+            signatures = Arrays.copyOf(signatures, index * 2);
+        }
+        signatures[index] = signature;
+        elements.add(element.slice());
+        return this;
+    }
+
+    public ProfileWriter addTag(int signature, byte[] element) {
+        return addTag(signature, ByteBuffer.wrap(element));
+    }
+
+    public ProfileWriter addTag(String signature, ByteBuffer element) {
+        return addTag(Signatures.of(signature), element);
+    }
+
+    public ProfileWriter addTag(String signature, byte[] element) {
+        return addTag(Signatures.of(signature), ByteBuffer.wrap(element));
+    }
+
+    public int getTagCount() {
+        return elements.size();
+    }
+
+    // Identical tag elements are written once and shared by all matching tag table entries
+    public ProfileWriter setDeduplicate(boolean deduplicate) {
+        this.deduplicate = deduplicate;
+        return this;
+    }
+
+    public ByteBuffer serialize() {
+        int tagCount = elements.size();
+        int[] offsets = new int[tagCount];
+        boolean[] shared = new boolean[tagCount];
+        Map<Long, List<Integer>> blocksByHash = new HashMap<>();
+        long size = HEADER_SIZE + 4 + 12L * tagCount;
+        for (int i = 0; i < tagCount; i++) {
+            ByteBuffer element = elements.get(i);
+            int identical = deduplicate ? findIdentical(blocksByHash, element, i) : -1;
+            if (identical >= 0) {
+                offsets[i] = offsets[identical];
+                shared[i] = true;
+                continue;
+            }
+            size = align(size);
+            if (size + element.remaining() > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Profile would be too large: " + (size + element.remaining()) + " bytes");
+            }
+            offsets[i] = (int) size;
+            size += element.remaining();
+        }
+        size = align(size);
+
+        ByteBuffer out = ByteBuffer.allocate((int) size).order(ByteOrder.BIG_ENDIAN);
+        out.put(header.duplicate().clear());
+        out.putInt(0, (int) size);
+        out.putInt(HEADER_SIZE, tagCount);
+
+        int tableEntry = HEADER_SIZE + 4;
+        for (int i = 0; i < tagCount; i++) {
+            ByteBuffer element = elements.get(i);
+            int length = element.remaining();
+            out.putInt(tableEntry, signatures[i]);
+            out.putInt(tableEntry + 4, offsets[i]);
+            out.putInt(tableEntry + 8, length);
+            if (!shared[i]) {
+                out.put(offsets[i], element, element.position(), length);
+            }
+            tableEntry += 12;
+        }
+        return out.clear();
+    }
+
+    // Returns the index of an earlier element with the same content, or -1 after registering this one
+    private int findIdentical(Map<Long, List<Integer>> blocksByHash, ByteBuffer element, int index) {
+        List<Integer> candidates = blocksByHash.computeIfAbsent(ContentHash.of(element), hash -> new ArrayList<>(1));
+        for (int candidate : candidates) {
+            if (elements.get(candidate).equals(element)) {
+                return candidate;
+            }
+        }
+        candidates.add(index);
+        return -1;
+    }
+
+    public void write(Path target) throws IOException {
+        writeAtomically(target, serialize());
+    }
+
+    // Writes to a temp file next to the target and renames it over the target. A symlink keeps pointing to the
+    // rewritten file, and the file keeps its permissions, group and ACL instead of the temp file's owner-only mode.
+    public static void writeAtomically(Path target, ByteBuffer data) throws IOException {
+        boolean exists = Files.exists(target);
+        Path resolved = exists ? target.toRealPath() : target.toAbsolutePath();
+        Path temp = Files.createTempFile(resolved.getParent(), "." + resolved.getFileName(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer source = data.duplicate();
+                while (source.hasRemaining()) {
+                    channel.write(source);
+                }
+                channel.force(false);
+            }
+            if (exists) {
+                copyAccess(resolved, temp);
+            }
+            try {
+                Files.move(temp, resolved, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, resolved, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void copyAccess(Path from, Path to) throws IOException {
+        PosixFileAttributeView posix = Files.getFileAttributeView(from, PosixFileAttributeView.class);
+        if (posix != null) {
+            PosixFileAttributes attributes = posix.readAttributes();
+            PosixFileAttributeView target = Files.getFileAttributeView(to, PosixFileAttributeView.class);
+            try {
+                target.setGroup(attributes.group());
+            } catch (IOException e) {
+                // Only groups the user belongs to can be set; the file then gets the user's default group
+            }
+            target.setPermissions(attributes.permissions());
+        }
+        AclFileAttributeView acl = Files.getFileAttributeView(from, AclFileAttributeView.class);
+        if (acl != null) {
+            Files.getFileAttributeView(to, AclFileAttributeView.class).setAcl(acl.getAcl());
+        }
+    }
+
+    static long align(long value) {
+        return (value + 3) & ~3L;
+    }
+}
@@ -0,0 +1,79 @@
+package com.mik.icc.core;
+
+// Four-character codes packed big-endian into an int, e.g. 'desc' = 0x64657363; strings are for display only
+public final class Signatures {
+
+    // Tag type signatures
+    public static final int TEXT_TYPE = 0x74657874;  // 'text'
+    public static final int XYZ_TYPE = 0x58595A20;   // 'XYZ '
+    public static final int CURVE_TYPE = 0x63757276; // 'curv'
+    public static final int MLUC_TYPE = 0x6D6C7563;  // 'mluc'
+    public static final int DESC_TYPE = 0x64657363;  // 'desc', v2 textDescriptionType
+    public static final int PARA_TYPE = 0x70617261;  // 'para'
+    public static final int LUT8_TYPE = 0x6D667431;  // 'mft1'
+    public static final int LUT16_TYPE = 0x6D667432; // 'mft2'
+    public static final int LUT_ATOB_TYPE = 0x6D414220; // 'mAB '
+    public static final int LUT_BTOA_TYPE = 0x6D424120; // 'mBA '
+    public static final int PSEQ_TYPE = 0x70736571;  // 'pseq'
+
+    // Tag signatures
+    public static final int DESC = 0x64657363; // 'desc'
+    public static final int CPRT = 0x63707274; // 'cprt', copyright
+    public static final int RXYZ = 0x7258595A; // 'rXYZ', red colorant
+    public static final int GXYZ = 0x6758595A; // 'gXYZ', green colorant
+    public static final int BXYZ = 0x6258595A; // 'bXYZ', blue colorant
+    public static final int RTRC = 0x72545243; // 'rTRC', red tone reproduction curve
+    public static final int GTRC = 0x67545243; // 'gTRC', green tone reproduction curve
+    public static final int BTRC = 0x62545243; // 'bTRC', blue tone reproduction curve
+    public static final int A2B0 = 0x41324230; // 'A2B0', device to PCS, perceptual
+    public static final int A2B1 = 0x41324231; // 'A2B1', device to PCS, relative colorimetric
+    public static final int A2B2 = 0x41324232; // 'A2B2', device to PCS, saturation
+    public static final int B2A0 = 0x42324130; // 'B2A0', PCS to device, perceptual
+    public static final int B2A1 = 0x42324131; // 'B2A1', PCS to device, relative colorimetric
+    public static final int B2A2 = 0x42324132; // 'B2A2', PCS to device, saturation
+    public static final int PSEQ = 0x70736571; // 'pseq', profile sequence description
+    public static final int MMK1 = 0x4D4D4B31; // 'MMK1', Mimaki media name
+    public static final int MMK2 = 0x4D4D4B32; // 'MMK2', Mimaki media name
+    public static final int CXF = 0x43784620;  // 'CxF ', embedded CxF3 measurement data
+    public static final int DEVS = 0x44657653; // 'DevS', device values converted from CxF, also its type
+    public static final int CIED = 0x43494544; // 'CIED', CIE data converted from CxF, also its type
+
+    // Header file signature
+    public static final int ACSP = 0x61637370; // 'acsp'
+
+    private Signatures() {
+    }
+
+    // Packs up to four ASCII characters, padding short codes with spaces as the ICC spec does ("XYZ" -> 'XYZ ')
+    public static int of(String signature) {
+        if (signature.length() > 4) {
+            throw new IllegalArgumentException("Signature must have at most 4 characters: '" + signature + "'");
+        }
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            char c = i < signature.length() ? signature.charAt(i) : ' ';
+            if (c > 0xFF) {
+                throw new IllegalArgumentException("Signature must be ASCII: '" + signature + "'");
+            }
+            value = (value << 8) | c;
+        }
+        return value;
+    }
+
+    // Display form without trailing padding, matching how signatures were always shown
+    public static String toString(int signature) {
+        char[] chars = new char[4];
+        int length = 0;
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            chars[length++] = (char) ((signature >>> shift) & 0xFF);
+        }
+        int start = 0;
+        while (start < length && chars[start] <= ' ') {
+            start++;
+        }
+        while (length > start && chars[length - 1] <= ' ') {
+            length--;
+        }
+        return new String(chars, start, length - start);
+    }
+}
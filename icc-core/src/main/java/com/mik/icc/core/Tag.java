@@ -1,17 +1,26 @@
-package com.mik.icc.icceditor;
+package com.mik.icc.core;
 
 public class Tag {
-    private final String signature;
+    private final int signature;
     private final long offset;
     private final long size;
 
-    public Tag(String signature, long offset, long size) {
+    public Tag(int signature, long offset, long size) {
         this.signature = signature;
         this.offset = offset;
         this.size = size;
     }
 
+    public Tag(String signature, long offset, long size) {
+        this(Signatures.of(signature), offset, size);
+    }
+
+    // Readable form for display, e.g. "desc"
     public String getSignature() {
+        return Signatures.toString(signature);
+    }
+
+    public int getSignatureCode() {
         return signature;
     }
 
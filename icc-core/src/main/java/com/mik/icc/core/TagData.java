@@ -0,0 +1,10 @@
+package com.mik.icc.core;
+
+public interface TagData {
+    byte[] toBytes();
+
+    // Complete tag element as stored in a profile, including the type signature and reserved bytes
+    default byte[] toElementBytes() {
+        return toBytes();
+    }
+}
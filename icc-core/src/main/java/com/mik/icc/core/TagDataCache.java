@@ -0,0 +1,160 @@
+package com.mik.icc.core;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// LRU cache of decoded tag data, bounded by the estimated size of the cached objects
+public class TagDataCache {
+
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long maxBytes;
+    private long currentBytes;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    public TagDataCache(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Cache size must not be negative: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    public synchronized TagData get(Tag tag) {
+        Entry entry = entries.get(key(tag));
+        if (entry == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return entry.data;
+    }
+
+    public synchronized void put(Tag tag, TagData data) {
+        long weight = weightOf(tag, data);
+        if (weight > maxBytes) {
+            return;
+        }
+        Entry previous = entries.put(key(tag), new Entry(data, weight));
+        if (previous != null) {
+            currentBytes -= previous.weight;
+        }
+        currentBytes += weight;
+        evictToLimit();
+    }
+
+    // Drops every entry whose data overlaps the given byte range of the profile
+    public synchronized void invalidate(long offset, long length) {
+        Iterator<Map.Entry<Long, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, Entry> entry = iterator.next();
+            long entryOffset = entry.getKey() >>> 32;
+            long entryEnd = entryOffset + (entry.getKey() & 0xFFFFFFFFL);
+            if (entryOffset < offset + length && offset < entryEnd) {
+                currentBytes -= entry.getValue().weight;
+                iterator.remove();
+            }
+        }
+    }
+
+    public void invalidate(Tag tag) {
+        invalidate(tag.getOffset(), Math.max(1, tag.getSize()));
+    }
+
+    // Moves the entries of relocated tags (keyed by their old location) to the new tags, drops everything else
+    public synchronized void relocate(Map<Long, Tag> relocated) {
+        LinkedHashMap<Long, Entry> kept = new LinkedHashMap<>();
+        for (Map.Entry<Long, Entry> entry : entries.entrySet()) {
+            Tag target = relocated.get(entry.getKey());
+            if (target != null) {
+                kept.put(key(target), entry.getValue());
+            }
+        }
+        entries.clear();
+        entries.putAll(kept);
+        currentBytes = 0;
+        for (Entry entry : entries.values()) {
+            currentBytes += entry.weight;
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        currentBytes = 0;
+    }
+
+    public synchronized void setMaxBytes(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Cache size must not be negative: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        evictToLimit();
+    }
+
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public synchronized double getHitRate() {
+        long requests = hitCount + missCount;
+        return requests == 0 ? 0.0 : (double) hitCount / requests;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("TagDataCache{entries=%d, bytes=%d/%d, hits=%d, misses=%d, evictions=%d}",
+                entries.size(), currentBytes, maxBytes, hitCount, missCount, evictionCount);
+    }
+
+    private void evictToLimit() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (currentBytes > maxBytes && iterator.hasNext()) {
+            currentBytes -= iterator.next().weight;
+            iterator.remove();
+            evictionCount++;
+        }
+    }
+
+    // Tags sharing the same data block share one cache entry
+    static long key(Tag tag) {
+        return (tag.getOffset() << 32) | (tag.getSize() & 0xFFFFFFFFL);
+    }
+
+    private static long weightOf(Tag tag, TagData data) {
+        if (data instanceof CurveTagData) {
+            return 16 + 8L * ((CurveTagData) data).getCurvePoints().length;
+        }
+        return Math.max(16, tag.getSize());
+    }
+
+    private static final class Entry {
+        private final TagData data;
+        private final long weight;
+
+        private Entry(TagData data, long weight) {
+            this.data = data;
+            this.weight = weight;
+        }
+    }
+}
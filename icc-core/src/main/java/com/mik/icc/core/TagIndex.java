@@ -0,0 +1,50 @@
+package com.mik.icc.core;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Open-addressing map from packed tag signature to position in the tag table, no boxing on lookup.
+// With duplicate signatures the first tag wins, like a scan of the table would.
+final class TagIndex {
+
+    private static final int EMPTY = -1;
+
+    private final int[] keys;
+    private final int[] positions;
+    private final int mask;
+
+    TagIndex(List<Tag> tags) {
+        int capacity = Integer.highestOneBit(Math.max(4, tags.size() * 2) - 1) << 1;
+        keys = new int[capacity];
+        positions = new int[capacity];
+        mask = capacity - 1;
+        Arrays.fill(positions, EMPTY);
+        for (int i = 0; i < tags.size(); i++) {
+            int signature = tags.get(i).getSignatureCode();
+            int slot = find(signature);
+            if (positions[slot] == EMPTY) {
+                keys[slot] = signature;
+                positions[slot] = i;
+            }
+        }
+    }
+
+    // Position of the tag in the table, or -1
+    int positionOf(int signature) {
+        return positions[find(signature)];
+    }
+
+    private int find(int signature) {
+        int slot = mix(signature) & mask;
+        while (positions[slot] != EMPTY && keys[slot] != signature) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    // Signatures share most of their bits, so spread them before masking
+    private static int mix(int signature) {
+        int h = signature * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,61 @@
+package com.mik.icc.core;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public enum TagType {
+    TEXT_TYPE(Signatures.TEXT_TYPE),
+    XYZ_TYPE(Signatures.XYZ_TYPE),
+    CURVE_TYPE(Signatures.CURVE_TYPE),
+    MLUC_TYPE(Signatures.MLUC_TYPE),
+    LUT8_TYPE(Signatures.LUT8_TYPE),
+    LUT16_TYPE(Signatures.LUT16_TYPE),
+    LUT_ATOB_TYPE(Signatures.LUT_ATOB_TYPE),
+    LUT_BTOA_TYPE(Signatures.LUT_BTOA_TYPE),
+    UNKNOWN(0);
+
+    private final int code;
+
+    TagType(int code) {
+        this.code = code;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    // Full four characters including padding, e.g. "XYZ "
+    public String getSignature() {
+        if (this == UNKNOWN) {
+            return "unknown";
+        }
+        return new String(ByteBuffer.allocate(4).putInt(code).array(), StandardCharsets.US_ASCII);
+    }
+
+    public static TagType fromCode(int code) {
+        switch (code) {
+            case Signatures.TEXT_TYPE:
+                return TEXT_TYPE;
+            case Signatures.XYZ_TYPE:
+                return XYZ_TYPE;
+            case Signatures.CURVE_TYPE:
+                return CURVE_TYPE;
+            case Signatures.MLUC_TYPE:
+                return MLUC_TYPE;
+            case Signatures.LUT8_TYPE:
+                return LUT8_TYPE;
+            case Signatures.LUT16_TYPE:
+                return LUT16_TYPE;
+            case Signatures.LUT_ATOB_TYPE:
+                return LUT_ATOB_TYPE;
+            case Signatures.LUT_BTOA_TYPE:
+                return LUT_BTOA_TYPE;
+            default:
+                return UNKNOWN;
+        }
+    }
+
+    public static TagType fromSignature(String signature) {
+        return signature.length() <= 4 ? fromCode(Signatures.of(signature)) : UNKNOWN;
+    }
+}
@@ -0,0 +1,131 @@
+package com.mik.icc.core;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+// Version 2 textDescriptionType: one description stored as ASCII, Unicode and Macintosh ScriptCode text, each
+// behind its own count
+public class TextDescriptionTagData implements TagData {
+    // The ScriptCode text lives in a fixed 67-byte field that also holds its NUL
+    static final int MAX_SCRIPT_CODE_LENGTH = 66;
+
+    private final String text;
+    private final int unicodeLanguage;
+    private final String unicodeText;
+    private final int scriptCode;
+    private final String scriptCodeText;
+
+    public TextDescriptionTagData(String text) {
+        this(text, 0, "", 0, "");
+    }
+
+    // The ScriptCode text is taken as ISO-8859-1, one char per byte, so any Macintosh encoding survives unchanged
+    public TextDescriptionTagData(String text, int unicodeLanguage, String unicodeText, int scriptCode,
+                                  String scriptCodeText) {
+        if (scriptCodeText.length() > MAX_SCRIPT_CODE_LENGTH) {
+            throw new IllegalArgumentException("ScriptCode text is longer than " + MAX_SCRIPT_CODE_LENGTH + " bytes");
+        }
+        this.text = text;
+        this.unicodeLanguage = unicodeLanguage;
+        this.unicodeText = unicodeText;
+        this.scriptCode = scriptCode;
+        this.scriptCodeText = scriptCodeText;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public int getUnicodeLanguage() {
+        return unicodeLanguage;
+    }
+
+    public String getUnicodeText() {
+        return unicodeText;
+    }
+
+    public int getScriptCode() {
+        return scriptCode;
+    }
+
+    public String getScriptCodeText() {
+        return scriptCodeText;
+    }
+
+    // Reads a complete 'desc' element; counts that run past the element are rejected
+    public static TextDescriptionTagData decode(ByteBuffer element) {
+        int length = element.capacity();
+        if (length < 12 || element.getInt(0) != Signatures.DESC_TYPE) {
+            throw new IllegalArgumentException("Not a textDescriptionType element");
+        }
+        long asciiCount = element.getInt(8) & 0xFFFFFFFFL;
+        if (12 + asciiCount + 8 > length) {
+            throw new IllegalArgumentException("ASCII description runs past the end of the element");
+        }
+        int unicodeStart = 12 + (int) asciiCount;
+        String text = string(element, 12, (int) asciiCount, StandardCharsets.US_ASCII);
+
+        int unicodeLanguage = element.getInt(unicodeStart);
+        long unicodeCount = element.getInt(unicodeStart + 4) & 0xFFFFFFFFL;
+        if (unicodeStart + 8 + unicodeCount * 2 > length) {
+            throw new IllegalArgumentException("Unicode description runs past the end of the element");
+        }
+        int scriptStart = unicodeStart + 8 + (int) unicodeCount * 2;
+        String unicodeText = string(element, unicodeStart + 8, (int) unicodeCount * 2, StandardCharsets.UTF_16BE);
+
+        // Some writers stop after the Unicode part, which reads as an empty ScriptCode description
+        int scriptCode = 0;
+        String scriptCodeText = "";
+        if (scriptStart + 3 <= length) {
+            scriptCode = element.getShort(scriptStart) & 0xFFFF;
+            int scriptCount = Math.min(element.get(scriptStart + 2) & 0xFF, MAX_SCRIPT_CODE_LENGTH + 1);
+            if (scriptStart + 3 + scriptCount > length) {
+                throw new IllegalArgumentException("ScriptCode description runs past the end of the element");
+            }
+            scriptCodeText = string(element, scriptStart + 3, scriptCount, StandardCharsets.ISO_8859_1);
+        }
+        return new TextDescriptionTagData(text, unicodeLanguage, unicodeText, scriptCode,
+                scriptCodeText.length() > MAX_SCRIPT_CODE_LENGTH
+                        ? scriptCodeText.substring(0, MAX_SCRIPT_CODE_LENGTH) : scriptCodeText);
+    }
+
+    // Counts include the terminating NUL, the text stops at the first one
+    private static String string(ByteBuffer element, int index, int length, Charset charset) {
+        byte[] bytes = new byte[length];
+        element.get(index, bytes);
+        String decoded = new String(bytes, charset);
+        int end = decoded.indexOf('\0');
+        return end < 0 ? decoded : decoded.substring(0, end);
+    }
+
+    @Override
+    public byte[] toBytes() {
+        byte[] ascii = text.getBytes(StandardCharsets.US_ASCII);
+        byte[] unicode = unicodeText.getBytes(StandardCharsets.UTF_16BE);
+        byte[] script = scriptCodeText.getBytes(StandardCharsets.ISO_8859_1);
+        int unicodeCount = unicode.length == 0 ? 0 : unicode.length / 2 + 1;
+
+        int size = 12 + ascii.length + 1 + 8 + unicodeCount * 2 + 3 + MAX_SCRIPT_CODE_LENGTH + 1;
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.BIG_ENDIAN);
+        buffer.putInt(Signatures.DESC_TYPE);
+        buffer.putInt(0); // Reserved
+        buffer.putInt(ascii.length + 1);
+        buffer.put(ascii).put((byte) 0);
+        buffer.putInt(unicodeLanguage);
+        buffer.putInt(unicodeCount);
+        if (unicodeCount > 0) {
+            buffer.put(unicode).putShort((short) 0);
+        }
+        buffer.putShort((short) scriptCode);
+        buffer.put((byte) (script.length == 0 ? 0 : script.length + 1));
+        buffer.put(script);
+        return buffer.array();
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -1,7 +1,7 @@
-package com.mik.icc.icceditor;
+package com.mik.icc.core;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
-import java.nio.charset.StandardCharsets;
 
 public class TextTagData implements TagData {
     private String text;
@@ -28,6 +28,17 @@ public class TextTagData implements TagData {
         return text.getBytes(charset);
     }
 
+    @Override
+    public byte[] toElementBytes() {
+        byte[] textBytes = toBytes();
+        // Type signature, reserved bytes, the text and a NUL terminator
+        ByteBuffer element = ByteBuffer.allocate(8 + textBytes.length + 1);
+        element.putInt(Signatures.TEXT_TYPE);
+        element.putInt(0);
+        element.put(textBytes);
+        return element.array();
+    }
+
     @Override
     public String toString() {
         return text;
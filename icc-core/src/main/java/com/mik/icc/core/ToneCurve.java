@@ -0,0 +1,296 @@
+package com.mik.icc.core;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+// One-dimensional transfer function of a TRC or a LUT sub-element, evaluated on 0..1. Curves are evaluated once
+// per table entry when a transform is built; converting pixels only reads the baked tables.
+public final class ToneCurve {
+
+    private static final ToneCurve IDENTITY = new ToneCurve(Double.NaN, null, -1, null);
+    // Parameters g, a, b, c, d, e, f used by each parametricCurveType function (ICC.1 10.18)
+    private static final int[] PARAMETER_COUNTS = {1, 3, 4, 5, 7};
+
+    private final double gamma;
+    // Samples at i / (length - 1), null for gamma curves
+    private final double[] samples;
+    // parametricCurveType function 0..4, -1 for other curves
+    private final int function;
+    private final double[] parameters;
+
+    private ToneCurve(double gamma, double[] samples, int function, double[] parameters) {
+        this.gamma = gamma;
+        this.samples = samples;
+        this.function = function;
+        this.parameters = parameters;
+    }
+
+    public static ToneCurve identity() {
+        return IDENTITY;
+    }
+
+    public static ToneCurve gamma(double gamma) {
+        if (!(gamma > 0)) {
+            throw new IllegalArgumentException("Gamma must be positive: " + gamma);
+        }
+        return gamma == 1.0 ? IDENTITY : new ToneCurve(gamma, null, -1, null);
+    }
+
+    public static ToneCurve sampled(double[] samples) {
+        if (samples.length < 2) {
+            throw new IllegalArgumentException("A sampled curve needs at least 2 points: " + samples.length);
+        }
+        return new ToneCurve(Double.NaN, samples.clone(), -1, null);
+    }
+
+    public static ToneCurve parametric(int function, double... parameters) {
+        if (function < 0 || function >= PARAMETER_COUNTS.length) {
+            throw new IllegalArgumentException("Unknown parametric curve function: " + function);
+        }
+        if (parameters.length != PARAMETER_COUNTS[function]) {
+            throw new IllegalArgumentException("Parametric curve function " + function + " needs "
+                    + PARAMETER_COUNTS[function] + " parameters: " + parameters.length);
+        }
+        return new ToneCurve(Double.NaN, null, function, parameters.clone());
+    }
+
+    // curveType: no points is the identity, one point is a u8Fixed8 gamma, more points are samples
+    public static ToneCurve of(CurveTagData curve) {
+        double[] points = curve.getCurvePoints();
+        if (points.length == 0) {
+            return IDENTITY;
+        }
+        if (points.length == 1) {
+            // Decoded as raw / 65535, the raw value is the gamma in u8Fixed8
+            return gamma(Math.round(points[0] * 65535.0) / 256.0);
+        }
+        return sampled(points);
+    }
+
+    public static ToneCurve of(TagData data) {
+        if (data instanceof CurveTagData) {
+            return of((CurveTagData) data);
+        }
+        byte[] element = data.toElementBytes();
+        if (element.length >= 4 && ByteBuffer.wrap(element).getInt(0) == Signatures.PARA_TYPE) {
+            return read(ByteBuffer.wrap(element), 0);
+        }
+        throw new IllegalArgumentException("Unsupported curve type: " + data.getClass().getSimpleName());
+    }
+
+    // Reads the curv or para element at offset, as embedded in lutAToBType and lutBToAType
+    public static ToneCurve read(ByteBuffer buffer, int offset) {
+        int length = elementLength(buffer, offset);
+        int type = buffer.getInt(offset);
+        if (type == Signatures.CURVE_TYPE) {
+            int count = buffer.getInt(offset + 8);
+            if (count == 0) {
+                return IDENTITY;
+            }
+            if (count == 1) {
+                return gamma((buffer.getShort(offset + 12) & 0xFFFF) / 256.0);
+            }
+            double[] points = new double[count];
+            for (int i = 0; i < count; i++) {
+                points[i] = CurveTagData.iccUnsignedShortToFloat(buffer.getShort(offset + 12 + i * 2));
+            }
+            return sampled(points);
+        }
+        int function = buffer.getShort(offset + 8) & 0xFFFF;
+        double[] parameters = new double[(length - 12) / 4];
+        for (int i = 0; i < parameters.length; i++) {
+            parameters[i] = XYZTagData.iccS15Fixed16ToFloat(buffer.getInt(offset + 12 + i * 4));
+        }
+        return parametric(function, parameters);
+    }
+
+    // Size of the curv or para element at offset, without padding
+    static int elementLength(ByteBuffer buffer, int offset) {
+        if (offset < 0 || offset + 12L > buffer.limit()) {
+            throw new IllegalArgumentException("Curve at " + offset + " extends beyond the element");
+        }
+        int type = buffer.getInt(offset);
+        long length;
+        if (type == Signatures.CURVE_TYPE) {
+            length = 12 + 2L * (buffer.getInt(offset + 8) & 0xFFFFFFFFL);
+        } else if (type == Signatures.PARA_TYPE) {
+            int function = buffer.getShort(offset + 8) & 0xFFFF;
+            if (function >= PARAMETER_COUNTS.length) {
+                throw new IllegalArgumentException("Unknown parametric curve function: " + function);
+            }
+            length = 12 + 4L * PARAMETER_COUNTS[function];
+        } else {
+            throw new IllegalArgumentException("Not a curv or para element: '" + Signatures.toString(type) + "'");
+        }
+        if (offset + length > buffer.limit()) {
+            throw new IllegalArgumentException("Curve at " + offset + " extends beyond the element");
+        }
+        return (int) length;
+    }
+
+    // Smallest element that reproduces the curve: curv for identity, gamma and sampled curves, para otherwise
+    public byte[] toElementBytes() {
+        ByteBuffer element;
+        if (function >= 0) {
+            element = ByteBuffer.allocate(12 + 4 * parameters.length).order(ByteOrder.BIG_ENDIAN);
+            element.putInt(Signatures.PARA_TYPE).putInt(0).putShort((short) function).putShort((short) 0);
+            for (double parameter : parameters) {
+                element.putInt(XYZTagData.iccFloatToS15Fixed16(parameter));
+            }
+        } else if (samples != null) {
+            element = ByteBuffer.allocate(12 + 2 * samples.length).order(ByteOrder.BIG_ENDIAN);
+            element.putInt(Signatures.CURVE_TYPE).putInt(0).putInt(samples.length);
+            for (double sample : samples) {
+                element.putShort((short) Math.round(clamp(sample) * 65535.0));
+            }
+        } else if (isIdentity()) {
+            element = ByteBuffer.allocate(12).order(ByteOrder.BIG_ENDIAN);
+            element.putInt(Signatures.CURVE_TYPE).putInt(0).putInt(0);
+        } else if (gamma * 256 == Math.rint(gamma * 256) && gamma < 256) {
+            element = ByteBuffer.allocate(14).order(ByteOrder.BIG_ENDIAN);
+            element.putInt(Signatures.CURVE_TYPE).putInt(0).putInt(1).putShort((short) (gamma * 256));
+        } else {
+            // u8Fixed8 would round the gamma, function 0 keeps it to s15Fixed16 precision
+            return parametric(0, gamma).toElementBytes();
+        }
+        return element.array();
+    }
+
+    public boolean isIdentity() {
+        return this == IDENTITY;
+    }
+
+    public double evaluate(double x) {
+        x = clamp(x);
+        if (function >= 0) {
+            return clamp(evaluateParametric(x));
+        }
+        if (samples != null) {
+            double position = x * (samples.length - 1);
+            int low = Math.min((int) position, samples.length - 2);
+            return samples[low] + (samples[low + 1] - samples[low]) * (position - low);
+        }
+        return Double.isNaN(gamma) ? x : Math.pow(x, gamma);
+    }
+
+    private double evaluateParametric(double x) {
+        double[] p = parameters;
+        switch (function) {
+            case 0:
+                return Math.pow(x, p[0]);
+            case 1:
+                return x >= -p[2] / p[1] ? Math.pow(p[1] * x + p[2], p[0]) : 0;
+            case 2:
+                return x >= -p[2] / p[1] ? Math.pow(p[1] * x + p[2], p[0]) + p[3] : p[3];
+            case 3:
+                return x >= p[4] ? Math.pow(p[1] * x + p[2], p[0]) : p[3] * x;
+            default:
+                return x >= p[4] ? Math.pow(p[1] * x + p[2], p[0]) + p[5] : p[3] * x + p[6];
+        }
+    }
+
+    // Smallest x with evaluate(x) = y, for non-decreasing curves
+    public double invert(double y) {
+        y = clamp(y);
+        if (function >= 0) {
+            return invertParametric(y);
+        }
+        if (samples == null) {
+            return Double.isNaN(gamma) ? y : Math.pow(y, 1.0 / gamma);
+        }
+        int last = samples.length - 1;
+        if (y <= samples[0]) {
+            return 0;
+        }
+        if (y >= samples[last]) {
+            return firstIndexReaching(samples[last]) / (double) last;
+        }
+        int high = firstIndexReaching(y);
+        int low = high - 1;
+        double span = samples[high] - samples[low];
+        double fraction = span > 0 ? (y - samples[low]) / span : 0;
+        return (low + fraction) / last;
+    }
+
+    // Bisection, the piecewise functions have no closed-form inverse in general
+    private double invertParametric(double y) {
+        double low = 0;
+        double high = 1;
+        if (evaluate(high) < y) {
+            return 1;
+        }
+        for (int i = 0; i < 48; i++) {
+            double middle = (low + high) / 2;
+            if (evaluate(middle) < y) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        return high;
+    }
+
+    // First sample >= y, assuming the samples do not decrease
+    private int firstIndexReaching(double y) {
+        int low = 0;
+        int high = samples.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (samples[middle] < y) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Forward table with size entries at i / (size - 1)
+    public float[] bake(int size) {
+        float[] table = new float[size];
+        for (int i = 0; i < size; i++) {
+            table[i] = (float) evaluate(i / (double) (size - 1));
+        }
+        return table;
+    }
+
+    // Inverse table with size entries at i / (size - 1)
+    public float[] bakeInverse(int size) {
+        float[] table = new float[size];
+        for (int i = 0; i < size; i++) {
+            table[i] = (float) invert(i / (double) (size - 1));
+        }
+        return table;
+    }
+
+    // Clamps to the table's 0..1 domain; NaN maps to the first entry
+    static float lookup(float[] table, float x) {
+        if (!(x > 0f)) {
+            return table[0];
+        }
+        int last = table.length - 1;
+        if (x >= 1f) {
+            return table[last];
+        }
+        float position = x * last;
+        int index = (int) position;
+        float low = table[index];
+        return low + (table[index + 1] - low) * (position - index);
+    }
+
+    private static double clamp(double x) {
+        return x < 0 ? 0 : x > 1 ? 1 : x;
+    }
+
+    @Override
+    public String toString() {
+        if (function >= 0) {
+            return "ToneCurve{parametric " + function + " " + Arrays.toString(parameters) + "}";
+        }
+        if (samples != null) {
+            return "ToneCurve{" + samples.length + " samples}";
+        }
+        return Double.isNaN(gamma) ? "ToneCurve{identity}" : "ToneCurve{gamma " + gamma + "}";
+    }
+}
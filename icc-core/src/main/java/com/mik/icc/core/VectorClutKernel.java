@@ -0,0 +1,156 @@
+package com.mik.icc.core;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// Vector API version of ClutInterpolator's tetrahedral 3D and 4D loops: one lane per pixel, cell positions and
+// tetrahedron selection computed with lane-wise compares and blends, corner values fetched with gathers. Only loaded
+// when jdk.incubator.vector is resolved; returns the number of pixels it converted and leaves the tail to the scalar
+// loop. Trilinear needs eight gathers per channel and stays scalar, which is faster on JDK 17.
+final class VectorClutKernel {
+
+    // At most 256 bits: on JDK 17 with AVX-512, C2's code for the 512-bit gathers has crashed the VM with SIGSEGV
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED.vectorBitSize() > 256
+            ? FloatVector.SPECIES_256 : FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = VectorSpecies.of(int.class, FLOATS.vectorShape());
+    private static final int LANES = FLOATS.length();
+
+    private final float[] table;
+    private final int inputChannels;
+    private final int outputChannels;
+    private final int[] gridPoints;
+    private final int[] strides;
+    // Offsets of the lanes' pixels in the interleaved input and output
+    private final int[] inputMap;
+    private final int[] outputMap;
+    // Per-thread lane data passed between the steps: node indices (base node, second and third corner of the
+    // tetrahedron) and weights (fractions, replaced by the tetrahedron weights, then the fraction of the outer channel). Each step
+    // is a small method so C2 inlines every vector operation instead of boxing vectors between calls.
+    private final ThreadLocal<int[]> indices = ThreadLocal.withInitial(() -> new int[3 * LANES]);
+    private final ThreadLocal<float[]> weights = ThreadLocal.withInitial(() -> new float[5 * LANES]);
+
+    VectorClutKernel(ClutInterpolator interpolator) {
+        this.table = interpolator.table;
+        this.inputChannels = interpolator.inputChannels;
+        this.outputChannels = interpolator.outputChannels;
+        this.gridPoints = interpolator.gridPoints;
+        this.strides = interpolator.strides;
+        this.inputMap = new int[LANES];
+        this.outputMap = new int[LANES];
+        for (int lane = 0; lane < LANES; lane++) {
+            inputMap[lane] = lane * inputChannels;
+            outputMap[lane] = lane * outputChannels;
+        }
+    }
+
+    int interpolate(float[] in, int inOffset, float[] out, int outOffset, int pixelCount) {
+        int vectorPixels = pixelCount - pixelCount % LANES;
+        int[] index = indices.get();
+        float[] weight = weights.get();
+        int first = inputChannels - 3;
+        int outer = first == 1 ? strides[0] : 0;
+        for (int p = 0; p < vectorPixels; p += LANES) {
+            int i = inOffset + p * inputChannels;
+            int o = outOffset + p * outputChannels;
+            prepareTetrahedron(in, i, index, weight);
+            for (int c = 0; c < outputChannels; c++) {
+                tetrahedron(c, outer, index, weight, out, o);
+            }
+        }
+        return vectorPixels;
+    }
+
+    // Base node of each lane, fractions of the 3D channels in weights[0..3 * LANES), outer fraction at 4 * LANES
+    private IntVector base(float[] in, int i, float[] weight) {
+        int first = inputChannels - 3;
+        IntVector node = IntVector.zero(INTS);
+        if (first == 1) {
+            FloatVector po = position(in, i, 0);
+            IntVector k = cell(po, gridPoints[0]);
+            po.sub(toFloat(k)).intoArray(weight, 4 * LANES);
+            node = k.mul(strides[0]);
+        }
+        for (int d = 0; d < 3; d++) {
+            int channel = first + d;
+            FloatVector position = position(in, i + channel, channel);
+            IntVector k = cell(position, gridPoints[channel]);
+            position.sub(toFloat(k)).intoArray(weight, d * LANES);
+            node = node.add(k.mul(strides[channel]));
+        }
+        return node;
+    }
+
+    // Same corner order as the scalar loop: decreasing fraction, ties to x before y before z
+    private void prepareTetrahedron(float[] in, int i, int[] index, float[] weight) {
+        IntVector node = base(in, i, weight);
+        int first = inputChannels - 3;
+        int sx = strides[first];
+        int sy = strides[first + 1];
+        int sz = strides[first + 2];
+        FloatVector fx = FloatVector.fromArray(FLOATS, weight, 0);
+        FloatVector fy = FloatVector.fromArray(FLOATS, weight, LANES);
+        FloatVector fz = FloatVector.fromArray(FLOATS, weight, 2 * LANES);
+        VectorMask<Float> xy = fx.compare(VectorOperators.GE, fy);
+        VectorMask<Float> yz = fy.compare(VectorOperators.GE, fz);
+        VectorMask<Float> xz = fx.compare(VectorOperators.GE, fz);
+        // Strides are small enough to be exact as floats, which keeps the masks in one species
+        FloatVector a = FloatVector.broadcast(FLOATS, sz).blend(sy, xy.not().and(yz)).blend(sx, xy.and(xz));
+        FloatVector smallest = FloatVector.broadcast(FLOATS, sx).blend(sy, xy.and(yz.not())).blend(sz, xz.and(yz));
+        node.intoArray(index, 0);
+        node.add(toInt(a)).intoArray(index, LANES);
+        node.add(sx + sy + sz).sub(toInt(smallest)).intoArray(index, 2 * LANES);
+
+        FloatVector max = fx.max(fy).max(fz);
+        FloatVector min = fx.min(fy).min(fz);
+        FloatVector mid = fx.add(fy).add(fz).sub(max).sub(min);
+        max.neg().add(1f).intoArray(weight, 0);
+        max.sub(mid).intoArray(weight, LANES);
+        mid.sub(min).intoArray(weight, 2 * LANES);
+        min.intoArray(weight, 3 * LANES);
+    }
+
+    private void tetrahedron(int c, int outer, int[] index, float[] weight, float[] out, int o) {
+        int far = strides[inputChannels - 3] + strides[inputChannels - 2] + strides[inputChannels - 1];
+        FloatVector w0 = FloatVector.fromArray(FLOATS, weight, 0);
+        FloatVector w1 = FloatVector.fromArray(FLOATS, weight, LANES);
+        FloatVector w2 = FloatVector.fromArray(FLOATS, weight, 2 * LANES);
+        FloatVector w3 = FloatVector.fromArray(FLOATS, weight, 3 * LANES);
+        FloatVector value = gather(c, index, 0).mul(w0)
+                .add(gather(c, index, LANES).mul(w1))
+                .add(gather(c, index, 2 * LANES).mul(w2))
+                .add(gather(c + far, index, 0).mul(w3));
+        if (outer != 0) {
+            int u = c + outer;
+            FloatVector upper = gather(u, index, 0).mul(w0)
+                    .add(gather(u, index, LANES).mul(w1))
+                    .add(gather(u, index, 2 * LANES).mul(w2))
+                    .add(gather(u + far, index, 0).mul(w3));
+            value = value.add(upper.sub(value).mul(FloatVector.fromArray(FLOATS, weight, 4 * LANES)));
+        }
+        value.intoArray(out, o + c, outputMap, 0);
+    }
+
+    private FloatVector position(float[] in, int offset, int channel) {
+        return FloatVector.fromArray(FLOATS, in, offset, inputMap, 0).max(0f).min(1f).mul(gridPoints[channel] - 1);
+    }
+
+    private static IntVector cell(FloatVector position, int points) {
+        return ((IntVector) position.convert(VectorOperators.F2I, 0)).min(points - 2);
+    }
+
+    private static IntVector toInt(FloatVector value) {
+        return (IntVector) value.convert(VectorOperators.F2I, 0);
+    }
+
+    private static FloatVector toFloat(IntVector value) {
+        return (FloatVector) value.convert(VectorOperators.I2F, 0);
+    }
+
+    private FloatVector gather(int offset, int[] index, int lane) {
+        return FloatVector.fromArray(FLOATS, table, offset, index, lane);
+    }
+
+}
@@ -1,4 +1,4 @@
-package com.mik.icc.icceditor;
+package com.mik.icc.core;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
@@ -47,13 +47,22 @@ public class XYZTagData implements TagData {
         return buffer.array();
     }
 
+    @Override
+    public byte[] toElementBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(20).order(ByteOrder.BIG_ENDIAN);
+        buffer.putInt(Signatures.XYZ_TYPE);
+        buffer.putInt(0); // Reserved
+        buffer.put(toBytes());
+        return buffer.array();
+    }
+
     @Override
     public String toString() {
         return String.format("X: %.4f, Y: %.4f, Z: %.4f", x, y, z);
     }
 
     // Helper to convert float to S15Fixed16 (ICC profile format)
-    private int iccFloatToS15Fixed16(double value) {
+    public static int iccFloatToS15Fixed16(double value) {
         return (int) Math.round(value * 65536.0);
     }
 
@@ -0,0 +1,8 @@
+module com.mik.icc.core {
+    requires java.desktop;
+    requires java.xml;
+    // Optional: ClutInterpolator only uses the Vector API when the module is resolved at run time
+    requires static jdk.incubator.vector;
+
+    exports com.mik.icc.core;
+}
@@ -0,0 +1,233 @@
+package com.mik.icc.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+class BatchCliTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    private int run(String... args) {
+        return new BatchCli(new PrintStream(out, true, StandardCharsets.UTF_8),
+                new PrintStream(err, true, StandardCharsets.UTF_8)).run(args);
+    }
+
+    private Path mediaProfile(Path file, String mediaName) throws IOException {
+        Files.createDirectories(file.getParent());
+        return new TestProfiles().deviceClass("prtr").textTag("cprt", "Copyright")
+                .tag("MMK1", ("MEDIA=" + mediaName + ";").getBytes(StandardCharsets.UTF_8)).write(file);
+    }
+
+    @Test
+    void replaceMediaRewritesEveryProfileInTheTree() throws IOException {
+        Path first = mediaProfile(tempDir.resolve("a/one.icc"), "PVC");
+        Path second = mediaProfile(tempDir.resolve("a/b/two.ICM"), "PVC");
+        Files.writeString(tempDir.resolve("a/readme.txt"), "not a profile");
+
+        int exit = run("replace-media", "--search", "PVC", "--replace", "VIN", "--threads", "2", tempDir.toString());
+
+        assertEquals(BatchCli.EXIT_OK, exit, err.toString(StandardCharsets.UTF_8));
+        String report = out.toString(StandardCharsets.UTF_8);
+        assertTrue(report.contains("2 files, 2 changed, 0 failed"), report);
+        for (Path file : new Path[] {first, second}) {
+            try (ICCProfile profile = new ICCProfile(file.toString())) {
+                byte[] data = profile.readTagData(profile.getTagBySignature("MMK1")).toBytes();
+                assertEquals("MEDIA=VIN;", new String(data, StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Test
+    void validateReportsBrokenProfilesAsFailures() throws IOException {
+        mediaProfile(tempDir.resolve("good.icc"), "PVC");
+        Files.write(tempDir.resolve("bad.icc"), new byte[16]);
+
+        int exit = run("validate", tempDir.toString());
+
+        assertEquals(BatchCli.EXIT_FAILURES, exit);
+        String report = out.toString(StandardCharsets.UTF_8);
+        assertTrue(report.contains("FAILED  " + tempDir.resolve("bad.icc")), report);
+        assertTrue(report.contains("OK      " + tempDir.resolve("good.icc")), report);
+    }
+
+    @Test
+    void dumpPrintsHeaderAndTags() throws IOException {
+        Path file = mediaProfile(tempDir.resolve("dump.icc"), "PVC");
+
+        assertEquals(BatchCli.EXIT_OK, run("dump", file.toString()));
+        String report = out.toString(StandardCharsets.UTF_8);
+        assertTrue(report.contains("deviceClass='prtr'"), report);
+        assertTrue(report.contains("MMK1 offset="), report);
+    }
+
+    @Test
+    void indexAndQueryFindProfilesByClassAndTag() throws IOException {
+        Path mimaki = mediaProfile(tempDir.resolve("lib/mimaki.icc"), "PVC");
+        new TestProfiles().deviceClass("prtr").textTag("cprt", "Copyright").write(tempDir.resolve("lib/plain.icc"));
+        Path indexFile = tempDir.resolve("lib.idx");
+
+        assertEquals(BatchCli.EXIT_OK, run("index", "--index", indexFile.toString(), tempDir.resolve("lib").toString()));
+        assertTrue(out.toString(StandardCharsets.UTF_8).contains("2 profiles indexed: 2 added"));
+        assertEquals(BatchCli.EXIT_OK, run("index", "--index", indexFile.toString(), tempDir.resolve("lib").toString()));
+        assertTrue(out.toString(StandardCharsets.UTF_8).contains("0 added, 0 updated, 2 unchanged"));
+
+        out.reset();
+        assertEquals(BatchCli.EXIT_OK, run("query", "--index", indexFile.toString(), "--class", "prtr", "--tag", "MMK1"));
+        assertEquals(mimaki.toAbsolutePath().toString(), out.toString(StandardCharsets.UTF_8).trim());
+    }
+
+    @Test
+    void updateIdWritesMissingIdsAndVerifyIdFindsStaleOnes() throws IOException {
+        Path first = mediaProfile(tempDir.resolve("ids/one.icc"), "PVC");
+        mediaProfile(tempDir.resolve("ids/two.icc"), "VIN");
+
+        assertEquals(BatchCli.EXIT_OK, run("update-id", "--threads", "2", tempDir.resolve("ids").toString()));
+        assertTrue(out.toString(StandardCharsets.UTF_8).contains("2 files, 2 changed, 0 failed"));
+        out.reset();
+        assertEquals(BatchCli.EXIT_OK, run("update-id", tempDir.resolve("ids").toString()));
+        assertTrue(out.toString(StandardCharsets.UTF_8).contains("2 files, 0 changed, 0 failed"));
+
+        // Change a tag byte behind the ID's back
+        byte[] bytes = Files.readAllBytes(first);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(first, bytes);
+        out.reset();
+        assertEquals(BatchCli.EXIT_FAILURES, run("verify-id", tempDir.resolve("ids").toString()));
+        String report = out.toString(StandardCharsets.UTF_8);
+        assertTrue(report.contains("FAILED  " + first) && report.contains("ms): Profile ID mismatch"), report);
+        assertTrue(report.contains("2 files, 0 changed, 1 failed"), report);
+    }
+
+    @Test
+    void diffComparesTreesByRelativePath() throws IOException {
+        mediaProfile(tempDir.resolve("old/same.icc"), "PVC");
+        mediaProfile(tempDir.resolve("old/media/changed.icc"), "PVC");
+        mediaProfile(tempDir.resolve("old/gone.icc"), "PVC");
+        mediaProfile(tempDir.resolve("new/same.icc"), "PVC");
+        mediaProfile(tempDir.resolve("new/media/changed.icc"), "VIN");
+        mediaProfile(tempDir.resolve("new/added.icc"), "PVC");
+
+        int exit = run("diff", "--threads", "3", tempDir.resolve("old").toString(), tempDir.resolve("new").toString());
+
+        assertEquals(BatchCli.EXIT_OK, exit, err.toString(StandardCharsets.UTF_8));
+        String report = out.toString(StandardCharsets.UTF_8);
+        assertTrue(report.contains("4 files, 3 changed, 0 failed"), report);
+        assertTrue(report.contains("ms): added"), report);
+        assertTrue(report.contains("ms): removed"), report);
+        assertTrue(report.contains("ms): identical"), report);
+        assertTrue(report.contains("tag MMK1 changed (10 -> 10 bytes, 1 difference)"), report);
+    }
+
+    @Test
+    void convertCxfWritesTagsForProfilesWithMeasurements() throws IOException {
+        String xml = CxfConverterTest.cxf(CxfConverterTest.patch(1, "0.5 0.5", 50, 0, 0, 10, 20, 30, 40));
+        Path measured = new TestProfiles().deviceClass("prtr").tag("CxF ", xml.getBytes(StandardCharsets.UTF_8))
+                .write(Files.createDirectories(tempDir.resolve("media")).resolve("measured.icc"));
+        mediaProfile(tempDir.resolve("media/plain.icc"), "PVC");
+
+        assertEquals(BatchCli.EXIT_OK, run("convert-cxf", tempDir.resolve("media").toString()));
+        String report = out.toString(StandardCharsets.UTF_8);
+        assertTrue(report.contains("1 patches, 4 channels, 2 spectral bands"), report);
+        assertTrue(report.contains("no CxF tag"), report);
+        try (ICCProfile profile = new ICCProfile(measured.toString())) {
+            assertNotNull(profile.getTagBySignature(Signatures.DEVS));
+            assertNotNull(profile.getTagBySignature(Signatures.CIED));
+        }
+    }
+
+    @Test
+    void missingArgumentsPrintUsage() {
+        assertEquals(BatchCli.EXIT_USAGE, run("replace-media", "--search", "PVC", tempDir.toString()));
+        assertTrue(err.toString(StandardCharsets.UTF_8).contains("Usage: icc-batch"));
+    }
+
+    @Test
+    void validatorFlagsSizeMismatchAndOverlaps() throws IOException {
+        byte[] bytes = new TestProfiles().tag("aaaa", new byte[8]).tag("bbbb", new byte[8]).build();
+        // Point the second tag into the middle of the first one
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.putInt(128 + 4 + 12 + 4, buffer.getInt(128 + 4 + 4) + 4);
+        buffer.putInt(0, bytes.length + 4);
+        Path file = Files.write(tempDir.resolve("overlap.icc"), bytes);
+        try (ICCProfile profile = new ICCProfile(file.toString())) {
+            assertEquals(2, ProfileValidator.validate(profile).size(), ProfileValidator.validate(profile).toString());
+        }
+    }
+
+    @Test
+    void convertImageReportsEveryTileSize() throws IOException {
+        Path profile = TestProfiles.srgbMatrixTrc().write(tempDir.resolve("rgb.icc"));
+        BufferedImage image = new BufferedImage(33, 20, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(5, 7, 0x3366CC);
+        Path input = tempDir.resolve("in.png");
+        ImageIO.write(image, "png", input.toFile());
+        Path output = tempDir.resolve("out.tif");
+
+        int exit = run("convert-image", "--source-profile", profile.toString(), "--dest-profile", profile.toString(),
+                "--tile", "8,64", "--threads", "2", input.toString(), output.toString());
+
+        assertEquals(BatchCli.EXIT_OK, exit, err.toString(StandardCharsets.UTF_8));
+        String report = out.toString(StandardCharsets.UTF_8);
+        assertTrue(report.contains("tile 8: 15 tiles"), report);
+        assertTrue(report.contains("tile 64: 1 tiles"), report);
+        // Same profile on both sides
+        assertEquals(0x3366CC, ImageIO.read(output.toFile()).getRGB(5, 7) & 0xFFFFFF);
+        assertEquals(BatchCli.EXIT_USAGE, run("convert-image", input.toString(), output.toString()));
+    }
+
+    @Test
+    void makeLinkWritesADeviceLinkProfile() throws IOException {
+        Path profile = TestProfiles.srgbMatrixTrc().write(tempDir.resolve("rgb.icc"));
+        Path link = tempDir.resolve("link.icc");
+
+        int exit = run("make-link", "--source-profile", profile.toString(), "--dest-profile", profile.toString(),
+                "--grid", "9", "--intent", "1", "--threads", "2", link.toString());
+
+        assertEquals(BatchCli.EXIT_OK, exit, err.toString(StandardCharsets.UTF_8));
+        assertTrue(out.toString(StandardCharsets.UTF_8).contains("RGB to RGB"), out.toString(StandardCharsets.UTF_8));
+        try (ICCProfile written = new ICCProfile(link.toString())) {
+            assertEquals("link", written.getHeader().getDeviceClass());
+            assertEquals(1, written.getHeader().getRenderingIntent());
+            LutTagData a2b0 = (LutTagData) written.readTagData(written.getTagBySignature(Signatures.A2B0));
+            assertEquals(9, a2b0.getClut().getGridPoints(0));
+        }
+        assertEquals(BatchCli.EXIT_USAGE, run("make-link", "--source-profile", profile.toString(), link.toString()));
+        assertEquals(BatchCli.EXIT_USAGE, run("make-link", "--source-profile", profile.toString(), "--dest-profile",
+                profile.toString(), "--grid", "1", link.toString()));
+    }
+
+    @Test
+    void rebuildB2aInvertsTheA2bTable() throws IOException {
+        Path matrix = TestProfiles.srgbMatrixTrc().write(tempDir.resolve("matrix.icc"));
+        Path lut;
+        try (ICCProfile model = new ICCProfile(matrix.toString())) {
+            lut = TestProfiles.sampledLut(model, 9).write(tempDir.resolve("lut.icc"));
+        }
+
+        int exit = run("rebuild-b2a", "--grid", "9", "--threads", "2", lut.toString(), matrix.toString());
+
+        assertEquals(BatchCli.EXIT_FAILURES, exit);
+        String output = out.toString(StandardCharsets.UTF_8);
+        assertTrue(output.contains("B2A0: 729 points"), output);
+        assertTrue(output.contains("2 files, 1 changed, 1 failed"), output);
+        try (ICCProfile written = new ICCProfile(lut.toString())) {
+            LutTagData b2a0 = (LutTagData) written.readTagData(written.getTagBySignature(Signatures.B2A0));
+            assertEquals(9, b2a0.getClut().getGridPoints(0));
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.mik.icc.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+
+import static java.nio.charset.StandardCharsets.UTF_16BE;
+import static java.nio.charset.StandardCharsets.UTF_16LE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+class ByteReplacerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] text(String text, Charset charset) {
+        return text.getBytes(charset);
+    }
+
+    @Test
+    void replacesEveryEncodingInOnePass() {
+        byte[] binary = {0, (byte) 0xFF, 0x50, 0x01};
+        byte[] data = concat(text("MEDIA=PVC;", UTF_8), binary, text("PVC", UTF_16LE), binary, text("PVC", UTF_16BE));
+        ByteReplacer replacer = new ByteReplacer("PVC", "VIN", ByteReplacer.Mode.PAD);
+
+        assertEquals(3, replacer.countMatches(ByteBuffer.wrap(data)));
+        byte[] expected = concat(text("MEDIA=VIN;", UTF_8), binary, text("VIN", UTF_16LE), binary, text("VIN", UTF_16BE));
+        assertArrayEquals(expected, replacer.replace(data));
+        assertNull(replacer.replace(text("no media here", UTF_8)));
+    }
+
+    @Test
+    void padModeKeepsLengthsAndRejectsLongerReplacements() {
+        ByteReplacer replacer = new ByteReplacer("Vinyl", "PVC", ByteReplacer.Mode.PAD);
+        // UTF-16 text starts on an even offset, as in a tag
+        byte[] data = concat(text("[Vinyl]", UTF_8), new byte[1], text("Vinyl", UTF_16LE));
+
+        byte[] replaced = replacer.replace(data);
+        assertEquals(data.length, replaced.length);
+        assertArrayEquals(concat(text("[PVC", UTF_8), new byte[2], text("]", UTF_8), new byte[1], text("PVC", UTF_16LE),
+                new byte[4]), replaced);
+
+        assertThrows(IllegalArgumentException.class, () -> new ByteReplacer("PVC", "Vinyl", ByteReplacer.Mode.PAD));
+        byte[] relaid = new ByteReplacer("PVC", "Vinyl", ByteReplacer.Mode.RELAYOUT).replace(text("a PVC b", UTF_8));
+        assertArrayEquals(text("a Vinyl b", UTF_8), relaid);
+    }
+
+    @Test
+    void matchesDoNotOverlapAndPartialMatchesFallBack() {
+        ByteReplacer replacer = new ByteReplacer("aa", "b", ByteReplacer.Mode.RELAYOUT);
+        assertArrayEquals(text("bba", UTF_8), replacer.replace(text("aaaaa", UTF_8)));
+
+        ByteReplacer nested = new ByteReplacer("abcd", "X", ByteReplacer.Mode.RELAYOUT);
+        assertArrayEquals(text("ababcX", UTF_8), nested.replace(text("ababcabcd", UTF_8)));
+        // Only the remaining bytes of the buffer are searched
+        assertArrayEquals(text("X", UTF_8), nested.replace(ByteBuffer.wrap(text("abcdabcd", UTF_8), 4, 4)));
+    }
+
+    @Test
+    void utf16MatchesStartOnCodeUnits() {
+        // In UTF-16LE "xAB" the UTF-16BE pattern 00 41 00 42 also occurs one byte early, ending in the high byte of 'x'
+        byte[] data = text("xAB", UTF_16LE);
+        ByteReplacer relayout = new ByteReplacer("AB", "\u03a9\u03a9", ByteReplacer.Mode.RELAYOUT);
+        assertEquals(1, relayout.countMatches(ByteBuffer.wrap(data)));
+        assertEquals("x\u03a9\u03a9", new String(relayout.replace(data), UTF_16LE));
+
+        ByteReplacer pad = new ByteReplacer("AB", "\u03a9", ByteReplacer.Mode.PAD);
+        assertEquals("x\u03a9\u0000", new String(pad.replace(data), UTF_16LE));
+        // Offsets count from the start of the remaining bytes
+        byte[] shifted = concat(new byte[1], data);
+        assertEquals("x\u03a9\u0000", new String(pad.replace(ByteBuffer.wrap(shifted, 1, data.length)), UTF_16LE));
+    }
+
+    @Test
+    void profileReplacementCoversRawTagsInAllEncodings() throws IOException {
+        Path file = new TestProfiles().textTag("desc", "Mimaki PVC").curveTag("rTRC", 64)
+                .tag("MMK1", text("MEDIA=PVC;", UTF_8))
+                .tag("MMK2", concat(new byte[] {0, 0, 0, 7}, text("PVC glossy", UTF_16LE)))
+                .tag("mmk3", text("PVC", UTF_16BE))
+                .write(tempDir.resolve("mimaki.icc"));
+        ByteReplacer replacer = new ByteReplacer("PVC", "VN", ByteReplacer.Mode.PAD);
+
+        try (ICCProfile profile = new ICCProfile(file.toString())) {
+            long mmk2Size = profile.getTagBySignature("MMK2").getSize();
+            assertEquals(3, ProfileOperations.replaceMediaName(profile, replacer, false));
+
+            assertEquals("Mimaki VN", ((TextTagData) profile.readTagData(profile.getTagBySignature("desc"))).getText());
+            Tag mmk2 = profile.getTagBySignature("MMK2");
+            assertEquals(mmk2Size, mmk2.getSize());
+            assertArrayEquals(concat(new byte[] {0, 0, 0, 7}, text("VN", UTF_16LE), new byte[2], text(" glossy", UTF_16LE)),
+                    profile.readTagData(mmk2).toBytes());
+            // Not a media tag, only searched with allTags
+            assertArrayEquals(text("PVC", UTF_16BE), profile.readTagData(profile.getTagBySignature("mmk3")).toBytes());
+
+            assertEquals(1, ProfileOperations.replaceMediaName(profile, replacer, true));
+            assertArrayEquals(concat(text("VN", UTF_16BE), new byte[2]),
+                    profile.readTagData(profile.getTagBySignature("mmk3")).toBytes());
+        }
+    }
+
+    @Test
+    void version2DescriptionKeepsItsCountsWhenRelaidOut() throws IOException {
+        TextDescriptionTagData description = new TextDescriptionTagData("Mimaki PVC", 0x656E5553, "Mimaki PVC \u00e9",
+                0, "Mimaki PVC");
+        Path file = new TestProfiles().tag("desc", description.toBytes()).write(tempDir.resolve("v2.icc"));
+        ByteReplacer replacer = new ByteReplacer("PVC", "Vinyl matte", ByteReplacer.Mode.RELAYOUT);
+
+        try (ICCProfile profile = new ICCProfile(file.toString())) {
+            assertEquals(1, ProfileOperations.replaceMediaName(profile, replacer, false));
+
+            Tag tag = profile.getTagBySignature("desc");
+            ByteBuffer element = profile.getTagBuffer(tag);
+            assertEquals("Mimaki Vinyl matte".length() + 1, element.getInt(8));
+            TextDescriptionTagData replaced = (TextDescriptionTagData) profile.readTagData(tag);
+            assertEquals("Mimaki Vinyl matte", replaced.getText());
+            assertEquals(0x656E5553, replaced.getUnicodeLanguage());
+            assertEquals("Mimaki Vinyl matte \u00e9", replaced.getUnicodeText());
+            assertEquals("Mimaki Vinyl matte", replaced.getScriptCodeText());
+            assertEquals(replaced.toBytes().length, tag.getSize());
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.mik.icc.core;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+class CachedTransformTest {
+
+    // Gamma 1.8 on each RGB channel, the mean of the inputs as an optional fourth channel
+    private static class Curves implements ColorTransform {
+        private final int outputChannels;
+
+        Curves(int outputChannels) {
+            this.outputChannels = outputChannels;
+        }
+
+        @Override
+        public int getInputChannels() {
+            return 3;
+        }
+
+        @Override
+        public int getOutputChannels() {
+            return outputChannels;
+        }
+
+        @Override
+        public void transform(float[] in, int inOffset, float[] out, int outOffset, int pixelCount) {
+            for (int p = 0; p < pixelCount; p++) {
+                int o = outOffset + p * outputChannels;
+                float sum = 0;
+                for (int c = 0; c < 3; c++) {
+                    float v = in[inOffset + p * 3 + c];
+                    out[o + c] = (float) Math.pow(v, 1.8);
+                    sum += v;
+                }
+                if (outputChannels == 4) {
+                    out[o + 3] = sum / 3f;
+                }
+            }
+        }
+
+        @Override
+        public void transform(int[] in, int inOffset, int[] out, int outOffset, int pixelCount) {
+            for (int i = 0; i < pixelCount; i++) {
+                int argb = in[inOffset + i];
+                int rgb = 0;
+                for (int shift = 16; shift >= 0; shift -= 8) {
+                    rgb |= (int) (Math.pow((argb >>> shift & 0xFF) / 255.0, 1.8) * 255 + 0.5) << shift;
+                }
+                out[outOffset + i] = (argb & 0xFF000000) | rgb;
+            }
+        }
+
+        @Override
+        public boolean supportsPackedRgb() {
+            return outputChannels == 3;
+        }
+    }
+
+    // Pixels drawn from a small palette, like flat vector art
+    private static byte[] paletteImage(int pixels, int colors, long seed) {
+        Random random = new Random(seed);
+        byte[] palette = new byte[colors * 3];
+        random.nextBytes(palette);
+        byte[] rgb = new byte[pixels * 3];
+        for (int p = 0; p < pixels; p++) {
+            System.arraycopy(palette, random.nextInt(colors) * 3, rgb, p * 3, 3);
+        }
+        return rgb;
+    }
+
+    @Test
+    void cachedBytesMatchTheDelegate() {
+        byte[] rgb = paletteImage(10_000, 50, 1);
+        byte[] expected = new byte[10_000 * 4];
+        new ImageConverter(new Curves(4), 64, 1).convert(rgb, expected, 100, 100);
+
+        CachedTransform cache = new CachedTransform(new Curves(4), 1000);
+        byte[] cmyk = new byte[10_000 * 4];
+        new ImageConverter(cache, 64, 2).convert(rgb, cmyk, 100, 100);
+        assertArrayEquals(expected, cmyk);
+        assertEquals(1024, cache.getCapacity());
+        assertEquals(10_000, cache.getHits() + cache.getMisses());
+        assertTrue(cache.getHitRate() > 0.99, String.valueOf(cache.getHitRate()));
+
+        cache.resetStatistics();
+        assertEquals(0, cache.getHitRate());
+        cache.transform(rgb, 0, cmyk, 0, 10_000);
+        assertEquals(1.0, cache.getHitRate());
+    }
+
+    @Test
+    void capacityIsRoundedUpToAPowerOfTwo() {
+        int[][] capacities = {{1, 2}, {2, 2}, {3, 4}, {4, 4}, {5, 8}, {1000, 1024}, {1024, 1024}, {1025, 2048}};
+        for (int[] capacity : capacities) {
+            assertEquals(capacity[1], new CachedTransform(new Curves(4), capacity[0]).getCapacity(),
+                    "capacity " + capacity[0]);
+        }
+        assertThrows(IllegalArgumentException.class, () -> new CachedTransform(new Curves(4), 0));
+        assertThrows(IllegalArgumentException.class, () -> new CachedTransform(new Curves(4), (1 << 30) + 1));
+    }
+
+    @Test
+    void packedPixelsKeepTheirAlpha() {
+        Curves curves = new Curves(3);
+        CachedTransform cache = new CachedTransform(curves);
+        assertTrue(cache.supportsPackedRgb());
+        int[] argb = new int[4096];
+        Random random = new Random(2);
+        for (int i = 0; i < argb.length; i++) {
+            argb[i] = random.nextInt() & 0xFF0F0F0F;
+        }
+        int[] expected = new int[argb.length];
+        curves.transform(argb, 0, expected, 0, argb.length);
+        int[] actual = new int[argb.length];
+        cache.transform(argb, 0, actual, 0, argb.length);
+        assertArrayEquals(expected, actual);
+        // Same colors with other alpha values hit the cache
+        for (int i = 0; i < argb.length; i++) {
+            argb[i] ^= 0xFF000000;
+            expected[i] ^= 0xFF000000;
+        }
+        cache.resetStatistics();
+        cache.transform(argb, 0, actual, 0, argb.length);
+        assertArrayEquals(expected, actual);
+        assertEquals(1.0, cache.getHitRate());
+
+        assertThrows(UnsupportedOperationException.class,
+                () -> new CachedTransform(new Curves(4)).transform(argb, 0, actual, 0, 1));
+    }
+
+    @Test
+    void threadsSharingAFullCacheGetCorrectResults() throws InterruptedException, ExecutionException {
+        // Far more colors than slots, so entries are replaced while other threads read them
+        byte[] rgb = paletteImage(50_000, 5000, 3);
+        // Float path of the delegate on both sides
+        Curves curves = new Curves(3) {
+            @Override
+            public boolean supportsPackedRgb() {
+                return false;
+            }
+        };
+        byte[] expected = new byte[rgb.length];
+        new ImageConverter(curves, 256, 1).convert(rgb, expected, 500, 100);
+
+        CachedTransform cache = new CachedTransform(curves, 256);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                results.add(executor.submit(() -> {
+                    byte[] out = new byte[rgb.length];
+                    cache.transform(rgb, 0, out, 0, 50_000);
+                    return out;
+                }));
+            }
+            for (Future<byte[]> result : results) {
+                assertArrayEquals(expected, result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(256, cache.getCapacity());
+        assertEquals(200_000, cache.getHits() + cache.getMisses());
+    }
+}
@@ -0,0 +1,164 @@
+package com.mik.icc.core;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.ToDoubleFunction;
+
+class ClutInterpolatorTest {
+
+    private static final double TOLERANCE = 1e-5;
+
+    // CLUT sampling function f for each output channel at the grid nodes
+    private static Clut sampled(int in, int out, int points, ToDoubleFunction<double[]> f) {
+        int[] grid = new int[in];
+        Arrays.fill(grid, points);
+        Clut clut = Clut.allocate(grid, out, 2);
+        double[] x = new double[in];
+        for (int node = 0; node < clut.getNodeCount(); node++) {
+            for (int d = 0; d < in; d++) {
+                x[d] = node / (clut.getStride(d) / out) % points / (points - 1.0);
+            }
+            double value = f.applyAsDouble(x);
+            for (int c = 0; c < out; c++) {
+                clut.set(node, c, value * (c + 1) / out);
+            }
+        }
+        return clut;
+    }
+
+    private static float[] randomPixels(int pixels, int channels, long seed) {
+        Random random = new Random(seed);
+        float[] values = new float[pixels * channels];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextFloat();
+        }
+        // Grid nodes, the corners and ties between channels
+        for (int c = 0; c < channels; c++) {
+            values[c] = 0f;
+            values[channels + c] = 1f;
+            values[2 * channels + c] = 0.5f;
+        }
+        return values;
+    }
+
+    private static float[] run(ClutInterpolator interpolator, float[] in) {
+        int pixels = in.length / interpolator.getInputChannels();
+        float[] out = new float[pixels * interpolator.getOutputChannels()];
+        interpolator.interpolate(in, 0, out, 0, pixels);
+        return out;
+    }
+
+    @Test
+    void linearFunctionsAreReproducedExactly() {
+        // Every method is exact for functions that are linear in each input
+        ToDoubleFunction<double[]> linear = x -> {
+            double sum = 0;
+            for (int d = 0; d < x.length; d++) {
+                sum += x[d] * (d + 1);
+            }
+            return sum / (x.length * (x.length + 1) / 2.0);
+        };
+        for (int in : new int[] {1, 2, 3, 4, 5}) {
+            Clut clut = sampled(in, 3, 9, linear);
+            float[] pixels = randomPixels(100, in, in);
+            for (ClutInterpolator.Method method : ClutInterpolator.Method.values()) {
+                float[] out = run(ClutInterpolator.of(clut, method), pixels);
+                for (int p = 0; p < 100; p++) {
+                    double[] x = new double[in];
+                    for (int d = 0; d < in; d++) {
+                        x[d] = pixels[p * in + d];
+                    }
+                    assertEquals(linear.applyAsDouble(x) / 3, out[p * 3], 1e-4, in + "D " + method + " pixel " + p);
+                }
+            }
+        }
+    }
+
+    @Test
+    void vectorAndScalarPathsAgree() {
+        assertTrue(ClutInterpolator.isVectorAvailable(), "tests run with --add-modules jdk.incubator.vector -Dicc.vector=true");
+        ToDoubleFunction<double[]> curved = x -> {
+            double product = 1;
+            for (double v : x) {
+                product *= 0.25 + 0.75 * Math.sin(v * 1.4);
+            }
+            return product;
+        };
+        for (int in : new int[] {3, 4}) {
+            for (int out : new int[] {1, 3, 4}) {
+                Clut clut = sampled(in, out, in == 3 ? 17 : 9, curved);
+                // Not a multiple of the lane count, so the scalar tail runs as well
+                float[] pixels = randomPixels(1001, in, 31L * in + out);
+                ClutInterpolator vector = ClutInterpolator.of(clut, ClutInterpolator.Method.TETRAHEDRAL);
+                assertTrue(vector.isVectorized());
+                assertFalse(ClutInterpolator.of(clut, ClutInterpolator.Method.TRILINEAR).isVectorized());
+                float[] expected = run(ClutInterpolator.scalar(clut, ClutInterpolator.Method.TETRAHEDRAL), pixels);
+                float[] actual = run(vector, pixels);
+                for (int i = 0; i < expected.length; i++) {
+                    assertEquals(expected[i], actual[i], TOLERANCE, in + "->" + out + " value " + i);
+                }
+            }
+        }
+    }
+
+    @Test
+    void tetrahedralStaysOnTheCellDiagonal() {
+        // Along the main diagonal only the two end nodes contribute, whatever the other nodes hold
+        Clut clut = Clut.allocate(new int[] {2, 2, 2}, 1, 2);
+        for (int node = 0; node < 8; node++) {
+            clut.set(node, 0, node == 7 ? 1 : node == 0 ? 0 : 0.9);
+        }
+        float[] out = run(ClutInterpolator.scalar(clut, ClutInterpolator.Method.TETRAHEDRAL), new float[] {0.3f, 0.3f, 0.3f});
+        assertEquals(0.3f, out[0], TOLERANCE);
+        out = run(ClutInterpolator.scalar(clut, ClutInterpolator.Method.TRILINEAR), new float[] {0.3f, 0.3f, 0.3f});
+        assertTrue(out[0] > 0.3f);
+    }
+
+    @Test
+    void lutTransformRunsEveryStage() {
+        Clut clut = sampled(4, 3, 9, x -> (x[0] + x[1] + x[2] + x[3]) / 4);
+        ToneCurve[] square = new ToneCurve[4];
+        Arrays.fill(square, ToneCurve.gamma(2.0));
+        ToneCurve[] identity = {ToneCurve.identity(), ToneCurve.identity(), ToneCurve.identity()};
+        double[] halve = {0.5, 0, 0, 0, 0.5, 0, 0, 0, 0.5, 0.1, 0.1, 0.1};
+        LutTagData lut = LutTagData.lutAToB(square, clut, identity, halve, identity);
+
+        float[] cmyk = randomPixels(600, 4, 7);
+        float[] vector = new float[600 * 3];
+        float[] scalar = new float[600 * 3];
+        LutTransform.of(lut).transform(cmyk, 0, vector, 0, 600);
+        LutTransform.scalar(lut, ClutInterpolator.Method.TETRAHEDRAL).transform(cmyk, 0, scalar, 0, 600);
+        for (int p = 0; p < 600; p++) {
+            double sum = 0;
+            for (int d = 0; d < 4; d++) {
+                sum += cmyk[p * 4 + d] * cmyk[p * 4 + d];
+            }
+            double expected = 0.5 * (sum / 4) / 3 + 0.1;
+            assertEquals(expected, scalar[p * 3], 1e-3, "pixel " + p);
+            assertEquals(scalar[p * 3], vector[p * 3], TOLERANCE);
+        }
+    }
+
+    @Test
+    void mftMatrixComesBeforeTheInputCurves() {
+        // Identity CLUT, so the result is the input curves applied to the matrix output
+        Clut clut = Clut.allocate(new int[] {2, 2, 2}, 3, 2);
+        for (int node = 0; node < 8; node++) {
+            for (int c = 0; c < 3; c++) {
+                clut.set(node, c, node >> (2 - c) & 1);
+            }
+        }
+        ToneCurve[] square = {ToneCurve.gamma(2.0), ToneCurve.gamma(2.0), ToneCurve.gamma(2.0)};
+        ToneCurve[] identity = {ToneCurve.identity(), ToneCurve.identity(), ToneCurve.identity()};
+        double[] halveX = {0.5, 0, 0, 0, 1, 0, 0, 0, 1};
+        LutTagData lut = LutTagData.lut16(halveX, square, clut, identity, 4096, 2);
+
+        float[] xyz = {0.8f, 0.6f, 0.4f};
+        float[] out = new float[3];
+        LutTransform.of(lut).transform(xyz, 0, out, 0, 1);
+        assertArrayEquals(new float[] {0.16f, 0.36f, 0.16f}, out, 1e-3f);
+    }
+}
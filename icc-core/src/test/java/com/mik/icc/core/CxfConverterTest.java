@@ -0,0 +1,146 @@
+package com.mik.icc.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+class CxfConverterTest {
+
+    @TempDir
+    Path tempDir;
+
+    static String cxf(String objects) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<cc:CxF xmlns:cc=\"http://colorexchangeformat.com/CxF3-core\">\n"
+                + "  <cc:Resources>\n"
+                + "    <cc:ObjectCollection>\n" + objects + "    </cc:ObjectCollection>\n"
+                + "    <cc:ColorSpecificationCollection>\n"
+                + "      <cc:ColorSpecification Id=\"CS1\"><cc:MeasurementSpec>\n"
+                + "        <cc:WavelengthRange StartWL=\"400\" Increment=\"20\"/>\n"
+                + "      </cc:MeasurementSpec></cc:ColorSpecification>\n"
+                + "    </cc:ColorSpecificationCollection>\n"
+                + "  </cc:Resources>\n"
+                + "</cc:CxF>\n";
+    }
+
+    static String patch(int id, String spectrum, double l, double a, double b, double... cmyk) {
+        StringBuilder xml = new StringBuilder();
+        xml.append("      <cc:Object ObjectType=\"Target\" Name=\"").append(id).append("\" Id=\"").append(id).append("\">\n");
+        xml.append("        <cc:ColorValues>\n");
+        if (spectrum != null) {
+            xml.append("          <cc:ReflectanceSpectrum ColorSpecification=\"CS1\" StartWL=\"400\">")
+                    .append(spectrum).append("</cc:ReflectanceSpectrum>\n");
+        }
+        xml.append("          <cc:ColorCIELab ColorSpecification=\"CS1\"><cc:L>").append(l).append("</cc:L><cc:A>")
+                .append(a).append("</cc:A><cc:B>").append(b).append("</cc:B></cc:ColorCIELab>\n");
+        xml.append("        </cc:ColorValues>\n");
+        if (cmyk.length > 0) {
+            xml.append("        <cc:DeviceColorValues><cc:ColorCMYK ColorSpecification=\"CS2\">");
+            String[] names = {"Cyan", "Magenta", "Yellow", "Black"};
+            for (int i = 0; i < cmyk.length; i++) {
+                xml.append("<cc:").append(names[i]).append('>').append(cmyk[i]).append("</cc:").append(names[i]).append('>');
+            }
+            xml.append("</cc:ColorCMYK></cc:DeviceColorValues>\n");
+        }
+        xml.append("      </cc:Object>\n");
+        return xml.toString();
+    }
+
+    private static CxfConverter.Result convert(String xml) throws IOException {
+        return CxfConverter.convert(ByteBuffer.wrap(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void patchesAreWrittenInTheDocumentedLayout() throws IOException {
+        CxfConverter.Result result = convert(cxf(
+                patch(1, null, 95.5, -0.5, 2.25, 0, 0, 0, 0)
+                + patch(2, "0.10 0.20\n 0.30", 50, 60, -70, 100, 0, 50, 10)
+                + patch(3, "0.4 0.5 0.6", 20, 1, 2)));
+
+        assertEquals(3, result.getPatchCount());
+        assertEquals(4, result.getChannelCount());
+        assertEquals(3, result.getSpectralBands());
+
+        ByteBuffer devs = ByteBuffer.wrap(result.getDeviceValues());
+        assertEquals(Signatures.DEVS, devs.getInt(0));
+        assertEquals(3, devs.getInt(8));
+        assertEquals(4, devs.getInt(12));
+        assertEquals(Signatures.of("CMYK"), devs.getInt(16));
+        assertEquals(CxfConverter.DEVS_HEADER_SIZE + 3 * 4 * 4, result.getDeviceValues().length);
+        assertEquals(100f, devs.getFloat(20 + 16));
+        assertEquals(10f, devs.getFloat(20 + 28));
+        assertTrue(Float.isNaN(devs.getFloat(20 + 32)), "third patch has no device values");
+
+        ByteBuffer cied = ByteBuffer.wrap(result.getCieData());
+        assertEquals(Signatures.CIED, cied.getInt(0));
+        assertEquals(3, cied.getInt(8));
+        assertEquals(CxfConverter.FLAG_LAB | CxfConverter.FLAG_SPECTRAL, cied.getInt(12));
+        assertEquals(400, cied.getShort(16));
+        assertEquals(20, cied.getShort(18));
+        assertEquals(3, cied.getShort(20));
+        assertEquals(95.5f, cied.getFloat(24));
+        assertEquals(-70f, cied.getFloat(24 + 12 + 8));
+        int spectra = 24 + 3 * 12;
+        assertTrue(Float.isNaN(cied.getFloat(spectra)), "first patch has no spectrum");
+        assertEquals(0.3f, cied.getFloat(spectra + 12 + 8));
+        assertEquals(0.6f, cied.getFloat(spectra + 24 + 8));
+        assertEquals(spectra + 3 * 12, result.getCieData().length);
+    }
+
+    @Test
+    void largeMeasurementSetsAreStreamed() throws IOException {
+        StringBuilder objects = new StringBuilder();
+        String spectrum = "0.1 0.2 0.3 0.4 0.5 0.6 0.7 0.8 0.9 0.8 0.7 0.6 0.5 0.4 0.3 0.2";
+        for (int i = 0; i < 20_000; i++) {
+            objects.append(patch(i, spectrum, i % 100, 0, 0, i % 101, 0, 0, 0));
+        }
+        CxfConverter.Result result = convert(cxf(objects.toString()));
+
+        assertEquals(20_000, result.getPatchCount());
+        assertEquals(16, result.getSpectralBands());
+        assertEquals(99f, ByteBuffer.wrap(result.getCieData()).getFloat(24 + 19_999 * 12));
+    }
+
+    @Test
+    void invalidDataIsRejected() {
+        assertThrows(IOException.class, () -> convert("<cc:CxF><cc:Object>"));
+        assertThrows(IOException.class, () -> convert(cxf("")));
+        assertThrows(IOException.class, () -> convert(cxf(patch(1, "0.1 0.2", 1, 2, 3) + patch(2, "0.1", 1, 2, 3))));
+        // No DTDs, so no entity expansion or external entities
+        assertThrows(IOException.class, () -> convert("<!DOCTYPE x [<!ENTITY e SYSTEM \"file:///etc/passwd\">]>"
+                + "<cc:CxF><cc:Object><cc:L>&e;</cc:L></cc:Object></cc:CxF>"));
+    }
+
+    @Test
+    void nulTerminatedTextElementIsAccepted() throws IOException {
+        byte[] xml = cxf(patch(1, "0.5 0.5", 50, 0, 0)).getBytes(StandardCharsets.UTF_8);
+        // 'text' header, the XML, its terminating NUL and padding up to a 4-byte boundary
+        ByteBuffer element = ByteBuffer.allocate((8 + xml.length + 1 + 3) & ~3);
+        element.putInt(Signatures.of("text")).putInt(0).put(xml).put((byte) 0);
+
+        CxfConverter.Result result = CxfConverter.convert(ByteBuffer.wrap(element.array()));
+        assertEquals(1, result.getPatchCount());
+        assertEquals(2, result.getSpectralBands());
+    }
+
+    @Test
+    void profileGetsDevSAndCiedTags()throws IOException {
+        byte[] xml = cxf(patch(1, "0.5 0.5", 50, 0, 0, 10, 20, 30, 40)).getBytes(StandardCharsets.UTF_8);
+        ByteBuffer element = ByteBuffer.allocate(8 + xml.length);
+        element.putInt(Signatures.of("utf8")).putInt(0).put(xml);
+        Path file = new TestProfiles().deviceClass("prtr").tag("CxF ", element.array()).write(tempDir.resolve("cxf.icc"));
+
+        try (ICCProfile profile = new ICCProfile(file.toString())) {
+            CxfConverter.Result result = ProfileOperations.convertCxf(profile);
+            assertEquals(1, result.getPatchCount());
+            assertArrayEquals(result.getDeviceValues(), profile.readTagData(profile.getTagBySignature(Signatures.DEVS)).toBytes());
+            assertArrayEquals(result.getCieData(), profile.readTagData(profile.getTagBySignature(Signatures.CIED)).toBytes());
+            assertNotNull(profile.getTagBySignature(Signatures.CXF));
+        }
+    }
+}
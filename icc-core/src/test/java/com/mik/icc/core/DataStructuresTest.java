@@ -1,4 +1,4 @@
-package com.mik.icc.icceditor;
+package com.mik.icc.core;
 
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
@@ -11,6 +11,8 @@ class DataStructuresTest {
         assertEquals(TagType.TEXT_TYPE, TagType.fromSignature("text"));
         assertEquals(TagType.XYZ_TYPE, TagType.fromSignature("XYZ "));
         assertEquals(TagType.CURVE_TYPE, TagType.fromSignature("curv"));
+        assertEquals(TagType.LUT16_TYPE, TagType.fromSignature("mft2"));
+        assertEquals(TagType.LUT_ATOB_TYPE, TagType.fromSignature("mAB"));
         assertEquals(TagType.UNKNOWN, TagType.fromSignature("abcd"));
     }
 
@@ -0,0 +1,142 @@
+package com.mik.icc.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Random;
+
+class DeviceLinkBuilderTest {
+
+    private static final LocalDateTime CREATED = LocalDateTime.of(2024, 5, 17, 10, 20, 30);
+
+    @TempDir
+    Path tempDir;
+
+    private Path rgbProfile(String name, double gamma) throws IOException {
+        return TestProfiles.srgbMatrixTrc(TestProfiles.gammaCurve(gamma)).write(tempDir.resolve(name));
+    }
+
+    private Path lutProfile(String name, ICCProfile model) throws IOException {
+        return TestProfiles.sampledLut(model, 17).write(tempDir.resolve(name));
+    }
+
+    private static float[] randomColors(int count, long seed) {
+        Random random = new Random(seed);
+        float[] colors = new float[count * 3];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = random.nextFloat();
+        }
+        return colors;
+    }
+
+    @Test
+    void linkBytesDoNotDependOnTheThreadCount() throws IOException {
+        try (ICCProfile source = new ICCProfile(rgbProfile("source.icc", 2.2).toString());
+             ICCProfile destination = new ICCProfile(rgbProfile("destination.icc", 1.8).toString())) {
+            ByteBuffer single = new DeviceLinkBuilder(1).creationDateTime(CREATED).serialize(source, destination);
+            ByteBuffer parallel = new DeviceLinkBuilder(3).creationDateTime(CREATED).serialize(source, destination);
+            assertEquals(single, parallel);
+        }
+    }
+
+    @Test
+    void linkBetweenTheSameProfileIsAnIdentity() throws IOException {
+        Path file = rgbProfile("rgb.icc", 2.2);
+        try (ICCProfile source = new ICCProfile(file.toString());
+             ICCProfile destination = new ICCProfile(file.toString())) {
+            Clut clut = new DeviceLinkBuilder(2).gridPoints(9).sample(source, destination);
+            assertArrayEquals(new int[] {9, 9, 9}, clut.getGridPoints());
+            for (int node = 0; node < clut.getNodeCount(); node++) {
+                int[] coordinates = {node / 81, node / 9 % 9, node % 9};
+                for (int c = 0; c < 3; c++) {
+                    assertEquals(coordinates[c] / 8.0, clut.get(node, c), 1e-3, "node " + node);
+                }
+            }
+        }
+    }
+
+    @Test
+    void writtenLinkReproducesTheTwoProfiles() throws IOException {
+        Path target = tempDir.resolve("link.icc");
+        try (ICCProfile source = new ICCProfile(rgbProfile("source.icc", 2.2).toString());
+             ICCProfile model = new ICCProfile(rgbProfile("model.icc", 1.8).toString());
+             ICCProfile destination = new ICCProfile(lutProfile("destination.icc", model).toString())) {
+            new DeviceLinkBuilder(2).description("Gamma 2.2 to 1.8").copyright("Copyright Mimaki")
+                    .creationDateTime(CREATED).write(source, model, target);
+            ColorTransform expected = ProfileTransforms.between(source, model, ProfileTransforms.PERCEPTUAL);
+            float[] in = randomColors(500, 1);
+            float[] reference = new float[in.length];
+            expected.transform(in, 0, reference, 0, 500);
+
+            try (ICCProfile link = new ICCProfile(target.toString())) {
+                assertEquals("link", link.getHeader().getDeviceClass());
+                assertEquals("RGB", link.getHeader().getColorSpace());
+                assertEquals("RGB", link.getHeader().getPcs());
+                assertEquals(ProfileId.Status.VALID, ProfileId.verify(ByteBuffer.wrap(Files.readAllBytes(target))));
+                assertNotNull(link.getTagBySignature(Signatures.PSEQ));
+                Tag cprt = link.getTagBySignature(Signatures.CPRT);
+                assertNotNull(cprt);
+                assertEquals("Copyright Mimaki", ((MultiLocalizedUnicodeTagData) link.readTagData(cprt))
+                        .getLocalizedStrings().get("en-US"));
+                float[] out = new float[in.length];
+                LutTransform.of(link, Signatures.A2B0).transform(in, 0, out, 0, 500);
+                for (int i = 0; i < out.length; i++) {
+                    assertEquals(reference[i], out[i], 5e-3, "value " + i);
+                }
+            }
+
+            // A2B0 through the Lab PCS serves the colorimetric intent; without a B2A tag there is no way back
+            ColorTransform lutToPcs = ProfileTransforms.toPcs(destination, ProfileTransforms.RELATIVE_COLORIMETRIC);
+            ColorTransform matrixToPcs = MatrixTrcTransform.toPcs(model);
+            float[] lutXyz = new float[in.length];
+            float[] matrixXyz = new float[in.length];
+            lutToPcs.transform(in, 0, lutXyz, 0, 500);
+            matrixToPcs.transform(in, 0, matrixXyz, 0, 500);
+            for (int i = 0; i < in.length; i++) {
+                assertEquals(matrixXyz[i], lutXyz[i], 5e-3, "value " + i);
+            }
+            assertThrows(IOException.class, () -> ProfileTransforms.fromPcs(destination, 0));
+        }
+    }
+
+    @Test
+    void pcsEncodingsRoundTrip() {
+        float[] xyz = randomColors(200, 2);
+        for (int i = 0; i < xyz.length; i++) {
+            xyz[i] *= 0.9f;
+        }
+        for (PcsConversion.Encoding encoding : PcsConversion.Encoding.values()) {
+            float[] encoded = new float[xyz.length];
+            float[] decoded = new float[xyz.length];
+            PcsConversion.fromXyz(encoding).transform(xyz, 0, encoded, 0, 200);
+            PcsConversion.toXyz(encoding).transform(encoded, 0, decoded, 0, 200);
+            for (int i = 0; i < xyz.length; i++) {
+                assertEquals(xyz[i], decoded[i], 1e-5, encoding + " value " + i);
+            }
+        }
+        // The D50 white is L* = 100, a* = b* = 0
+        double[] lab = new double[3];
+        PcsConversion.xyzToLab(PcsConversion.WHITE_X, PcsConversion.WHITE_Y, PcsConversion.WHITE_Z, lab);
+        assertArrayEquals(new double[] {100, 0, 0}, lab, 1e-9);
+        float[] white = {(float) PcsConversion.WHITE_X, 1, (float) PcsConversion.WHITE_Z};
+        float[] encoded = new float[3];
+        PcsConversion.fromXyz(PcsConversion.Encoding.LAB_LEGACY).transform(white, 0, encoded, 0, 1);
+        assertEquals(0xFF00 / 65535.0, encoded[0], 1e-6);
+        assertEquals(0x8000 / 65535.0, encoded[1], 1e-6);
+    }
+
+    @Test
+    void invalidOptionsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new DeviceLinkBuilder(0));
+        assertThrows(IllegalArgumentException.class, () -> new DeviceLinkBuilder(1).gridPoints(1));
+        assertThrows(IllegalArgumentException.class, () -> new DeviceLinkBuilder(1).intent(3));
+        assertThrows(IllegalArgumentException.class, () -> new DeviceLinkBuilder(1).copyright(null));
+        assertThrows(IllegalArgumentException.class, () -> ChainedTransform.of());
+    }
+}
@@ -0,0 +1,59 @@
+package com.mik.icc.core;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+class HexCodecTest {
+
+    @Test
+    void encodesEveryByteValue() {
+        byte[] data = new byte[256];
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 256; i++) {
+            data[i] = (byte) i;
+            expected.append(String.format("%02X ", i));
+        }
+        assertEquals(expected.toString().trim(), HexCodec.encode(data));
+        assertEquals("", HexCodec.encode(new byte[0]));
+    }
+
+    @Test
+    void decodeIgnoresWhitespaceAndCase() {
+        assertArrayEquals(new byte[] {0x01, (byte) 0xAB, (byte) 0xFF}, HexCodec.decode(" 01 ab\nFf\t"));
+    }
+
+    @Test
+    void decodeRejectsInvalidInput() {
+        assertThrows(NumberFormatException.class, () -> HexCodec.decode("0G"));
+        assertThrows(NumberFormatException.class, () -> HexCodec.decode("ABC"));
+        assertThrows(NumberFormatException.class, () -> HexCodec.decode("0é"));
+    }
+
+    @Test
+    void roundTripsRandomData() {
+        byte[] data = new byte[100_000];
+        new Random(7).nextBytes(data);
+        assertArrayEquals(data, HexCodec.decode(HexCodec.encode(data)));
+    }
+
+    @Test
+    void streamsLinesWithPrefix() throws IOException {
+        StringWriter out = new StringWriter();
+        HexCodec.encode(ByteBuffer.wrap(new byte[] {1, 2, 3, 4, 5}), out, 2, "  ");
+        assertEquals("  01 02\n  03 04\n  05", out.toString());
+    }
+
+    @Test
+    void streamingMatchesStringEncodingAcrossChunks() throws IOException {
+        byte[] data = new byte[20_000];
+        new Random(11).nextBytes(data);
+        StringWriter out = new StringWriter();
+        HexCodec.encode(ByteBuffer.wrap(data), out, 0, "");
+        assertEquals(HexCodec.encode(data), out.toString());
+    }
+}
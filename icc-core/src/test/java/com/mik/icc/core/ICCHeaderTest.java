@@ -0,0 +1,87 @@
+package com.mik.icc.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+class ICCHeaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void typedAccessorsReadRawFields() {
+        byte[] profile = new TestProfiles().textTag("cprt", "Copyright").build();
+        ICCHeader header = new ICCHeader(ByteBuffer.wrap(profile));
+
+        assertEquals(profile.length, header.getSize());
+        assertEquals(Signatures.of("lcms"), header.getCmmTypeCode());
+        assertEquals(4, header.getVersionMajor());
+        assertEquals(3, header.getVersionMinor());
+        assertEquals(0, header.getVersionBugfix());
+        assertEquals(Signatures.of("mntr"), header.getDeviceClassCode());
+        assertEquals(Signatures.of("RGB "), header.getColorSpaceCode());
+        assertEquals(Signatures.ACSP, header.getSignatureCode());
+        assertEquals(2024, header.getCreationYear());
+        assertEquals(5, header.getCreationMonth());
+        assertEquals(30, header.getCreationSecond());
+        assertEquals(1, header.getRenderingIntent());
+        assertEquals(0.9642, header.getIlluminantX(), 1e-4);
+        assertEquals(1.0, header.getIlluminantY(), 1e-4);
+        assertEquals(0.8249, header.getIlluminantZ(), 1e-4);
+    }
+
+    @Test
+    void stringViewsMatchDisplayForm() {
+        ICCHeader header = new ICCHeader(ByteBuffer.wrap(new TestProfiles().build()));
+        assertEquals("4.3.0", header.getVersion());
+        assertEquals("2024-05-17 10:20:30", header.getCreationDateTime());
+        assertEquals("RGB", header.getColorSpace());
+        assertEquals("mik", header.getCreator());
+        assertEquals("Relative Colorimetric", header.getRenderingIntentString());
+    }
+
+    @Test
+    void stringSettersRoundTripAndPadWithSpaces() {
+        ICCHeader header = new ICCHeader();
+        header.setVersion("2.1.0");
+        header.setCreationDateTime("2023-01-02 03:04:05");
+        header.setColorSpace("Lab");
+        header.setManufacturer("");
+
+        assertEquals("2.1.0", header.getVersion());
+        assertEquals(0x02100000, header.asByteBuffer().getInt(8));
+        assertEquals("2023-01-02 03:04:05", header.getCreationDateTime());
+        assertEquals(Signatures.of("Lab "), header.getColorSpaceCode());
+        assertEquals(0, header.getManufacturerCode());
+    }
+
+    @Test
+    void unchangedHeaderIsWrittenByteForByte() throws IOException {
+        Path file = new TestProfiles().textTag("cprt", "Copyright").write(tempDir.resolve("header.icc"));
+        byte[] before = Arrays.copyOf(Files.readAllBytes(file), ICCHeader.SIZE);
+        try (ICCProfile profile = new ICCProfile(file.toString())) {
+            profile.writeHeader(profile.getHeader());
+        }
+        byte[] after = Arrays.copyOf(Files.readAllBytes(file), ICCHeader.SIZE);
+        // Saving fills in the Profile ID, every other byte is kept
+        assertFalse(ProfileId.isMissing(Arrays.copyOfRange(after, ProfileId.OFFSET, ProfileId.OFFSET + ProfileId.LENGTH)));
+        System.arraycopy(before, ProfileId.OFFSET, after, ProfileId.OFFSET, ProfileId.LENGTH);
+        assertArrayEquals(before, after);
+    }
+
+    @Test
+    void copyIsIndependent() {
+        ICCHeader header = new ICCHeader(ByteBuffer.wrap(new TestProfiles().build()));
+        ICCHeader copy = header.copy();
+        copy.setModel("JV33");
+        assertEquals("TEST", header.getModel());
+        assertEquals("JV33", copy.getModel());
+    }
+}
@@ -0,0 +1,109 @@
+package com.mik.icc.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+class ICCProfileTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void smallProfileIsReadIntoHeapBuffer() throws IOException {
+        Path file = new TestProfiles().textTag("cprt", "Copyright").xyzTag("wtpt", 0.9642, 1.0, 0.8249)
+                .write(tempDir.resolve("small.icc"));
+        try (ICCProfile profile = new ICCProfile(file.toString())) {
+            assertFalse(profile.isMapped());
+            assertEquals("mntr", profile.getHeader().getDeviceClass());
+            assertEquals("4.3.0", profile.getHeader().getVersion());
+            assertEquals("2024-05-17 10:20:30", profile.getHeader().getCreationDateTime());
+            assertEquals(2, profile.getTags().size());
+            assertEquals("cprt", profile.getTags().get(0).getSignature());
+        }
+    }
+
+    @Test
+    void largeProfileIsMemoryMapped() throws IOException {
+        int points = (int) (ICCProfile.MAP_THRESHOLD / 2) + 16;
+        Path file = new TestProfiles().curveTag("rTRC", points).write(tempDir.resolve("large.icc"));
+        try (ICCProfile profile = ICCProfile.openReadOnly(file.toString())) {
+            assertTrue(profile.isMapped());
+            Tag tag = profile.getTagBySignature("rTRC");
+            ByteBuffer slice = profile.getTagBuffer(tag);
+            assertEquals(tag.getSize(), slice.capacity());
+            assertTrue(slice.isReadOnly());
+            assertEquals(points, slice.getInt(8));
+        }
+    }
+
+    @Test
+    void largeProfileCanBeSavedOverWhileItsViewsAreHeld() throws IOException {
+        int points = (int) (ICCProfile.MAP_THRESHOLD / 2) + 16;
+        Path file = new TestProfiles().curveTag("rTRC", points).write(tempDir.resolve("large.icc"));
+        try (ICCProfile mapped = ICCProfile.openReadOnly(file.toString())) {
+            assertThrows(IOException.class, mapped::save);
+        }
+        try (ICCProfile profile = new ICCProfile(file.toString())) {
+            assertFalse(profile.isMapped());
+            ByteBuffer before = profile.getTagBuffer(profile.getTagBySignature("rTRC"));
+            profile.setTagData("rTRC", new CurveTagData(new double[] {0, 1}));
+            profile.save();
+
+            assertEquals(points, before.getInt(8));
+            assertArrayEquals(new double[] {0, 1},
+                    ((CurveTagData) profile.readTagData(profile.getTagBySignature("rTRC"))).getCurvePoints());
+        }
+        try (ICCProfile reopened = ICCProfile.openReadOnly(file.toString())) {
+            assertFalse(reopened.isMapped());
+            assertEquals(2, reopened.getTagBuffer(reopened.getTagBySignature("rTRC")).getInt(8));
+        }
+    }
+
+    @Test
+    void writeTagDataRefreshesTheView() throws IOException {
+        Path file = new TestProfiles().tag("MMK1", new byte[] {1, 2, 3, 4}).write(tempDir.resolve("write.icc"));
+        try (ICCProfile profile = new ICCProfile(file.toString())) {
+            Tag tag = profile.getTagBySignature("MMK1");
+            profile.writeTagData(tag, new GenericTagData(new byte[] {9, 8, 7, 6}));
+            TagData reread = profile.readTagData(profile.getTagBySignature("MMK1"));
+            assertArrayEquals(new byte[] {9, 8, 7, 6}, reread.toBytes());
+        }
+    }
+
+    @Test
+    void closedProfileRejectsReads() throws IOException {
+        Path file = new TestProfiles().tag("MMK1", new byte[] {1, 2, 3, 4}).write(tempDir.resolve("closed.icc"));
+        ICCProfile profile = new ICCProfile(file.toString());
+        Tag tag = profile.getTagBySignature("MMK1");
+        profile.close();
+        assertThrows(IOException.class, () -> profile.readTagData(tag));
+    }
+
+    @Test
+    void truncatedProfileFailsWithIOException() throws IOException {
+        Path file = java.nio.file.Files.write(tempDir.resolve("broken.icc"), new byte[64]);
+        assertThrows(IOException.class, () -> new ICCProfile(file.toString()));
+    }
+
+    @Test
+    void countsBeyondTheElementFallBackToRawBytes() throws IOException {
+        // A curve claiming 1000 points with room for two
+        byte[] curve = ByteBuffer.allocate(16).putInt(Signatures.CURVE_TYPE).putInt(0).putInt(1000).array();
+        // An mluc claiming three records with none, and one whose string starts past the end
+        byte[] records = ByteBuffer.allocate(16).putInt(Signatures.MLUC_TYPE).putInt(0).putInt(3).putInt(12).array();
+        byte[] strings = ByteBuffer.allocate(32).putInt(Signatures.MLUC_TYPE).putInt(0).putInt(1).putInt(12)
+                .putShort((short) 0x656E).putShort((short) 0x5553).putInt(1000).putInt(4).array();
+        Path file = new TestProfiles().tag("rTRC", curve).tag("desc", records).tag("cprt", strings)
+                .write(tempDir.resolve("counts.icc"));
+        try (ICCProfile profile = new ICCProfile(file.toString())) {
+            assertArrayEquals(curve, profile.readTagData(profile.getTagBySignature("rTRC")).toBytes());
+            assertArrayEquals(records, profile.readTagData(profile.getTagBySignature("desc")).toBytes());
+            assertArrayEquals(strings, profile.readTagData(profile.getTagBySignature("cprt")).toBytes());
+        }
+    }
+}
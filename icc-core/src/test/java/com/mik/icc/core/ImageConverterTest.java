@@ -0,0 +1,241 @@
+package com.mik.icc.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import javax.imageio.ImageIO;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+class ImageConverterTest {
+
+    @TempDir
+    Path tempDir;
+
+    // Inverts each channel; with four outputs the fourth is the mean of the inputs
+    private static final class Invert implements ColorTransform {
+        private final int outputChannels;
+
+        Invert(int outputChannels) {
+            this.outputChannels = outputChannels;
+        }
+
+        @Override
+        public int getInputChannels() {
+            return 3;
+        }
+
+        @Override
+        public int getOutputChannels() {
+            return outputChannels;
+        }
+
+        @Override
+        public void transform(float[] in, int inOffset, float[] out, int outOffset, int pixelCount) {
+            for (int p = 0; p < pixelCount; p++) {
+                float r = in[inOffset + p * 3];
+                float g = in[inOffset + p * 3 + 1];
+                float b = in[inOffset + p * 3 + 2];
+                int o = outOffset + p * outputChannels;
+                out[o] = 1f - r;
+                out[o + 1] = 1f - g;
+                out[o + 2] = 1f - b;
+                if (outputChannels == 4) {
+                    out[o + 3] = (r + g + b) / 3f;
+                }
+            }
+        }
+
+        @Override
+        public void transform(int[] in, int inOffset, int[] out, int outOffset, int pixelCount) {
+            for (int i = 0; i < pixelCount; i++) {
+                out[outOffset + i] = in[inOffset + i] ^ 0x00FFFFFF;
+            }
+        }
+
+        @Override
+        public boolean supportsPackedRgb() {
+            return outputChannels == 3;
+        }
+    }
+
+    @Test
+    void tilesCoverTheWholeImage() {
+        // Tile size not a divisor of either dimension, so the last column and row are partial
+        int width = 37;
+        int height = 23;
+        float[] rgb = new float[width * height * 3];
+        Random random = new Random(5);
+        for (int i = 0; i < rgb.length; i++) {
+            rgb[i] = random.nextFloat();
+        }
+        ColorTransform transform = new Invert(4);
+        float[] expected = new float[width * height * 4];
+        transform.transform(rgb, 0, expected, 0, width * height);
+
+        float[] cmyk = new float[width * height * 4];
+        ImageConverter.Stats stats = new ImageConverter(transform, 8, 3).convert(rgb, cmyk, width, height);
+        assertArrayEquals(expected, cmyk);
+        assertEquals(5 * 3, stats.getTiles());
+        assertEquals(width * height, stats.getPixels());
+
+        float[] inPlace = rgb.clone();
+        new ImageConverter(new Invert(3), 8, 3).convert(inPlace, inPlace, width, height);
+        for (int i = 0; i < rgb.length; i++) {
+            assertEquals(1f - rgb[i], inPlace[i], 1e-6f);
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> new ImageConverter(transform, 8, 1).convert(rgb, rgb, width, height));
+    }
+
+    @Test
+    void eightBitBuffersUsePackedOrFloatConversion() {
+        int width = 20;
+        int height = 9;
+        byte[] rgb = new byte[width * height * 3];
+        new Random(9).nextBytes(rgb);
+
+        byte[] inverted = new byte[rgb.length];
+        new ImageConverter(new Invert(3), 7, 2).convert(rgb, inverted, width, height);
+        byte[] cmyk = new byte[width * height * 4];
+        ImageConverter.Stats stats = new ImageConverter(new Invert(4), 7, 2).convert(rgb, cmyk, width, height);
+        for (int p = 0; p < width * height; p++) {
+            for (int c = 0; c < 3; c++) {
+                assertEquals(255 - (rgb[p * 3 + c] & 0xFF), inverted[p * 3 + c] & 0xFF);
+                assertEquals(255 - (rgb[p * 3 + c] & 0xFF), cmyk[p * 4 + c] & 0xFF);
+            }
+        }
+        assertTrue(stats.getWorkingBytes() > 0);
+        assertTrue(stats.getPeakHeapBytes() > 0);
+    }
+
+    @Test
+    void pngIsStreamedBandByBandAndKeepsAlpha() throws IOException {
+        int width = 50;
+        int height = 30;
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Random random = new Random(3);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        Path source = tempDir.resolve("in.png");
+        ImageIO.write(image, "png", source.toFile());
+
+        Path destination = tempDir.resolve("out.png");
+        ImageConverter.Stats stats = new ImageConverter(new Invert(3), 16, 2).convert(source, destination);
+        assertEquals(4 * 2, stats.getTiles());
+
+        BufferedImage converted = ImageIO.read(destination.toFile());
+        assertTrue(converted.getColorModel().hasAlpha());
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                assertEquals(image.getRGB(x, y) ^ 0x00FFFFFF, converted.getRGB(x, y), x + "," + y);
+            }
+        }
+    }
+
+    @Test
+    void fourChannelResultsAreWrittenAsCmykTiff() throws IOException {
+        BufferedImage image = new BufferedImage(40, 17, BufferedImage.TYPE_3BYTE_BGR);
+        Random random = new Random(8);
+        for (int y = 0; y < 17; y++) {
+            for (int x = 0; x < 40; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        Path source = tempDir.resolve("in.png");
+        ImageIO.write(image, "png", source.toFile());
+
+        Path destination = tempDir.resolve("out.tif");
+        new ImageConverter(new Invert(4), 16, 2).convert(source, destination);
+
+        Raster cmyk = ImageIO.read(destination.toFile()).getRaster();
+        Raster rgb = image.getRaster();
+        assertEquals(4, cmyk.getNumBands());
+        for (int y = 0; y < 17; y++) {
+            for (int x = 0; x < 40; x++) {
+                int sum = 0;
+                for (int c = 0; c < 3; c++) {
+                    assertEquals(255 - rgb.getSample(x, y, c), cmyk.getSample(x, y, c));
+                    sum += rgb.getSample(x, y, c);
+                }
+                assertEquals(sum / 3.0, cmyk.getSample(x, y, 3), 0.51);
+            }
+        }
+        assertThrows(IOException.class,
+                () -> new ImageConverter(new Invert(4), 16, 1).convert(destination, tempDir.resolve("x.png")));
+    }
+
+    @Test
+    void floatSamplesAreRejected() throws IOException {
+        ColorModel colorModel = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB), false, false,
+                ColorModel.OPAQUE, DataBuffer.TYPE_FLOAT);
+        WritableRaster raster = colorModel.createCompatibleWritableRaster(8, 4);
+        raster.setSample(3, 2, 1, 0.5f);
+        Path source = tempDir.resolve("float.tif");
+        assertTrue(ImageIO.write(new BufferedImage(colorModel, raster, false, null), "tiff", source.toFile()));
+
+        Path destination = tempDir.resolve("out.tif");
+        IOException e = assertThrows(IOException.class,
+                () -> new ImageConverter(new Invert(3), 16, 1).convert(source, destination));
+        assertTrue(e.getMessage().contains("1 to 16 bits"), e.getMessage());
+        assertFalse(destination.toFile().exists());
+    }
+
+    @Test
+    void bandsOfDifferentDepthsAreScaledSeparately() throws IOException {
+        BufferedImage image = new BufferedImage(19, 6, BufferedImage.TYPE_USHORT_565_RGB);
+        Random random = new Random(5);
+        for (int y = 0; y < 6; y++) {
+            for (int x = 0; x < 19; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        Path source = tempDir.resolve("565.bmp");
+        assertTrue(ImageIO.write(image, "bmp", source.toFile()));
+        assertArrayEquals(new int[] {5, 6, 5}, ImageIO.read(source.toFile()).getSampleModel().getSampleSize());
+
+        Path destination = tempDir.resolve("out.png");
+        new ImageConverter(new Invert(3), 4, 2).convert(source, destination);
+
+        Raster converted = ImageIO.read(destination.toFile()).getRaster();
+        Raster rgb = image.getRaster();
+        int[] max = {31, 63, 31};
+        for (int y = 0; y < 6; y++) {
+            for (int x = 0; x < 19; x++) {
+                for (int c = 0; c < 3; c++) {
+                    assertEquals(Math.round(255 * (1 - rgb.getSample(x, y, c) / (float) max[c])),
+                            converted.getSample(x, y, c), x + "," + y + "," + c);
+                }
+            }
+        }
+    }
+
+    @Test
+    void tileSizesAreBoundedAndMayExceedTheImage() {
+        assertThrows(IllegalArgumentException.class, () -> new ImageConverter(new Invert(3), 0, 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ImageConverter(new Invert(3), ImageConverter.MAX_TILE_SIZE + 1, 1));
+
+        byte[] rgb = new byte[5 * 3 * 3];
+        new Random(4).nextBytes(rgb);
+        byte[] inverted = new byte[rgb.length];
+        ImageConverter.Stats stats = new ImageConverter(new Invert(4), ImageConverter.MAX_TILE_SIZE, 1)
+                .convert(rgb, new byte[5 * 3 * 4], 5, 3);
+        // Working buffers are sized for the 5 x 3 image, not for a full tile
+        assertTrue(stats.getWorkingBytes() < 1024, String.valueOf(stats.getWorkingBytes()));
+        new ImageConverter(new Invert(3), ImageConverter.MAX_TILE_SIZE, 1).convert(rgb, inverted, 5, 3);
+        assertEquals(255 - (rgb[7] & 0xFF), inverted[7] & 0xFF);
+    }
+}
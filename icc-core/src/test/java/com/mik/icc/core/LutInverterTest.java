@@ -0,0 +1,215 @@
+package com.mik.icc.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+class LutInverterTest {
+
+    @TempDir
+    Path tempDir;
+
+    // sRGB primaries adapted to D50 with a gamma 2.2 curve, as device RGB to PCS XYZ
+    private static final double[] PRIMARIES = {0.4361, 0.3851, 0.1431, 0.2225, 0.7169, 0.0606, 0.0139, 0.0971, 0.7141};
+
+    // Device values to the Lab encoding of mAB tags; each CMYK ink absorbs 85% of its complementary RGB channel, K of all
+    private static final class DeviceModel implements ColorTransform {
+        private final int channels;
+
+        DeviceModel(int channels) {
+            this.channels = channels;
+        }
+
+        @Override
+        public int getInputChannels() {
+            return channels;
+        }
+
+        @Override
+        public int getOutputChannels() {
+            return 3;
+        }
+
+        @Override
+        public void transform(float[] in, int inOffset, float[] out, int outOffset, int pixelCount) {
+            float[] xyz = new float[3];
+            for (int p = 0; p < pixelCount; p++) {
+                int i = inOffset + p * channels;
+                double[] linear = new double[3];
+                for (int c = 0; c < 3; c++) {
+                    linear[c] = channels == 3 ? Math.pow(in[i + c], 2.2)
+                            : (1 - 0.85 * in[i + c]) * (1 - 0.85 * in[i + 3]);
+                }
+                for (int k = 0; k < 3; k++) {
+                    double sum = 0;
+                    for (int c = 0; c < 3; c++) {
+                        sum += PRIMARIES[k * 3 + c] * linear[c];
+                    }
+                    xyz[k] = (float) sum;
+                }
+                PcsConversion.fromXyz(PcsConversion.Encoding.LAB).transform(xyz, 0, out, outOffset + p * 3, 1);
+            }
+        }
+    }
+
+    private static LutTagData forwardLut(int channels, int gridPoints) {
+        Clut clut = new DeviceLinkBuilder(1).gridPoints(gridPoints).sample(new DeviceModel(channels));
+        ToneCurve[] a = new ToneCurve[channels];
+        Arrays.fill(a, ToneCurve.identity());
+        ToneCurve[] b = {ToneCurve.identity(), ToneCurve.identity(), ToneCurve.identity()};
+        return LutTagData.lutAToB(a, clut, null, null, b);
+    }
+
+    private Path lutProfile(String name, String colorSpace, LutTagData a2b0) throws IOException {
+        return new TestProfiles().deviceClass("prtr").colorSpace(colorSpace).pcs("Lab ")
+                .tag("A2B0", a2b0.toElementBytes()).write(tempDir.resolve(name));
+    }
+
+    private static double deltaE(float[] xyz, int i, float[] otherXyz, int j) {
+        double[] lab = new double[3];
+        double[] other = new double[3];
+        PcsConversion.xyzToLab(xyz[i], xyz[i + 1], xyz[i + 2], lab);
+        PcsConversion.xyzToLab(otherXyz[j], otherXyz[j + 1], otherXyz[j + 2], other);
+        return Math.sqrt(Math.pow(lab[0] - other[0], 2) + Math.pow(lab[1] - other[1], 2)
+                + Math.pow(lab[2] - other[2], 2));
+    }
+
+    // Device -> PCS -> device -> PCS for in-gamut colors; returns the mean, 95th percentile and maximum delta E
+    private static double[] roundTrip(LutTagData a2b, LutTagData b2a, int colors) {
+        int channels = a2b.getInputChannels();
+        ColorTransform forward = ChainedTransform.of(LutTransform.of(a2b),
+                PcsConversion.toXyz(PcsConversion.Encoding.LAB));
+        ColorTransform inverse = ChainedTransform.of(PcsConversion.fromXyz(PcsConversion.Encoding.LAB),
+                LutTransform.of(b2a));
+        Random random = new Random(7);
+        float[] device = new float[colors * channels];
+        for (int i = 0; i < device.length; i++) {
+            // Away from the gamut boundary, where the table blends in gamut-mapped nodes
+            device[i] = 0.1f + 0.8f * random.nextFloat();
+        }
+        float[] xyz = new float[colors * 3];
+        float[] back = new float[device.length];
+        float[] again = new float[xyz.length];
+        forward.transform(device, 0, xyz, 0, colors);
+        inverse.transform(xyz, 0, back, 0, colors);
+        forward.transform(back, 0, again, 0, colors);
+        double[] errors = new double[colors];
+        for (int p = 0; p < colors; p++) {
+            errors[p] = deltaE(xyz, p * 3, again, p * 3);
+        }
+        Arrays.sort(errors);
+        return new double[] {Arrays.stream(errors).average().orElse(0), errors[colors * 95 / 100], errors[colors - 1]};
+    }
+
+    @Test
+    void rgbRoundTripStaysCloseToTheForwardLut() throws IOException {
+        LutTagData a2b = forwardLut(3, 17);
+        LutInverter.Result result = new LutInverter(2).gridPoints(33).invert(a2b, Signatures.of("Lab"), true);
+        assertTrue(result.getTable().isBToA());
+        assertEquals(33 * 33 * 33, result.getPoints());
+        assertTrue(result.getOutOfGamut() > 0 && result.getOutOfGamut() < result.getPoints(), result.toString());
+        assertTrue(result.getMaxDeltaE() <= LutInverter.GAMUT_TOLERANCE, result.toString());
+
+        // The largest errors are where a channel barely changes the color, like dark red next to bright blue
+        double[] error = roundTrip(a2b, result.getTable(), 2000);
+        assertTrue(error[0] < 0.5 && error[1] < 2 && error[2] < 6, Arrays.toString(error));
+    }
+
+    @Test
+    void cmykRoundTripStaysCloseToTheForwardLut() throws IOException {
+        LutTagData a2b = forwardLut(4, 9);
+        LutInverter.Result result = new LutInverter(2).invert(a2b, Signatures.of("Lab"), true);
+        assertEquals(4, result.getTable().getOutputChannels());
+        assertTrue(result.getMaxDeltaE() <= LutInverter.GAMUT_TOLERANCE, result.toString());
+
+        double[] error = roundTrip(a2b, result.getTable(), 2000);
+        assertTrue(error[0] < 1 && error[1] < 2.5 && error[2] < 7, Arrays.toString(error));
+    }
+
+    @Test
+    void tablesDoNotDependOnTheThreadCount() throws IOException {
+        LutTagData a2b = forwardLut(3, 9);
+        int lab = Signatures.of("Lab");
+        LutInverter.Result single = new LutInverter(1).gridPoints(9).invert(a2b, lab, true);
+        LutInverter.Result parallel = new LutInverter(3).gridPoints(9).invert(a2b, lab, true);
+        assertArrayEquals(single.getTable().toElementBytes(), parallel.getTable().toElementBytes());
+        assertEquals(single.getOutOfGamut(), parallel.getOutOfGamut());
+
+        // Version 2 profiles get mft2 with the legacy Lab encoding
+        LutTagData legacy = new LutInverter(1).gridPoints(9).invert(a2b, lab, false).getTable();
+        assertTrue(legacy.isLut16());
+        assertEquals(PcsConversion.Encoding.LAB_LEGACY, PcsConversion.encodingOf(legacy, lab));
+    }
+
+    @Test
+    void outOfGamutNodesKeepLightnessAndHue() throws IOException {
+        LutTagData a2b = forwardLut(3, 17);
+        LutTagData b2a = new LutInverter(1).gridPoints(17).invert(a2b, Signatures.of("Lab"), true).getTable();
+        // Node L* = 50, a* = -112, b* = 111, far outside the sRGB gamut
+        float[] node = {8 / 16f, 1 / 16f, 15 / 16f};
+        double[] target = {node[0] * 100, node[1] * 255 - 128, node[2] * 255 - 128};
+        float[] device = new float[3];
+        LutTransform.of(b2a).transform(node, 0, device, 0, 1);
+        float[] encoded = new float[3];
+        LutTransform.of(a2b).transform(device, 0, encoded, 0, 1);
+        double[] mapped = {encoded[0] * 100, encoded[1] * 255 - 128, encoded[2] * 255 - 128};
+
+        assertEquals(target[0], mapped[0], 1.0);
+        assertEquals(Math.toDegrees(Math.atan2(target[2], target[1])), Math.toDegrees(Math.atan2(mapped[2], mapped[1])),
+                3.0);
+        assertTrue(Math.hypot(mapped[1], mapped[2]) < Math.hypot(target[1], target[2]));
+    }
+
+    @Test
+    void rebuildWritesB2AAndReportsProgress() throws IOException {
+        Path file = lutProfile("rgb.icc", "RGB ", forwardLut(3, 9));
+        AtomicLong last = new AtomicLong();
+        try (ICCProfile profile = new ICCProfile(file.toString())) {
+            List<LutInverter.Result> results = new LutInverter(2).gridPoints(9)
+                    .progressListener((done, total) -> last.accumulateAndGet(done, Math::max))
+                    .rebuild(profile);
+            assertEquals(1, results.size());
+            assertEquals(Signatures.B2A0, results.get(0).getSignature());
+        }
+        assertEquals(9 * 9 * 9, last.get());
+        try (ICCProfile profile = new ICCProfile(file.toString())) {
+            LutTagData b2a0 = (LutTagData) profile.readTagData(profile.getTagBySignature(Signatures.B2A0));
+            assertTrue(b2a0.isBToA());
+            assertEquals(ProfileId.Status.VALID, profile.verifyProfileId());
+            ColorTransform roundTrip = ProfileTransforms.between(profile, profile, ProfileTransforms.PERCEPTUAL);
+            float[] gray = {0.5f, 0.5f, 0.5f};
+            float[] out = new float[3];
+            roundTrip.transform(gray, 0, out, 0, 1);
+            assertArrayEquals(gray, out, 0.02f);
+        }
+    }
+
+    @Test
+    void cancellingLeavesTheProfileUnchanged() throws IOException {
+        Path file = lutProfile("rgb.icc", "RGB ", forwardLut(3, 9));
+        byte[] before = Files.readAllBytes(file);
+        try (ICCProfile profile = new ICCProfile(file.toString())) {
+            LutInverter inverter = new LutInverter(2).gridPoints(17);
+            inverter.progressListener((done, total) -> inverter.cancel());
+            assertThrows(InterruptedIOException.class, () -> inverter.rebuild(profile));
+            assertTrue(inverter.isCancelled());
+            assertFalse(profile.hasPendingChanges());
+        }
+        assertEquals(ByteBuffer.wrap(before), ByteBuffer.wrap(Files.readAllBytes(file)));
+
+        assertThrows(IllegalArgumentException.class, () -> new LutInverter(1).gridPoints(1));
+        try (ICCProfile empty = new ICCProfile(new TestProfiles().write(tempDir.resolve("empty.icc")).toString())) {
+            assertThrows(IOException.class, () -> new LutInverter(1).rebuild(empty));
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.mik.icc.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+class LutTagDataTest {
+
+    @TempDir
+    Path tempDir;
+
+    // Each node holds its normalized grid coordinates, repeated over the outputs
+    static Clut gradientClut(int in, int out, int points, int precision) {
+        int[] grid = new int[in];
+        Arrays.fill(grid, points);
+        Clut clut = Clut.allocate(grid, out, precision);
+        for (int node = 0; node < clut.getNodeCount(); node++) {
+            for (int channel = 0; channel < out; channel++) {
+                int coordinate = node / (clut.getStride(channel % in) / out) % points;
+                clut.set(node, channel, coordinate / (points - 1.0));
+            }
+        }
+        return clut;
+    }
+
+    private static ToneCurve[] curves(ToneCurve curve, int count) {
+        ToneCurve[] curves = new ToneCurve[count];
+        Arrays.fill(curves, curve);
+        return curves;
+    }
+
+    private static LutTagData roundTrip(LutTagData lut) {
+        return LutTagData.decode(ByteBuffer.wrap(lut.toElementBytes()));
+    }
+
+    @Test
+    void lut16KeepsTablesAndClut() {
+        Clut clut = gradientClut(3, 4, 9, 2);
+        double[] matrix = {1.5, 0, 0, 0, 1, 0, 0, 0, -0.25};
+        LutTagData lut = roundTrip(LutTagData.lut16(matrix, curves(ToneCurve.gamma(2.0), 3), clut,
+                curves(ToneCurve.identity(), 4), 1024, 4096));
+
+        assertTrue(lut.isLut16());
+        assertEquals(TagType.LUT16_TYPE, lut.getTagType());
+        assertEquals(3, lut.getInputChannels());
+        assertEquals(4, lut.getOutputChannels());
+        assertArrayEquals(new double[] {1.5, 0, 0, 0, 1, 0, 0, 0, -0.25, 0, 0, 0}, lut.getMatrix(), 1e-4);
+        assertEquals(0.25, lut.getInputCurves()[1].evaluate(0.5), 1e-4);
+        assertEquals(0.3, lut.getOutputCurves()[3].evaluate(0.3), 1e-4);
+        assertNull(lut.getMCurves());
+
+        Clut decoded = lut.getClut();
+        assertEquals(clut.getNodeCount(), decoded.getNodeCount());
+        assertEquals(9 * 9 * 9, decoded.getNodeCount());
+        for (int node = 0; node < clut.getNodeCount(); node++) {
+            for (int channel = 0; channel < 4; channel++) {
+                assertEquals(clut.get(node, channel), decoded.get(node, channel));
+            }
+        }
+        assertEquals(52 + 3 * 1024 * 2 + clut.getByteSize() + 4 * 4096 * 2, lut.getElementSize());
+    }
+
+    @Test
+    void lut8QuantizesToEightBits() {
+        LutTagData lut = roundTrip(LutTagData.lut8(null, curves(ToneCurve.identity(), 4),
+                gradientClut(4, 3, 5, 2), curves(ToneCurve.gamma(0.5), 3)));
+
+        assertTrue(lut.isLut8());
+        assertEquals(1, lut.getClut().getPrecision());
+        assertEquals(5 * 5 * 5 * 5, lut.getClut().getNodeCount());
+        assertEquals(1.0, lut.getMatrix()[0]);
+        assertEquals(48 + 4 * 256 + 625 * 3 + 3 * 256, lut.getElementSize());
+        assertEquals(Math.sqrt(0.5), lut.getOutputCurves()[0].evaluate(0.5), 3e-3);
+        assertEquals(0.75, lut.getClut().get(lut.getClut().nodeIndex(3, 0, 0, 0), 0), 1 / 255.0);
+    }
+
+    @Test
+    void mabKeepsEveryStage() {
+        ToneCurve para = ToneCurve.parametric(3, 2.4, 1 / 1.055, 0.055 / 1.055, 1 / 12.92, 0.04045);
+        double[] matrix = {0.5, 0, 0, 0, 0.5, 0, 0, 0, 0.5, 0.1, 0.2, 0.3};
+        Clut clut = gradientClut(4, 3, 3, 1);
+        LutTagData lut = roundTrip(LutTagData.lutAToB(curves(ToneCurve.gamma(1.8), 4), clut,
+                curves(para, 3), matrix, curves(ToneCurve.identity(), 3)));
+
+        assertTrue(lut.isAToB());
+        assertTrue(lut.hasMatrix() && lut.hasMCurves() && lut.hasClut());
+        assertEquals(4, lut.getInputChannels());
+        assertEquals(3, lut.getOutputChannels());
+        assertEquals(Math.pow(0.5, 1.8), lut.getInputCurves()[3].evaluate(0.5), 1e-4);
+        assertEquals(para.evaluate(0.5), lut.getMCurves()[2].evaluate(0.5), 1e-4);
+        assertEquals(para.evaluate(0.02), lut.getMCurves()[0].evaluate(0.02), 1e-4);
+        assertArrayEquals(matrix, lut.getMatrix(), 1e-4);
+        assertEquals(clut.toFloatArray().length, lut.getClut().toFloatArray().length);
+        assertArrayEquals(clut.toFloatArray(), lut.getClut().toFloatArray());
+        assertTrue(lut.getOutputCurves()[0].isIdentity());
+        assertEquals(0, lut.getElementSize() % 4);
+    }
+
+    @Test
+    void mbaWithoutOptionalStages() {
+        LutTagData lut = roundTrip(LutTagData.lutBToA(curves(ToneCurve.gamma(2.2), 3), null, null,
+                gradientClut(3, 4, 17, 2), curves(ToneCurve.identity(), 4)));
+
+        assertTrue(lut.isBToA());
+        assertFalse(lut.hasMatrix());
+        assertFalse(lut.hasMCurves());
+        assertEquals(3, lut.getInputChannels());
+        assertEquals(4, lut.getOutputChannels());
+        assertEquals(17, lut.getClut().getGridPoints(2));
+        // 2.2 has no exact u8Fixed8 form, so the curve is written as a parametric gamma
+        assertEquals(Math.pow(0.5, 2.2), lut.getInputCurves()[0].evaluate(0.5), 1e-5);
+        assertNull(lut.getMatrix());
+    }
+
+    @Test
+    void parametricCurvesInvert() {
+        ToneCurve srgb = ToneCurve.parametric(3, 2.4, 1 / 1.055, 0.055 / 1.055, 1 / 12.92, 0.04045);
+        for (double x = 0; x <= 1; x += 0.05) {
+            assertEquals(x, srgb.invert(srgb.evaluate(x)), 1e-6);
+        }
+        assertEquals(0.02 / 12.92, srgb.evaluate(0.02), 1e-6);
+        assertThrows(IllegalArgumentException.class, () -> ToneCurve.parametric(1, 2.2));
+        assertThrows(IllegalArgumentException.class, () -> ToneCurve.parametric(5, 1, 2, 3));
+    }
+
+    @Test
+    void malformedLayoutsAreRejected() {
+        byte[] element = LutTagData.lutBToA(curves(ToneCurve.identity(), 3), null, null,
+                gradientClut(3, 3, 5, 2), curves(ToneCurve.identity(), 3)).toElementBytes();
+        assertThrows(IllegalArgumentException.class,
+                () -> LutTagData.decode(ByteBuffer.wrap(Arrays.copyOf(element, element.length - 20))));
+        ByteBuffer badOffset = ByteBuffer.wrap(element.clone()).putInt(24, element.length - 4);
+        assertThrows(IllegalArgumentException.class, () -> LutTagData.decode(badOffset));
+        ByteBuffer noCurves = ByteBuffer.wrap(element.clone()).putInt(12, 0);
+        assertThrows(IllegalArgumentException.class, () -> LutTagData.decode(noCurves));
+        assertThrows(IllegalArgumentException.class, () -> Clut.allocate(new int[] {1, 2}, 3, 2));
+    }
+
+    @Test
+    void profileLutsAreViewsOfTheMappedFile() throws IOException {
+        // 17^4 nodes with 3 outputs, large enough for the profile to be memory-mapped
+        LutTagData a2b = LutTagData.lut16(null, curves(ToneCurve.identity(), 4), gradientClut(4, 3, 17, 2),
+                curves(ToneCurve.identity(), 3), 256, 256);
+        byte[] broken = Arrays.copyOf(a2b.toElementBytes(), 100);
+        Path file = new TestProfiles().deviceClass("prtr")
+                .tag("A2B0", a2b.toElementBytes())
+                .tag("B2A0", broken)
+                .write(tempDir.resolve("lut.icc"));
+
+        try (ICCProfile profile = ICCProfile.openReadOnly(file.toString())) {
+            assertTrue(profile.isMapped());
+            TagData data = profile.readTagData(profile.getTagBySignature(Signatures.A2B0));
+            assertInstanceOf(LutTagData.class, data);
+            Clut clut = ((LutTagData) data).getClut();
+            assertTrue(clut.isDirect());
+            assertEquals(16 / 16f, clut.get(clut.nodeIndex(16, 0, 0, 0), 0));
+            assertArrayEquals(a2b.toElementBytes(), data.toElementBytes());
+            assertInstanceOf(GenericTagData.class, profile.readTagData(profile.getTagBySignature(Signatures.B2A0)));
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.mik.icc.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+class MatrixTrcTransformTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path rgbProfile(String name, byte[] curve) throws IOException {
+        return TestProfiles.srgbMatrixTrc(curve).write(tempDir.resolve(name));
+    }
+
+    @Test
+    void whiteMapsToTheSumOfTheColorants() throws IOException {
+        try (ICCProfile profile = new ICCProfile(rgbProfile("rgb.icc", TestProfiles.gammaCurve(2.2)).toString())) {
+            ColorTransform transform = MatrixTrcTransform.toPcs(profile);
+            float[] xyz = new float[3];
+            transform.transform(new float[] {1f, 1f, 1f}, 0, xyz, 0, 1);
+            assertEquals(0.9643, xyz[0], 1e-3);
+            assertEquals(1.0, xyz[1], 1e-3);
+            assertEquals(0.8251, xyz[2], 1e-3);
+
+            transform.transform(new float[] {0.5f, 0.5f, 0.5f}, 0, xyz, 0, 1);
+            assertEquals(Math.pow(0.5, 563 / 256.0), xyz[1], 1e-4);
+        }
+    }
+
+    @Test
+    void pcsRoundTripRestoresDeviceValues() throws IOException {
+        try (ICCProfile profile = new ICCProfile(rgbProfile("rgb.icc", TestProfiles.gammaCurve(2.2)).toString())) {
+            ColorTransform toPcs = MatrixTrcTransform.toPcs(profile);
+            ColorTransform fromPcs = MatrixTrcTransform.fromPcs(profile);
+            int steps = 20;
+            float[] rgb = new float[steps * steps * steps * 3];
+            int i = 0;
+            for (int r = 1; r <= steps; r++) {
+                for (int g = 1; g <= steps; g++) {
+                    for (int b = 1; b <= steps; b++) {
+                        rgb[i++] = r / (float) steps;
+                        rgb[i++] = g / (float) steps;
+                        rgb[i++] = b / (float) steps;
+                    }
+                }
+            }
+            float[] pixels = rgb.clone();
+            toPcs.transform(pixels, 0, pixels, 0, pixels.length / 3);
+            fromPcs.transform(pixels, 0, pixels, 0, pixels.length / 3);
+            for (int j = 0; j < rgb.length; j++) {
+                assertEquals(rgb[j], pixels[j], 2e-3, "channel " + j);
+            }
+        }
+    }
+
+    @Test
+    void packedPixelsKeepAlphaAndSurviveAnIdentityConversion() throws IOException {
+        Path file = rgbProfile("rgb.icc", TestProfiles.gammaCurve(2.2));
+        try (ICCProfile source = new ICCProfile(file.toString());
+             ICCProfile destination = new ICCProfile(file.toString())) {
+            ColorTransform transform = MatrixTrcTransform.between(source, destination);
+            assertTrue(transform.supportsPackedRgb());
+            assertFalse(MatrixTrcTransform.toPcs(source).supportsPackedRgb());
+
+            int[] pixels = new int[256];
+            for (int i = 0; i < pixels.length; i++) {
+                pixels[i] = (i << 24) | (i << 16) | ((255 - i) << 8) | (i * 7 & 0xFF);
+            }
+            int[] out = new int[pixels.length];
+            transform.transform(pixels, 0, out, 0, pixels.length);
+            for (int i = 0; i < pixels.length; i++) {
+                assertEquals(pixels[i] >>> 24, out[i] >>> 24);
+                for (int shift = 0; shift < 24; shift += 8) {
+                    assertEquals((pixels[i] >>> shift) & 0xFF, (out[i] >>> shift) & 0xFF, 1, "pixel " + i);
+                }
+            }
+        }
+    }
+
+    @Test
+    void sampledCurvesAreInverted() throws IOException {
+        Path linear = rgbProfile("linear.icc", ByteBuffer.allocate(12).putInt(Signatures.CURVE_TYPE).putInt(0).putInt(0).array());
+        Path sampled = rgbProfile("sampled.icc", sampledGamma(1024, 1.8));
+        try (ICCProfile source = new ICCProfile(linear.toString());
+             ICCProfile destination = new ICCProfile(sampled.toString())) {
+            float[] rgb = {0.25f, 0.5f, 0.75f};
+            MatrixTrcTransform.between(source, destination).transform(rgb, 0, rgb, 0, 1);
+            assertEquals(Math.pow(0.25, 1 / 1.8), rgb[0], 1e-3);
+            assertEquals(Math.pow(0.5, 1 / 1.8), rgb[1], 1e-3);
+            assertEquals(Math.pow(0.75, 1 / 1.8), rgb[2], 1e-3);
+        }
+    }
+
+    private static byte[] sampledGamma(int points, double gamma) {
+        ByteBuffer element = ByteBuffer.allocate(12 + points * 2);
+        element.putInt(Signatures.CURVE_TYPE).putInt(0).putInt(points);
+        for (int i = 0; i < points; i++) {
+            element.putShort((short) Math.round(Math.pow(i / (points - 1.0), gamma) * 65535));
+        }
+        return element.array();
+    }
+
+    @Test
+    void incompleteProfilesAreRejected() throws IOException {
+        Path file = new TestProfiles().xyzTag("rXYZ", 1, 0, 0).write(tempDir.resolve("partial.icc"));
+        try (ICCProfile profile = new ICCProfile(file.toString())) {
+            assertFalse(MatrixTrcTransform.isMatrixTrc(profile));
+            IOException e = assertThrows(IOException.class, () -> MatrixTrcTransform.toPcs(profile));
+            assertTrue(e.getMessage().contains("rTRC"), e.getMessage());
+        }
+    }
+}
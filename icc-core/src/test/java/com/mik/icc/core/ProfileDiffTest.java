@@ -0,0 +1,114 @@
+package com.mik.icc.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+class ProfileDiffTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static byte[] mluc(String enUS, String deDE) {
+        MultiLocalizedUnicodeTagData data = new MultiLocalizedUnicodeTagData();
+        data.addLocalizedString("en", "US", enUS);
+        if (deDE != null) {
+            data.addLocalizedString("de", "DE", deDE);
+        }
+        return data.toBytes();
+    }
+
+    private static byte[] curve(int... points) {
+        ByteBuffer element = ByteBuffer.allocate(12 + points.length * 2).order(ByteOrder.BIG_ENDIAN);
+        element.putInt(Signatures.CURVE_TYPE).putInt(0).putInt(points.length);
+        for (int point : points) {
+            element.putShort((short) point);
+        }
+        return element.array();
+    }
+
+    private ProfileDiff diff(TestProfiles before, TestProfiles after) throws IOException {
+        Path oldFile = before.write(tempDir.resolve("old.icc"));
+        Path newFile = after.write(tempDir.resolve("new.icc"));
+        try (ICCProfile oldProfile = new ICCProfile(oldFile.toString());
+             ICCProfile newProfile = new ICCProfile(newFile.toString())) {
+            return ProfileDiff.compare(oldProfile, newProfile);
+        }
+    }
+
+    private static ProfileDiff.TagDiff tagDiff(ProfileDiff diff, String signature) {
+        return diff.getTagDiffs().stream().filter(t -> t.getSignature().equals(signature)).findFirst().orElseThrow();
+    }
+
+    @Test
+    void identicalProfilesHaveNoDifferences() throws IOException {
+        ProfileDiff diff = diff(new TestProfiles().textTag("cprt", "Copyright").curveTag("rTRC", 16),
+                new TestProfiles().textTag("cprt", "Copyright").curveTag("rTRC", 16));
+        assertTrue(diff.isEmpty());
+    }
+
+    @Test
+    void changedTagsAreComparedValueByValue() throws IOException {
+        ProfileDiff diff = diff(
+                new TestProfiles().model("JV33").textTag("cprt", "Copyright").xyzTag("wtpt", 0.9642, 1.0, 0.8249)
+                        .tag("rTRC", curve(0, 1000, 2000, 65535)).tag("desc", mluc("PVC", "PVC"))
+                        .tag("MMK1", new byte[] {1, 2, 3, 4}),
+                new TestProfiles().model("JV34").textTag("cprt", "Copyright").xyzTag("wtpt", 0.9505, 1.0, 1.089)
+                        .tag("rTRC", curve(0, 1010, 2000, 65535)).tag("desc", mluc("Vinyl", null))
+                        .tag("MMK2", new byte[] {1}));
+
+        assertEquals(List.of("model", "size"), diff.getHeaderDifferences().stream()
+                .map(ProfileDiff.Difference::getField).sorted().collect(Collectors.toList()));
+        // Equal payloads are skipped without decoding
+        assertTrue(diff.getTagDiffs().stream().noneMatch(t -> t.getSignature().equals("cprt")));
+
+        ProfileDiff.TagDiff wtpt = tagDiff(diff, "wtpt");
+        assertEquals(List.of("X", "Z"),
+                wtpt.getDifferences().stream().map(ProfileDiff.Difference::getField).collect(Collectors.toList()));
+        assertEquals(1.089 - 0.8249, wtpt.getDifferences().get(1).getDelta(), 1e-4);
+
+        ProfileDiff.TagDiff trc = tagDiff(diff, "rTRC");
+        assertEquals(1, trc.getDifferences().size());
+        assertEquals("point 1", trc.getDifferences().get(0).getField());
+        assertEquals(10 / 65535.0, trc.getMaxDelta(), 1e-9);
+
+        ProfileDiff.TagDiff desc = tagDiff(diff, "desc");
+        assertEquals("PVC", desc.getDifferences().get(0).getBefore());
+        assertEquals("Vinyl", desc.getDifferences().get(0).getAfter());
+        assertEquals("(none)", desc.getDifferences().get(1).getAfter());
+
+        assertEquals(ProfileDiff.Kind.REMOVED, tagDiff(diff, "MMK1").getKind());
+        assertEquals(ProfileDiff.Kind.ADDED, tagDiff(diff, "MMK2").getKind());
+    }
+
+    @Test
+    void curvesWithDifferentResolutionAreResampled() throws IOException {
+        ProfileDiff diff = diff(new TestProfiles().tag("kTRC", curve(0, 65535)),
+                new TestProfiles().tag("kTRC", curve(0, 30000, 65535)));
+
+        ProfileDiff.TagDiff trc = tagDiff(diff, "kTRC");
+        assertEquals("points", trc.getDifferences().get(0).getField());
+        assertEquals(0.5 - 30000 / 65535.0, trc.getMaxDelta(), 1e-9);
+    }
+
+    @Test
+    void rawTagsReportTheFirstDifferingBytes() throws IOException {
+        ProfileDiff diff = diff(new TestProfiles().tag("MMK1", "MEDIA=PVC;".getBytes(StandardCharsets.UTF_8)),
+                new TestProfiles().tag("MMK1", "MEDIA=VIN;".getBytes(StandardCharsets.UTF_8)));
+
+        StringWriter report = new StringWriter();
+        diff.print(new PrintWriter(report));
+        assertTrue(report.toString().contains("bytes from 0x00000006 (3 of 10 differ): 50 56 43 3B -> 56 49 4E 3B"),
+                report.toString());
+    }
+}
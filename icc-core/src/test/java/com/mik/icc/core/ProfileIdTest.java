@@ -0,0 +1,75 @@
+package com.mik.icc.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+class ProfileIdTest {
+
+    @TempDir
+    Path tempDir;
+
+    // Reference digest over a copy with the excluded fields cleared
+    private static byte[] md5OfZeroedCopy(byte[] profile) throws NoSuchAlgorithmException {
+        byte[] copy = profile.clone();
+        Arrays.fill(copy, 44, 48, (byte) 0);
+        Arrays.fill(copy, 64, 68, (byte) 0);
+        Arrays.fill(copy, ProfileId.OFFSET, ProfileId.OFFSET + ProfileId.LENGTH, (byte) 0);
+        return MessageDigest.getInstance("MD5").digest(copy);
+    }
+
+    @Test
+    void idIgnoresFlagsIntentAndStoredId() throws Exception {
+        byte[] profile = new TestProfiles().textTag("cprt", "Copyright").build();
+        byte[] id = ProfileId.compute(ByteBuffer.wrap(profile));
+        assertArrayEquals(md5OfZeroedCopy(profile), id);
+
+        ByteBuffer changed = ByteBuffer.wrap(profile.clone());
+        changed.putInt(44, 0x00010000);
+        changed.putInt(64, 3);
+        ProfileId.write(changed);
+        assertArrayEquals(id, ProfileId.read(changed));
+        assertEquals(ProfileId.Status.VALID, ProfileId.verify(changed));
+
+        int last = changed.limit() - 1;
+        changed.put(last, (byte) (changed.get(last) ^ 1));
+        assertEquals(ProfileId.Status.MISMATCH, ProfileId.verify(changed));
+        assertEquals(ProfileId.Status.MISSING, ProfileId.verify(ByteBuffer.wrap(profile)));
+    }
+
+    @Test
+    void saveWritesIdForLargeProfiles() throws Exception {
+        // Large enough to be memory-mapped if it were opened read-only
+        Path file = new TestProfiles().curveTag("rTRC", 200_000).write(tempDir.resolve("large.icc"));
+        try (ICCProfile profile = new ICCProfile(file.toString())) {
+            assertFalse(profile.isMapped());
+            assertEquals(ProfileId.Status.MISSING, profile.verifyProfileId());
+            profile.setTagData("cprt", new TextTagData("Copyright", StandardCharsets.US_ASCII));
+            profile.save();
+
+            assertEquals(ProfileId.Status.VALID, profile.verifyProfileId());
+            assertArrayEquals(md5OfZeroedCopy(Files.readAllBytes(file)), profile.getHeader().getProfileId());
+        }
+    }
+
+    @Test
+    void version2ProfilesKeepTheReservedBytes() throws IOException {
+        Path file = new TestProfiles().textTag("cprt", "Copyright").write(tempDir.resolve("v2.icc"));
+        try (ICCProfile profile = new ICCProfile(file.toString())) {
+            ICCHeader header = profile.getHeader();
+            header.setVersion(2, 1, 0);
+            profile.writeHeader(header);
+            assertFalse(ProfileOperations.updateProfileId(profile));
+            assertEquals(ProfileId.Status.MISSING, profile.verifyProfileId());
+        }
+    }
+}
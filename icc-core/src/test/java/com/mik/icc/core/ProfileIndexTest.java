@@ -0,0 +1,112 @@
+package com.mik.icc.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+class ProfileIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path library;
+
+    private Path profile(String name, String deviceClass, String model, boolean mimaki) throws IOException {
+        Path file = library.resolve(name);
+        Files.createDirectories(file.getParent());
+        TestProfiles builder = new TestProfiles().deviceClass(deviceClass).model(model).textTag("cprt", "Copyright");
+        if (mimaki) {
+            builder.tag("MMK1", "MEDIA=PVC;".getBytes(StandardCharsets.UTF_8));
+        }
+        return builder.write(file);
+    }
+
+    private ProfileIndex indexedLibrary() throws IOException {
+        library = tempDir.resolve("library");
+        profile("printers/jv33-pvc.icc", "prtr", "JV33", true);
+        profile("printers/jv33-plain.icc", "prtr", "JV33", false);
+        profile("printers/old/cjv30.icm", "prtr", "CJ30", true);
+        profile("monitors/display.icc", "mntr", "TEST", false);
+        ProfileIndex index = new ProfileIndex();
+        ProfileIndexer.Summary summary = new ProfileIndexer(3).update(index, List.of(library));
+        assertEquals(4, summary.getAdded(), summary.toString());
+        return index;
+    }
+
+    private static List<String> names(List<IndexEntry> entries) {
+        return entries.stream().map(e -> e.getPath().getFileName().toString()).collect(Collectors.toList());
+    }
+
+    @Test
+    void queriesCombineHeaderFieldsAndTags() throws IOException {
+        ProfileIndex index = indexedLibrary();
+
+        assertEquals(List.of("jv33-plain.icc", "jv33-pvc.icc", "cjv30.icm"),
+                names(index.query(new IndexQuery().deviceClass("prtr"))));
+        assertEquals(List.of("jv33-pvc.icc"),
+                names(index.query(new IndexQuery().deviceClass("prtr").model("JV33").withTag("MMK1"))));
+        assertEquals(List.of(), names(index.query(new IndexQuery().deviceClass("scnr"))));
+    }
+
+    @Test
+    void entriesCarryTagSizesAndContentHashes() throws IOException {
+        ProfileIndex index = indexedLibrary();
+        IndexEntry entry = index.get(library.resolve("printers/jv33-pvc.icc"));
+        int mmk1 = entry.indexOf(Signatures.MMK1);
+
+        assertEquals(10, entry.getTagSize(mmk1));
+        assertEquals(ContentHash.of("MEDIA=PVC;".getBytes(StandardCharsets.UTF_8)), entry.getTagHash(mmk1));
+        assertEquals(2, index.query(new IndexQuery().withTagHash(entry.getTagHash(mmk1))).size());
+        assertEquals("JV33", entry.getHeader().getModel());
+    }
+
+    @Test
+    void savedIndexLoadsWithSameEntries() throws IOException {
+        ProfileIndex index = indexedLibrary();
+        Path file = tempDir.resolve("library.idx");
+        index.save(file);
+
+        ProfileIndex loaded = ProfileIndex.load(file);
+        assertEquals(index.size(), loaded.size());
+        for (IndexEntry entry : index.entries()) {
+            IndexEntry copy = loaded.get(entry.getPath());
+            assertEquals(entry.getLastModified(), copy.getLastModified());
+            assertEquals(entry.getFileSize(), copy.getFileSize());
+            assertEquals(entry.getHeader().getModelCode(), copy.getHeader().getModelCode());
+            assertEquals(entry.getTagCount(), copy.getTagCount());
+            for (int t = 0; t < entry.getTagCount(); t++) {
+                assertEquals(entry.getTagSignature(t), copy.getTagSignature(t));
+                assertEquals(entry.getTagHash(t), copy.getTagHash(t));
+            }
+        }
+        Files.writeString(tempDir.resolve("bogus.idx"), "not an index");
+        assertThrows(IOException.class, () -> ProfileIndex.load(tempDir.resolve("bogus.idx")));
+    }
+
+    @Test
+    void rerunOnlyReadsChangedFilesAndDropsDeletedOnes() throws IOException {
+        ProfileIndex index = indexedLibrary();
+        Path changed = profile("printers/jv33-plain.icc", "prtr", "JV33", true);
+        Files.setLastModifiedTime(changed, FileTime.fromMillis(Files.getLastModifiedTime(changed).toMillis() + 2000));
+        Files.delete(library.resolve("monitors/display.icc"));
+        Files.write(library.resolve("printers/broken.icc"), new byte[16]);
+
+        ProfileIndexer.Summary summary = new ProfileIndexer(2).update(index, List.of(library));
+
+        assertEquals(0, summary.getAdded());
+        assertEquals(1, summary.getUpdated());
+        assertEquals(2, summary.getUnchanged());
+        assertEquals(1, summary.getRemoved());
+        assertEquals(1, summary.getFailures().size());
+        assertTrue(index.get(changed).hasTag(Signatures.MMK1));
+        assertNull(index.get(library.resolve("printers/broken.icc")));
+    }
+}
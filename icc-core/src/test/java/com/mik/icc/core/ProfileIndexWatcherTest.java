@@ -0,0 +1,77 @@
+package com.mik.icc.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+class ProfileIndexWatcherTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final BlockingQueue<ProfileIndexer.Summary> batches = new LinkedBlockingQueue<>();
+
+    private static void profile(Path file, String model) throws IOException {
+        Files.createDirectories(file.getParent());
+        new TestProfiles().deviceClass("prtr").model(model).textTag("cprt", "Copyright").write(file);
+    }
+
+    // Collects batches until the index reaches the expected size
+    private void awaitSize(ProfileIndex index, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 20_000;
+        while (index.size() != size) {
+            long wait = deadline - System.currentTimeMillis();
+            assertTrue(wait > 0, "index has " + index.size() + " entries, expected " + size);
+            batches.poll(wait, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Test
+    void burstOfNewProfilesIsIndexedInFewBatches() throws Exception {
+        Path library = Files.createDirectories(tempDir.resolve("library"));
+        ProfileIndex index = new ProfileIndex();
+        try (ProfileIndexWatcher watcher = new ProfileIndexWatcher(index, new ProfileIndexer(2), List.of(library),
+                200, batches::add)) {
+            watcher.start();
+            for (int i = 0; i < 50; i++) {
+                profile(library.resolve("drop-" + i + ".icc"), "JV33");
+            }
+            Files.writeString(library.resolve("notes.txt"), "ignored");
+
+            awaitSize(index, 50);
+            assertTrue(batches.size() < 10, "events were not batched: " + batches.size() + " batches");
+            assertEquals(50, index.query(new IndexQuery().model("JV33")).size());
+        }
+    }
+
+    @Test
+    void deletionsAndNewDirectoriesAreFollowed() throws Exception {
+        Path library = Files.createDirectories(tempDir.resolve("library"));
+        profile(library.resolve("old.icc"), "CJ30");
+        ProfileIndex index = new ProfileIndex();
+        new ProfileIndexer(1).update(index, List.of(library));
+
+        try (ProfileIndexWatcher watcher = new ProfileIndexWatcher(index, new ProfileIndexer(2), List.of(library),
+                100, batches::add)) {
+            watcher.start();
+            Files.delete(library.resolve("old.icc"));
+            awaitSize(index, 0);
+
+            Path nested = library.resolve("new/deeper");
+            profile(nested.resolve("one.icc"), "JV33");
+            awaitSize(index, 1);
+            // The new directories are watched as well
+            profile(nested.resolve("two.icm"), "JV33");
+            awaitSize(index, 2);
+            assertNotNull(index.get(nested.resolve("two.icm")));
+        }
+    }
+}
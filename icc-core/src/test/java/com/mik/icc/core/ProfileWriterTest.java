@@ -0,0 +1,166 @@
+package com.mik.icc.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+import java.util.stream.Stream;
+
+class ProfileWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path sampleProfile() throws IOException {
+        return new TestProfiles().tag("MMK1", "PVC".getBytes(StandardCharsets.UTF_8))
+                .textTag("cprt", "Copyright").xyzTag("wtpt", 0.9642, 1.0, 0.8249)
+                .write(tempDir.resolve("sample.icc"));
+    }
+
+    @Test
+    void longerTagDataNoLongerOverwritesTheNextTag() throws IOException {
+        Path file = sampleProfile();
+        String longName = "Polyvinyl chloride, glossy, 440 g/m2";
+        try (ICCProfile profile = new ICCProfile(file.toString())) {
+            profile.writeTagData(profile.getTagBySignature("MMK1"), new GenericTagData(longName.getBytes(StandardCharsets.UTF_8)));
+        }
+        try (ICCProfile profile = new ICCProfile(file.toString())) {
+            assertEquals(longName, new String(profile.readTagData(profile.getTagBySignature("MMK1")).toBytes(), StandardCharsets.UTF_8));
+            assertEquals("Copyright", ((TextTagData) profile.readTagData(profile.getTagBySignature("cprt"))).getText());
+            assertEquals(Files.size(file), profile.getHeader().getSize());
+            assertEquals(0, Files.size(file) % 4);
+            for (Tag tag : profile.getTags()) {
+                assertEquals(0, tag.getOffset() % 4, tag.getSignature());
+            }
+            assertTrue(ProfileValidator.validate(profile).isEmpty(), ProfileValidator.validate(profile).toString());
+        }
+    }
+
+    @Test
+    void stagedChangesAreWrittenOnceOnSave() throws IOException {
+        Path file = sampleProfile();
+        try (ICCProfile profile = new ICCProfile(file.toString())) {
+            profile.setTagData("MMK2", new GenericTagData(new byte[] {1, 2, 3, 4, 5}));
+            profile.removeTag("cprt");
+            profile.setTagData(profile.getTagBySignature("wtpt"), new XYZTagData(0.95, 1.0, 1.09));
+            assertTrue(profile.hasPendingChanges());
+            assertNotNull(profile.getTagBySignature("cprt"));
+
+            profile.save();
+
+            assertFalse(profile.hasPendingChanges());
+            assertNull(profile.getTagBySignature("cprt"));
+            assertArrayEquals(new byte[] {1, 2, 3, 4, 5}, profile.readTagData(profile.getTagBySignature("MMK2")).toBytes());
+            XYZTagData white = (XYZTagData) profile.readTagData(profile.getTagBySignature("wtpt"));
+            assertEquals(1.09, white.getZ(), 1e-4);
+        }
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(1, files.count(), "temporary file left behind");
+        }
+    }
+
+    @Test
+    void savingKeepsPermissionsAndSymlinks() throws IOException {
+        Path file = sampleProfile();
+        assumeTrue(Files.getFileAttributeView(file, PosixFileAttributeView.class) != null, "POSIX file system");
+        Set<PosixFilePermission> shared = PosixFilePermissions.fromString("rw-rw-r--");
+        Files.setPosixFilePermissions(file, shared);
+        Path link = Files.createSymbolicLink(tempDir.resolve("link.icc"), file.getFileName());
+
+        try (ICCProfile profile = new ICCProfile(link.toString())) {
+            profile.writeTagData(profile.getTagBySignature("MMK1"), new GenericTagData(new byte[] {1, 2, 3, 4}));
+        }
+
+        assertTrue(Files.isSymbolicLink(link));
+        assertEquals(shared, Files.getPosixFilePermissions(file));
+        try (ICCProfile profile = new ICCProfile(file.toString())) {
+            assertArrayEquals(new byte[] {1, 2, 3, 4}, profile.readTagData(profile.getTagBySignature("MMK1")).toBytes());
+        }
+    }
+
+    @Test
+    void headerEditsKeepTagData() throws IOException {
+        Path file = sampleProfile();
+        try (ICCProfile profile = new ICCProfile(file.toString())) {
+            ICCHeader header = profile.getHeader();
+            header.setModel("JV33");
+            profile.writeHeader(header);
+            assertEquals("JV33", profile.getHeader().getModel());
+            assertEquals("Copyright", ((TextTagData) profile.readTagData(profile.getTagBySignature("cprt"))).getText());
+        }
+    }
+
+    @Test
+    void decodersAreChosenByElementType() throws IOException {
+        Path file = new TestProfiles().xyzTag("rXYZ", 0.4361, 0.2225, 0.0139).curveTag("rTRC", 16)
+                .textTag("cprt", "Copyright").write(tempDir.resolve("types.icc"));
+        try (ICCProfile profile = new ICCProfile(file.toString())) {
+            assertInstanceOf(XYZTagData.class, profile.readTagData(profile.getTagBySignature("rXYZ")));
+            assertInstanceOf(CurveTagData.class, profile.readTagData(profile.getTagBySignature("rTRC")));
+            assertInstanceOf(TextTagData.class, profile.readTagData(profile.getTagBySignature("cprt")));
+        }
+    }
+
+    @Test
+    void elementBytesRoundTripThroughTheDecoders() throws IOException {
+        Path file = sampleProfile();
+        MultiLocalizedUnicodeTagData description = new MultiLocalizedUnicodeTagData();
+        description.addLocalizedString("en", "US", "Glossy PVC");
+        description.addLocalizedString("de", "DE", "Glänzendes PVC");
+        try (ICCProfile profile = new ICCProfile(file.toString())) {
+            profile.setTagData("desc", description);
+            profile.setTagData("rTRC", new CurveTagData(new double[] {0.0, 0.25, 1.0}));
+            profile.setTagData("cprt", new TextTagData("No copyright", StandardCharsets.US_ASCII));
+            profile.save();
+
+            assertEquals(description.getLocalizedStrings(),
+                    ((MultiLocalizedUnicodeTagData) profile.readTagData(profile.getTagBySignature("desc"))).getLocalizedStrings());
+            assertArrayEquals(new double[] {0.0, 0.25, 1.0},
+                    ((CurveTagData) profile.readTagData(profile.getTagBySignature("rTRC"))).getCurvePoints(), 1e-4);
+            assertEquals("No copyright", ((TextTagData) profile.readTagData(profile.getTagBySignature("cprt"))).getText());
+        }
+    }
+
+    @Test
+    void identicalTagElementsAreStoredOnce() throws IOException {
+        Path file = new TestProfiles().curveTag("rTRC", 256).curveTag("gTRC", 256).curveTag("bTRC", 256)
+                .curveTag("kTRC", 16).write(tempDir.resolve("shared.icc"));
+        long originalSize = Files.size(file);
+        try (ICCProfile profile = new ICCProfile(file.toString())) {
+            profile.setTagData("cprt", new TextTagData("Shared", StandardCharsets.US_ASCII));
+            profile.save();
+
+            Tag red = profile.getTagBySignature("rTRC");
+            Tag green = profile.getTagBySignature("gTRC");
+            Tag blue = profile.getTagBySignature("bTRC");
+            Tag black = profile.getTagBySignature("kTRC");
+            assertEquals(red.getOffset(), green.getOffset());
+            assertEquals(red.getOffset(), blue.getOffset());
+            assertNotEquals(red.getOffset(), black.getOffset());
+            assertTrue(profile.getFileSize() < originalSize, profile.getFileSize() + " >= " + originalSize);
+            assertTrue(ProfileValidator.validate(profile).isEmpty(), ProfileValidator.validate(profile).toString());
+            assertEquals(256, ((CurveTagData) profile.readTagData(blue)).getCurvePoints().length);
+        }
+    }
+
+    @Test
+    void deduplicationCanBeDisabled() {
+        byte[] header = new TestProfiles().build();
+        byte[] element = new byte[] {'c', 'u', 'r', 'v', 0, 0, 0, 0, 0, 0, 0, 0};
+        ProfileWriter writer = new ProfileWriter(ByteBuffer.wrap(header))
+                .addTag("rTRC", element).addTag("gTRC", element.clone());
+        int deduplicated = writer.serialize().capacity();
+        int duplicated = writer.setDeduplicate(false).serialize().capacity();
+        assertEquals(deduplicated + element.length, duplicated);
+    }
+}
@@ -0,0 +1,51 @@
+package com.mik.icc.core;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class SignaturesTest {
+
+    @Test
+    void packsBigEndianAndPadsWithSpaces() {
+        assertEquals(0x64657363, Signatures.of("desc"));
+        assertEquals(Signatures.XYZ_TYPE, Signatures.of("XYZ"));
+        assertEquals(Signatures.XYZ_TYPE, Signatures.of("XYZ "));
+        assertThrows(IllegalArgumentException.class, () -> Signatures.of("toolong"));
+    }
+
+    @Test
+    void displayFormIsTrimmed() {
+        assertEquals("desc", Signatures.toString(Signatures.DESC));
+        assertEquals("XYZ", Signatures.toString(Signatures.XYZ_TYPE));
+        assertEquals("MMK1", new Tag(Signatures.MMK1, 0, 0).getSignature());
+        assertEquals("XYZ ", TagType.XYZ_TYPE.getSignature());
+    }
+
+    @Test
+    void tagTypeDispatchesOnCode() {
+        assertEquals(TagType.MLUC_TYPE, TagType.fromCode(Signatures.MLUC_TYPE));
+        assertEquals(TagType.CURVE_TYPE, TagType.fromCode(Signatures.of("curv")));
+        assertEquals(TagType.UNKNOWN, TagType.fromCode(Signatures.DESC));
+        assertEquals(TagType.UNKNOWN, TagType.fromSignature("unknown"));
+    }
+
+    @Test
+    void tagIndexFindsEveryTagAndKeepsFirstDuplicate() {
+        List<Tag> tags = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            tags.add(new Tag(String.format("p%03d", i), 1000 + 4L * i, 4));
+        }
+        tags.add(new Tag("p007", 9999, 4));
+        TagIndex index = new TagIndex(tags);
+
+        for (int i = 0; i < 300; i++) {
+            assertEquals(i, index.positionOf(tags.get(i).getSignatureCode()));
+        }
+        assertEquals(7, index.positionOf(Signatures.of("p007")));
+        assertEquals(-1, index.positionOf(Signatures.DESC));
+        assertEquals(-1, new TagIndex(List.of()).positionOf(Signatures.DESC));
+    }
+}
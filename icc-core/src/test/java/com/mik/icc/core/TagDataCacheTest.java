@@ -0,0 +1,108 @@
+package com.mik.icc.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+class TagDataCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void evictsLeastRecentlyUsedEntriesWhenOverBudget() {
+        TagDataCache cache = new TagDataCache(250);
+        Tag first = new Tag("aaaa", 200, 100);
+        Tag second = new Tag("bbbb", 300, 100);
+        Tag third = new Tag("cccc", 400, 100);
+        cache.put(first, new GenericTagData(new byte[100]));
+        cache.put(second, new GenericTagData(new byte[100]));
+        assertNotNull(cache.get(first)); // first becomes most recently used
+        cache.put(third, new GenericTagData(new byte[100]));
+
+        assertNotNull(cache.get(first));
+        assertNull(cache.get(second));
+        assertNotNull(cache.get(third));
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(200, cache.getCurrentBytes());
+        assertEquals(3, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    void curveWeightReflectsDecodedSize() {
+        TagDataCache cache = new TagDataCache(1024);
+        cache.put(new Tag("rTRC", 200, 12 + 2 * 256), new CurveTagData(new double[256]));
+        assertEquals(0, cache.getEntryCount());
+        cache.put(new Tag("gTRC", 800, 12 + 2 * 64), new CurveTagData(new double[64]));
+        assertEquals(16 + 8 * 64, cache.getCurrentBytes());
+    }
+
+    @Test
+    void invalidateDropsOverlappingEntriesOnly() {
+        TagDataCache cache = new TagDataCache(1024);
+        Tag first = new Tag("aaaa", 200, 40);
+        Tag second = new Tag("bbbb", 240, 40);
+        cache.put(first, new GenericTagData(new byte[40]));
+        cache.put(second, new GenericTagData(new byte[40]));
+        cache.invalidate(first);
+        assertNull(cache.get(first));
+        assertNotNull(cache.get(second));
+    }
+
+    @Test
+    void profileServesRepeatedReadsFromCacheAndInvalidatesOnWrite() throws IOException {
+        Path file = new TestProfiles().curveTag("curv", 256).tag("MMK1", new byte[] {1, 2, 3, 4})
+                .write(tempDir.resolve("cached.icc"));
+        try (ICCProfile profile = new ICCProfile(file.toString())) {
+            Tag curveTag = profile.getTagBySignature("curv");
+            Tag mimakiTag = profile.getTagBySignature("MMK1");
+            double[] curve = ((CurveTagData) profile.readTagData(curveTag)).getCurvePoints();
+            // Served from the cache, as a copy the caller may change
+            assertArrayEquals(curve, ((CurveTagData) profile.readTagData(curveTag)).getCurvePoints());
+            profile.readTagData(mimakiTag);
+
+            profile.writeTagData(mimakiTag, new GenericTagData(new byte[] {5, 6, 7, 8}));
+            assertArrayEquals(new byte[] {5, 6, 7, 8}, profile.readTagData(mimakiTag).toBytes());
+            assertArrayEquals(curve, ((CurveTagData) profile.readTagData(curveTag)).getCurvePoints());
+
+            TagDataCache cache = profile.getTagDataCache();
+            assertEquals(2, cache.getHitCount());
+            assertEquals(3, cache.getMissCount());
+        }
+    }
+
+    @Test
+    void editsOfReadDataDoNotReachTheCache() throws IOException {
+        MultiLocalizedUnicodeTagData original = new MultiLocalizedUnicodeTagData();
+        original.addLocalizedString("en", "US", "Original");
+        Path file = new TestProfiles().xyzTag("wtpt", 0.9642, 1.0, 0.8249).tag("desc", original.toBytes())
+                .curveTag("rTRC", 16).tag("MMK1", new byte[] {1, 2, 3, 4})
+                .write(tempDir.resolve("editable.icc"));
+        try (ICCProfile profile = new ICCProfile(file.toString())) {
+            Tag whitePoint = profile.getTagBySignature("wtpt");
+            XYZTagData edited = (XYZTagData) profile.readTagData(whitePoint);
+            edited.setX(0.5);
+            assertEquals(0.9642, ((XYZTagData) profile.readTagData(whitePoint)).getX(), 1e-4);
+
+            Tag description = profile.getTagBySignature("desc");
+            ((MultiLocalizedUnicodeTagData) profile.readTagData(description)).addLocalizedString("de", "DE", "Neu");
+            assertEquals(1, ((MultiLocalizedUnicodeTagData) profile.readTagData(description))
+                    .getLocalizedStrings().size());
+
+            Tag curve = profile.getTagBySignature("rTRC");
+            double first = ((CurveTagData) profile.readTagData(curve)).getCurvePoints()[0];
+            ((CurveTagData) profile.readTagData(curve)).getCurvePoints()[0] = 0.5;
+            assertEquals(first, ((CurveTagData) profile.readTagData(curve)).getCurvePoints()[0]);
+            Tag raw = profile.getTagBySignature("MMK1");
+            profile.readTagData(raw).toBytes()[0] = 9;
+            assertArrayEquals(new byte[] {1, 2, 3, 4}, profile.readTagData(raw).toBytes());
+
+            profile.save();
+            assertEquals(0.9642, ((XYZTagData) profile.readTagData(profile.getTagBySignature("wtpt"))).getX(), 1e-4);
+        }
+    }
+}
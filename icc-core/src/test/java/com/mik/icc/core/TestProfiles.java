@@ -0,0 +1,153 @@
+package com.mik.icc.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// Builds small synthetic profiles for tests
+final class TestProfiles {
+
+    private final List<String> signatures = new ArrayList<>();
+    private final List<byte[]> elements = new ArrayList<>();
+    private String deviceClass = "mntr";
+    private String model = "TEST";
+    private String colorSpace = "RGB ";
+    private String pcs = "XYZ ";
+
+    TestProfiles deviceClass(String deviceClass) {
+        this.deviceClass = deviceClass;
+        return this;
+    }
+
+    TestProfiles colorSpace(String colorSpace) {
+        this.colorSpace = colorSpace;
+        return this;
+    }
+
+    TestProfiles pcs(String pcs) {
+        this.pcs = pcs;
+        return this;
+    }
+
+    TestProfiles model(String model) {
+        this.model = model;
+        return this;
+    }
+
+    TestProfiles tag(String signature, byte[] element) {
+        signatures.add(signature);
+        elements.add(element);
+        return this;
+    }
+
+    TestProfiles textTag(String signature, String text) {
+        byte[] textBytes = text.getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer element = ByteBuffer.allocate(8 + textBytes.length + 1);
+        element.put("text".getBytes(StandardCharsets.US_ASCII)).putInt(0).put(textBytes);
+        return tag(signature, element.array());
+    }
+
+    TestProfiles xyzTag(String signature, double x, double y, double z) {
+        ByteBuffer element = ByteBuffer.allocate(20).order(ByteOrder.BIG_ENDIAN);
+        element.put("XYZ ".getBytes(StandardCharsets.US_ASCII)).putInt(0);
+        element.putInt((int) Math.round(x * 65536.0));
+        element.putInt((int) Math.round(y * 65536.0));
+        element.putInt((int) Math.round(z * 65536.0));
+        return tag(signature, element.array());
+    }
+
+    TestProfiles curveTag(String signature, int points) {
+        return tag(signature, linearCurve(points));
+    }
+
+    // 'curv' element sampling the identity at evenly spaced points
+    static byte[] linearCurve(int points) {
+        ByteBuffer element = ByteBuffer.allocate(12 + points * 2).order(ByteOrder.BIG_ENDIAN);
+        element.put("curv".getBytes(StandardCharsets.US_ASCII)).putInt(0).putInt(points);
+        for (int i = 0; i < points; i++) {
+            element.putShort((short) Math.round(i * 65535.0 / Math.max(1, points - 1)));
+        }
+        return element.array();
+    }
+
+    // 'curv' element holding a single gamma value
+    static byte[] gammaCurve(double gamma) {
+        ByteBuffer element = ByteBuffer.allocate(14);
+        element.putInt(Signatures.CURVE_TYPE).putInt(0).putInt(1).putShort((short) Math.round(gamma * 256));
+        return element.array();
+    }
+
+    // Matrix/TRC RGB profile with the sRGB primaries adapted to D50 and linear 256-point curves
+    static TestProfiles srgbMatrixTrc() {
+        return srgbMatrixTrc(linearCurve(256));
+    }
+
+    // The same primaries with one curve element shared by all three channels
+    static TestProfiles srgbMatrixTrc(byte[] curve) {
+        return new TestProfiles()
+                .xyzTag("rXYZ", 0.4361, 0.2225, 0.0139)
+                .xyzTag("gXYZ", 0.3851, 0.7169, 0.0971)
+                .xyzTag("bXYZ", 0.1431, 0.0606, 0.7141)
+                .tag("rTRC", curve).tag("gTRC", curve).tag("bTRC", curve);
+    }
+
+    // Lab-PCS LUT profile whose A2B0 samples a matrix/TRC model on the given grid
+    static TestProfiles sampledLut(ICCProfile model, int gridPoints) throws IOException {
+        ColorTransform toLab = ChainedTransform.of(MatrixTrcTransform.toPcs(model),
+                PcsConversion.fromXyz(PcsConversion.Encoding.LAB));
+        Clut clut = new DeviceLinkBuilder(1).gridPoints(gridPoints).sample(toLab);
+        ToneCurve[] identity = {ToneCurve.identity(), ToneCurve.identity(), ToneCurve.identity()};
+        LutTagData a2b0 = LutTagData.lutAToB(identity, clut, null, null, identity);
+        return new TestProfiles().pcs("Lab ").tag("A2B0", a2b0.toElementBytes());
+    }
+
+    byte[] build() {
+        int tableSize = 4 + 12 * signatures.size();
+        int offset = 128 + tableSize;
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        ByteBuffer table = ByteBuffer.allocate(tableSize).order(ByteOrder.BIG_ENDIAN);
+        table.putInt(signatures.size());
+        for (int i = 0; i < signatures.size(); i++) {
+            byte[] element = elements.get(i);
+            table.put(signatures.get(i).getBytes(StandardCharsets.US_ASCII));
+            table.putInt(offset + data.size());
+            table.putInt(element.length);
+            data.writeBytes(element);
+            while (data.size() % 4 != 0) {
+                data.write(0);
+            }
+        }
+        int size = offset + data.size();
+
+        ByteBuffer header = ByteBuffer.allocate(128).order(ByteOrder.BIG_ENDIAN);
+        header.putInt(0, size);
+        header.put(4, "lcms".getBytes(StandardCharsets.US_ASCII));
+        header.put(8, (byte) 4).put(9, (byte) 0x30);
+        header.put(12, deviceClass.getBytes(StandardCharsets.US_ASCII));
+        header.put(16, colorSpace.getBytes(StandardCharsets.US_ASCII));
+        header.put(20, pcs.getBytes(StandardCharsets.US_ASCII));
+        header.putShort(24, (short) 2024).putShort(26, (short) 5).putShort(28, (short) 17);
+        header.putShort(30, (short) 10).putShort(32, (short) 20).putShort(34, (short) 30);
+        header.put(36, "acsp".getBytes(StandardCharsets.US_ASCII));
+        header.put(40, "APPL".getBytes(StandardCharsets.US_ASCII));
+        header.put(48, "MIMK".getBytes(StandardCharsets.US_ASCII));
+        header.put(52, model.getBytes(StandardCharsets.US_ASCII));
+        header.putInt(64, 1);
+        header.putInt(68, 0x0000F6D6).putInt(72, 0x00010000).putInt(76, 0x0000D32D);
+        header.put(80, "mik ".getBytes(StandardCharsets.US_ASCII));
+
+        ByteBuffer profile = ByteBuffer.allocate(size);
+        profile.put(header.array()).put(table.array()).put(data.toByteArray());
+        return profile.array();
+    }
+
+    Path write(Path file) throws IOException {
+        return Files.write(file, build());
+    }
+}
@@ -1,9 +1,25 @@
 package com.mik.icc.icceditor;
 
+import com.mik.icc.core.ByteReplacer;
+import com.mik.icc.core.CurveTagData;
+import com.mik.icc.core.GenericTagData;
+import com.mik.icc.core.ICCHeader;
+import com.mik.icc.core.ICCProfile;
+import com.mik.icc.core.LutInverter;
+import com.mik.icc.core.LutTagData;
+import com.mik.icc.core.MultiLocalizedUnicodeTagData;
+import com.mik.icc.core.ProfileDiff;
+import com.mik.icc.core.ProfileOperations;
+import com.mik.icc.core.Tag;
+import com.mik.icc.core.TagData;
+import com.mik.icc.core.TextTagData;
+import com.mik.icc.core.XYZTagData;
 import javafx.application.Application;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
 import javafx.geometry.Insets;
+import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
@@ -17,10 +33,16 @@ import javafx.stage.Stage;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
-import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import javafx.beans.property.ReadOnlyObjectWrapper;
 
 public class App extends Application {
@@ -36,6 +58,26 @@ public class App extends Application {
     private SplitPane commonSplitPane;
     private ToggleButton hexTextToggle = new ToggleButton("Hex/Text");
     private ChoiceBox<String> encodingChoiceBox = new ChoiceBox<>();
+    private MenuBar menuBar = new MenuBar();
+    private TabPane tabPane = new TabPane();
+    private Tab compareTab = new Tab("Compare");
+    private ProgressBar progressBar = new ProgressBar();
+    private Label statusLabel = new Label();
+    private Button cancelButton = new Button("Cancel");
+
+    // All profile I/O runs on this thread, so operations on the open profile never overlap
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "icc-profile-io");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Open, save, copy or replace in progress; the UI is disabled until it finishes
+    private Task<?> currentTask;
+    // Only the decode of the most recently selected tag is shown
+    private Task<DecodedTag> decodeTask;
+    private TagData displayedTagData;
+    // Element bytes of the displayed tag, a read-only view of the profile buffer for the hex viewer
+    private ByteBuffer displayedTagBytes;
 
     @Override
     public void start(Stage stage) {
@@ -43,18 +85,18 @@ public class App extends Application {
         BorderPane root = new BorderPane();
 
         // Menu
-        MenuBar menuBar = new MenuBar();
         Menu fileMenu = new Menu("File");
         MenuItem openMenuItem = new MenuItem("Open");
         openMenuItem.setOnAction(e -> openFile(stage));
         MenuItem copyMenuItem = new MenuItem("Copy from another profile");
         copyMenuItem.setOnAction(e -> copyProfile(stage));
-        fileMenu.getItems().addAll(openMenuItem, copyMenuItem);
+        MenuItem compareMenuItem = new MenuItem("Compare with another profile");
+        compareMenuItem.setOnAction(e -> compareProfile(stage));
+        fileMenu.getItems().addAll(openMenuItem, copyMenuItem, compareMenuItem);
         menuBar.getMenus().add(fileMenu);
         root.setTop(menuBar);
 
         // Tabs
-        TabPane tabPane = new TabPane();
 
         // Common Tab
         Tab commonTab = new Tab("Common");
@@ -72,15 +114,34 @@ public class App extends Application {
         Button saveHeaderButton = new Button("Save Header");
         saveHeaderButton.setOnAction(e -> {
             if (iccProfile != null) {
-                try {
-                    iccProfile.writeHeader(iccProfile.getHeader());
+                ICCProfile profile = iccProfile;
+                runInBackground("Saving header", "Error saving header", false, () -> {
+                    profile.writeHeader(profile.getHeader());
+                    return null;
+                }, ignored -> {
+                    refreshProfileView();
                     showAlert(Alert.AlertType.INFORMATION, "Success", "Header saved successfully.");
-                } catch (IOException ex) {
-                    showAlert(Alert.AlertType.ERROR, "Error", "Error saving header: " + ex.getMessage());
-                }
+                });
+            }
+        });
+        // Inverts the A2B tables on all cores; cancelling leaves the file as it was
+        Button rebuildButton = new Button("Rebuild B2A");
+        rebuildButton.setOnAction(e -> {
+            if (iccProfile == null) {
+                showAlert(Alert.AlertType.WARNING, "No Profile", "Please open an ICC profile first.");
+                return;
             }
+            ICCProfile profile = iccProfile;
+            LutInverter inverter = new LutInverter(Runtime.getRuntime().availableProcessors());
+            runInBackground("Rebuilding B2A tables", "Error rebuilding B2A tables", true,
+                    progress -> inverter.progressListener(progress).rebuild(profile),
+                    results -> {
+                        refreshProfileView();
+                        showAlert(Alert.AlertType.INFORMATION, "Success", results.stream()
+                                .map(LutInverter.Result::toString).collect(Collectors.joining("\n")));
+                    });
         });
-        HBox buttonBox = new HBox(10, editButton, saveButton, saveHeaderButton);
+        HBox buttonBox = new HBox(10, editButton, saveButton, saveHeaderButton, rebuildButton);
         buttonBox.setPadding(new Insets(10));
         commonTabPane.setBottom(buttonBox);
         commonTab.setContent(commonTabPane);
@@ -112,40 +173,28 @@ public class App extends Application {
         });
 
         hexTextToggle.setOnAction(e -> {
-            Tag selectedTag = tagTableView.getSelectionModel().getSelectedItem();
-            if (selectedTag != null) {
-                try {
-                    TagData currentTagData = iccProfile.readTagData(selectedTag);
-                    if (hexTextToggle.isSelected()) { // Text mode
-                        if (currentTagData instanceof TextTagData) {
-                            tagDataTextArea.setText(((TextTagData) currentTagData).getText());
-                        } else {
-                            // Cannot display non-text data as text, revert to hex
-                            tagDataTextArea.setText(bytesToHex(currentTagData.toBytes()));
-                            hexTextToggle.setSelected(false);
-                        }
-                    } else { // Hex mode
-                        tagDataTextArea.setText(bytesToHex(currentTagData.toBytes()));
+            TagData currentTagData = displayedTagData;
+            if (currentTagData != null) {
+                if (hexTextToggle.isSelected()) { // Text mode
+                    if (currentTagData instanceof TextTagData) {
+                        tagDataTextArea.setText(((TextTagData) currentTagData).getText());
+                        showTagEditor(tagDataTextArea);
+                    } else {
+                        // Cannot display non-text data as text, stay in hex
+                        hexTextToggle.setSelected(false);
                     }
-                } catch (IOException ex) {
-                    tagDataTextArea.setText("Error reading tag data: " + ex.getMessage());
+                } else { // Hex mode
+                    showTagEditor(new HexViewer(displayedTagBytes));
                 }
             }
         });
 
         encodingChoiceBox.setOnAction(e -> {
-            Tag selectedTag = tagTableView.getSelectionModel().getSelectedItem();
-            if (selectedTag != null && hexTextToggle.isSelected()) { // Only re-interpret if in text mode
-                try {
-                    TagData currentTagData = iccProfile.readTagData(selectedTag);
-                    if (currentTagData instanceof TextTagData) {
-                        Charset selectedCharset = Charset.forName(encodingChoiceBox.getValue());
-                        String reinterpretedText = new String(currentTagData.toBytes(), selectedCharset);
-                        tagDataTextArea.setText(reinterpretedText);
-                    }
-                } catch (IOException ex) {
-                    tagDataTextArea.setText("Error re-interpreting tag data: " + ex.getMessage());
-                }
+            TagData currentTagData = displayedTagData;
+            if (currentTagData instanceof TextTagData && hexTextToggle.isSelected()) { // Only re-interpret if in text mode
+                Charset selectedCharset = Charset.forName(encodingChoiceBox.getValue());
+                String reinterpretedText = new String(currentTagData.toBytes(), selectedCharset);
+                tagDataTextArea.setText(reinterpretedText);
             }
         });
 
@@ -158,30 +207,26 @@ public class App extends Application {
 
         saveButton.setOnAction(e -> {
             Tag selectedTag = tagTableView.getSelectionModel().getSelectedItem();
-            if (selectedTag != null) {
+            if (selectedTag != null && displayedTagData != null) {
                 try {
                     TagData newTagData = null;
                     if (tagEditorPane.getChildren().isEmpty()) return;
-                    if (tagEditorPane.getChildren().get(0) instanceof TextArea) { // Text, Generic, or Curve
+                    if (tagEditorPane.getChildren().get(0) instanceof HexViewer) { // Generic, or any tag in hex mode
+                        HexViewer hexViewer = (HexViewer) tagEditorPane.getChildren().get(0);
+                        newTagData = new GenericTagData(hexViewer.getBytes());
+                    } else if (tagEditorPane.getChildren().get(0) instanceof TextArea) { // Text or Curve
                         TextArea currentTextArea = (TextArea) tagEditorPane.getChildren().get(0);
-                        if (TagType.fromSignature(selectedTag.getSignature()) == TagType.TEXT_TYPE) {
+                        TagData currentTagData = displayedTagData;
+                        if (currentTagData instanceof TextTagData) {
                             Charset selectedCharset = Charset.forName(encodingChoiceBox.getValue());
                             newTagData = new TextTagData(currentTextArea.getText(), selectedCharset);
-                        } else if (TagType.fromSignature(selectedTag.getSignature()) == TagType.CURVE_TYPE) {
+                        } else if (currentTagData instanceof CurveTagData) {
                             String[] points = currentTextArea.getText().replace("Curve Points: ", "").replace("[", "").replace("]", "").split(", ");
                             double[] curvePoints = new double[points.length];
                             for (int i = 0; i < points.length; i++) {
                                 curvePoints[i] = Double.parseDouble(points[i]);
                             }
                             newTagData = new CurveTagData(curvePoints);
-                        } else { // Generic
-                            String hexString = currentTextArea.getText().replaceAll("\\s+", "");
-                            byte[] data = new byte[hexString.length() / 2];
-                            for (int i = 0; i < hexString.length(); i += 2) {
-                                data[i / 2] = (byte) ((Character.digit(hexString.charAt(i), 16) << 4)
-                                                     + Character.digit(hexString.charAt(i + 1), 16));
-                            }
-                            newTagData = new GenericTagData(data);
                         }
                     } else if (tagEditorPane.getChildren().get(0) instanceof GridPane) { // XYZ
                         GridPane xyzEditor = (GridPane) tagEditorPane.getChildren().get(0);
@@ -200,10 +245,18 @@ public class App extends Application {
                     }
 
                     if (newTagData != null) {
-                        iccProfile.writeTagData(selectedTag, newTagData);
-                        showAlert(Alert.AlertType.INFORMATION, "Success", "Tag data saved successfully.");
+                        ICCProfile profile = iccProfile;
+                        TagData tagData = newTagData;
+                        runInBackground("Saving tag " + selectedTag.getSignature(), "Error saving tag data", false, () -> {
+                            profile.writeTagData(selectedTag, tagData);
+                            return null;
+                        }, ignored -> {
+                            // Saving relays out the profile, so offsets and sizes in the table change
+                            refreshProfileView();
+                            showAlert(Alert.AlertType.INFORMATION, "Success", "Tag data saved successfully.");
+                        });
                     }
-                } catch (IOException | NumberFormatException ex) {
+                } catch (NumberFormatException ex) {
                     Alert alert = new Alert(Alert.AlertType.ERROR);
                     alert.setTitle("Error");
                     alert.setHeaderText("Error saving tag data");
@@ -226,6 +279,8 @@ public class App extends Application {
         searchField.setPromptText("Search for...");
         TextField replaceField = new TextField();
         replaceField.setPromptText("Replace with...");
+        CheckBox allTagsCheckBox = new CheckBox("Search all tags");
+        CheckBox relayoutCheckBox = new CheckBox("Allow longer replacement (changes tag sizes)");
         Button searchReplaceButton = new Button("Search and Replace");
 
         searchReplaceButton.setOnAction(e -> {
@@ -242,75 +297,52 @@ public class App extends Application {
                 return;
             }
 
-            boolean replaced = false;
-
-            // Search and replace in 'desc' tag
+            ByteReplacer replacer;
             try {
-                Tag descTag = iccProfile.getTagBySignature("desc");
-                if (descTag != null) {
-                    TagData currentDescData = iccProfile.readTagData(descTag);
-                    if (currentDescData instanceof TextTagData) {
-                        TextTagData textDescData = (TextTagData) currentDescData;
-                        String originalText = textDescData.getText();
-                        String newText = originalText.replace(searchText, replaceText);
-                        if (!originalText.equals(newText)) {
-                            iccProfile.writeTagData(descTag, new TextTagData(newText, textDescData.getCharset()));
-                            replaced = true;
-                        }
-                    } else {
-                        showAlert(Alert.AlertType.WARNING, "Unsupported Tag Type", "The 'desc' tag is not a text type.");
-                    }
-                }
-            } catch (IOException ex) {
-                showAlert(Alert.AlertType.ERROR, "Error", "Error during search and replace in 'desc' tag: " + ex.getMessage());
+                replacer = new ByteReplacer(searchText, replaceText,
+                        relayoutCheckBox.isSelected() ? ByteReplacer.Mode.RELAYOUT : ByteReplacer.Mode.PAD);
+            } catch (IllegalArgumentException ex) {
+                showAlert(Alert.AlertType.WARNING, "Replacement Too Long", ex.getMessage());
+                return;
             }
-
-            // Search and replace in 'MMK1' and 'MMK2' tags (experimental)
-            String[] mimakiTags = {"MMK1", "MMK2"};
-            for (String mimakiTagSignature : mimakiTags) {
-                try {
-                    Tag mimakiTag = iccProfile.getTagBySignature(mimakiTagSignature);
-                    if (mimakiTag != null) {
-                        TagData currentMimakiData = iccProfile.readTagData(mimakiTag);
-                        // Attempt to interpret as UTF-8 string
-                        String originalText = new String(currentMimakiData.toBytes(), StandardCharsets.UTF_8);
-                        String newText = originalText.replace(searchText, replaceText);
-                        if (!originalText.equals(newText)) {
-                            iccProfile.writeTagData(mimakiTag, new GenericTagData(newText.getBytes(StandardCharsets.UTF_8)));
-                            replaced = true;
+            boolean allTags = allTagsCheckBox.isSelected();
+            ICCProfile profile = iccProfile;
+            runInBackground("Replacing media name", "Error during media name search and replace", false,
+                    () -> ProfileOperations.replaceMediaName(profile, replacer, allTags),
+                    replacedTags -> {
+                        if (replacedTags > 0) {
+                            // Saving re-opens the file, so the view only needs to pick up the new layout
+                            refreshProfileView();
+                            showAlert(Alert.AlertType.INFORMATION, "Success", "Media name replaced in " + replacedTags
+                                    + (replacedTags == 1 ? " tag." : " tags."));
+                        } else {
+                            showAlert(Alert.AlertType.INFORMATION, "No Change", "Search text not found in any relevant media name tag.");
                         }
-                    }
-                } catch (IOException ex) {
-                    showAlert(Alert.AlertType.ERROR, "Error", "Error during search and replace in '" + mimakiTagSignature + "' tag: " + ex.getMessage());
-                }
-            }
-
-            if (replaced) {
-                showAlert(Alert.AlertType.INFORMATION, "Success", "Media name replaced successfully. (Experimental for MMK tags)");
-                // Refresh the UI to show changes
-                // Re-open the file to refresh all data
-                try {
-                    iccProfile = new ICCProfile(iccProfile.getFilePath()); // Re-read the profile
-                    commonSplitPane.getItems().remove(headerEditor);
-                    headerEditor = createHeaderEditor(iccProfile.getHeader());
-                    commonSplitPane.getItems().add(0, headerEditor);
-                    ObservableList<Tag> tags = FXCollections.observableArrayList(iccProfile.getTags());
-                    tagTableView.setItems(tags);
-                } catch (IOException ex) {
-                    showAlert(Alert.AlertType.ERROR, "Error", "Error refreshing profile after save: " + ex.getMessage());
-                }
-            } else {
-                showAlert(Alert.AlertType.INFORMATION, "No Change", "Search text not found in any relevant media name tag.");
-            }
+                    });
         });
 
-        mimakiControls.getChildren().addAll(mediaNameLabel, searchField, replaceField, searchReplaceButton);
+        mimakiControls.getChildren().addAll(mediaNameLabel, searchField, replaceField, allTagsCheckBox, relayoutCheckBox,
+                searchReplaceButton);
 
         // Cxf->DevS/CIED Conversion
         Label conversionLabel = new Label("Cxf -> DevS/CIED Conversion");
         Button convertButton = new Button("Convert");
         convertButton.setOnAction(e -> {
-            showAlert(Alert.AlertType.INFORMATION, "Under Construction", "Cxf -> DevS/CIED Conversion is not yet implemented.");
+            if (iccProfile == null) {
+                showAlert(Alert.AlertType.WARNING, "No Profile", "Please open an ICC profile first.");
+                return;
+            }
+            ICCProfile profile = iccProfile;
+            runInBackground("Converting CxF data", "Error converting CxF data", false,
+                    () -> ProfileOperations.convertCxf(profile),
+                    result -> {
+                        if (result == null) {
+                            showAlert(Alert.AlertType.INFORMATION, "No CxF Data", "The profile has no CxF tag.");
+                        } else {
+                            refreshProfileView();
+                            showAlert(Alert.AlertType.INFORMATION, "Success", "DevS and CIED tags written: " + result + ".");
+                        }
+                    });
         });
 
         mimakiControls.getChildren().addAll(conversionLabel, convertButton);
@@ -321,6 +353,18 @@ public class App extends Application {
         tabPane.getTabs().addAll(commonTab, mimakiTab);
         root.setCenter(tabPane);
 
+        // Status bar for background tasks
+        progressBar.setVisible(false);
+        cancelButton.setVisible(false);
+        cancelButton.setOnAction(e -> {
+            if (currentTask != null) {
+                currentTask.cancel();
+            }
+        });
+        HBox statusBar = new HBox(10, progressBar, statusLabel, cancelButton);
+        statusBar.setPadding(new Insets(5, 10, 5, 10));
+        root.setBottom(statusBar);
+
         Scene scene = new Scene(root, 800, 600);
         scene.getStylesheets().add(getClass().getResource("styles.css").toExternalForm());
         stage.setScene(scene);
@@ -336,21 +380,21 @@ public class App extends Application {
                 new FileChooser.ExtensionFilter("All Files", "*.*"));
         File file = fileChooser.showOpenDialog(stage);
         if (file != null) {
-            try {
-                iccProfile = new ICCProfile(file.getAbsolutePath());
-                // Update the header editor with the new profile's header
-                commonSplitPane.getItems().remove(headerEditor);
-                headerEditor = createHeaderEditor(iccProfile.getHeader());
-                commonSplitPane.getItems().add(0, headerEditor);
-
-                tagTableView.getSelectionModel().clearSelection();
-                tagTableView.getItems().clear();
-                ObservableList<Tag> tags = FXCollections.observableArrayList(iccProfile.getTags());
-                tagTableView.setItems(tags);
+            runInBackground("Opening " + file.getName(), "Error reading ICC profile", true, () -> {
+                ICCProfile openedProfile = new ICCProfile(file.getAbsolutePath());
+                if (Thread.currentThread().isInterrupted()) {
+                    // Cancelled while parsing, nobody will pick the profile up
+                    openedProfile.close();
+                    throw new InterruptedIOException("Opening " + file.getName() + " was cancelled");
+                }
+                return openedProfile;
+            }, openedProfile -> {
+                closeProfile();
+                iccProfile = openedProfile;
+                // Update the header editor and tag table with the new profile
+                refreshProfileView();
                 this.stage.setTitle("ICC Profile Editor - " + file.getName());
-            } catch (IOException e) {
-                showAlert(Alert.AlertType.ERROR, "Error", "Error reading ICC profile: " + e.getMessage());
-            }
+            });
         }
     }
 
@@ -360,81 +404,238 @@ public class App extends Application {
         fileChooser.getExtensionFilters().addAll(
                 new FileChooser.ExtensionFilter("ICC Profiles", "*.icc", "*.icm"),
                 new FileChooser.ExtensionFilter("All Files", "*.*"));
+        if (iccProfile == null) {
+            showAlert(Alert.AlertType.WARNING, "No Profile", "Please open an ICC profile first.");
+            return;
+        }
         File file = fileChooser.showOpenDialog(stage);
         if (file != null) {
-            try {
-                ICCProfile sourceProfile = new ICCProfile(file.getAbsolutePath());
-                // Copy tags from sourceProfile to iccProfile
-                for (Tag sourceTag : sourceProfile.getTags()) {
-                    Tag currentTag = iccProfile.getTagBySignature(sourceTag.getSignature());
-                    if (currentTag != null) {
-                        TagData sourceTagData = sourceProfile.readTagData(sourceTag);
-                        iccProfile.writeTagData(currentTag, sourceTagData);
-                    }
+            ICCProfile targetProfile = iccProfile;
+            runInBackground("Copying tags from " + file.getName(), "Error copying ICC profile", false, () -> {
+                try (ICCProfile sourceProfile = ICCProfile.openReadOnly(file.getAbsolutePath())) {
+                    // Copy tags from sourceProfile to iccProfile
+                    ProfileOperations.copyTags(sourceProfile, targetProfile);
                 }
+                return null;
+            }, ignored -> {
                 // Refresh UI
-                commonSplitPane.getItems().remove(headerEditor);
-                headerEditor = createHeaderEditor(iccProfile.getHeader());
-                commonSplitPane.getItems().add(0, headerEditor);
-
-                tagTableView.getSelectionModel().clearSelection();
-                tagTableView.getItems().clear();
-                ObservableList<Tag> tags = FXCollections.observableArrayList(iccProfile.getTags());
-                tagTableView.setItems(tags);
+                refreshProfileView();
                 this.stage.setTitle("ICC Profile Editor - (Copied) " + file.getName());
-            } catch (IOException e) {
-                showAlert(Alert.AlertType.ERROR, "Error", "Error copying ICC profile: " + e.getMessage());
+            });
+        }
+    }
+
+    private void compareProfile(Stage stage) {
+        if (iccProfile == null) {
+            showAlert(Alert.AlertType.WARNING, "No Profile", "Please open an ICC profile first.");
+            return;
+        }
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Compare with another ICC Profile");
+        fileChooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("ICC Profiles", "*.icc", "*.icm"),
+                new FileChooser.ExtensionFilter("All Files", "*.*"));
+        File file = fileChooser.showOpenDialog(stage);
+        if (file != null) {
+            ICCProfile openProfile = iccProfile;
+            String title = new File(openProfile.getFilePath()).getName() + " -> " + file.getName();
+            runInBackground("Comparing with " + file.getName(), "Error comparing ICC profiles", true, () -> {
+                try (ICCProfile otherProfile = ICCProfile.openReadOnly(file.getAbsolutePath())) {
+                    return ProfileDiff.compare(openProfile, otherProfile);
+                }
+            }, diff -> {
+                compareTab.setContent(new ProfileDiffView(title, diff));
+                if (!tabPane.getTabs().contains(compareTab)) {
+                    tabPane.getTabs().add(compareTab);
+                }
+                tabPane.getSelectionModel().select(compareTab);
+            });
+        }
+    }
+
+    private void refreshProfileView() {
+        commonSplitPane.getItems().remove(headerEditor);
+        headerEditor = createHeaderEditor(iccProfile.getHeader());
+        commonSplitPane.getItems().add(0, headerEditor);
+
+        tagTableView.getSelectionModel().clearSelection();
+        tagTableView.getItems().clear();
+        // Editors may still show data of the file as it was before saving
+        cancelDecode();
+        tagEditorPane.getChildren().clear();
+        ObservableList<Tag> tags = FXCollections.observableArrayList(iccProfile.getTags());
+        tagTableView.setItems(tags);
+    }
+
+    private void closeProfile() {
+        if (iccProfile != null) {
+            ICCProfile closingProfile = iccProfile;
+            iccProfile = null;
+            cancelDecode();
+            ioExecutor.execute(() -> {
+                try {
+                    closingProfile.close();
+                } catch (IOException e) {
+                    // Nothing left to do with a profile that failed to close
+                }
+            });
+        }
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        closeProfile();
+        // Let a save that is still running finish instead of leaving a temp file behind
+        ioExecutor.shutdown();
+        ioExecutor.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    // Background work that reports how far it got to the status bar
+    private interface ProgressWork<T> {
+        T call(LutInverter.ProgressListener progress) throws Exception;
+    }
+
+    private <T> void runInBackground(String description, String errorMessage, boolean cancellable,
+                                     Callable<T> work, Consumer<T> onSuccess) {
+        runInBackground(description, errorMessage, cancellable, progress -> work.call(), onSuccess);
+    }
+
+    // Runs blocking profile I/O on the I/O thread with the UI disabled, then hands the result to the FX thread
+    private <T> void runInBackground(String description, String errorMessage, boolean cancellable,
+                                     ProgressWork<T> work, Consumer<T> onSuccess) {
+        Task<T> task = new Task<>() {
+            @Override
+            protected T call() throws Exception {
+                return work.call(this::updateProgress);
             }
+        };
+        task.setOnSucceeded(e -> {
+            finishTask(task);
+            onSuccess.accept(task.getValue());
+        });
+        task.setOnFailed(e -> {
+            finishTask(task);
+            showAlert(Alert.AlertType.ERROR, "Error", errorMessage + ": " + task.getException().getMessage());
+        });
+        task.setOnCancelled(e -> {
+            finishTask(task);
+            statusLabel.setText(description + " cancelled");
+        });
+
+        currentTask = task;
+        menuBar.setDisable(true);
+        tabPane.setDisable(true);
+        statusLabel.setText(description + "...");
+        progressBar.progressProperty().bind(task.progressProperty());
+        progressBar.setVisible(true);
+        // Writes replace the file in one step and are not interrupted half way
+        cancelButton.setVisible(cancellable);
+        ioExecutor.execute(task);
+    }
+
+    private void finishTask(Task<?> task) {
+        if (currentTask != task) {
+            return;
         }
+        currentTask = null;
+        menuBar.setDisable(false);
+        tabPane.setDisable(false);
+        statusLabel.setText("");
+        progressBar.progressProperty().unbind();
+        progressBar.setVisible(false);
+        cancelButton.setVisible(false);
     }
 
+    // Decodes on the I/O thread; a newer selection cancels the pending decode, so only the latest tag is shown
     private void displayTagData(Tag tag) {
-        tagEditorPane.getChildren().clear(); // Clear previous editor
-        try {
-            TagData tagData = iccProfile.readTagData(tag);
-            boolean isTextOrGeneric = (tagData instanceof TextTagData || tagData instanceof GenericTagData);
-            hexTextToggle.setDisable(!isTextOrGeneric);
-            encodingChoiceBox.setDisable(!isTextOrGeneric);
-
-            if (tagData instanceof TextTagData) {
-                tagDataTextArea.setText(((TextTagData) tagData).getText());
-                setupEditableTextArea(tagDataTextArea);
-                tagEditorPane.getChildren().add(tagDataTextArea);
-            } else if (tagData instanceof XYZTagData) {
-                XYZTagData xyzData = (XYZTagData) tagData;
-                GridPane xyzEditor = new GridPane();
-                xyzEditor.setPadding(new Insets(10));
-                xyzEditor.setHgap(10);
-                xyzEditor.setVgap(5);
-                xyzEditor.addRow(0, new Label("X:"), createEditableXYZTextField(String.valueOf(xyzData.getX()), xyzData, "x"));
-                xyzEditor.addRow(1, new Label("Y:"), createEditableXYZTextField(String.valueOf(xyzData.getY()), xyzData, "y"));
-                xyzEditor.addRow(2, new Label("Z:"), createEditableXYZTextField(String.valueOf(xyzData.getZ()), xyzData, "z"));
-                tagEditorPane.getChildren().add(xyzEditor);
-            } else if (tagData instanceof CurveTagData) {
-                CurveTagData curveData = (CurveTagData) tagData;
-                TextArea curveTextArea = new TextArea(curveData.toString());
-                setupEditableTextArea(curveTextArea);
-                tagEditorPane.getChildren().add(curveTextArea);
-            } else if (tagData instanceof MultiLocalizedUnicodeTagData) {
-                MultiLocalizedUnicodeTagData mlucData = (MultiLocalizedUnicodeTagData) tagData;
-                TableView<Map.Entry<String, String>> mlucTableView = new TableView<>();
-                TableColumn<Map.Entry<String, String>, String> langCountryCol = new TableColumn<>("Language-Country");
-                langCountryCol.setCellValueFactory(p -> new ReadOnlyObjectWrapper<>(p.getValue().getKey()));
-                TableColumn<Map.Entry<String, String>, String> textCol = new TableColumn<>("Text");
-                textCol.setCellValueFactory(p -> new ReadOnlyObjectWrapper<>(p.getValue().getValue()));
-                mlucTableView.getColumns().addAll(langCountryCol, textCol);
-                mlucTableView.setItems(FXCollections.observableArrayList(mlucData.getLocalizedStrings().entrySet()));
-                tagEditorPane.getChildren().add(mlucTableView);
-            } else if (tagData instanceof GenericTagData) {
-                tagDataTextArea.setText(bytesToHex(tagData.toBytes()));
-                setupEditableTextArea(tagDataTextArea);
-                tagEditorPane.getChildren().add(tagDataTextArea);
-            } else {
-                tagDataTextArea.setText("Unsupported Tag Data Type");
-                tagEditorPane.getChildren().add(tagDataTextArea);
+        cancelDecode();
+        ICCProfile profile = iccProfile;
+        Task<DecodedTag> task = new Task<>() {
+            @Override
+            protected DecodedTag call() throws IOException {
+                return new DecodedTag(profile.readTagData(tag), profile.getTagBuffer(tag));
+            }
+        };
+        task.setOnSucceeded(e -> {
+            if (decodeTask == task) {
+                decodeTask = null;
+                showTagData(task.getValue().data, task.getValue().bytes);
+            }
+        });
+        task.setOnFailed(e -> {
+            if (decodeTask == task) {
+                decodeTask = null;
+                tagDataTextArea.setText("Error reading tag data: " + task.getException().getMessage());
+                showTagEditor(tagDataTextArea);
             }
-        } catch (IOException e) {
-            tagDataTextArea.setText("Error reading tag data: " + e.getMessage());
+        });
+        decodeTask = task;
+        showTagEditor(new ProgressIndicator());
+        ioExecutor.execute(task);
+    }
+
+    private void cancelDecode() {
+        if (decodeTask != null) {
+            decodeTask.cancel();
+            decodeTask = null;
+        }
+        displayedTagData = null;
+        displayedTagBytes = null;
+    }
+
+    private static final class DecodedTag {
+        private final TagData data;
+        private final ByteBuffer bytes;
+
+        private DecodedTag(TagData data, ByteBuffer bytes) {
+            this.data = data;
+            this.bytes = bytes;
+        }
+    }
+
+    private void showTagData(TagData tagData, ByteBuffer tagBytes) {
+        tagEditorPane.getChildren().clear(); // Clear previous editor
+        displayedTagData = tagData;
+        displayedTagBytes = tagBytes;
+        boolean isTextOrGeneric = (tagData instanceof TextTagData || tagData instanceof GenericTagData);
+        hexTextToggle.setDisable(!isTextOrGeneric);
+        encodingChoiceBox.setDisable(!isTextOrGeneric);
+
+        if (tagData instanceof TextTagData) {
+            tagDataTextArea.setText(((TextTagData) tagData).getText());
+            setupEditableTextArea(tagDataTextArea);
+            tagEditorPane.getChildren().add(tagDataTextArea);
+        } else if (tagData instanceof XYZTagData) {
+            XYZTagData xyzData = (XYZTagData) tagData;
+            GridPane xyzEditor = new GridPane();
+            xyzEditor.setPadding(new Insets(10));
+            xyzEditor.setHgap(10);
+            xyzEditor.setVgap(5);
+            xyzEditor.addRow(0, new Label("X:"), createEditableXYZTextField(String.valueOf(xyzData.getX()), xyzData, "x"));
+            xyzEditor.addRow(1, new Label("Y:"), createEditableXYZTextField(String.valueOf(xyzData.getY()), xyzData, "y"));
+            xyzEditor.addRow(2, new Label("Z:"), createEditableXYZTextField(String.valueOf(xyzData.getZ()), xyzData, "z"));
+            tagEditorPane.getChildren().add(xyzEditor);
+        } else if (tagData instanceof CurveTagData) {
+            CurveTagData curveData = (CurveTagData) tagData;
+            TextArea curveTextArea = new TextArea(curveData.toString());
+            setupEditableTextArea(curveTextArea);
+            tagEditorPane.getChildren().add(curveTextArea);
+        } else if (tagData instanceof MultiLocalizedUnicodeTagData) {
+            MultiLocalizedUnicodeTagData mlucData = (MultiLocalizedUnicodeTagData) tagData;
+            TableView<Map.Entry<String, String>> mlucTableView = new TableView<>();
+            TableColumn<Map.Entry<String, String>, String> langCountryCol = new TableColumn<>("Language-Country");
+            langCountryCol.setCellValueFactory(p -> new ReadOnlyObjectWrapper<>(p.getValue().getKey()));
+            TableColumn<Map.Entry<String, String>, String> textCol = new TableColumn<>("Text");
+            textCol.setCellValueFactory(p -> new ReadOnlyObjectWrapper<>(p.getValue().getValue()));
+            mlucTableView.getColumns().addAll(langCountryCol, textCol);
+            mlucTableView.setItems(FXCollections.observableArrayList(mlucData.getLocalizedStrings().entrySet()));
+            tagEditorPane.getChildren().add(mlucTableView);
+        } else if (tagData instanceof GenericTagData || tagData instanceof LutTagData) {
+            // LUTs are shown as their element bytes straight from the profile; saving from the hex view stores them as
+            // raw data
+            tagEditorPane.getChildren().add(new HexViewer(tagBytes));
+        } else {
+            tagDataTextArea.setText("Unsupported Tag Data Type");
             tagEditorPane.getChildren().add(tagDataTextArea);
         }
     }
@@ -458,12 +659,8 @@ public class App extends Application {
         });
     }
 
-    private String bytesToHex(byte[] bytes) {
-        StringBuilder sb = new StringBuilder();
-        for (byte b : bytes) {
-            sb.append(String.format("%02X ", b));
-        }
-        return sb.toString();
+    private void showTagEditor(Node editor) {
+        tagEditorPane.getChildren().setAll(editor);
     }
 
     private void showAlert(Alert.AlertType type, String title, String message) {
@@ -0,0 +1,52 @@
+package com.mik.icc.icceditor;
+
+import com.mik.icc.core.HexCodec;
+
+// Row layout of the hex viewer: "00000010  0A FF ...  ..ascii.." with a fixed number of bytes per row
+final class HexRows {
+
+    static final int BYTES_PER_ROW = 16;
+
+    private static final char[] DIGITS = "0123456789ABCDEF".toCharArray();
+    private static final int HEX_COLUMN_WIDTH = BYTES_PER_ROW * 3 - 1;
+
+    private HexRows() {
+    }
+
+    static int rowCount(int length) {
+        return (length + BYTES_PER_ROW - 1) / BYTES_PER_ROW;
+    }
+
+    static int rowOf(int offset) {
+        return offset / BYTES_PER_ROW;
+    }
+
+    static String format(int offset, byte[] row, int length) {
+        StringBuilder line = new StringBuilder(10 + HEX_COLUMN_WIDTH + 2 + BYTES_PER_ROW);
+        for (int shift = 28; shift >= 0; shift -= 4) {
+            line.append(DIGITS[(offset >>> shift) & 0x0F]);
+        }
+        line.append("  ").append(HexCodec.encode(row, 0, length));
+        for (int i = line.length(); i < 10 + HEX_COLUMN_WIDTH; i++) {
+            line.append(' ');
+        }
+        line.append("  ");
+        for (int i = 0; i < length; i++) {
+            int value = row[i] & 0xFF;
+            line.append(value >= 0x20 && value < 0x7F ? (char) value : '.');
+        }
+        return line.toString();
+    }
+
+    // Accepts "0x1F0", "1F0h" and plain decimal offsets
+    static int parseOffset(String text) {
+        String trimmed = text.trim();
+        if (trimmed.startsWith("0x") || trimmed.startsWith("0X")) {
+            return Integer.parseInt(trimmed.substring(2), 16);
+        }
+        if (trimmed.endsWith("h") || trimmed.endsWith("H")) {
+            return Integer.parseInt(trimmed.substring(0, trimmed.length() - 1), 16);
+        }
+        return Integer.parseInt(trimmed);
+    }
+}
@@ -0,0 +1,207 @@
+package com.mik.icc.icceditor;
+
+import com.mik.icc.core.HexCodec;
+import javafx.collections.ObservableListBase;
+import javafx.geometry.Insets;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TextField;
+import javafx.scene.input.KeyCode;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+// Virtualized hex/ASCII view of a tag: only the visible rows are formatted, straight from the profile buffer.
+// Edited bytes are kept in a sparse overlay until getBytes() is called.
+public class HexViewer extends BorderPane {
+
+    private final ByteBuffer data;
+    private final int length;
+    private final Map<Integer, Byte> edits = new HashMap<>();
+    private final ListView<Integer> rowView = new ListView<>();
+    private final TextField offsetField = new TextField();
+    private final Label statusLabel = new Label();
+
+    public HexViewer(ByteBuffer data) {
+        this.data = data.slice();
+        this.length = this.data.remaining();
+
+        rowView.setItems(new RowIndexList(HexRows.rowCount(length)));
+        rowView.setCellFactory(view -> new RowCell());
+        rowView.setFixedCellSize(24);
+        rowView.setEditable(true);
+        // The default handler stores the committed item in the list, the row cell applies edits itself
+        rowView.setOnEditCommit(event -> { });
+        rowView.getStyleClass().add("hex-viewer");
+
+        offsetField.setPromptText("Offset (0x1F0 or 496)");
+        offsetField.setOnAction(e -> jumpTo(offsetField.getText()));
+        Button goButton = new Button("Go");
+        goButton.setOnAction(e -> jumpTo(offsetField.getText()));
+        HBox toolbar = new HBox(10, new Label("Offset:"), offsetField, goButton, statusLabel);
+        toolbar.setPadding(new Insets(5));
+
+        setTop(toolbar);
+        setCenter(rowView);
+        updateStatus();
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public byte getByte(int index) {
+        if (!edits.isEmpty()) {
+            Byte edited = edits.get(index);
+            if (edited != null) {
+                return edited;
+            }
+        }
+        return data.get(index);
+    }
+
+    public void setByte(int index, byte value) {
+        if (data.get(index) == value) {
+            edits.remove(index);
+        } else {
+            edits.put(index, value);
+        }
+    }
+
+    public boolean isModified() {
+        return !edits.isEmpty();
+    }
+
+    public byte[] getBytes() {
+        byte[] bytes = new byte[length];
+        data.get(0, bytes);
+        edits.forEach((index, value) -> bytes[index] = value);
+        return bytes;
+    }
+
+    public void jumpTo(String offsetText) {
+        int offset;
+        try {
+            offset = HexRows.parseOffset(offsetText);
+        } catch (NumberFormatException e) {
+            statusLabel.setText("Invalid offset: " + offsetText);
+            return;
+        }
+        if (offset < 0 || offset >= length) {
+            statusLabel.setText("Offset out of range: " + offsetText);
+            return;
+        }
+        int row = HexRows.rowOf(offset);
+        rowView.scrollTo(row);
+        rowView.getSelectionModel().select(row);
+        updateStatus();
+    }
+
+    private int readRow(int row, byte[] into) {
+        int start = row * HexRows.BYTES_PER_ROW;
+        int rowLength = Math.min(HexRows.BYTES_PER_ROW, length - start);
+        for (int i = 0; i < rowLength; i++) {
+            into[i] = getByte(start + i);
+        }
+        return rowLength;
+    }
+
+    private void updateStatus() {
+        statusLabel.setText(length + " bytes" + (edits.isEmpty() ? "" : ", " + edits.size() + " modified"));
+    }
+
+    private final class RowCell extends ListCell<Integer> {
+
+        private final byte[] row = new byte[HexRows.BYTES_PER_ROW];
+        private TextField editor;
+
+        @Override
+        protected void updateItem(Integer item, boolean empty) {
+            super.updateItem(item, empty);
+            setGraphic(null);
+            if (empty || item == null) {
+                setText(null);
+            } else {
+                int rowLength = readRow(item, row);
+                setText(HexRows.format(item * HexRows.BYTES_PER_ROW, row, rowLength));
+            }
+        }
+
+        @Override
+        public void startEdit() {
+            super.startEdit();
+            if (!isEditing()) {
+                return;
+            }
+            int rowLength = readRow(getItem(), row);
+            editor = new TextField(HexCodec.encode(row, 0, rowLength));
+            editor.setOnAction(e -> commitRow());
+            editor.setOnKeyPressed(e -> {
+                if (e.getCode() == KeyCode.ESCAPE) {
+                    cancelEdit();
+                }
+            });
+            setText(null);
+            setGraphic(editor);
+            editor.requestFocus();
+            editor.selectAll();
+        }
+
+        @Override
+        public void cancelEdit() {
+            super.cancelEdit();
+            updateItem(getItem(), getItem() == null);
+        }
+
+        // The row must keep its length, so edits never move the bytes after it
+        private void commitRow() {
+            int rowIndex = getItem();
+            int start = rowIndex * HexRows.BYTES_PER_ROW;
+            int rowLength = Math.min(HexRows.BYTES_PER_ROW, length - start);
+            byte[] bytes;
+            try {
+                bytes = HexCodec.decode(editor.getText());
+            } catch (NumberFormatException e) {
+                statusLabel.setText(e.getMessage());
+                return;
+            }
+            if (bytes.length != rowLength) {
+                statusLabel.setText("Row must stay " + rowLength + " bytes long, got " + bytes.length);
+                return;
+            }
+            for (int i = 0; i < rowLength; i++) {
+                setByte(start + i, bytes[i]);
+            }
+            commitEdit(rowIndex);
+            updateStatus();
+        }
+    }
+
+    // Row indices 0..size-1 without storing anything per row
+    private static final class RowIndexList extends ObservableListBase<Integer> {
+
+        private final int size;
+
+        RowIndexList(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public Integer get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return index;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.mik.icc.icceditor;
+
+import com.mik.icc.core.ProfileDiff;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.geometry.Insets;
+import javafx.scene.control.Label;
+import javafx.scene.control.TreeItem;
+import javafx.scene.control.TreeTableColumn;
+import javafx.scene.control.TreeTableView;
+import javafx.scene.layout.BorderPane;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+// Result of a profile comparison: changed header fields, then one expandable node per added, removed or changed tag
+public class ProfileDiffView extends BorderPane {
+
+    private static final int EXPANDED_GROUP_SIZE = 20;
+
+    private final TreeTableView<Row> treeView = new TreeTableView<>();
+
+    // A group (header, tag) or a single difference below it
+    private static final class Row {
+        final String item;
+        final String before;
+        final String after;
+        final String delta;
+
+        Row(String item, String before, String after, String delta) {
+            this.item = item;
+            this.before = before;
+            this.after = after;
+            this.delta = delta;
+        }
+
+        Row(ProfileDiff.Difference difference) {
+            this(difference.getField(), difference.getBefore(), difference.getAfter(),
+                    Double.isNaN(difference.getDelta()) ? "" : String.format(Locale.ROOT, "%+.6f", difference.getDelta()));
+        }
+    }
+
+    public ProfileDiffView(String title, ProfileDiff diff) {
+        TreeItem<Row> root = new TreeItem<>(new Row(title, "", "", ""));
+        if (diff.isEmpty()) {
+            root.getChildren().add(new TreeItem<>(new Row("Profiles are identical", "", "", "")));
+        }
+        if (!diff.getHeaderDifferences().isEmpty()) {
+            root.getChildren().add(group("Header", "", "", diff.getHeaderDifferences()));
+        }
+        for (ProfileDiff.TagDiff tagDiff : diff.getTagDiffs()) {
+            String before = tagDiff.getSizeBefore() < 0 ? "(none)" : tagDiff.getSizeBefore() + " bytes";
+            String after = tagDiff.getSizeAfter() < 0 ? "(none)" : tagDiff.getSizeAfter() + " bytes";
+            String item = tagDiff.getSignature() + " " + tagDiff.getKind().name().toLowerCase(Locale.ROOT);
+            root.getChildren().add(group(item, before, after, tagDiff.getDifferences()));
+        }
+        root.setExpanded(true);
+
+        treeView.setRoot(root);
+        treeView.setShowRoot(false);
+        treeView.getColumns().add(column("Item", 220, row -> row.item));
+        treeView.getColumns().add(column("Before", 200, row -> row.before));
+        treeView.getColumns().add(column("After", 200, row -> row.after));
+        treeView.getColumns().add(column("Delta", 110, row -> row.delta));
+
+        Label titleLabel = new Label(title);
+        titleLabel.setPadding(new Insets(5));
+        setTop(titleLabel);
+        setCenter(treeView);
+    }
+
+    private static TreeItem<Row> group(String item, String before, String after, List<ProfileDiff.Difference> differences) {
+        TreeItem<Row> group = new TreeItem<>(new Row(item, before, after, ""));
+        for (ProfileDiff.Difference difference : differences) {
+            group.getChildren().add(new TreeItem<>(new Row(difference)));
+        }
+        // Small groups are shown open, long curve diffs stay collapsed until asked for
+        group.setExpanded(differences.size() <= EXPANDED_GROUP_SIZE);
+        return group;
+    }
+
+    private static TreeTableColumn<Row, String> column(String name, double width, Function<Row, String> value) {
+        TreeTableColumn<Row, String> column = new TreeTableColumn<>(name);
+        column.setPrefWidth(width);
+        column.setCellValueFactory(cell -> new ReadOnlyStringWrapper(value.apply(cell.getValue().getValue())));
+        return column;
+    }
+}
@@ -1,5 +0,0 @@
-package com.mik.icc.icceditor;
-
-public interface TagData {
-    byte[] toBytes();
-}
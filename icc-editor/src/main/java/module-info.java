@@ -1,7 +1,8 @@
 module com.mik.icc.icceditor {
+    requires com.mik.icc.core;
     requires javafx.controls;
     requires javafx.fxml;
 
     opens com.mik.icc.icceditor to javafx.fxml;
     exports com.mik.icc.icceditor;
-}
\ No newline at end of file
+}
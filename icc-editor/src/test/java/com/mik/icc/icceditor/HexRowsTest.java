@@ -0,0 +1,41 @@
+package com.mik.icc.icceditor;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HexRowsTest {
+
+    @Test
+    void formatsFullRowWithOffsetHexAndAscii() {
+        byte[] row = "ICC profile data".getBytes();
+        assertEquals("00000020  49 43 43 20 70 72 6F 66 69 6C 65 20 64 61 74 61  ICC profile data",
+                HexRows.format(0x20, row, row.length));
+    }
+
+    @Test
+    void padsShortLastRowAndMasksControlBytes() {
+        byte[] row = {0x41, 0x00, (byte) 0xFF, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0};
+        String line = HexRows.format(0x30, row, 3);
+        assertEquals("00000030  41 00 FF" + " ".repeat(39) + "  A..", line);
+        assertEquals(HexRows.format(0x20, new byte[16], 16).length() - 13, line.length());
+    }
+
+    @Test
+    void countsRows() {
+        assertEquals(0, HexRows.rowCount(0));
+        assertEquals(1, HexRows.rowCount(16));
+        assertEquals(2, HexRows.rowCount(17));
+        assertEquals(262144, HexRows.rowCount(4 * 1024 * 1024));
+        assertEquals(2, HexRows.rowOf(0x2F));
+    }
+
+    @Test
+    void parsesHexAndDecimalOffsets() {
+        assertEquals(0x1F0, HexRows.parseOffset("0x1F0"));
+        assertEquals(0x1F0, HexRows.parseOffset(" 1f0h "));
+        assertEquals(496, HexRows.parseOffset("496"));
+        assertThrows(NumberFormatException.class, () -> HexRows.parseOffset("0xZZ"));
+    }
+}